@@ -92,6 +92,16 @@ public class MetaObjectStoreEnvironmentBean extends ObjectStoreEnvironmentBean {
         instances.forEach(i -> i.setCacheStoreWorkItems(cacheStoreWorkItems));
     }
 
+    @Override
+    public int getCacheStoreWorkers() {
+        return actionStoreEnvironmentBean.getCacheStoreWorkers();
+    }
+
+    @Override
+    public void setCacheStoreWorkers(int cacheStoreWorkers) {
+        instances.forEach(i -> i.setCacheStoreWorkers(cacheStoreWorkers));
+    }
+
     @Override
     public int getCacheStoreHash() {
         return actionStoreEnvironmentBean.getCacheStoreHash();
@@ -202,6 +212,16 @@ public class MetaObjectStoreEnvironmentBean extends ObjectStoreEnvironmentBean {
         instances.forEach(i -> i.setHierarchyTimeout(hierarchyTimeout));
     }
 
+    @Override
+    public boolean isInMemoryFileLocking() {
+        return actionStoreEnvironmentBean.isInMemoryFileLocking();
+    }
+
+    @Override
+    public void setInMemoryFileLocking(boolean inMemoryFileLocking) {
+        instances.forEach(i -> i.setInMemoryFileLocking(inMemoryFileLocking));
+    }
+
     @Override
     public boolean isSynchronousRemoval() {
         return actionStoreEnvironmentBean.isSynchronousRemoval();
@@ -52,6 +52,8 @@ public class ObjectStoreEnvironmentBean implements ObjectStoreEnvironmentBeanMBe
     private volatile int hierarchyRetry = 100;
     private volatile int hierarchyTimeout = 100;
 
+    private volatile boolean inMemoryFileLocking = false;
+
     private volatile boolean volatileStoreSupportAllObjUids;
 
     @FullPropertyName(name = "com.arjuna.ats.internal.arjuna.objectstore.cacheStore.size")
@@ -64,6 +66,7 @@ public class ObjectStoreEnvironmentBean implements ObjectStoreEnvironmentBeanMBe
     private volatile int cacheStoreScanPeriod = 120000;
     @FullPropertyName(name = "com.arjuna.ats.internal.arjuna.objectstore.cacheStore.workItems")
     private volatile int cacheStoreWorkItems = 100;
+    private volatile int cacheStoreWorkers = 1;
     @FullPropertyName(name = "com.arjuna.ats.internal.arjuna.objectstore.cacheStore.hash")
     private volatile int cacheStoreHash = 128;
 
@@ -151,7 +154,8 @@ public class ObjectStoreEnvironmentBean implements ObjectStoreEnvironmentBeanMBe
     /**
      * Returns the maximum number of removed items that may be held in the cache before being purged.
      *
-     * This property is used by the following object store implementations: CacheStore.
+     * This property is no longer used: removes which make pending writes redundant are applied
+     * immediately and other removes count towards cacheStoreWorkItems.
      *
      * Default: 256
      * Equivalent deprecated property: com.arjuna.ats.internal.arjuna.objectstore.cacheStore.removedItems
@@ -240,10 +244,42 @@ public class ObjectStoreEnvironmentBean implements ObjectStoreEnvironmentBeanMBe
     }
 
     /**
-     * Returns the number of hash buckets used for the cache work queue.
+     * Returns the number of threads which write the cache work queue to disk.
+     * Work on the same state is always done in order by one thread at a time.
+     *
+     * This property is used by the following object store implementations: CacheStore.
+     *
+     * Default: 1
+     *
+     * @return the number of threads writing the cache to disk.
+     */
+    public int getCacheStoreWorkers()
+    {
+        if (cacheStoreWorkers <= 0)
+        {
+            return 1;
+        }
+
+        return cacheStoreWorkers;
+    }
+
+    /**
+     * Sets the number of threads which write the cache work queue to disk.
      *
      * This property is used by the following object store implementations: CacheStore.
      *
+     * @param cacheStoreWorkers the number of threads.
+     */
+    public void setCacheStoreWorkers(int cacheStoreWorkers)
+    {
+        this.cacheStoreWorkers = cacheStoreWorkers;
+    }
+
+    /**
+     * Returns the number of hash buckets used for the cache work queue.
+     *
+     * This property is no longer used: the cache work queue is held in a map keyed by Uid.
+     *
      * Default: 128
      * Equivalent deprecated property: com.arjuna.ats.internal.arjuna.objectstore.cacheStore.hash
      *
@@ -602,6 +638,35 @@ public class ObjectStoreEnvironmentBean implements ObjectStoreEnvironmentBeanMBe
         this.hierarchyTimeout = hierarchyTimeout;
     }
 
+    /**
+     * Returns true if file level locks are kept in memory rather than in lock files on disk.
+     * This avoids creating, reading and deleting two lock files for every state file operation,
+     * but the locks are only seen within this JVM, so it must not be used if another process
+     * (another transaction manager or an offline tool, for example) may use the same store.
+     *
+     * This property is used by the following object store implementations: ShadowingStore.
+     *
+     * Default: false
+     *
+     * @return true if the in-memory lock table is used, false for lock files.
+     */
+    public boolean isInMemoryFileLocking()
+    {
+        return inMemoryFileLocking;
+    }
+
+    /**
+     * Sets if file level locks are kept in memory rather than in lock files on disk.
+     *
+     * This property is used by the following object store implementations: ShadowingStore.
+     *
+     * @param inMemoryFileLocking true for in-memory locks, false for lock files.
+     */
+    public void setInMemoryFileLocking(boolean inMemoryFileLocking)
+    {
+        this.inMemoryFileLocking = inMemoryFileLocking;
+    }
+
     /**
      * Returns true if the LogStore should write removal records synchronously.
      * Disabling this may increase performance at the cost of recovery complexity.
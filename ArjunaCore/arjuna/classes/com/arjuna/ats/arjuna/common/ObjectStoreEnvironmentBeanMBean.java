@@ -39,6 +39,8 @@ public interface ObjectStoreEnvironmentBeanMBean
 
     int getCacheStoreWorkItems();
 
+    int getCacheStoreWorkers();
+
     int getCacheStoreHash();
 
     String getLocalOSRoot();
@@ -59,6 +61,8 @@ public interface ObjectStoreEnvironmentBeanMBean
 
     int getHierarchyTimeout();
 
+    boolean isInMemoryFileLocking();
+
     boolean isSynchronousRemoval();
 
     long getTxLogSize();
@@ -45,6 +45,7 @@ public class RecoveryEnvironmentBean implements RecoveryEnvironmentBeanMBean
     private volatile int periodicRecoveryPeriod = PeriodicRecovery._defaultRecoveryPeriod;
     private volatile int recoveryBackoffPeriod = PeriodicRecovery._defaultBackoffPeriod;
     private volatile int periodicRecoveryInitilizationOffset = 0;
+    private volatile int recoveryScanThreads = 1;
     private volatile boolean recoveryListener = false;
     private volatile int recoveryPort = 0;
     private volatile String recoveryAddress = "localhost";
@@ -135,6 +136,31 @@ public class RecoveryEnvironmentBean implements RecoveryEnvironmentBeanMBean
         return null;
     }
 
+    /**
+     * Returns the number of threads which check and replay the transaction logs found by a recovery scan.
+     * A node restarting with a large backlog of logs recovers them in parallel when this is more than one.
+     * Participants which share a resource, such as the XAResource the JTA recovery module obtains for
+     * a resource manager, are still replayed one at a time on that resource.
+     *
+     * Default: 1
+     *
+     * @return the number of threads used to recover the logs found by a scan.
+     */
+    public int getRecoveryScanThreads()
+    {
+        return recoveryScanThreads;
+    }
+
+    /**
+     * Sets the number of threads which check and replay the transaction logs found by a recovery scan.
+     *
+     * @param recoveryScanThreads the number of threads, values less than 1 meaning 1.
+     */
+    public void setRecoveryScanThreads(int recoveryScanThreads)
+    {
+        this.recoveryScanThreads = recoveryScanThreads;
+    }
+
     /**
      * Returns true if the recovery system should listen on a network socket.
      *
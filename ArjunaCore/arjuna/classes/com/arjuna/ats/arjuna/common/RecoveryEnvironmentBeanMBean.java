@@ -33,6 +33,8 @@ public interface RecoveryEnvironmentBeanMBean
 
     int getRecoveryBackoffPeriod();
 
+    int getRecoveryScanThreads();
+
     boolean isRecoveryListener();
 
     int getRecoveryPort();
@@ -31,15 +31,11 @@
 
 package com.arjuna.ats.arjuna.common;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.io.Serializable;
 import java.net.UnknownHostException;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.arjuna.ats.arjuna.exceptions.FatalError;
@@ -116,14 +112,21 @@ public class Uid implements Cloneable, Serializable
         
         try
         {
-            ByteArrayInputStream ba = new ByteArrayInputStream(byteForm);
-            DataInputStream ds = new DataInputStream(ba);
+            ByteBuffer bb = ByteBuffer.wrap(byteForm);
             
-            hostAddr[0] = ds.readLong();
-            hostAddr[1] = ds.readLong();
-            process = ds.readInt();
-            sec = ds.readInt();
-            other = ds.readInt();
+            hostAddr[0] = bb.getLong();
+            hostAddr[1] = bb.getLong();
+            process = bb.getInt();
+            sec = bb.getInt();
+            other = bb.getInt();
+            
+            /*
+             * Keep the packed form so that re-packing a Uid which was
+             * unpacked from a buffer does not encode it again.
+             */
+            
+            if (byteForm.length == UID_SIZE)
+                _byteForm = byteForm.clone();
             
             _valid = true;
         }
@@ -322,11 +325,7 @@ public class Uid implements Cloneable, Serializable
         // no need to synchronize since object is immutable
 
         if (_stringForm == null)
-            _stringForm = Utility.longToHexString(hostAddr[0]) + Uid.breakChar
-                    + Utility.longToHexString(hostAddr[1]) + Uid.breakChar
-                    + Utility.intToHexString(process) + Uid.breakChar
-                    + Utility.intToHexString(sec) + Uid.breakChar
-                    + Utility.intToHexString(other);
+            _stringForm = buildStringForm(Uid.breakChar);
 
         return _stringForm;
     }
@@ -338,11 +337,31 @@ public class Uid implements Cloneable, Serializable
 
     public String fileStringForm ()
     {
-        return Utility.longToHexString(hostAddr[0]) + Uid.fileBreakChar
-                + Utility.longToHexString(hostAddr[1]) + Uid.fileBreakChar
-                + Utility.intToHexString(process) + Uid.fileBreakChar
-                + Utility.intToHexString(sec) + Uid.fileBreakChar
-                + Utility.intToHexString(other);
+        // no need to synchronize since object is immutable
+
+        if (_fileStringForm == null)
+        {
+            String stringForm = _stringForm;
+
+            _fileStringForm = ((stringForm == null) ? buildStringForm(Uid.fileBreakChar)
+                    : stringForm.replace(Uid.breakChar, Uid.fileBreakChar));
+        }
+
+        return _fileStringForm;
+    }
+
+    private String buildStringForm (char separator)
+    {
+        // 2 * 16 + 3 * 8 hex digits, 4 separators and a few signs at most
+        StringBuilder sb = new StringBuilder(64);
+
+        sb.append(Utility.longToHexString(hostAddr[0])).append(separator)
+                .append(Utility.longToHexString(hostAddr[1])).append(separator)
+                .append(Utility.intToHexString(process)).append(separator)
+                .append(Utility.intToHexString(sec)).append(separator)
+                .append(Utility.intToHexString(other));
+
+        return sb.toString();
     }
     
     /**
@@ -361,19 +380,17 @@ public class Uid implements Cloneable, Serializable
         
         if (_byteForm == null)
         {
-            ByteArrayOutputStream ba = new ByteArrayOutputStream(UID_SIZE);
-            DataOutputStream ds = new DataOutputStream(ba);
-            
             try
             {
-                ds.writeLong(hostAddr[0]);
-                ds.writeLong(hostAddr[1]);
-                ds.writeInt(process);
-                ds.writeInt(sec);
-                ds.writeInt(other);
-                //_byteForm = stringForm().getBytes(StandardCharsets.UTF_8);
+                ByteBuffer bb = ByteBuffer.allocate(UID_SIZE);
+
+                bb.putLong(hostAddr[0]);
+                bb.putLong(hostAddr[1]);
+                bb.putInt(process);
+                bb.putInt(sec);
+                bb.putInt(other);
                 
-                _byteForm = ba.toByteArray();
+                _byteForm = bb.array();
             }
             catch (final Throwable ex) {
                 tsLogger.i18NLogger.warn_common_Uid_getbytes(ex);
@@ -426,6 +443,9 @@ public class Uid implements Cloneable, Serializable
         other = toCopy.other;
         _hashValue = toCopy._hashValue;
         _valid = toCopy._valid;
+        _stringForm = toCopy._stringForm;
+        _fileStringForm = toCopy._fileStringForm;
+        _byteForm = toCopy._byteForm;
     }
 
     /**
@@ -740,6 +760,8 @@ public class Uid implements Cloneable, Serializable
     private volatile boolean _valid;
 
     private volatile String _stringForm;
+
+    private transient volatile String _fileStringForm;
     
     private volatile byte[] _byteForm;
 
@@ -1039,6 +1039,29 @@ public class BasicAction extends StateManager
         criticalEnd();
     }
 
+    /**
+     * Associate a front-end view of this action, such as the JTA transaction
+     * that wraps it, so that the view can be found from the action with a
+     * field read rather than a lookup in a separate index.
+     *
+     * @param view the object representing this action, or null to clear it.
+     */
+
+    public final void setTransactionView (Object view)
+    {
+        _transactionView = view;
+    }
+
+    /**
+     * @return the view registered with {@link #setTransactionView(Object)}, or
+     *         null if there is none.
+     */
+
+    public final Object getTransactionView ()
+    {
+        return _transactionView;
+    }
+
     /**
      * @return the Uid that the transaction's intentions list will be saved
      *         under.
@@ -3790,6 +3813,7 @@ public class BasicAction extends StateManager
 
     private Hashtable<String, Thread> _childThreads;
     private Hashtable<BasicAction, BasicAction> _childActions;
+    private volatile Object _transactionView; // e.g., the JTA transaction wrapping this action
 
     private BasicActionFinalizer finalizerObject;
     private static final boolean finalizeBasicActions = arjPropertyManager.getCoordinatorEnvironmentBean().isFinalizeBasicActions();
@@ -32,6 +32,8 @@
 package com.arjuna.ats.arjuna.coordinator;
 
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 import com.arjuna.ats.arjuna.common.arjPropertyManager;
 import com.arjuna.ats.arjuna.logging.tsLogger;
 import com.arjuna.ats.arjuna.recovery.TransactionStatusManager;
@@ -128,7 +130,10 @@ public class TxControl
              */
 
 	    if (disableRecovery)
+	    {
+	        runShutdownActions();
 	        removeTransactionStatusManager();
+	    }
 
             TxControl.enable = false;
         }
@@ -138,6 +143,23 @@ public class TxControl
 	{
 		return TxControl.enable;
 	}
+
+	/**
+	 * Register an action to run when the transaction system is stopped together
+	 * with recovery, ie by {@link #disable(boolean)} with true. This allows the
+	 * layers above ArjunaCore to stop background work of their own. Registering
+	 * the same action more than once has no further effect.
+	 */
+
+	public static final void addShutdownAction (Runnable action)
+	{
+	    _shutdownActions.addIfAbsent(action);
+	}
+
+	public static final void removeShutdownAction (Runnable action)
+	{
+	    _shutdownActions.remove(action);
+	}
         
 	/**
 	 * @return the <code>ObjectStore</code> implementation which the
@@ -202,6 +224,21 @@ public class TxControl
 	    }
 	}
 	
+	private final static void runShutdownActions ()
+	{
+	    for (Runnable action : _shutdownActions)
+	    {
+	        try
+	        {
+	            action.run();
+	        }
+	        catch (RuntimeException e)
+	        {
+	            tsLogger.i18NLogger.warn_coordinator_TxControl_shutdownaction(action.toString(), e);
+	        }
+	    }
+	}
+
 	private final static synchronized void removeTransactionStatusManager ()
 	{
 	    if (_shutdownHook != null)
@@ -259,6 +296,8 @@ public class TxControl
     static final boolean beforeCompletionWhenRollbackOnly = arjPropertyManager.getCoordinatorEnvironmentBean().isBeforeCompletionWhenRollbackOnly();
 	
 	static Thread _shutdownHook = null;
+
+	private static final CopyOnWriteArrayList<Runnable> _shutdownActions = new CopyOnWriteArrayList<Runnable>();
 	
 	static Object _lock = new Object();
 
@@ -1625,6 +1625,30 @@ public interface arjunaI18NLogger {
 	@LogMessage(level = INFO)
 	void info_historic_stack_trace(Uid objectUid, String threadName, String date, String stackTrace);
 
+	@Message(id = 12405, value = "Shutdown action {0} failed", format = MESSAGE_FORMAT)
+	@LogMessage(level = WARN)
+	void warn_coordinator_TxControl_shutdownaction(String action, @Cause() Throwable e);
+
+	@Message(id = 12406, value = "LogStore could not delete log {0}", format = MESSAGE_FORMAT)
+	@LogMessage(level = WARN)
+	void warn_objectstore_LogStore_deleteLog(Uid log, @Cause() Throwable e);
+
+	@Message(id = 12407, value = "LogStore could not compact log {0}", format = MESSAGE_FORMAT)
+	@LogMessage(level = WARN)
+	void warn_objectstore_LogStore_compactLog(Uid log, @Cause() Throwable e);
+
+	@Message(id = 12408, value = "LogStore could not close log {0}", format = MESSAGE_FORMAT)
+	@LogMessage(level = WARN)
+	void warn_objectstore_LogStore_closeLog(Uid log, @Cause() Throwable e);
+
+	@Message(id = 12409, value = "LogStore could not preallocate log file {0}, a log which grows as it is written will be used instead", format = MESSAGE_FORMAT)
+	@LogMessage(level = WARN)
+	void warn_objectstore_LogStore_preallocate(String fname, @Cause() Throwable e);
+
+	@Message(id = 12410, value = "LogStore write to {0} failed", format = MESSAGE_FORMAT)
+	@LogMessage(level = WARN)
+	void warn_objectstore_LogStore_writeFailed(String fname, @Cause() Throwable e);
+
     /*
         Allocate new messages directly above this notice.
           - id: use the next id number in numeric sequence. Don't reuse ids.
@@ -96,6 +96,14 @@ public class ActionStatusService implements Service
     * Does the main work of reading in a uid and transaction type
     * from the recovery manager, retrieving the status of the
     * transaction and sending it back to the Recovery Manager.
+    *
+    * A recovery manager which answers the process id with
+    * {@link #BATCH_HANDSHAKE} rather than "OK" is told with a
+    * {@link #BATCH_ACKNOWLEDGEMENT} line that it may also send a
+    * {@link #BATCH_REQUEST} line carrying a count n, followed by n
+    * transaction type and Uid pairs. The n statuses are then returned
+    * in order, one per line. Single type and Uid requests keep working
+    * on such a connection.
     */
 
    public void doWork( InputStream is, OutputStream os )
@@ -111,10 +119,16 @@ public class ActionStatusService implements Service
          out.println ( Utility.intToHexString( Utility.getpid() ));
          out.flush();
 
-         // recovery module returns either "OK" or "DEAD"
+         // recovery module returns either "OK", "OK BATCH" or "DEAD"
          String rmStatus = in.readLine();
 
-         if ( rmStatus.equals( "OK" ) )
+         if ( rmStatus.equals( BATCH_HANDSHAKE ) )
+         {
+            out.println( BATCH_ACKNOWLEDGEMENT );
+            out.flush();
+         }
+
+         if ( rmStatus.equals( "OK" ) || rmStatus.equals( BATCH_HANDSHAKE ) )
          {
             for (;;)
             {
@@ -127,11 +141,33 @@ public class ActionStatusService implements Service
 	       try
 	       {
 		   transactionType = in.readLine();
+
+		   if ((transactionType != null) && transactionType.startsWith( BATCH_REQUEST ))
+		   {
+		       int count = Integer.parseInt( transactionType.substring( BATCH_REQUEST.length() ).trim() );
+
+		       for (int i = 0; i < count; i++)
+		       {
+			   transactionType = in.readLine();
+			   strUid = in.readLine();
+
+			   if ((transactionType == null) && (strUid == null))
+			       return;
+
+			   // each answer is flushed so that the reader's socket timeout applies per status
+			   reply( out, transactionType, strUid );
+		       }
+
+		       continue;
+		   }
+
 		   strUid = in.readLine();
 	       }
 	       catch (IOException ex)
 	       {
 		   // recovery manager has torn down connection, so end loop
+		   transactionType = null;
+		   strUid = null;
 	       }
 
 	       /*
@@ -143,14 +179,7 @@ public class ActionStatusService implements Service
 	       if ((transactionType == null) && (strUid == null))
 		   return;
 
-               int status = getTransactionStatus( transactionType, strUid );
-               String strStatus = Integer.toString( status );
-
-               out.println( strStatus );
-               out.flush();
-
-	           tsLogger.i18NLogger.info_recovery_ActionStatusService_1(transactionType, strUid, strStatus);
-
+               reply( out, transactionType, strUid );
 	    }
          }
       }
@@ -162,6 +191,17 @@ public class ActionStatusService implements Service
       }
    }
 
+   private void reply( PrintWriter out, String transactionType, String strUid )
+   {
+      int status = getTransactionStatus( transactionType, strUid );
+      String strStatus = Integer.toString( status );
+
+      out.println( strStatus );
+      out.flush();
+
+      tsLogger.i18NLogger.info_recovery_ActionStatusService_1(transactionType, strUid, strStatus);
+   }
+
     /**
      * Check for transaction status in the local hash table,
      * if does not exist, then retrieve the status from the
@@ -388,6 +428,21 @@ public class ActionStatusService implements Service
     */
 
    private static RecoveryStore _recoveryStore = null;
+
+   /**
+    * Sent by a recovery manager instead of "OK" to ask for batched status requests.
+    */
+   public static final String BATCH_HANDSHAKE = "OK BATCH";
+
+   /**
+    * Sent back when batched status requests are supported.
+    */
+   public static final String BATCH_ACKNOWLEDGEMENT = "BATCH";
+
+   /**
+    * Prefix of the line announcing the number of type and Uid pairs of a batched request.
+    */
+   public static final String BATCH_REQUEST = "BATCH ";
 }
 
 
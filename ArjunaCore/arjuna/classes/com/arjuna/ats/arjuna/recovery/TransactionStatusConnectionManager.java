@@ -31,8 +31,13 @@
 
 package com.arjuna.ats.arjuna.recovery ;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
 import java.util.Vector;
 
 import com.arjuna.ats.arjuna.common.Uid;
@@ -125,6 +130,77 @@ public class TransactionStatusConnectionManager
         return status ;
     }
 
+    /**
+     * Obtain the statuses of several transactions of the same type. Uids
+     * owned by the same remote process are sent to its
+     * TransactionStatusManager together rather than one round trip at a time.
+     *
+     * @return the statuses, in the order of the Uids.
+     */
+
+    public int[] getTransactionStatus( String transactionType, Uid[] tranUids )
+    {
+        int[] status = new int[ tranUids.length ] ;
+        Map<String, List<Integer>> remote = new HashMap<String, List<Integer>>() ;
+
+        Arrays.fill( status, ActionStatus.INVALID ) ;
+
+        for ( int i = 0 ; i < tranUids.length ; i++ )
+        {
+            String process_id = tranUids[i].getHexPid();
+
+            if ( ! process_id.equals( _localUid.getHexPid() ) )
+            {
+                List<Integer> indexes = remote.get( process_id ) ;
+
+                if ( indexes == null )
+                {
+                    indexes = new ArrayList<Integer>() ;
+                    remote.put( process_id, indexes ) ;
+                }
+
+                indexes.add( i ) ;
+            }
+        }
+
+        for ( Map.Entry<String, List<Integer>> entry : remote.entrySet() )
+        {
+            List<Integer> indexes = entry.getValue() ;
+            Uid[] uids = new Uid[ indexes.size() ] ;
+
+            for ( int i = 0 ; i < uids.length ; i++ )
+                uids[i] = tranUids[ indexes.get( i ) ] ;
+
+            int[] remoteStatus = getRemoteTransactionStatus( entry.getKey(), transactionType, uids ) ;
+
+            for ( int i = 0 ; i < uids.length ; i++ )
+                status[ indexes.get( i ) ] = remoteStatus[i] ;
+        }
+
+        // as for a single Uid, anything still unknown is looked up locally
+
+        ActionStatusService ass = null ;
+
+        for ( int i = 0 ; i < tranUids.length ; i++ )
+        {
+            if ( status[i] == ActionStatus.INVALID )
+            {
+                if ( ass == null )
+                    ass = new ActionStatusService() ;
+
+                try
+                {
+                    status[i] = ass.getTransactionStatus( transactionType, tranUids[i].stringForm() ) ;
+                }
+                catch ( Exception ex ) {
+                    tsLogger.i18NLogger.warn_recovery_TransactionStatusConnectionManager_1(ex);
+                }
+            }
+        }
+
+        return status ;
+    }
+
     /**
      * Use the TransactionStatusConnector to remotly query a transaction manager to get the tx status.
      *
@@ -168,6 +244,34 @@ public class TransactionStatusConnectionManager
         return status;
     }
 
+    private int[] getRemoteTransactionStatus(String process_id, String transactionType, Uid[] tranUids ) {
+        int[] status = new int[ tranUids.length ] ;
+
+        Arrays.fill( status, ActionStatus.INVALID ) ;
+
+        if ( ! _tscTable.containsKey ( process_id ) )
+        {
+            updateTSMI();
+        }
+
+        if ( _tscTable.containsKey ( process_id ) )
+        {
+            TransactionStatusConnector tsc = (TransactionStatusConnector) _tscTable.get( process_id ) ;
+
+            if ( tsc.isDead() )
+            {
+                _tscTable.remove( process_id ) ;
+                tsc.delete() ;
+            }
+            else
+            {
+                status = tsc.getTransactionStatus( transactionType, tranUids ) ;
+            }
+        }
+
+        return status;
+    }
+
     /**
      * Examine the Object Store for any new TrasactionStatusManagerItem
      * objects, and add to local hash table.
@@ -154,8 +154,11 @@ public class ObjStoreBrowser implements ObjStoreBrowserMBean {
         return (osbType != null) ? osbType.getHeaderStateReader() : null;
     }
 
-    private Map<String, List<UidWrapper>> registeredMBeans = new HashMap<String, List<UidWrapper>> ();;
-    private boolean exposeAllLogs = false;
+    // MBeans indexed by type and then by Uid so that a probe only needs to apply the difference
+    private Map<String, Map<Uid, UidWrapper>> registeredMBeans = new HashMap<String, Map<Uid, UidWrapper>> ();
+    // serialises probes so that the (potentially slow) store scan can run without holding the browser monitor
+    private final Object probeLock = new Object();
+    private volatile boolean exposeAllLogs = false;
 
     /**
      * Initialise the MBean
@@ -176,25 +179,28 @@ public class ObjStoreBrowser implements ObjStoreBrowserMBean {
         JMXServer.getAgent().unregisterMBean(STORE_MBEAN_NAME);
     }
 
-    private void unregisterMBeans(List<UidWrapper> beans) {
-        for (UidWrapper w : beans)
+    private void unregisterMBeans(Map<Uid, UidWrapper> beans) {
+        for (UidWrapper w : beans.values())
             w.unregister();
 
         beans.clear();
     }
 
     private void unregisterMBeans() {
-        for (List<UidWrapper> uids : registeredMBeans.values())
-            unregisterMBeans(uids);
+        // wait for any probe so that the beans it is registering are seen
+        synchronized (probeLock) {
+            synchronized (this) {
+                for (Map<Uid, UidWrapper> uids : registeredMBeans.values())
+                    unregisterMBeans(uids);
 
-        registeredMBeans.clear();
+                registeredMBeans.clear();
+            }
+        }
     }
 
-    private void registerMBeans() {
-        for (List<UidWrapper> uids : registeredMBeans.values()) {
-            for (UidWrapper w : uids)
-                w.register();
-        }
+    private void registerMBeans(Collection<UidWrapper> beans) {
+        for (UidWrapper w : beans)
+            w.register();
     }
 
     /**
@@ -288,11 +294,11 @@ public class ObjStoreBrowser implements ObjStoreBrowserMBean {
      * @param sb a buffer to contain the result
      * @return the passed in buffer
      */
-    public StringBuilder dump(StringBuilder sb) {
-        for (Map.Entry<String, List<UidWrapper>> typeEntry : registeredMBeans.entrySet()) {
+    public synchronized StringBuilder dump(StringBuilder sb) {
+        for (Map.Entry<String, Map<Uid, UidWrapper>> typeEntry : registeredMBeans.entrySet()) {
             sb.append(typeEntry.getKey()).append('\n');
 
-            for (UidWrapper uid : typeEntry.getValue())
+            for (UidWrapper uid : typeEntry.getValue().values())
                 uid.toString("\t", sb);
         }
 
@@ -305,11 +311,13 @@ public class ObjStoreBrowser implements ObjStoreBrowserMBean {
      * @return the MBean wrapper corresponding to the requested Uid (or null
      * if it hasn't been registered)
      */
-    public UidWrapper findUid(Uid uid) {
-        for (Map.Entry<String, List<UidWrapper>> typeEntry : registeredMBeans.entrySet())
-            for (UidWrapper w : typeEntry.getValue())
-                if (w.getUid().equals(uid))
-                    return w;
+    public synchronized UidWrapper findUid(Uid uid) {
+        for (Map<Uid, UidWrapper> beans : registeredMBeans.values()) {
+            UidWrapper w = beans.get(uid);
+
+            if (w != null)
+                return w;
+        }
 
         return null;
     }
@@ -322,23 +330,9 @@ public class ObjStoreBrowser implements ObjStoreBrowserMBean {
      */
     @Deprecated
     public UidWrapper findUid(String uid) {
-        for (Map.Entry<String, List<UidWrapper>> typeEntry : registeredMBeans.entrySet())
-            for (UidWrapper w : typeEntry.getValue())
-                if (w.getUid().stringForm().equals(uid))
-                    return w;
+        Uid u = new Uid(uid, true);
 
-        return null;
-    }
-
-    private boolean isRegistered(String type, Uid uid) {
-        List<UidWrapper> beans = registeredMBeans.get(type);
-
-        if (beans != null)
-            for (UidWrapper w : beans)
-                if (uid.equals(w.getUid()))
-                    return true;
-
-        return false;
+        return u.valid() ? findUid(u) : null;
     }
 
     public void viewSubordinateAtomicActions(boolean enable) {
@@ -362,12 +356,14 @@ public class ObjStoreBrowser implements ObjStoreBrowserMBean {
 
 
         if (!enable) {
-            for (List<UidWrapper> uids : registeredMBeans.values()) {
-                for (Iterator<UidWrapper> i = uids.iterator(); i.hasNext(); ) {
-                    UidWrapper w = i.next();
-                    if (records.contains(w.getClassName())) {
-                        i.remove();
-                        w.unregister();
+            synchronized (this) {
+                for (Map<Uid, UidWrapper> uids : registeredMBeans.values()) {
+                    for (Iterator<UidWrapper> i = uids.values().iterator(); i.hasNext(); ) {
+                        UidWrapper w = i.next();
+                        if (records.contains(w.getClassName())) {
+                            i.remove();
+                            w.unregister();
+                        }
                     }
                 }
             }
@@ -384,13 +380,13 @@ public class ObjStoreBrowser implements ObjStoreBrowserMBean {
      */
     private void unregisterRemovedUids(Map<String, Collection<Uid>> allCurrUids) {
 
-        for (Map.Entry<String, List<UidWrapper>> e : registeredMBeans.entrySet()) {
+        for (Map.Entry<String, Map<Uid, UidWrapper>> e : registeredMBeans.entrySet()) {
             String type = e.getKey();
-            List<UidWrapper> registeredBeansOfType = e.getValue();
+            Map<Uid, UidWrapper> registeredBeansOfType = e.getValue();
             Collection<Uid> currUidsOfType = allCurrUids.get(type);
 
             if (currUidsOfType != null) {
-                Iterator<UidWrapper> iterator = registeredBeansOfType.iterator();
+                Iterator<UidWrapper> iterator = registeredBeansOfType.values().iterator();
 
                 while (iterator.hasNext()) {
                     UidWrapper w = iterator.next();
@@ -409,43 +405,81 @@ public class ObjStoreBrowser implements ObjStoreBrowserMBean {
     /**
      * See if any new MBeans need to be registered or if any existing MBeans no longer exist
      * as ObjectStore entries.
+     *
+     * The probe is incremental: the store is scanned, and the beans for new records are built, without
+     * holding the browser monitor and only the differences since the previous probe result in MBeans being created or unregistered.
+     * Types for which there is no handler are not scanned unless all records are being exposed.
      * @throws MBeanException 
      */
-    public synchronized void probe() throws MBeanException {
-        Map<String, Collection<Uid>> currUidsForType = new HashMap<String, Collection<Uid>>();
+    public void probe() throws MBeanException {
+        synchronized (probeLock) {
+            Map<String, Collection<Uid>> currUidsForType = new HashMap<String, Collection<Uid>>();
+
+            for (String type : getTypes()) {
+                if (exposeAllLogs || osbTypeMap.containsKey(type))
+                    currUidsForType.put(type, getUids(type));
+            }
 
-        for (String type : getTypes())
-            currUidsForType.put(type, getUids(type));
+            Map<String, List<Uid>> newUidsForType = new HashMap<String, List<Uid>>();
 
-        // if there are any beans in registeredMBeans that don't appear in new list and unregister them
-        unregisterRemovedUids(currUidsForType); //unregisterMBeans();
+            synchronized (this) {
+                // if there are any beans in registeredMBeans that don't appear in new list and unregister them
+                unregisterRemovedUids(currUidsForType);
 
-        for (Map.Entry<String, Collection<Uid>> e : currUidsForType.entrySet()) {
-            String type = e.getKey();
+                for (Map.Entry<String, Collection<Uid>> e : currUidsForType.entrySet()) {
+                    Map<Uid, UidWrapper> beans = registeredMBeans.get(e.getKey());
+                    List<Uid> newUids = new ArrayList<Uid>();
 
-            List<UidWrapper> beans = registeredMBeans.get(type);
+                    for (Uid uid : e.getValue()) {
+                        if (beans == null || !beans.containsKey(uid))
+                            newUids.add(uid);
+                    }
 
-            if (beans == null) {
-                beans = new ArrayList<UidWrapper>();
-                registeredMBeans.put(type, beans);
+                    newUidsForType.put(e.getKey(), newUids);
+                }
             }
 
-            for (Uid uid : e.getValue()) {
-                if (!isRegistered(type, uid)) {
-                    UidWrapper w = createBean(uid, type); // can return null if type isn't instrumented
+            /*
+             * Creating a bean activates its record from the store, so the beans are built without holding the
+             * browser monitor. We create all the UidWrappers before registering because the process of creating
+             * a bean can call back into the browser to probe for a particular type
+             * (see for example com.arjuna.ats.arjuna.tools.osb.mbean.ActionBean)
+             */
+            Map<String, List<UidWrapper>> addedForType = new HashMap<String, List<UidWrapper>>();
+            List<UidWrapper> added = new ArrayList<UidWrapper>();
+
+            for (Map.Entry<String, List<Uid>> e : newUidsForType.entrySet()) {
+                List<UidWrapper> beans = new ArrayList<UidWrapper>();
+
+                for (Uid uid : e.getValue()) {
+                    UidWrapper w = createBean(uid, e.getKey()); // can return null if type isn't instrumented
 
                     if (w != null)
                         beans.add(w);
                 }
+
+                addedForType.put(e.getKey(), beans);
+                added.addAll(beans);
             }
-        }
 
-        /*
-         * now create the actual MBeans - we create all the UidWrappers before registering because
-         * the process of creating a bean can call back into the browser to probe for a particular type
-         * (see for example com.arjuna.ats.arjuna.tools.osb.mbean.ActionBean
-         */
-        registerMBeans();
+            // now create the actual MBeans
+            registerMBeans(added);
+
+            // and only hold the monitor to make them visible
+            synchronized (this) {
+                for (Map.Entry<String, List<UidWrapper>> e : addedForType.entrySet()) {
+                    Map<Uid, UidWrapper> beans = registeredMBeans.get(e.getKey());
+
+                    if (beans == null) {
+                        beans = new LinkedHashMap<Uid, UidWrapper>();
+                        registeredMBeans.put(e.getKey(), beans);
+                    }
+
+                    for (UidWrapper w : e.getValue())
+                        beans.put(w.getUid(), w);
+                }
+            }
+        }
     }
 
     /**
@@ -454,10 +488,72 @@ public class ObjStoreBrowser implements ObjStoreBrowserMBean {
      * @param type the ObjectStore entry type
      * @return the list of MBeans representing the requested ObjectStore type
      */
-    public List<UidWrapper> probe(String type) {
+    public synchronized List<UidWrapper> probe(String type) {
+        type = canonicalType(type);
+
+        if (type == null)
+            return null;
+
+        Map<Uid, UidWrapper> beans = registeredMBeans.get(type);
+
+        return (beans == null ? null : new ArrayList<UidWrapper>(beans.values()));
+    }
+
+    /**
+     * @return the record types that are currently present in the ObjectStore
+     */
+    public String[] listTypes() {
+        Collection<String> types = getTypes();
+
+        return types.toArray(new String[types.size()]);
+    }
+
+    /**
+     * Page through the ids of the records of a given type without creating an MBean per record
+     * @param type the ObjectStore entry type
+     * @param start the index of the first record to return
+     * @param count the maximum number of records to return
+     * @return the string form of at most count Uids of the requested type
+     * @throws MBeanException if the ObjectStore could not be read
+     */
+    public String[] listUids(String type, int start, int count) throws MBeanException {
+        List<String> page = new ArrayList<String>();
+
+        type = canonicalType(type);
+
+        if (type == null || start < 0 || count <= 0)
+            return new String[0];
+
+        try {
+            ObjectStoreIterator iter = new ObjectStoreIterator(StoreManager.getRecoveryStore(), type);
+            int index = 0;
+
+            while (page.size() < count) {
+                Uid u = iter.iterate();
+
+                if (u == null || Uid.nullUid().equals(u))
+                    break;
+
+                if (index++ >= start)
+                    page.add(u.stringForm());
+            }
+        } catch (ObjectStoreException | IOException e) {
+            throw new MBeanException(e);
+        }
+
+        return page.toArray(new String[page.size()]);
+    }
+
+    /**
+     * Count the records of a given type without creating an MBean per record
+     * @param type the ObjectStore entry type
+     * @return the number of records of the requested type
+     * @throws MBeanException if the ObjectStore could not be read
+     */
+    public int countUids(String type) throws MBeanException {
         type = canonicalType(type);
 
-        return (type == null ? null : registeredMBeans.get(type));
+        return (type == null ? 0 : getUids(type).size());
     }
 
     private UidWrapper createBean(Uid uid, String type) {
@@ -484,7 +580,7 @@ public class ObjStoreBrowser implements ObjStoreBrowserMBean {
     }
 
     private Collection<Uid> getUids(String type) throws MBeanException {
-        Collection<Uid> uids = new ArrayList<Uid>();
+        Collection<Uid> uids = new LinkedHashSet<Uid>();
         try {
             ObjectStoreIterator iter = new ObjectStoreIterator(StoreManager.getRecoveryStore(), type);
     
@@ -26,4 +26,14 @@ public interface ObjStoreBrowserMBean extends ObjStoreItemMBean {
 	    + "Use the text \"true\" to expose all logs as MBeans. You must invoke the probe method for the"
 	    + " change to take effect")
 	void setExposeAllRecordsAsMBeans(boolean exposeAllLogs);
+
+	@MXBeanPropertyDescription("List the transaction log types that are currently present in the store")
+	String[] listTypes();
+
+	@MXBeanPropertyDescription("List a page of the ids of the logs of a given type without exposing them as MBeans."
+	    + " The arguments are the log type, the index of the first log and the maximum number of logs to return")
+	String[] listUids(String type, int start, int count) throws MBeanException;
+
+	@MXBeanPropertyDescription("Count the logs of a given type without exposing them as MBeans")
+	int countUids(String type) throws MBeanException;
 }
@@ -31,7 +31,14 @@
 
 package com.arjuna.ats.internal.arjuna.objectstore;
 
-import java.util.LinkedList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.arjuna.ats.arjuna.common.ObjectStoreEnvironmentBean;
 import com.arjuna.ats.arjuna.common.Uid;
@@ -68,38 +75,93 @@ public class CacheStore extends HashedStore
         CacheStore._storeManager.flush();
     }
 
+    /**
+     * @return the number of operations waiting to be written to disk,
+     * including those being written.
+     */
+
+    public static int getPendingWork ()
+    {
+        return CacheStore._storeManager.getPendingWork();
+    }
+
+    /**
+     * @return the size in bytes of the states waiting to be written to disk.
+     */
+
+    public static long getPendingBytes ()
+    {
+        return CacheStore._storeManager.getPendingBytes();
+    }
+
+    /**
+     * @return the largest number of operations that have been waiting at
+     * any one time.
+     */
+
+    public static int getMaximumPendingWork ()
+    {
+        return CacheStore._storeManager.getMaximumPendingWork();
+    }
+
+    /**
+     * @return the number of operations that were dropped because a later
+     * operation on the same state made them redundant.
+     */
+
+    public static long getCoalescedWork ()
+    {
+        return CacheStore._storeManager.getCoalescedWork();
+    }
+
+    /**
+     * @return the number of operations that have been written to disk.
+     */
+
+    public static long getCompletedWork ()
+    {
+        return CacheStore._storeManager.getCompletedWork();
+    }
+
+    /**
+     * @return the number of times a caller had to wait because the cache
+     * was full.
+     */
+
+    public static long getBlockedWork ()
+    {
+        return CacheStore._storeManager.getBlockedWork();
+    }
+
     protected boolean remove_state (Uid objUid, String name, int ft)
             throws ObjectStoreException
     {
         /*
-         * Is it in the cache?
+         * Is it in the cache? Writes of the state which have not started are
+         * dropped.
          */
 
-        int status = CacheStore._storeManager.removeState(objUid, ft);
-
-        if (status == AsyncStore.REMOVED)
-            return true;
+        int status = CacheStore._storeManager.removeState(this, objUid, name, ft);
 
         /*
-         * Check to see if there's a state on disk. If there is, then we still
-         * need to add a remove work item to the cache queue.
+         * Check to see if there's a state on disk, or if the state may be
+         * written by work that is still in the cache. If so we still need to
+         * add a remove work item to the cache queue.
          */
 
+        if (status == AsyncStore.IN_USE)
+            return CacheStore._storeManager.addWork(this, AsyncStore.REMOVE,
+                    objUid, name, null, ft);
+
         int fileState = currentState(objUid, name);
 
-        if ((fileState != StateStatus.OS_UNKNOWN)
-                || (status == AsyncStore.IN_USE))
+        if (fileState != StateStatus.OS_UNKNOWN)
         {
             return CacheStore._storeManager.addWork(this, AsyncStore.REMOVE,
-                    objUid, name, null, fileState);
+                    objUid, name, null, ft);
         }
         else
-        {
-            if (fileState == StateStatus.OS_UNKNOWN)
-                return false;
-            else
-                return true;
-        }
+            return (status == AsyncStore.REMOVED);
     }
 
     protected boolean write_state (Uid objUid, String tName,
@@ -107,14 +169,12 @@ public class CacheStore extends HashedStore
     {
         /*
          * If there is already a write operation in the cache for exactly this
-         * state and type, then remove it and any corresponding remove_state
-         * there might be. This is because write_state overwrites the state
-         * rather than appending some operational work. If we used an appender
-         * log then obviously this isn't appropriate.
+         * state and type, then it is replaced by this one. This is because
+         * write_state overwrites the state rather than appending some
+         * operational work. If we used an appender log then obviously this
+         * isn't appropriate.
          */
 
-        int status = CacheStore._storeManager.removeWriteState(objUid, ft);
-
         return CacheStore._storeManager.addWork(this, AsyncStore.WRITE, objUid,
                 tName, state, ft);
     }
@@ -127,12 +187,32 @@ public class CacheStore extends HashedStore
     protected InputObjectState read_state (Uid objUid, String tName, int ft)
             throws ObjectStoreException
     {
-        OutputObjectState state = CacheStore._storeManager.getState(objUid, ft);
+        StoreElement element = CacheStore._storeManager.getState(this, objUid, tName, ft);
 
-        if (state == null) // not in the cache
+        if (element == null) // not in the cache
             return super.read_state(objUid, tName, ft);
-        else
-            return new InputObjectState(state);
+
+        switch (element.typeOfWork)
+        {
+        case AsyncStore.WRITE:
+            return new InputObjectState(element.state);
+        case AsyncStore.COMMIT:
+            /*
+             * The shadow on disk is about to become the original. It may be
+             * renamed while we read it.
+             */
+
+            if (ft == StateType.OS_ORIGINAL)
+            {
+                InputObjectState state = super.read_state(objUid, tName, StateType.OS_SHADOW);
+
+                return ((state != null) ? state : super.read_state(objUid, tName, ft));
+            }
+            else
+                return null;
+        default:
+            return null; // about to be removed
+        }
     }
 
     /*
@@ -179,39 +259,56 @@ class StoreElement
         tName = tn;
         state = st;
         fileType = ft;
-        removed = false;
     }
 
-    public void remove ()
+    public boolean sameState (CacheStore s, String tn)
     {
-        store = null;
-        typeOfWork = AsyncStore.NO_WORK;
-        objUid = null;
-        tName = null;
-        state = null;
-        fileType = CacheStore.NO_STATE_TYPE;
-        removed = true;
+        return (store == s) && ((tName == null) ? tn == null : tName.equals(tn));
+    }
+
+    public int size ()
+    {
+        return ((state == null) ? 0 : state.size());
     }
 
     public String toString ()
     {
         return "< " + typeOfWork + ", " + objUid + ", " + tName + ", "
-                + fileType + ", " + removed + " >";
+                + fileType + " >";
     }
 
-    public CacheStore store;
+    public final CacheStore store;
+
+    public final int typeOfWork;
 
-    public int typeOfWork;
+    public final Uid objUid;
 
-    public Uid objUid;
+    public final String tName;
 
-    public String tName;
+    public final OutputObjectState state;
 
-    public OutputObjectState state;
+    public final int fileType;
 
-    public int fileType;
+}
 
-    public boolean removed;
+/**
+ * The work waiting for one Uid. Work for a Uid is done in the order it was
+ * added and by one worker at a time.
+ */
+
+class PendingWork
+{
+
+    public PendingWork(Uid u)
+    {
+        objUid = u;
+    }
+
+    public final Uid objUid;
+
+    public final List<StoreElement> queued = new ArrayList<StoreElement>(2);
+
+    public StoreElement inFlight = null;
 
 }
 
@@ -225,30 +322,31 @@ class ShutdownThread extends Thread // used to flush on exit
 
     public void run ()
     {
+        /*
+         * We don't want to exit the VM if a worker thread is currently
+         * writing to the disk. That would be very bad :-(! flush only returns
+         * once the workers are idle.
+         */
+
         CacheStore._storeManager.flush();
 
-        synchronized (CacheStore._storeManager)
-        {
-            CacheStore._storeManager.notifyAll();
+        if (tsLogger.logger.isTraceEnabled()) {
+            tsLogger.logger.trace("ShutdownThread.run () - terminating");
         }
-
-        synchronized (CacheStore._storeManager._activeLock)
-        {
-            /*
-             * We don't want to exit the VM if the worker thread is currently
-             * writing to the disk. That would be very bad :-(! So, just check
-             * that the thread isn't actively doing work.
-             */
-
-          if (tsLogger.logger.isTraceEnabled()) {
-              tsLogger.logger.trace("ShutdownThread.run () - terminating");
-          }
-      }
-   }
+    }
 
 }
 
-class AsyncStore extends Thread // keep priority same as app. threads
+/**
+ * Writes the work added by CacheStore instances to disk behind the callers.
+ * Work is held in a map keyed by Uid. A later write of a state replaces an
+ * earlier one that has not started, and a remove drops such writes. Workers
+ * start on the queue when it is full, when the scan period expires or when it
+ * is flushed, and then drain it. Callers adding work to a full cache wait
+ * until there is room.
+ */
+
+class AsyncStore
 {
 
     public static final int NO_WORK = -1;
@@ -267,504 +365,546 @@ class AsyncStore extends Thread // keep priority same as app. threads
 
     public AsyncStore()
     {
-        super("AsyncStoreThread");
-
         _maximumCacheSize = _defaultCacheSize;
         _maximumWorkItems = _defaultWorkItems;
-        _maximumRemovedItems = _defaultRemovedItems;
         _scanPeriod = _defaultScanPeriod;
 
-        _workList = new LinkedList[HASH_SIZE];
+        for (int i = 0; i < _defaultWorkers; i++)
+        {
+            Thread worker = new Thread("AsyncStoreThread-" + i) { // keep priority same as app. threads
+                public void run ()
+                {
+                    AsyncStore.this.run();
+                }
+            };
 
-        setDaemon(true);
+            worker.setDaemon(true);
+            worker.start();
+        }
 
         Runtime.getRuntime().addShutdownHook(new ShutdownThread());
-
-        start();
     }
 
+    /**
+     * Write all of the outstanding work to disk. The caller does work
+     * itself, so this completes even if the workers have gone away.
+     */
+
     public final void flush ()
     {
-        /*
-         * Do it this way because by the time we get here the daemon thread has
-         * been removed by the system.
-         */
-
-        boolean stop = false;
+        _lock.lock();
 
-        do
+        try
         {
-            synchronized (_workList)
-            {
-                stop = _numberOfEntries <= 0;
-            }
+            startDraining();
 
-            if (!stop)
+            for (;;)
             {
-                doWork();
+                PendingWork pending = _ready.pollFirst();
+
+                if (pending != null)
+                {
+                    doWork(pending);
+                }
+                else if (_inFlight > 0)
+                {
+                    _idle.awaitUninterruptibly();
+                }
+                else
+                    break;
             }
         }
-        while (!stop);
-
-        _terminated = true;
+        finally
+        {
+            _lock.unlock();
+        }
     }
 
     public final boolean addWork (CacheStore store, int workType, Uid objUid,
             String tName, OutputObjectState state, int ft)
     {
-        /*
-         * If the cache is full already, then wait until it has drained. We sit
-         * in a while/do loop because many threads could be blocked and only one
-         * may get a chance to add something to the queue before it goes full
-         * again.
-         */
+        StoreElement toAdd = new StoreElement(store, workType, objUid, tName,
+                state, ft);
 
-        boolean stop = false;
+        _lock.lock();
 
-        do
+        try
         {
-            synchronized (_overflowLock)
+            /*
+             * If the cache is full already, then wait until there is room. We
+             * sit in a loop because many threads could be blocked and only
+             * some may get a chance to add something to the queue before it
+             * goes full again.
+             */
+
+            if (cacheIsFull())
             {
-                if (cacheIsFull())
+                _blockedWork++;
+
+                do
                 {
-                    try
-                    {
-                        _overflowLock.wait();
-                    }
-                    catch (Exception ex)
-                    {
-                    }
+                    startDraining();
+
+                    _space.awaitUninterruptibly();
                 }
-                else
-                    stop = true;
+                while (cacheIsFull());
             }
-        }
-        while (!stop);
 
-        StoreElement toAdd = new StoreElement(store, workType, objUid, tName,
-                state, ft);
+            PendingWork pending = _pending.get(objUid);
 
+            if (pending == null)
+            {
+                pending = new PendingWork(toAdd.objUid);
 
-            LinkedList list = getList(objUid);
-            synchronized (list) {
-                list.addFirst(toAdd);
+                _pending.put(pending.objUid, pending);
             }
-            synchronized (_workList) {
 
-                if (state != null)
-                    _currentCacheSize += state.size();
+            boolean idle = pending.queued.isEmpty() && (pending.inFlight == null);
+
+            if (!coalesce(pending, toAdd))
+            {
+                pending.queued.add(toAdd);
+
+                _pendingWork++;
+                _pendingBytes += toAdd.size();
+
+                if (_pendingWork > _maximumPendingWork)
+                    _maximumPendingWork = _pendingWork;
 
-                _numberOfEntries++;
+                if (idle)
+                {
+                    _ready.addLast(pending);
+
+                    if (_draining)
+                        _workAvailable.signal();
+                }
             }
 
+            if (cacheIsFull())
+                startDraining();
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+
         return true;
     }
 
     /**
-     * Remove any item in the cache that operates on this state (must be
-     * identical uid and file type (shadowed, hidden etc.) This could
-     * potentially leave us with states on disk that should have been deleted
-     * but weren't because a crash happened before we could do that. Crash
-     * recovery should fix this up later though.
+     * Drop any write of this state (identical uid, type name and file type)
+     * that has not started. This could potentially leave us with states on
+     * disk that should have been deleted but weren't because a crash
+     * happened before we could do that. Crash recovery should fix this up
+     * later though.
+     *
+     * @return IN_USE if other work on the Uid is still in the cache or being
+     * done, REMOVED if a write was dropped, NOT_PRESENT otherwise.
      */
 
-    public final int removeState (Uid objUid, int ft)
+    public final int removeState (CacheStore store, Uid objUid, String tName, int ft)
     {
-        Object[] elements = null;
+        _lock.lock();
 
-        /*
-         * Check the cache first. Take a snapshot.
-         */
+        try
+        {
+            PendingWork pending = _pending.get(objUid);
+
+            if (pending == null)
+                return NOT_PRESENT;
+
+            int status = NOT_PRESENT;
+            List<StoreElement> queued = pending.queued;
 
-        LinkedList list = getList(objUid);
-        synchronized (list) {
-            try {
-                elements = list.toArray();
-            } catch (Exception ex) {
-                // This should not happen now that the list is under a synchronized guard
-                tsLogger.i18NLogger.warn_could_not_extract_array(ex);
-                elements = null;
+            while (!queued.isEmpty())
+            {
+                StoreElement last = queued.get(queued.size() - 1);
+
+                if ((last.typeOfWork == WRITE) && (last.fileType == ft) && last.sameState(store, tName))
+                {
+                    dropLast(pending);
+
+                    status = REMOVED;
+                }
+                else
+                    break;
             }
-        }
 
-        int status = NOT_PRESENT;
-        
-        if (elements == null) {
-            tsLogger.logger.trace("No elements");
+            if (!queued.isEmpty() || (pending.inFlight != null))
+                return IN_USE;
+
+            /*
+             * The only work was dropped.
+             */
+
+            _pending.remove(objUid);
+            _ready.remove(pending);
+
+            _space.signalAll();
+
             return status;
         }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * @return the latest work in the cache which determines the content of
+     * the state, or null if the cache holds no such work. A WRITE carries the
+     * state, a REMOVE means there will be no state, and a COMMIT means the
+     * shadow on disk will become the original.
+     */
+
+    public final StoreElement getState (CacheStore store, Uid objUid, String tName, int ft)
+    {
+        _lock.lock();
 
-        for (int i = 0; i < elements.length; i++)
+        try
         {
-            StoreElement element = (StoreElement) elements[i];
+            PendingWork pending = _pending.get(objUid);
+
+            if (pending == null)
+                return null;
+
+            StoreElement commit = null;
+
+            for (int i = pending.queued.size(); i >= 0; i--)
+            {
+                // the work in progress is older than anything still queued
+                StoreElement element = ((i > 0) ? pending.queued.get(i - 1) : pending.inFlight);
 
-            if (element != null) {
+                if ((element == null) || !element.sameState(store, tName))
+                    continue;
 
-                synchronized (_workList)
+                if (commit != null)
                 {
-                    synchronized (element)
-                    {
-                        if (!element.removed && element.objUid.equals(objUid))
-                        {
-                            switch (element.typeOfWork)
-                            {
-                            case AsyncStore.REMOVE:
-                                element.remove();
-                                _removedItems++;
-
-                                if (status != IN_USE)
-                                    status = REMOVED;
-
-                                break;
-                            case AsyncStore.WRITE:
-                                // if (element.fileType == ft)
-                            {
-                                if (element.state != null)
-                                    _currentCacheSize -= element.state.size();
-
-                                _removedItems++;
-
-                                element.remove();
-
-                                if (status != IN_USE)
-                                    status = REMOVED;
-                            }
-
-                                break;
-                            default:
-                                break;
-                            }
-                        }
-                    }
+                    // what will be committed is the latest shadow
+                    if (element.fileType == StateType.OS_SHADOW)
+                        return ((element.typeOfWork == WRITE) ? element : commit);
+                }
+                else if (element.typeOfWork == COMMIT)
+                {
+                    if (ft != StateType.OS_ORIGINAL)
+                        return element;
+
+                    commit = element;
                 }
+                else if (element.fileType == ft)
+                    return element;
             }
-        }
 
-        if (cacheIsFull())
+            return commit;
+        }
+        finally
         {
-            synchronized (_workList)
-            {
-                _workList.notify();
-            }
+            _lock.unlock();
         }
-        
-        /*
-         * Does the worker thread currently have it?
-         */
+    }
+
+    public final int getPendingWork ()
+    {
+        _lock.lock();
 
-        if (CacheStore._storeManager.currentWork(objUid, ft))
+        try
         {
-            status = IN_USE;
+            return _pendingWork;
+        }
+        finally
+        {
+            _lock.unlock();
         }
-
-        return status;
     }
 
-    public final int removeWriteState (Uid objUid, int ft)
+    public final long getPendingBytes ()
     {
-        int status = NOT_PRESENT;
-        Object[] elements = null;
+        _lock.lock();
 
-        LinkedList list = getList(objUid);
-        synchronized (list) {
-            try {
-                elements = list.toArray();
-            } catch (Exception ex) {
-                // This should not happen now that the list is under a synchronized guard
-                tsLogger.i18NLogger.warn_could_not_extract_array(ex);
-                elements = null;
-            }
+        try
+        {
+            return _pendingBytes;
         }
-
-        if (elements == null) {
-            tsLogger.logger.trace("No elements");
-            return status;
+        finally
+        {
+            _lock.unlock();
         }
+    }
 
-        for (int i = 0; i < elements.length; i++)
-        {
-            StoreElement element = (StoreElement) elements[i];
+    public final int getMaximumPendingWork ()
+    {
+        _lock.lock();
 
-            if (element != null)
-            {
-                synchronized (_workList)
-                {
-                    synchronized (element) {
-                        if (!element.removed && element.objUid.equals(objUid))
-                        {
-                            switch (element.typeOfWork)
-                            {
-                            case AsyncStore.WRITE:
-                                if (ft == element.fileType)
-                                {
-                                    if (element.state != null)
-                                        _currentCacheSize -= element.state.size();
-
-                                    _removedItems++;
-
-                                    element.remove();
-
-                                    status = REMOVED;
-                                }
-                                else
-                                {
-                                    if (ft == StateType.OS_ORIGINAL)
-                                    {
-                                        if (element.fileType == StateType.OS_SHADOW)
-                                        {
-                                            if (element.state != null)
-                                                _currentCacheSize -= element.state
-                                                        .size();
-
-                                            _removedItems++;
-
-                                            element.remove();
-
-                                            status = REMOVED;
-                                        }
-                                    }
-                                }
-
-                                break;
-                            case AsyncStore.COMMIT:
-                                if (ft == StateType.OS_ORIGINAL)
-                                {
-                                    if (element.state != null)
-                                        _currentCacheSize -= element.state.size();
-
-                                    _removedItems++;
-
-                                    element.remove();
-
-                                    status = REMOVED;
-                                }
-
-                                break;
-                            default:
-                                break;
-                            }
-                        }
-                    }
-                }
-            }
+        try
+        {
+            return _maximumPendingWork;
         }
-
-        if (cacheIsFull())
+        finally
         {
-            synchronized (_workList)
-            {
-                _workList.notify();
-            }
+            _lock.unlock();
         }
-        
-        return status;
     }
 
-    public final OutputObjectState getState (Uid objUid, int ft)
+    public final long getCoalescedWork ()
     {
-        LinkedList list = getList(objUid);
+        _lock.lock();
 
-        synchronized (list)
+        try
         {
-            for (int i = 0; i < list.size(); i++)
-            {
-                StoreElement element = (StoreElement) list.get(i);
-
-                if (element != null) {
-                    synchronized (element) {
-                        if (!element.removed && (element.objUid.equals(objUid)))
-                        {
-                            if (element.fileType == ft)
-                                return element.state;
-                        }
-                    }
-                }
-            }
+            return _coalescedWork;
         }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
 
-        /*
-         * If not in cache then maybe we're working on it?
-         */
+    public final long getCompletedWork ()
+    {
+        _lock.lock();
 
-        synchronized (_workList)
+        try
         {
-            if ((_work != null) && (objUid.equals(_work.objUid)))
-                return _work.state;
+            return _completedWork;
+        }
+        finally
+        {
+            _lock.unlock();
         }
-
-        return null;
     }
 
-    public void run ()
+    public final long getBlockedWork ()
     {
-        synchronized (_workList)
+        _lock.lock();
+
+        try
         {
-            try
-            {
-                _workList.wait();
-            }
-            catch (Exception ex)
-            {
-            }
+            return _blockedWork;
+        }
+        finally
+        {
+            _lock.unlock();
         }
+    }
 
-        while (!_terminated)
+    private void run ()
+    {
+        _lock.lock();
+
+        try
         {
-            synchronized (_activeLock)
+            for (;;)
             {
-                while (!queueIsEmpty()) // drain the queue
+                PendingWork pending = (_draining ? _ready.pollFirst() : null);
+
+                if (pending != null)
                 {
-                    doWork();
+                    doWork(pending);
                 }
-
-                /*
-                 * We've drained the queue, so notify any blocked threads so
-                 * that they get a chance to add something to the queue again.
-                 */
-
-                synchronized (_overflowLock)
+                else
                 {
-                    _overflowLock.notifyAll();
+                    long remaining = _workAvailable.awaitNanos(TimeUnit.MILLISECONDS.toNanos(_scanPeriod));
+
+                    // the scan period expired so write out whatever is there
+                    if ((remaining <= 0) && !_ready.isEmpty())
+                        startDraining();
                 }
             }
+        }
+        catch (InterruptedException ex)
+        {
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Do the next work for the Uid without holding the lock. Must be called
+     * with the lock held, by a thread which has taken pending off the ready
+     * queue.
+     */
+
+    private void doWork (PendingWork pending)
+    {
+        StoreElement work = pending.queued.remove(0);
+
+        pending.inFlight = work;
+        _inFlight++;
+
+        _lock.unlock();
 
-            synchronized (_workList)
+        try
+        {
+            /*
+             * Should write any errors to a persistent log so that an admin tool
+             * can pick up the pieces later.
+             */
+
+            perform(work);
+        }
+        finally
+        {
+            _lock.lock();
+
+            pending.inFlight = null;
+            _inFlight--;
+
+            _pendingWork--;
+            _pendingBytes -= work.size();
+            _completedWork++;
+
+            if (!pending.queued.isEmpty())
+                _ready.addLast(pending);
+            else
+                _pending.remove(pending.objUid);
+
+            if (!cacheIsFull())
+                _space.signalAll();
+
+            if (_inFlight == 0)
             {
-                if (!cacheIsFull())
+                if (_ready.isEmpty())
                 {
-                    try
-                    {
-                        _workList.wait(_scanPeriod);
-                    }
-                    catch (Exception ex)
-                    {
-                    }
+                    /*
+                     * We've drained the queue, so wait for the next time the
+                     * cache fills up or the scan period expires.
+                     */
+
+                    _draining = false;
                 }
+
+                _idle.signalAll();
             }
         }
     }
 
-    public boolean currentWork (Uid objUid, int ft)
+    private void perform (StoreElement work)
     {
         try
         {
-            synchronized (_workList)
-            {
-                if (_work != null)
-                {
-                    if (_work.objUid.equals(objUid) && (_work.fileType == ft))
-                    {
-                        return true;
+            switch (work.typeOfWork) {
+                case AsyncStore.COMMIT: {
+                    if (!work.store.commitState(work.objUid, work.tName)) {
+                        tsLogger.i18NLogger.warn_objectstore_CacheStore_1(work.objUid, work.tName);
+                    }
+                }
+                break;
+                case AsyncStore.REMOVE: {
+                    if (!work.store.removeState(work.objUid, work.tName,
+                            work.fileType)) {
+                        tsLogger.i18NLogger.warn_objectstore_CacheStore_2(work.objUid, work.tName,
+                                Integer.toString(work.fileType));
                     }
                 }
+                break;
+                case AsyncStore.WRITE: {
+                    if (!work.store.writeState(work.objUid, work.tName,
+                            work.state, work.fileType)) {
+                        tsLogger.i18NLogger.warn_objectstore_CacheStore_3(work.objUid, work.tName,
+                                work.state.toString(), Integer.toString(work.fileType));
+                    }
+                }
+                break;
+                default:
+                    tsLogger.i18NLogger.warn_objectstore_CacheStore_4(Integer.toString(work.typeOfWork));
+                    break;
             }
         }
+        catch (ObjectStoreException ex)
+        {
+            tsLogger.i18NLogger.warn_could_not_handle_objectstore(ex);
+        }
         catch (Exception ex)
         {
+            tsLogger.i18NLogger.warn_could_not_handle_objectstore_generic(ex);
         }
-
-        return false;
     }
 
-    private final void doWork ()
+    /**
+     * Make new work redundant work that has not started, or the other way
+     * round. Only work at the end of the queue is considered so that the
+     * order of the remaining work stays correct.
+     *
+     * @return true if toAdd itself is redundant and must not be queued.
+     */
+
+    private boolean coalesce (PendingWork pending, StoreElement toAdd)
     {
-        LinkedList list = getList();
+        List<StoreElement> queued = pending.queued;
 
-        if (list != null)
+        if (toAdd.typeOfWork == COMMIT)
         {
-            synchronized (list)
+            // committing twice in a row commits nothing more
+            if (!queued.isEmpty())
             {
-                synchronized (_workList) {
-                    if (list.size() > 0) {
-                        _work = (StoreElement) list.removeLast();
-
-                        _numberOfEntries--;
+                StoreElement last = queued.get(queued.size() - 1);
 
-                        if ((_work.state != null) && !_work.removed)
-                            _currentCacheSize -= _work.state.size();
+                if ((last.typeOfWork == COMMIT) && last.sameState(toAdd.store, toAdd.tName))
+                {
+                    _coalescedWork++;
 
-                        if (_work.removed) {
-                            _removedItems--;
-                        }
-                    } else {
-                        _work = null;
-                    }
+                    return true;
                 }
             }
-        }
-        else {
-            synchronized (_workList) {
-                _work = null;
-            }
+
+            return false;
         }
 
-        synchronized (_workList) {
-            if ((_work != null) && !_work.removed)
+        if (toAdd.typeOfWork != WRITE)
+            return false;
+
+        while (!queued.isEmpty())
+        {
+            int size = queued.size();
+            StoreElement last = queued.get(size - 1);
+
+            if (!last.sameState(toAdd.store, toAdd.tName))
+                break;
+
+            if ((last.typeOfWork == WRITE) && (last.fileType == toAdd.fileType))
+            {
+                // this write overwrites the earlier one
+                dropLast(pending);
+            }
+            else if ((toAdd.fileType == StateType.OS_ORIGINAL) && (last.typeOfWork == COMMIT) && (size > 1))
             {
-                /*
-                 * Should write any errors to a persistent log so that an admin tool
-                 * can pick up the pieces later.
-                 */
+                // a shadow that is written and committed only to be overwritten
+                StoreElement previous = queued.get(size - 2);
 
-                try
-                {
-                    switch (_work.typeOfWork) {
-                        case AsyncStore.COMMIT: {
-                            if (!_work.store.commitState(_work.objUid, _work.tName)) {
-                                tsLogger.i18NLogger.warn_objectstore_CacheStore_1(_work.objUid, _work.tName);
-                            }
-                        }
-                        break;
-                        case AsyncStore.REMOVE: {
-                            if (!_work.store.removeState(_work.objUid, _work.tName,
-                                    _work.fileType)) {
-                                tsLogger.i18NLogger.warn_objectstore_CacheStore_2(_work.objUid, _work.tName,
-                                        Integer.toString(_work.fileType));
-                            }
-                        }
-                        break;
-                        case AsyncStore.WRITE: {
-                            if (!_work.store.writeState(_work.objUid, _work.tName,
-                                    _work.state, _work.fileType)) {
-                                tsLogger.i18NLogger.warn_objectstore_CacheStore_3(_work.objUid, _work.tName,
-                                        _work.state.toString(), Integer.toString(_work.fileType));
-                            }
-                        }
-                        break;
-                        default:
-                            tsLogger.i18NLogger.warn_objectstore_CacheStore_4(Integer.toString(_work.typeOfWork));
-                            break;
-                    }
-                }
-                catch (ObjectStoreException ex)
-                {
-                    tsLogger.i18NLogger.warn_could_not_handle_objectstore(ex);
-                }
-                catch (Exception ex)
+                if ((previous.typeOfWork == WRITE) && (previous.fileType == StateType.OS_SHADOW)
+                        && previous.sameState(toAdd.store, toAdd.tName))
                 {
-                    tsLogger.i18NLogger.warn_could_not_handle_objectstore_generic(ex);
+                    dropLast(pending);
+                    dropLast(pending);
                 }
+                else
+                    break;
             }
+            else
+                break;
         }
 
-        synchronized (_workList) {
-            // Must have the lock to write to _work
-            _work = null;
-        }
+        return false;
     }
 
-    /**
-     * @return true if the queue is empty, false otherwise.
-     */
+    private void dropLast (PendingWork pending)
+    {
+        StoreElement dropped = pending.queued.remove(pending.queued.size() - 1);
 
-    private final boolean queueIsEmpty ()
+        _pendingWork--;
+        _pendingBytes -= dropped.size();
+        _coalescedWork++;
+    }
+
+    private void startDraining ()
     {
-        synchronized (_workList)
+        if (!_draining)
         {
-            if (_numberOfEntries == 0)
-                return true;
-            else
-                return false;
+            _draining = true;
+
+            _workAvailable.signalAll();
         }
     }
 
@@ -772,82 +912,56 @@ class AsyncStore extends Thread // keep priority same as app. threads
      * @return true if the cache is full, false otherwise.
      */
 
-    private final boolean cacheIsFull ()
+    private boolean cacheIsFull ()
     {
-        synchronized (_workList)
-        {
-            if ((_currentCacheSize >= _maximumCacheSize)
-                    || (_removedItems >= _maximumRemovedItems)
-                    || (_numberOfEntries - _removedItems >= _maximumWorkItems))
-            {
-                _workList.notifyAll();
-
-                return true; // cache is full, so wait
-            }
-            else
-                return false; // cache is ok
-        }
+        return (_pendingWork > 0)
+                && ((_pendingBytes >= _maximumCacheSize) || (_pendingWork >= _maximumWorkItems));
     }
 
-    private final LinkedList getList ()
-    {
-        synchronized (_workList) {
-            for (int i = 0; i < HASH_SIZE; i++)
-            {
-                if ((_workList[i] != null) && (_workList[i].size() > 0))
-                    return _workList[i];
-            }
-
-            return null;
-        }
-    }
+    private final ReentrantLock _lock = new ReentrantLock();
 
-    private final LinkedList getList (Uid objUid)
-    {
-        int index = objUid.hashCode() % HASH_SIZE;
+    // signalled when the workers should drain the queue
+    private final Condition _workAvailable = _lock.newCondition();
 
-        synchronized (_workList)
-        {
-            if (_workList[index] == null)
-                _workList[index] = new LinkedList();
+    // signalled when there may be room in the cache
+    private final Condition _space = _lock.newCondition();
 
-            return _workList[index];
-        }
-    }
+    // signalled when the queue has been drained
+    private final Condition _idle = _lock.newCondition();
 
-    public Object _activeLock = new Object();
+    private final Map<Uid, PendingWork> _pending = new HashMap<Uid, PendingWork>();
 
-    private LinkedList[] _workList = null;
+    // Uids with queued work and no work in progress, oldest first
+    private final ArrayDeque<PendingWork> _ready = new ArrayDeque<PendingWork>();
 
-    private int _numberOfEntries = 0;
+    private boolean _draining = false;
 
-    private boolean _terminated = false;
+    private int _inFlight = 0;
 
-    private int _currentCacheSize = 0;
+    private int _pendingWork = 0;
 
-    private int _maximumCacheSize = 0;
+    private long _pendingBytes = 0;
 
-    private int _maximumWorkItems = 0;
+    private int _maximumPendingWork = 0;
 
-    private int _maximumRemovedItems = 0;
+    private long _coalescedWork = 0;
 
-    private int _scanPeriod = 0;
+    private long _completedWork = 0;
 
-    private Object _overflowLock = new Object();
+    private long _blockedWork = 0;
 
-    private StoreElement _work = null;
+    private int _maximumCacheSize = 0;
 
-    private int _removedItems = 0;
+    private int _maximumWorkItems = 0;
 
-    private static final int HASH_SIZE = arjPropertyManager.getObjectStoreEnvironmentBean().getCacheStoreHash();
+    private int _scanPeriod = 0;
 
     private static final int _defaultCacheSize = arjPropertyManager.getObjectStoreEnvironmentBean().getCacheStoreSize();
 
-    private static final int _defaultRemovedItems = arjPropertyManager
-            .getObjectStoreEnvironmentBean().getCacheStoreRemovedItems();
-
     private static final int _defaultWorkItems = arjPropertyManager.getObjectStoreEnvironmentBean().getCacheStoreWorkItems();
 
     private static final int _defaultScanPeriod = arjPropertyManager.getObjectStoreEnvironmentBean().getCacheStoreScanPeriod();
 
+    private static final int _defaultWorkers = arjPropertyManager.getObjectStoreEnvironmentBean().getCacheStoreWorkers();
+
 }
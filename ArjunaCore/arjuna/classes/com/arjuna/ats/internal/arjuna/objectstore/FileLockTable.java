@@ -0,0 +1,134 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2019, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+
+package com.arjuna.ats.internal.arjuna.objectstore;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.arjuna.ats.arjuna.logging.tsLogger;
+import com.arjuna.ats.arjuna.utils.FileLock;
+
+/**
+ * An in-memory replacement for {@link FileLock} which keeps the lock state of
+ * object store files in a table keyed by file path instead of in <code>_lock</code>
+ * and <code>_lock.lock</code> files next to each state file. It has the same
+ * semantics: single writer or multiple readers, no re-entrancy and no waiting,
+ * so a conflicting request fails straight away.
+ * <p>
+ * The table is shared by all stores in the JVM, but nothing outside the JVM
+ * can see it, so it must only be used when no other process uses the same
+ * object store. Native (FileChannel) locks cannot take the place of the lock
+ * files: on POSIX systems they belong to the process and are dropped as soon
+ * as the store closes any of its own streams on the file.
+ */
+
+public class FileLockTable
+{
+    public static FileLockTable getInstance ()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Lock the file.
+     *
+     * @param fd the file to lock.
+     * @param lmode {@link FileLock#F_RDLCK} or {@link FileLock#F_WRLCK}.
+     * @param create create the file if it does not exist.
+     * @return <code>true</code> if the lock was granted.
+     */
+
+    public boolean lock (File fd, int lmode, boolean create)
+    {
+        if (create && !fd.exists())
+        {
+            try
+            {
+                fd.createNewFile();
+            }
+            catch (IOException e)
+            {
+                tsLogger.i18NLogger.warn_utils_FileLock_4(fd.getName());
+            }
+        }
+
+        final boolean[] granted = new boolean[1];
+
+        _entries.compute(fd.getAbsolutePath(), (path, entry) -> {
+            if (entry == null)
+                entry = new Entry(lmode);
+            else if (lmode == FileLock.F_WRLCK || entry.mode == FileLock.F_WRLCK)
+                return entry;
+            else
+                entry.holders++;
+
+            granted[0] = true;
+
+            return entry;
+        });
+
+        return granted[0];
+    }
+
+    /**
+     * Release a lock taken by {@link #lock(File, int, boolean)}.
+     *
+     * @return <code>false</code> if the file was not locked.
+     */
+
+    public boolean unlock (File fd)
+    {
+        final boolean[] released = new boolean[1];
+
+        _entries.computeIfPresent(fd.getAbsolutePath(), (path, entry) -> {
+            released[0] = true;
+
+            return (--entry.holders > 0) ? entry : null;
+        });
+
+        return released[0];
+    }
+
+    /**
+     * @return <code>true</code> if any lock is held on the file.
+     */
+
+    public boolean isLocked (File fd)
+    {
+        return _entries.containsKey(fd.getAbsolutePath());
+    }
+
+    private static final class Entry
+    {
+        Entry (int lmode)
+        {
+            mode = lmode;
+            holders = 1;
+        }
+
+        final int mode;
+
+        int holders;
+    }
+
+    private static final FileLockTable INSTANCE = new FileLockTable();
+
+    private final ConcurrentHashMap<String, Entry> _entries = new ConcurrentHashMap<String, Entry>();
+}
@@ -394,19 +394,25 @@ public abstract class FileSystemStore extends ObjectStore
      * Lock the file in the object store.
      */
 
-    protected synchronized boolean lock (final File fd, final int lmode, final boolean create)
+    protected boolean lock (final File fd, final int lmode, final boolean create)
     {
-        if(System.getSecurityManager() == null) {
-            FileLock fileLock = new FileLock(fd);
-            return fileLock.lock(lmode, create);
-        } else {
-            return AccessController.doPrivileged(new PrivilegedAction<Boolean>() {
-                @Override
-                public Boolean run() {
-                    FileLock fileLock = new FileLock(fd);
-                    return fileLock.lock(lmode, create);
-                }
-            });
+        if (inMemoryFileLocking)
+            return FileLockTable.getInstance().lock(fd, lmode, create);
+
+        synchronized (this)
+        {
+            if(System.getSecurityManager() == null) {
+                FileLock fileLock = new FileLock(fd);
+                return fileLock.lock(lmode, create);
+            } else {
+                return AccessController.doPrivileged(new PrivilegedAction<Boolean>() {
+                    @Override
+                    public Boolean run() {
+                        FileLock fileLock = new FileLock(fd);
+                        return fileLock.lock(lmode, create);
+                    }
+                });
+            }
         }
     }
 
@@ -414,19 +420,25 @@ public abstract class FileSystemStore extends ObjectStore
      * Unlock the file in the object store.
      */
 
-    protected synchronized boolean unlock (final File fd)
+    protected boolean unlock (final File fd)
     {
-        if(System.getSecurityManager() == null) {
-            FileLock fileLock = new FileLock(fd);
-            return fileLock.unlock();
-        } else {
-            return AccessController.doPrivileged(new PrivilegedAction<Boolean>() {
-                @Override
-                public Boolean run() {
-                    FileLock fileLock = new FileLock(fd);
-                    return fileLock.unlock();
-                }
-            });
+        if (inMemoryFileLocking)
+            return FileLockTable.getInstance().unlock(fd);
+
+        synchronized (this)
+        {
+            if(System.getSecurityManager() == null) {
+                FileLock fileLock = new FileLock(fd);
+                return fileLock.unlock();
+            } else {
+                return AccessController.doPrivileged(new PrivilegedAction<Boolean>() {
+                    @Override
+                    public Boolean run() {
+                        FileLock fileLock = new FileLock(fd);
+                        return fileLock.unlock();
+                    }
+                });
+            }
         }
     }
 
@@ -627,6 +639,8 @@ public abstract class FileSystemStore extends ObjectStore
 
         scanZeroLengthFiles = objectStoreEnvironmentBean.isScanZeroLengthFiles();
 
+        inMemoryFileLocking = objectStoreEnvironmentBean.isInMemoryFileLocking();
+
         /* The root of the objectstore must exist and be writable */
 
         if ((fullStoreName == null) || !createHierarchy(fullStoreName)) {
@@ -783,9 +797,12 @@ public abstract class FileSystemStore extends ObjectStore
      * may not have actually been created - it may still be in the process of being
      * created. So, we have to err on the side of caution and try to create the directory
      * a few times. (This can happen across processes too.)
+     *
+     * The method is not synchronized: mkdirs is safe to call concurrently and a
+     * thread which loses the race sees the directory on its next check.
      */
     
-    protected final synchronized boolean createHierarchy (String path) throws ObjectStoreException
+    protected final boolean createHierarchy (String path) throws ObjectStoreException
     {
         if (tsLogger.logger.isTraceEnabled()) {
             tsLogger.logger.trace("FileSystemStore.createHierarchy(" + path + ")");
@@ -823,12 +840,15 @@ public abstract class FileSystemStore extends ObjectStore
                 else
                 {
                     /*
-                     * Assume problem is due to concurrent processes, since we're
-                     * synchronized within the same VM.
+                     * Assume problem is due to another thread or process creating
+                     * the same hierarchy.
                      */
                     
                     if (!f.mkdirs())
                     {
+                        if (f.exists())
+                            return true;
+
                         retryLimit--;
 
                         if (retryLimit == 0)
@@ -946,6 +966,8 @@ public abstract class FileSystemStore extends ObjectStore
 
     protected boolean scanZeroLengthFiles = false;
 
+    private final boolean inMemoryFileLocking;
+
     private static final boolean isWindows = Utility.isWindows();
 
 }
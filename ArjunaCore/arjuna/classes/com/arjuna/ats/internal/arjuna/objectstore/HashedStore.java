@@ -33,6 +33,9 @@ package com.arjuna.ats.internal.arjuna.objectstore;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.arjuna.ats.arjuna.common.ObjectStoreEnvironmentBean;
 import com.arjuna.ats.arjuna.common.Uid;
@@ -177,6 +180,10 @@ public class HashedStore extends ShadowNoFileLockStore
     public HashedStore (ObjectStoreEnvironmentBean objectStoreEnvironmentBean) throws ObjectStoreException
     {
         super(objectStoreEnvironmentBean);
+
+        _storeName = locateStore(getStoreName());
+
+        createExistingBuckets(new File(_storeName));
     }
 
     protected String truncate (String value)
@@ -222,12 +229,30 @@ public class HashedStore extends ShadowNoFileLockStore
             tsLogger.logger.trace("HashedStore.genPathName(" + objUid + ", " + tName + ", " + StateType.stateTypeString(otype) + ")");
         }
 
-        String storeName = locateStore(getStoreName());
-        String fname = null;
+        int bucket = objUid.hashCode() % HashedStore.NUMBEROFDIRECTORIES;
+        String hashDir = (bucket >= 0) ? BUCKET_NAMES[bucket] : bucketName(bucket);
+        String fname = typeDirectory(tName) + hashDir + objUid.fileStringForm();
+
+        // mark the shadow copy distinctly
+        if (otype == StateType.OS_SHADOW)
+            fname = fname + SHADOWCHAR;
+
+        return fname;
+    }
+
+    /**
+     * @return the directory of the given type, with a trailing separator,
+     * making sure all of its hash buckets exist the first time it is used.
+     */
+
+    private String typeDirectory (String tName)
+    {
+        String directory = (tName == null) ? null : _typeDirectories.get(tName);
+
+        if (directory != null)
+            return directory;
+
         String cPtr = null;
-        int uidHash = objUid.hashCode();
-        String os = objUid.fileStringForm();
-        String hashDir = HashedStore.HASH_SEPARATOR + uidHash % HashedStore.NUMBEROFDIRECTORIES + HashedStore.HASH_SEPARATOR + File.separator;  // make sure hash value is unique in the string
 
         if ((tName == null) || (tName.length() == 0))
             cPtr = "";
@@ -254,22 +279,71 @@ public class HashedStore extends ShadowNoFileLockStore
             cPtr = cPtr.substring(1, cPtr.length());
 
         if (cPtr.charAt(cPtr.length() -1) != File.separatorChar)
-            fname = storeName + cPtr + File.separator + hashDir + os;
+            directory = _storeName + cPtr + File.separator;
         else
-            fname = storeName + cPtr + hashDir + os;
+            directory = _storeName + cPtr;
 
-        /*
-         * Make sure we don't end in a '/'.
-         */
+        createBuckets(directory);
 
-        if (fname.charAt(fname.length() -1) == File.separatorChar)
-            fname = fname.substring(0, fname.length() -2);
+        _typeDirectories.putIfAbsent(tName, directory);
 
-        // mark the shadow copy distinctly
-        if (otype == StateType.OS_SHADOW)
-            fname = fname + SHADOWCHAR;
+        return directory;
+    }
 
-        return fname;
+    /**
+     * Create all of the hash buckets of a type directory up front so that
+     * writes do not need to go through createHierarchy.
+     */
+
+    private void createBuckets (String directory)
+    {
+        if (!_bucketsCreated.add(directory))
+            return;
+
+        for (int i = 0; i < BUCKET_NAMES.length; i++)
+        {
+            File bucket = new File(directory + BUCKET_NAMES[i]);
+
+            /*
+             * Failures are not fatal, openAndLock will still create a missing
+             * bucket on demand.
+             */
+
+            if (!bucket.isDirectory() && !bucket.mkdirs() && tsLogger.logger.isTraceEnabled())
+                tsLogger.logger.trace("HashedStore.createBuckets could not create " + bucket);
+        }
+    }
+
+    /**
+     * Walk the store and create the missing buckets of every type directory
+     * which already holds hash buckets.
+     */
+
+    private void createExistingBuckets (File directory)
+    {
+        File[] entries = directory.listFiles();
+
+        if (entries == null)
+            return;
+
+        boolean hashed = false;
+
+        for (int i = 0; i < entries.length; i++)
+        {
+            if (entries[i].getName().startsWith(HASH_SEPARATOR))
+                hashed = true;
+            else if (entries[i].isDirectory())
+                createExistingBuckets(entries[i]);
+        }
+
+        if (hashed)
+            createBuckets(directory.getPath() + File.separator);
+    }
+
+    private static String bucketName (int bucket)
+    {
+        // make sure hash value is unique in the string
+        return HashedStore.HASH_SEPARATOR + bucket + HashedStore.HASH_SEPARATOR + File.separator;
     }
 
     public static final char SHADOWCHAR = '!';
@@ -290,5 +364,19 @@ public class HashedStore extends ShadowNoFileLockStore
 
     private static final int NUMBEROFDIRECTORIES = arjPropertyManager.getObjectStoreEnvironmentBean().getHashedDirectories();
 
+    private static final String[] BUCKET_NAMES = new String[NUMBEROFDIRECTORIES];
+
+    static
+    {
+        for (int i = 0; i < BUCKET_NAMES.length; i++)
+            BUCKET_NAMES[i] = bucketName(i);
+    }
+
+    private final String _storeName;
+
+    private final ConcurrentMap<String, String> _typeDirectories = new ConcurrentHashMap<String, String>();
+
+    private final Set<String> _bucketsCreated = ConcurrentHashMap.newKeySet();
+
 }
 
@@ -11,18 +11,24 @@
 
 package com.arjuna.ats.internal.arjuna.objectstore;
 
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.RandomAccessFile;
-import java.io.SyncFailedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.Stack;
 
 import com.arjuna.ats.arjuna.common.ObjectStoreEnvironmentBean;
 import com.arjuna.ats.arjuna.common.Uid;
@@ -93,6 +99,13 @@ import com.arjuna.ats.internal.arjuna.objectstore.LogInstance.TransactionData;
  * By default we synchronously add the removal marker to the log, i.e., when remove_committed
  * returns, the marker entry has been appended to the log.
  *
+ * Each log instance is a segment of the log and keeps count of the transactions in it which have
+ * not been removed. Once a frozen log has no such transactions it is deleted without being read
+ * again. A frozen log in which most of the space is taken by removed entries is compacted by the
+ * purger thread. Compaction only locks the log being compacted, so entries can still be appended
+ * to the others (including the one new transactions are using) at the same time. Logs left by a
+ * previous run are added to the same index the first time recovery reads them.
+ *
  * NOTE: there is a race where we terminate the log instance and yet transactions may
  * still be using it. This happens with other object store implementations too. However, in
  * this case we could end up with a log that should be deleted because all of the entries
@@ -101,7 +114,7 @@ import com.arjuna.ats.internal.arjuna.objectstore.LogInstance.TransactionData;
  *
  * TODO
  *
- * When truncating logs we write a shadow and then overwrite the original with the shadow
+ * When compacting logs we write a shadow and then overwrite the original with the shadow
  * when finished. If there is a crash we could end up with the shadow as well as the
  * original. Recovery could tidy this up for us - as long as we have the original then
  * we can continue to recover - the shadow instance may be corrupted so best to ignore
@@ -125,21 +138,32 @@ class LogInstance
 {
     public class TransactionData
     {
-        TransactionData (final Uid tx, final long off, final LogInstance parent)
+        TransactionData (final Uid tx, final LogInstance parent, final Long previousSize)
         {
             txId = tx;
-            offset = off;
             container = parent;
+            previous = previousSize;
         }
 
         public final Uid txId;
-        public final long offset;
         public final LogInstance container;
+        public final Long previous;  // size of the earlier entry for the tx in this log, or null
+    }
+
+    public LogInstance(String sn, String tn, long size)
+    {
+        this(new Uid(), sn, tn, size);
     }
 
-    public LogInstance(String tn, long size)
+    /*
+     * Used when the log already exists, e.g., when recovery finds a log
+     * left behind by a previous run.
+     */
+
+    public LogInstance(Uid logName, String sn, String tn, long size)
     {
-        _logName = new Uid();
+        _logName = logName;
+        _storeName = sn;
         _typeName = tn;
         _frozen = false;
         _totalSize = size;
@@ -163,9 +187,13 @@ class LogInstance
         _frozen = true;
     }
 
+    /**
+     * @return the number of transactions in the log which have not been removed.
+     */
+
     public final int numberOfUsers()
     {
-        return _transactions.size();
+        return _ids.size();
     }
 
     public final Uid getName()
@@ -178,6 +206,16 @@ class LogInstance
         return _typeName;
     }
 
+    /**
+     * @return true if the log holds entries of the given type in the given store.
+     * Different stores and types keep their entries in different files.
+     */
+
+    public final boolean belongsTo(String sn, String tn)
+    {
+        return _storeName.equals(sn) && ((tn == null) || _typeName.equals(tn));
+    }
+
     public final InputObjectState allObjUids () throws ObjectStoreException
     {
         OutputObjectState state = new OutputObjectState();
@@ -207,20 +245,58 @@ class LogInstance
         return _ids.containsKey(id);
     }
 
-    public final TransactionData getTxId (Uid txId)
+    public final TransactionData addTxId (Uid txId, long size)
     {
-        return new TransactionData(txId, _used, this);
+        Long previous = _ids.put(txId, size);  // only the latest entry for a transaction is needed
+
+        _liveSize += size - ((previous == null) ? 0 : previous);
+        _used += size;
+
+        return new TransactionData(txId, this, previous);
     }
 
-    public final TransactionData addTxId (Uid txId, long size)
+    /**
+     * Undo addTxId for an entry which could not be written. If the
+     * transaction already had an entry in the log then that one is still
+     * valid, so the transaction stays in the log with its earlier size.
+     *
+     * @return true if the transaction is no longer in the log.
+     */
+
+    public final boolean restoreTxId (TransactionData entry)
     {
-        TransactionData td = new TransactionData(txId, _used, this);
+        Long size = (entry.previous == null) ? _ids.remove(entry.txId) : _ids.put(entry.txId, entry.previous);
 
-        _transactions.add(td);  // allow multiple entries in the same log
-        _ids.put(txId, txId);
-        _used += size;
+        if (size != null)
+            _liveSize -= size - ((entry.previous == null) ? 0 : entry.previous);
+
+        return (entry.previous == null);
+    }
+
+    /**
+     * @return true if the transaction was in the log, false otherwise.
+     */
+
+    public final boolean removeTxId (Uid txId)
+    {
+        Long size = _ids.remove(txId);
+
+        if (size == null)
+            return false;
+
+        _liveSize -= size;
+
+        return true;
+    }
+
+    /**
+     * @return true if most of the log is taken up by entries which are no
+     * longer needed.
+     */
 
-        return td;
+    public final boolean isSparse()
+    {
+        return (_liveSize * 2 < _end);
     }
 
     public final long remaining()
@@ -233,6 +309,187 @@ class LogInstance
         _totalSize = size;
     }
 
+    /*
+     * The end of the entries in the log file, which is where the next one
+     * goes. Only used while holding the lock on this instance.
+     */
+
+    public final long append (long size)
+    {
+        long offset = _end;
+
+        _end += size;
+
+        return offset;
+    }
+
+    public final long end ()
+    {
+        return _end;
+    }
+
+    public final void setEnd (long end)
+    {
+        _end = end;
+    }
+
+    /*
+     * The log file is kept open while the log is in use rather than being
+     * opened for every entry. Only used while holding the lock on this
+     * instance.
+     */
+
+    public final FileChannel channel (File fd) throws IOException
+    {
+        if (_channel == null)
+            _channel = new RandomAccessFile(fd, "rw").getChannel();
+
+        return _channel;
+    }
+
+    /*
+     * Fill a new log file to its full size up front so that appending an
+     * entry doesn't have to change the size of the file or allocate space
+     * for it. The purger does this for the log that will be used next,
+     * before the log is in the index, so no transaction waits for it.
+     */
+
+    public final void preallocate (File fd, long size, boolean sync) throws IOException
+    {
+        synchronized (this)
+        {
+            FileChannel channel = channel(fd);
+            ByteBuffer zeros = ByteBuffer.allocate((int) Math.min(size, PREALLOCATE_CHUNK));
+
+            for (long position = channel.size(); position < size; position += zeros.limit())
+            {
+                zeros.clear();
+                zeros.limit((int) Math.min(zeros.capacity(), size - position));
+
+                while (zeros.hasRemaining())
+                    channel.write(zeros, position + zeros.position());
+            }
+
+            if (sync)
+                channel.force(true);
+        }
+    }
+
+    /*
+     * Called with the lock on this instance held once an entry has been
+     * written to the log file. If the entry made the file bigger then the
+     * next sync has to write the new size of the file to disk as well.
+     *
+     * @return the number of entries written, which is passed to sync.
+     */
+
+    public final long written (boolean grown)
+    {
+        if (grown)
+        {
+            synchronized (_syncLock)
+            {
+                _grown = true;
+            }
+        }
+
+        return ++_written;
+    }
+
+    /**
+     * Make sure the entries written so far are on disk. Only one thread
+     * syncs the file at a time. Threads which get here while it does so wait
+     * and then check whether that covered their entries, so that concurrent
+     * transactions share a sync rather than doing one each.
+     */
+
+    public final void sync (long written) throws IOException
+    {
+        long target;
+        boolean metadata;
+        FileChannel channel;
+
+        synchronized (_syncLock)
+        {
+            for (;;)
+            {
+                if (_synced >= written)
+                    return;
+
+                if (!_syncing)
+                    break;
+
+                try
+                {
+                    _syncLock.wait();
+                }
+                catch (final InterruptedException ex)
+                {
+                    Thread.currentThread().interrupt();
+
+                    throw new InterruptedIOException();
+                }
+            }
+
+            _syncing = true;
+
+            target = _written;
+            metadata = _grown;
+            channel = _channel;
+
+            _grown = false;
+        }
+
+        boolean synced = false;
+
+        try
+        {
+            if (channel != null)
+                channel.force(metadata);  // only when the size of the file has changed
+
+            synced = true;
+        }
+        finally
+        {
+            synchronized (_syncLock)
+            {
+                _syncing = false;
+
+                if (synced && (target > _synced))
+                    _synced = target;
+
+                if (!synced && metadata)
+                    _grown = true;
+
+                _syncLock.notifyAll();
+            }
+        }
+    }
+
+    /*
+     * Sync and close the log file, e.g., before it is replaced or deleted.
+     * Called with the lock on this instance held, so no more entries can be
+     * written until the file is opened again.
+     */
+
+    public final void close (boolean sync) throws IOException
+    {
+        if (_channel != null)
+        {
+            try
+            {
+                if (sync)
+                    sync(_written);
+            }
+            finally
+            {
+                _channel.close();
+
+                _channel = null;
+            }
+        }
+    }
+
     public String toString()
     {
         return "LogInstance < " + _logName + ", " + _typeName + ", "
@@ -240,12 +497,22 @@ class LogInstance
     }
 
     private Uid _logName;
+    private String _storeName;
     private String _typeName;
-    private boolean _frozen;
-    private Stack<TransactionData> _transactions = new Stack<TransactionData>();
-    private HashMap<Uid, Uid> _ids = new HashMap<Uid, Uid>();
+    private volatile boolean _frozen;
+    private HashMap<Uid, Long> _ids = new HashMap<Uid, Long>();
+    private long _liveSize = 0;
     private long _used = 0;
     private long _totalSize;
+    private volatile long _end = 0;
+    private volatile FileChannel _channel = null;
+    private volatile long _written = 0;
+    private long _synced = 0;
+    private boolean _syncing = false;
+    private boolean _grown = false;
+    private final Object _syncLock = new Object();
+
+    private static final long PREALLOCATE_CHUNK = 64 * 1024;
 }
 
 /*
@@ -389,6 +656,12 @@ class LogPurger extends Thread
             catch (final Exception ex)
             {
             }
+
+            /*
+                * Get the next log ready before the current one fills up.
+                */
+
+            _objStore.prepareSpareLogs();
         }
 
         // _status = Status.TERMINATED;
@@ -536,16 +809,9 @@ public class LogStore extends FileSystemStore
                     + tName + ")");
         }
 
-        try
-        {
-            return super.write_committed(storeUid, tName, state);
-        }
-        catch (ObjectStoreException ex)
-        {
-            removeFromLog(storeUid);
+        // if the write fails then write_state puts the log index back as it was
 
-            throw ex;
-        }
+        return super.write_committed(storeUid, tName, state);
     }
 
     public boolean write_uncommitted(Uid u, String tn, OutputObjectState s)
@@ -618,18 +884,13 @@ public class LogStore extends FileSystemStore
                     if (logName.notEquals(Uid.nullUid()))
                     {
                         /*
-                               * Could check to see if log is in current working memory.
-                               */
-
-                        /*
-                               * TODO
-                               *
-                               * First purge the log if we can, but we need to know that
-                               * we're not playing with an instance that is being manipulated
-                               * from another VM instance.
+                               * If the log isn't in current working memory then it was
+                               * left by a previous run, so add it to the index as we read
+                               * it. Then it can be compacted and deleted like our own.
                                */
 
-                        ArrayList<InputObjectState> txs = scanLog(logName, tName);
+                        LogInstance log = getLog(logName);
+                        ArrayList<InputObjectState> txs = ((log != null) ? scanLog(log) : recoverLog(logName, tName));
 
                         if (txs.size() > 0)
                         {
@@ -671,6 +932,8 @@ public class LogStore extends FileSystemStore
 
         _maxFileSize = objectStoreEnvironmentBean.getTxLogSize();
 
+        _storeName = locateStore(getStoreName());
+
         _purger = new LogPurger(this, _purgeTime);
         _purger.setDaemon(true);
 
@@ -731,9 +994,6 @@ public class LogStore extends FileSystemStore
             int imageSize = (int) state.length();
             byte[] uidString = objUid.stringForm().getBytes(StandardCharsets.UTF_8);
             int buffSize = _redzone.length + uidString.length + imageSize + 8;  // don't put in endOfLog since we keep overwriting that.
-            RandomAccessFile ofile = null;
-            java.nio.channels.FileLock lock = null;
-
             if (imageSize > 0)
             {
                 TransactionData theLogEntry = getLogName(objUid, tName, buffSize);		// always adds entry to log
@@ -742,101 +1002,121 @@ public class LogStore extends FileSystemStore
                 if (theLog == null)
                     throw new ObjectStoreException();
 
-                fname = genPathName(theLog.getName(), tName, ft);
-                fd = openAndLock(fname, FileLock.F_WRLCK, true);
+                java.nio.ByteBuffer buff = java.nio.ByteBuffer.allocate(buffSize);
 
-                if (fd == null) {
-                    tsLogger.i18NLogger.warn_objectstore_ShadowingStore_18(fname);
+                buff.put(_redzone);
+                buff.putInt(uidString.length);
+                buff.put(uidString);
+                buff.putInt(imageSize);
+                buff.put(state.buffer(), 0, imageSize);
+                buff.flip();
 
-                    return false;
-                }
+                fname = genPathName(theLog.getName(), tName, ft);
 
-                boolean setLength = !fd.exists();
+                long written;
 
-                try
-                {
-                    ofile = new RandomAccessFile(fd, FILE_MODE);
+                /*
+                 * Only entries in the same log are ordered with respect to each
+                 * other. The offset is allocated here rather than in getLogName so
+                 * that compaction can't move the end of the log in between.
+                 */
 
-                    if (setLength)
+                synchronized (theLog)
+                {
+                    try
                     {
-                        ofile.setLength(_maxFileSize);
+                        fd = openAndLock(fname, FileLock.F_WRLCK, true);
                     }
-                    else
+                    catch (ObjectStoreException e)
                     {
-                        // may have to resize file if we keep updating this transaction info
+                        abandonEntry(theLogEntry);
 
-                        if (theLog.remaining() < buffSize)
-                        {
-                            long size = ofile.length() + buffSize - theLog.remaining();
+                        throw e;
+                    }
 
-                            ofile.setLength(size);
+                    if (fd == null) {
+                        tsLogger.i18NLogger.warn_objectstore_ShadowingStore_18(fname);
 
-                            theLog.resize(size);
-                        }
+                        abandonEntry(theLogEntry);
+
+                        return false;
                     }
 
-                    java.nio.ByteBuffer buff = java.nio.ByteBuffer.allocate(buffSize);
+                    long offset = theLog.append(buffSize);
 
-                    buff.put(_redzone);
-                    buff.putInt(uidString.length);
-                    buff.put(uidString);
-                    buff.putInt(imageSize);
-                    buff.put(state.buffer());
+                    try
+                    {
+                        FileChannel channel = theLog.channel(fd);
+
+                        /*
+                         * May have to grow the file if we keep updating this
+                         * transaction info, or if the log wasn't preallocated,
+                         * e.g., it was compacted or left by a previous run.
+                         */
 
-                    synchronized (_lock)
+                        boolean grown = (offset + buffSize > channel.size());
+
+                        if (grown)
+                            theLog.resize(Math.max(offset + buffSize, _maxFileSize));
+
+                        while (buff.hasRemaining())
+                            channel.write(buff, offset + buff.position());
+
+                        written = theLog.written(grown);
+                    }
+                    catch (FileNotFoundException e)
                     {
-                        ofile.seek(theLogEntry.offset);
+                        theLog.setEnd(offset);
 
-                        ofile.write(buff.array());
+                        abandonEntry(theLogEntry);
+
+                        tsLogger.i18NLogger.warn_objectstore_LogStore_writeFailed(fname, e);
+
+                        throw new ObjectStoreException(
+                                "ShadowingStore::write_state() - write failed to locate file "
+                                        + fname + ": " + e, e);
                     }
-                }
-                catch (SyncFailedException e)
-                {
-                    unlockAndClose(fd, ofile);
+                    catch (IOException e)
+                    {
+                        theLog.setEnd(offset);
 
-                    throw new ObjectStoreException(
-                            "ShadowingStore::write_state() - write failed to sync for "
-                                    + fname, e);
-                }
-                catch (FileNotFoundException e)
-                {
-                    unlockAndClose(fd, ofile);
+                        abandonEntry(theLogEntry);
 
-                    e.printStackTrace();
+                        tsLogger.i18NLogger.warn_objectstore_LogStore_writeFailed(fname, e);
 
-                    throw new ObjectStoreException(
-                            "ShadowingStore::write_state() - write failed to locate file "
-                                    + fname + ": " + e, e);
+                        throw new ObjectStoreException(
+                                "ShadowingStore::write_state() - write failed for "
+                                        + fname + ": " + e, e);
+                    }
                 }
-                catch (IOException e)
-                {
-                    unlockAndClose(fd, ofile);
 
-                    e.printStackTrace();
+                /*
+                 * Sync outside of the lock so that other threads can add their
+                 * entries to the log meanwhile and share the next sync.
+                 */
 
-                    throw new ObjectStoreException(
-                            "ShadowingStore::write_state() - write failed for "
-                                    + fname + ": " + e, e);
-                }
-                finally
+                if (doSync)
                 {
                     try
                     {
-                        if (lock != null)
-                            lock.release();
+                        theLog.sync(written);
                     }
-                    catch (IOException ex)
+                    catch (IOException e)
                     {
-                        ex.printStackTrace();
+                        abandonEntry(theLogEntry);
+
+                        throw new ObjectStoreException(
+                                "ShadowingStore::write_state() - write failed to sync for "
+                                        + fname, e);
                     }
                 }
-            }
 
-            if (!unlockAndClose(fd, ofile)) {
-                tsLogger.i18NLogger.warn_objectstore_ShadowingStore_19(fname);
-            }
+                if (!unlock(fd)) {
+                    tsLogger.i18NLogger.warn_objectstore_ShadowingStore_19(fname);
+                }
 
-            super.addToCache(fname);
+                super.addToCache(fname);
+            }
 
             return true;
         }
@@ -871,12 +1151,24 @@ public class LogStore extends FileSystemStore
            * able to cope with these edge cases.
            */
 
-        TransactionData td = getLogName(u, tn, -1);
+        LogInstance log = findLog(u, tn);
+
+        if (log == null)
+        {
+            /*
+             * Not one of our logs, so it may be in a log left by a previous
+             * run which recovery hasn't looked at yet.
+             */
+
+            recoverLogs(tn);
 
-        if (td == null)
-            throw new ObjectStoreException();
+            log = findLog(u, tn);
+
+            if (log == null)
+                return null;
+        }
 
-        ArrayList<InputObjectState> states = scanLog(td.container.getName(), tn);
+        ArrayList<InputObjectState> states = scanLog(log);
 
         if ((states == null) || (states.size() == 0))
             return null;
@@ -935,6 +1227,10 @@ public class LogStore extends FileSystemStore
 
                 if (!write_state(u, tn, removalState, s))
                     throw new ObjectStoreException();
+
+                // the transaction no longer keeps its log alive
+
+                removeFromLog(u, tn);
             }
             else
                 _purger.addRemovedState(u, tn, s);
@@ -943,16 +1239,16 @@ public class LogStore extends FileSystemStore
         {
             throw new ObjectStoreException(ex.toString(), ex);
         }
+        catch (final ObjectStoreException ex)
+        {
+            throw ex;
+        }
         catch (final Throwable ex)
         {
             ex.printStackTrace();
 
             throw new ObjectStoreException(ex.toString(), ex);
         }
-        finally
-        {
-            removeFromLog(u);
-        }
 
         return true;
     }
@@ -987,6 +1283,8 @@ public class LogStore extends FileSystemStore
 
             if (!write_state(u, tn, removalState, s))
                 throw new ObjectStoreException();
+
+            removeFromLog(u, tn);
         }
         catch (IOException ex)
         {
@@ -1003,8 +1301,22 @@ public class LogStore extends FileSystemStore
 
     boolean truncateLogs (boolean force) throws ObjectStoreException
     {
+        ArrayList<LogInstance> sparseLogs = new ArrayList<LogInstance>();
+        ArrayList<LogInstance> frozenLogs = new ArrayList<LogInstance>();
+        ArrayList<LogInstance> spareLogs = new ArrayList<LogInstance>();
+
         synchronized (_logNames)
         {
+            if (force)
+            {
+                // we are terminating, so the preallocated logs won't be needed
+
+                spareLogs.addAll(_spareLogs.values());
+
+                _spareLogs.clear();
+                _wantedSpareLogs.clear();
+            }
+
             Iterator<LogInstance> iter = _logNames.iterator();
 
             /*
@@ -1014,143 +1326,207 @@ public class LogStore extends FileSystemStore
 
             while (iter.hasNext())
             {
-                boolean delete = false;
-                LogInstance log = null;
+                LogInstance log = iter.next();
 
-                try
-                {
-                    log = iter.next();
+                if (!log.belongsTo(_storeName, null))  // another store's purger looks after it
+                    continue;
 
-                    if (log.isFrozen() || force)
-                        delete = truncateLog(log, force);
-                }
-                catch (final Exception ex)
+                if (log.isFrozen() || force)
                 {
-                    // TODO log
-                }
-
-                if (delete)
-                    iter.remove();
-            }
-        }
+                    if (log.numberOfUsers() == 0)
+                    {
+                        /*
+                         * Every transaction in the log has been removed, so
+                         * the whole log can go without reading it. Nothing
+                         * else can be added to it once it is out of the list.
+                         */
 
-        return true;
-    }
+                        try
+                        {
+                            deleteLog(log);
 
-    /*
-      * Return true if the log needs to be deleted.
-      */
+                            iter.remove();
+                        }
+                        catch (final Exception ex)
+                        {
+                            tsLogger.i18NLogger.warn_objectstore_LogStore_deleteLog(log.getName(), ex);
+                        }
+                    }
+                    else if (force || log.isSparse())
+                    {
+                        log.freeze();
 
-    private final boolean truncateLog(final LogInstance log, boolean force) throws ObjectStoreException
-    {
-        boolean delete = false;
+                        sparseLogs.add(log);
+                    }
+                    else
+                        frozenLogs.add(log);
+                }
+            }
+        }
 
-        synchronized (_lock)
+        for (LogInstance log : spareLogs)
         {
-            File fd = new File(genPathName(log.getName(), log.getTypeName(), StateStatus.OS_COMMITTED));
-
             try
             {
-                /*
-                     * Create a list of ObjectState entries.
-                     */
-
-                ArrayList<InputObjectState> objectStates = scanLog(log.getName(), log.getTypeName());
-
-                /*
-                     * At this stage we should now have a list of unique
-                     * entries. Write them back to the log. Do this
-                     * atomically! If the list is empty then delete the
-                     * file!
-                     */
+                deleteLog(log);
+            }
+            catch (final Exception ex)
+            {
+                tsLogger.i18NLogger.warn_objectstore_LogStore_deleteLog(log.getName(), ex);
+            }
+        }
+
+        /*
+         * Compact the logs without holding up the other logs.
+         */
+
+        for (LogInstance log : sparseLogs)
+        {
+            try
+            {
+                compactLog(log);
+            }
+            catch (final Exception ex)
+            {
+                tsLogger.i18NLogger.warn_objectstore_LogStore_compactLog(log.getName(), ex);
+            }
+        }
+
+        /*
+         * Entries are rarely added to frozen logs, so don't keep them open.
+         */
 
-                if ((objectStates != null) && (objectStates.size() > 0))
+        for (LogInstance log : frozenLogs)
+        {
+            synchronized (log)
+            {
+                try
                 {
-                    /*
-                          * If we are terminating then we can truncate the log to the
-                          * real size needed to contain the existing entries since we
-                          * will not use it again within another VM except for
-                          * recovery purposes.
-                          */
+                    log.close(doSync);
+                }
+                catch (final IOException ex)
+                {
+                    tsLogger.i18NLogger.warn_objectstore_LogStore_closeLog(log.getName(), ex);
+                }
+            }
+        }
 
-                    String fname = genPathName(log.getName(), log.getTypeName(), StateStatus.OS_UNCOMMITTED);
-                    File fd2 = openAndLock(fname, FileLock.F_WRLCK, true);
-                    RandomAccessFile oFile = new RandomAccessFile(fd2, FILE_MODE);
-                    int size = 0;
+        return true;
+    }
 
-                    oFile.setLength(_maxFileSize);
+    private final void deleteLog (final LogInstance log) throws ObjectStoreException
+    {
+        synchronized (log)
+        {
+            /*
+             * Delete the log if there are no states in it. We could
+             * keep the file around and reuse it, but the advantage of
+             * this is small compared to having to cope with reusing old
+             * log instances.
+             */
 
-                    for (int i = 0; i < objectStates.size(); i++)
-                    {
-                        byte[] uidString = objectStates.get(i).stateUid().stringForm().getBytes(StandardCharsets.UTF_8);
-                        int buffSize = _redzone.length + uidString.length + objectStates.get(i).buffer().length + 8;
-                        java.nio.ByteBuffer buff = java.nio.ByteBuffer.allocate(buffSize);
+            String fname = genPathName(log.getName(), log.getTypeName(), StateStatus.OS_COMMITTED);
 
-                        size += buffSize;
+            try
+            {
+                log.close(false);
+            }
+            catch (final IOException ex)
+            {
+                // we're deleting it anyway
+            }
 
-                        try
-                        {
-                            buff.put(_redzone);
-                            buff.putInt(uidString.length);
-                            buff.put(uidString);
-                            buff.putInt(objectStates.get(i).buffer().length);
-                            buff.put(objectStates.get(i).buffer(),0, objectStates.get(i).buffer().length);
-                        }
-                        catch (final Exception ex)
-                        {
-                            ex.printStackTrace();
+            new File(fname).delete();
 
-                            // TODO log
+            super.removeFromCache(fname, false);
+        }
+    }
 
-                            fd2.delete();
+    /*
+     * Write the entries which are still needed to a shadow of the log and then
+     * replace the log with it. Entries can't be added to this log while we do
+     * so, but they can to any other log.
+     */
 
-                            unlockAndClose(fd2, oFile);
+    private final void compactLog (final LogInstance log) throws ObjectStoreException
+    {
+        synchronized (log)
+        {
+            File fd = new File(genPathName(log.getName(), log.getTypeName(), StateStatus.OS_COMMITTED));
 
-                            throw new ObjectStoreException(ex.toString(), ex);
-                        }
-                    }
+            try
+            {
+                /*
+                     * Create a list of ObjectState entries.
+                     */
 
-                    try
-                    {
-                        if (force)
-                        {
-                            oFile.setLength(size);
+                ArrayList<InputObjectState> objectStates = scanLog(log);
 
-                            log.freeze();
-                        }
+                /*
+                     * The list is empty if the removal entries are there but we
+                     * haven't been told about them yet. Leave the log to be
+                     * deleted when we are.
+                     */
 
-                        fd2.renameTo(fd);
-                    }
-                    catch (final Exception ex)
-                    {
-                        ex.printStackTrace();
+                if (objectStates.size() == 0)
+                    return;
 
-                        // TODO log
+                /*
+                     * At this stage we should now have a list of unique
+                     * entries. Write them back to the log. Do this
+                     * atomically! The log is frozen, so there is no need
+                     * to leave room for new entries.
+                     */
 
-                        throw new ObjectStoreException(ex.toString(), ex);
-                    }
-                    finally
-                    {
-                        unlockAndClose(fd2, oFile);
-                    }
+                int size = 0;
+
+                for (int i = 0; i < objectStates.size(); i++)
+                    size += entrySize(objectStates.get(i));
+
+                java.nio.ByteBuffer buff = java.nio.ByteBuffer.allocate(size);
+
+                for (int i = 0; i < objectStates.size(); i++)
+                {
+                    InputObjectState state = objectStates.get(i);
+                    byte[] uidString = state.stateUid().stringForm().getBytes(StandardCharsets.UTF_8);
+
+                    buff.put(_redzone);
+                    buff.putInt(uidString.length);
+                    buff.put(uidString);
+                    buff.putInt(state.buffer().length);
+                    buff.put(state.buffer(), 0, state.buffer().length);
+                }
+
+                String fname = genPathName(log.getName(), log.getTypeName(), StateStatus.OS_UNCOMMITTED);
+                File fd2 = openAndLock(fname, FileLock.F_WRLCK, true);
+                RandomAccessFile oFile = new RandomAccessFile(fd2, FILE_MODE);
+
+                try
+                {
+                    oFile.setLength(size);
+                    oFile.write(buff.array());
                 }
-                else
+                catch (final IOException ex)
                 {
-                    /*
-                          * Delete the log if there are no states in it. We could
-                          * keep the file around and reuse it, but the advantage of
-                          * this is small compared to having to cope with reusing old
-                          * log instances.
-                          */
+                    unlockAndClose(fd2, oFile);
 
-                    fd.delete();
+                    fd2.delete();
 
-                    /*
-                          * Remember to remove the information from the memory cache.
-                          */
+                    throw ex;
+                }
 
-                    delete = true;
+                unlockAndClose(fd2, oFile);
+
+                log.close(doSync);
+
+                if (!fd2.renameTo(fd))
+                {
+                    fd2.delete();
+
+                    throw new ObjectStoreException("LogStore::compactLog - could not rename " + fname);
                 }
+
+                log.setEnd(size);
             }
             catch (final ObjectStoreException ex)
             {
@@ -1165,24 +1541,94 @@ public class LogStore extends FileSystemStore
                 throw new ObjectStoreException(ex.toString(), ex);
             }
         }
+    }
+
+    /*
+     * Add a log which isn't in current working memory to the index and return
+     * the entries in it which are still needed.
+     */
 
-        return delete;
+    private final ArrayList<InputObjectState> recoverLog (final Uid logName, final String typeName) throws ObjectStoreException
+    {
+        LogInstance log = new LogInstance(logName, _storeName, typeName, 0);
+        ArrayList<InputObjectState> objectStates = scanLog(log);
+
+        synchronized (_logNames)
+        {
+            LogInstance existing = getLog(logName);
+
+            if (existing != null)  // someone else got there first
+                return objectStates;
+
+            if (isSpareLog(logName))  // ours, but not in use yet
+                return objectStates;
+
+            for (int i = 0; i < objectStates.size(); i++)
+            {
+                InputObjectState state = objectStates.get(i);
+
+                log.addTxId(state.stateUid(), entrySize(state));
+            }
+
+            log.resize(log.end());
+
+            // we never add new transactions to a log from a previous run
+
+            log.freeze();
+
+            _logNames.add(log);
+        }
+
+        return objectStates;
     }
 
-    private final ArrayList<InputObjectState> scanLog (final Uid logName, final String typeName) throws ObjectStoreException
+    private final void recoverLogs (final String typeName) throws ObjectStoreException
+    {
+        InputObjectState logs = new InputObjectState();
+
+        if (!super.allObjUids(typeName, logs, StateStatus.OS_UNKNOWN))
+            return;
+
+        try
+        {
+            Uid logName = UidHelper.unpackFrom(logs);
+
+            while (logName.notEquals(Uid.nullUid()))
+            {
+                if (getLog(logName) == null)
+                    recoverLog(logName, typeName);
+
+                logName = UidHelper.unpackFrom(logs);
+            }
+        }
+        catch (final IOException ex)
+        {
+            throw new ObjectStoreException(ex.toString(), ex);
+        }
+    }
+
+    private final ArrayList<InputObjectState> scanLog (final LogInstance log) throws ObjectStoreException
     {
         /*
            * Make sure no new entries can be created while we scan.
            */
 
-        synchronized (_lock)
+        synchronized (log)
         {
             try
             {
-                String fname = genPathName(logName, typeName, StateStatus.OS_COMMITTED);
+                String fname = genPathName(log.getName(), log.getTypeName(), StateStatus.OS_COMMITTED);
                 File fd = openAndLock(fname, FileLock.F_WRLCK, true);
-                RandomAccessFile iFile = new RandomAccessFile(fd, FILE_MODE);
-                // iFile.getChannel().lock();
+
+                if (!fd.exists())
+                {
+                    unlock(fd);
+
+                    return new ArrayList<InputObjectState>();
+                }
+
+                long length = fd.length();
+                DataInputStream iFile = new DataInputStream(new BufferedInputStream(new FileInputStream(fd)));
 
                 try
                 {
@@ -1191,14 +1637,12 @@ public class LogStore extends FileSystemStore
                           */
 
                     ArrayList<InputObjectState> objectStates = new ArrayList<InputObjectState>();
+                    long position = 0;
+                    byte[] buff = new byte[_redzone.length];
 
-                    iFile.seek(0); // make sure we're at the start
-
-                    while (iFile.getFilePointer() < iFile.length())
+                    while (position + buff.length + 8 <= length)
                     {
-                        byte[] buff = new byte[_redzone.length];
-
-                        iFile.read(buff);
+                        iFile.readFully(buff);
 
                         if (!redzoneProtected(buff))
                         {
@@ -1214,15 +1658,27 @@ public class LogStore extends FileSystemStore
                         else
                         {
                             int uidSize = iFile.readInt();
+
+                            // an entry that was only partly written is the end too
+
+                            if ((uidSize < 0) || (position + buff.length + 8 + uidSize > length))
+                                break;
+
                             byte[] uidString = new byte[uidSize];
 
-                            iFile.read(uidString);
+                            iFile.readFully(uidString);
 
                             Uid txId = new Uid(new String(uidString, StandardCharsets.UTF_8));
                             int imageSize = iFile.readInt();
+
+                            if ((imageSize < 0) || (position + buff.length + 8 + uidSize + imageSize > length))
+                                break;
+
                             byte[] imageState = new byte[imageSize];
 
-                            iFile.read(imageState);
+                            iFile.readFully(imageState);
+
+                            position += buff.length + 8 + uidSize + imageSize;
 
                             try
                             {
@@ -1240,9 +1696,17 @@ public class LogStore extends FileSystemStore
                         }
                     }
 
-                    unlockAndClose(fd, iFile);
+                    /*
+                          * New entries go straight after the last complete one.
+                          */
+
+                    log.setEnd(position);
+
+                    iFile.close();
                     iFile = null;
 
+                    unlock(fd);
+
                     /*
                           * At this stage we now have a list of ObjectState entries.
                           * Now we need to go through and prune the list. This is
@@ -1288,28 +1752,34 @@ public class LogStore extends FileSystemStore
                         objectStates.removeAll(deletedLogs);
 
                         deleteEntries(objectStates, deletedLogs);
+                    }
 
-                        /*
-                               * At this stage we should only have entries that refer
-                               * to in-flight transactions. Go through the list and
-                               * remove N-1 references for each transaction id.
-                               */
+                    /*
+                           * At this stage we should only have entries that refer
+                           * to in-flight transactions. Go through the list and
+                           * remove N-1 references for each transaction id.
+                           */
 
-                        pruneEntries(objectStates);
+                    pruneEntries(objectStates);
 
-                        /*
-                               * Now return the list of committed entries.
-                               */
+                    /*
+                           * Now return the list of committed entries.
+                           */
 
-                        return objectStates;
-                    }
-                    else
-                        return objectStates;
+                    return objectStates;
+                }
+                catch (final EOFException ex)
+                {
+                    throw new ObjectStoreException(ex.toString(), ex);
                 }
                 finally
                 {
                     if (iFile != null)
-                        unlockAndClose(fd, iFile);
+                    {
+                        iFile.close();
+
+                        unlock(fd);
+                    }
                 }
             }
             catch (final ObjectStoreException ex)
@@ -1327,6 +1797,11 @@ public class LogStore extends FileSystemStore
         }
     }
 
+    private final int entrySize (final InputObjectState state)
+    {
+        return _redzone.length + state.stateUid().stringForm().getBytes(StandardCharsets.UTF_8).length + state.buffer().length + 8;
+    }
+
     private final boolean redzoneProtected(final byte[] buff)
     {
         for (int i = 0; i < _redzone.length; i++)
@@ -1385,10 +1860,8 @@ public class LogStore extends FileSystemStore
       *
       * We always add a new entry to the log even if one already exists.
       *
-      * Because normally we are writing to the log we pass in the size that we need to
-      * accommodate. However, during recovery we need to read the state yet still
-      * need the log name. So if we pass a size of -1 this signifies only to
-      * return the log data and not allocate space for a new instance.
+      * We pass in the size that we need to accommodate. Reads use findLog instead
+      * so that they don't allocate space for a new instance.
       */
 
     private final TransactionData getLogName (Uid txid, String tName, long size)
@@ -1412,12 +1885,9 @@ public class LogStore extends FileSystemStore
             {
                 entry = (LogInstance) iter.next();
 
-                if (entry.present(txid))
+                if (entry.belongsTo(_storeName, tName) && entry.present(txid))
                 {
-                    if (size == -1) // we are reading only
-                        return entry.getTxId(txid);
-                    else
-                        return entry.addTxId(txid, size);
+                    return entry.addTxId(txid, size);
                 }
             }
 
@@ -1434,10 +1904,13 @@ public class LogStore extends FileSystemStore
             {
                 entry = (LogInstance) iter.next();
 
-                if (!entry.isFrozen())
+                if (!entry.isFrozen() && entry.belongsTo(_storeName, tName))
                 {
                     if (entry.remaining() > size)
                     {
+                        if (entry.remaining() - size < _maxFileSize / 2)
+                            wantSpareLog(tName);
+
                         return entry.addTxId(txid, size);
                     }
                     else
@@ -1457,42 +1930,196 @@ public class LogStore extends FileSystemStore
                 }
             }
 
-            // if we get here, then we need to create a new log
+            /*
+             * If we get here, then we need a new log. Use the one the purger
+             * has preallocated if there is one. If not, the file grows as
+             * entries are written to it.
+             */
+
+            entry = _spareLogs.remove(tName);
+
+            if (entry == null)
+                entry = new LogInstance(_storeName, tName, _maxFileSize);
 
-            entry = new LogInstance(tName, _maxFileSize);
             _logNames.add(entry);
 
             return entry.addTxId(txid, size);
         }
     }
 
-    private final void removeFromLog(Uid txid)
+    /*
+     * Called once the removal entry for the transaction is in the log. When a
+     * frozen log has no transactions left the purger can delete it.
+     */
+
+    private final void removeFromLog(Uid txid, String tName)
     {
-        if (_synchronousRemoval)
+        synchronized (_logNames)
         {
-            synchronized (_logNames)
+            Iterator<LogInstance> iter = _logNames.iterator();
+            LogInstance entry = null;
+
+            while (iter.hasNext())
             {
-                Iterator<LogInstance> iter = _logNames.iterator();
-                LogInstance entry = null;
+                entry = (LogInstance) iter.next();
 
-                while (iter.hasNext())
+                if (entry.belongsTo(_storeName, tName) && entry.removeTxId(txid))
                 {
-                    entry = (LogInstance) iter.next();
+                    if (entry.isFrozen() && (entry.numberOfUsers() == 0))
+                        _purger.trigger();
 
-                    if (entry.present(txid))
-                    {
-                        //entry.removeTxId(txid);
-                        break;
-                    }
+                    break;
                 }
             }
         }
     }
 
-    private static Object _lock = new Object();
+    /*
+     * Called when an entry added by getLogName could not be written. Only a
+     * transaction which had no earlier entry in the log leaves it; otherwise
+     * the earlier entry is still needed and the log must be kept.
+     */
+
+    private final void abandonEntry(TransactionData entry)
+    {
+        synchronized (_logNames)
+        {
+            LogInstance log = entry.container;
+
+            if (log.restoreTxId(entry) && log.isFrozen() && (log.numberOfUsers() == 0))
+                _purger.trigger();
+        }
+    }
+
+    private final LogInstance findLog(Uid txid, String tName)
+    {
+        synchronized (_logNames)
+        {
+            for (LogInstance entry : _logNames)
+            {
+                if (entry.belongsTo(_storeName, tName) && entry.present(txid))
+                    return entry;
+            }
+
+            return null;
+        }
+    }
+
+    /*
+     * Ask the purger to preallocate the next log for the type. Called with
+     * the lock on _logNames held.
+     */
+
+    private final void wantSpareLog(String tName)
+    {
+        if (!_spareLogs.containsKey(tName) && _wantedSpareLogs.add(tName))
+            _purger.trigger();
+    }
+
+    private final boolean isSpareLog(Uid logName)
+    {
+        synchronized (_logNames)
+        {
+            for (LogInstance entry : _spareLogs.values())
+            {
+                if (entry.getName().equals(logName))
+                    return true;
+            }
+
+            return false;
+        }
+    }
+
+    /*
+     * Called by the purger. Creates and fills the log files that have been
+     * asked for, without holding the lock on _logNames, and then makes them
+     * available to getLogName. If the store is not needed any longer before
+     * a spare log is used, then it is deleted along with the other logs.
+     */
+
+    final void prepareSpareLogs()
+    {
+        ArrayList<String> types;
+
+        synchronized (_logNames)
+        {
+            if (_wantedSpareLogs.isEmpty())
+                return;
+
+            types = new ArrayList<String>(_wantedSpareLogs);
+        }
+
+        for (String tName : types)
+        {
+            LogInstance log = new LogInstance(_storeName, tName, _maxFileSize);
+            File fd = null;
+
+            try
+            {
+                fd = new File(genPathName(log.getName(), tName, StateStatus.OS_COMMITTED));
+
+                fd.getParentFile().mkdirs();
+
+                log.preallocate(fd, _maxFileSize, doSync);
+            }
+            catch (final Exception ex)
+            {
+                // getLogName will use a log which grows as it goes
+                tsLogger.i18NLogger.warn_objectstore_LogStore_preallocate(fd == null ? log.getName().stringForm() : fd.getPath(), ex);
+
+                try
+                {
+                    log.close(false);
+                }
+                catch (final IOException e)
+                {
+                }
+
+                if (fd != null)
+                    fd.delete();
+
+                continue;
+            }
+
+            synchronized (_logNames)
+            {
+                _wantedSpareLogs.remove(tName);
+                _spareLogs.put(tName, log);
+            }
+        }
+    }
+
+    private final LogInstance getLog(Uid logName)
+    {
+        synchronized (_logNames)
+        {
+            for (LogInstance entry : _logNames)
+            {
+                if (entry.belongsTo(_storeName, null) && entry.getName().equals(logName))
+                    return entry;
+            }
+
+            return null;
+        }
+    }
+
+    /*
+     * Shared so that all instances using the same store agree on which log
+     * each transaction is in.
+     */
 
     private static ArrayList<LogInstance> _logNames = new ArrayList<LogInstance>();
 
+    /*
+     * Preallocated logs, by type, which are not in _logNames yet. Guarded by
+     * the lock on _logNames.
+     */
+
+    private final HashMap<String, LogInstance> _spareLogs = new HashMap<String, LogInstance>();
+    private final HashSet<String> _wantedSpareLogs = new HashSet<String>();
+
+    private final String _storeName;
+
     private final long _maxFileSize;
     private final long _purgeTime;
 
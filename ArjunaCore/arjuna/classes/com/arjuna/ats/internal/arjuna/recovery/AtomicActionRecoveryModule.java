@@ -31,11 +31,20 @@
 
 package com.arjuna.ats.internal.arjuna.recovery ;
 
-import java.util.Enumeration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
 
 import com.arjuna.ats.arjuna.AtomicAction;
 import com.arjuna.ats.arjuna.common.Uid;
+import com.arjuna.ats.arjuna.common.recoveryPropertyManager;
 import com.arjuna.ats.arjuna.coordinator.ActionStatus;
 import com.arjuna.ats.arjuna.exceptions.ObjectStoreException;
 import com.arjuna.ats.arjuna.logging.tsLogger;
@@ -125,13 +134,10 @@ public class AtomicActionRecoveryModule implements RecoveryModule
 
     }
 
-   private void doRecoverTransaction( Uid recoverUid )
+   private void doRecoverTransaction( Uid recoverUid, int theStatus )
    {
       boolean commitThisTransaction = true ;
 
-      // Retrieve the transaction status from its original process.
-      int theStatus = _transactionStatusConnectionMgr.getTransactionStatus( _transactionType, recoverUid ) ;
-
       boolean inFlight = isTransactionInMidFlight( theStatus ) ;
 
       String Status = ActionStatus.stringForm( theStatus ) ;
@@ -241,26 +247,144 @@ public class AtomicActionRecoveryModule implements RecoveryModule
        // to recover anything but if this module is still configured it would 
        // get an NPE
         if (_transactionUidVector != null) {
-            // Process the Vector of transaction Uids
-            Enumeration transactionUidEnum = _transactionUidVector.elements();
-
-            while (transactionUidEnum.hasMoreElements()) {
-                Uid currentUid = (Uid) transactionUidEnum.nextElement();
-
-                try {
-                    if (_recoveryStore.currentState(currentUid,
-                            _transactionType) != StateStatus.OS_UNKNOWN) {
-                        doRecoverTransaction(currentUid);
-                    }
-                } catch (ObjectStoreException ex) {
-                    tsLogger.i18NLogger
-                            .warn_recovery_AtomicActionRecoveryModule_3(
-                                    currentUid, ex);
+            final Uid[] found = (Uid[]) _transactionUidVector.toArray(new Uid[_transactionUidVector.size()]);
+            final boolean[] present = new boolean[found.length];
+            ExecutorService executor = newRecoveryExecutor(found.length);
+
+            try {
+                // Skip the transactions which have finished since the first pass.
+                forEach(executor, found.length, i -> present[i] = isPresent(found[i]));
+
+                List<Uid> toRecover = new ArrayList<Uid>();
+
+                for (int i = 0; i < found.length; i++) {
+                    if (present[i])
+                        toRecover.add(found[i]);
                 }
+
+                // Retrieve the transaction statuses from their original processes,
+                // batched per process rather than one round trip per transaction.
+                final Uid[] uids = toRecover.toArray(new Uid[toRecover.size()]);
+                final int[] statuses = _transactionStatusConnectionMgr.getTransactionStatus(_transactionType, uids);
+
+                forEach(executor, uids.length, i -> doRecoverTransaction(uids[i], statuses[i]));
+            } finally {
+                if (executor != null)
+                    executor.shutdown();
             }
         }
    }
 
+   private boolean isPresent( Uid currentUid )
+   {
+      try
+      {
+         return _recoveryStore.currentState(currentUid, _transactionType) != StateStatus.OS_UNKNOWN;
+      }
+      catch ( ObjectStoreException ex )
+      {
+         tsLogger.i18NLogger.warn_recovery_AtomicActionRecoveryModule_3(currentUid, ex);
+
+         return false;
+      }
+   }
+
+   /**
+    * Each transaction is read, activated and replayed independently of the
+    * others, so when the recovery manager is configured with more than one
+    * scan thread a node which restarts with a large backlog of logs works
+    * through them in parallel. The pool only lives for the scan.
+    *
+    * @return the executor, or null if the transactions are to be recovered
+    * on the calling thread.
+    */
+
+   private static ExecutorService newRecoveryExecutor( int transactions )
+   {
+      int threads = Math.min(recoveryPropertyManager.getRecoveryEnvironmentBean().getRecoveryScanThreads(), transactions);
+
+      if (threads <= 1)
+         return null;
+
+      // run in the class loader context of the recovery module, as the scan thread does
+      final ClassLoader cl = Thread.currentThread().getContextClassLoader();
+      final AtomicInteger count = new AtomicInteger();
+
+      return Executors.newFixedThreadPool(threads, new ThreadFactory()
+      {
+         public Thread newThread( Runnable r )
+         {
+            Thread t = new Thread(r, "Recovery Scan-" + count.incrementAndGet());
+
+            t.setDaemon(true);
+            t.setContextClassLoader(cl);
+
+            return t;
+         }
+      });
+   }
+
+   /**
+    * Run the task for each index, waiting for all of them to finish.
+    */
+
+   private static void forEach( ExecutorService executor, int count, final IntConsumer task )
+   {
+      if (executor == null)
+      {
+         for (int i = 0; i < count; i++)
+            task.accept(i);
+
+         return;
+      }
+
+      List<Future<?>> futures = new ArrayList<Future<?>>(count);
+
+      for (int i = 0; i < count; i++)
+      {
+         final int index = i;
+
+         futures.add(executor.submit(() -> task.accept(index)));
+      }
+
+      boolean interrupted = false;
+      RuntimeException failure = null;
+
+      for (Future<?> future : futures)
+      {
+         for (;;)
+         {
+            try
+            {
+               future.get();
+
+               break;
+            }
+            catch ( InterruptedException ex )
+            {
+               // the scan has to finish the work it started
+               interrupted = true;
+            }
+            catch ( ExecutionException ex )
+            {
+               if (ex.getCause() instanceof Error)
+                  throw (Error) ex.getCause();
+
+               if (failure == null)
+                  failure = (ex.getCause() instanceof RuntimeException) ? (RuntimeException) ex.getCause() : new RuntimeException(ex.getCause());
+
+               break;
+            }
+         }
+      }
+
+      if (interrupted)
+         Thread.currentThread().interrupt();
+
+      if (failure != null)
+         throw failure;
+   }
+
    // 'type' within the Object Store for AtomicActions.
    private String _transactionType = new AtomicAction().type() ;
 
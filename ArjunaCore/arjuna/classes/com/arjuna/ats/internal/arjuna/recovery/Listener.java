@@ -33,11 +33,16 @@ package com.arjuna.ats.internal.arjuna.recovery;
 
 import java.io.IOException;
 import java.io.InterruptedIOException;
+import java.lang.reflect.Method;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.arjuna.ats.arjuna.common.recoveryPropertyManager;
 import com.arjuna.ats.arjuna.logging.tsLogger;
@@ -64,6 +69,7 @@ public class Listener extends Thread
 	  _listener_socket.setSoTimeout( _listener_socket_timeout_in_msecs );
 
        connections = new LinkedList<Socket>();
+       _connection_executor = newConnectionExecutor(_listener_port);
    }
    
    /**
@@ -85,6 +91,7 @@ public class Listener extends Thread
 	  _listener_socket.setSoTimeout( _listener_socket_timeout_in_msecs );
 
       connections = new LinkedList<Socket>();
+      _connection_executor = newConnectionExecutor(_listener_port);
    }
 
    /*
@@ -139,7 +146,8 @@ public class Listener extends Thread
                          _listener_service.getClass().getName());
              }
 
-            new_conn.start();
+            // run on a pooled (or, where the JDK supports it, virtual) thread rather than a new thread per connection
+            _connection_executor.execute(new_conn);
             }
          }
          catch ( final InterruptedIOException iioex )
@@ -254,6 +262,34 @@ public class Listener extends Thread
        } catch (InterruptedException ie) {
            tsLogger.logger.debug("Waiting to ensure the listener thread has exited was interrupted", ie);
        }
+
+       // all connections are closed by now so their tasks have finished or are finishing
+       _connection_executor.shutdown();
+   }
+
+   /**
+    * Connections are served by virtual threads when the JDK has them and by a
+    * cached pool of daemon threads otherwise.
+    */
+   private static ExecutorService newConnectionExecutor(final int port)
+   {
+       try {
+           Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+
+           return (ExecutorService) m.invoke(null);
+       } catch (ReflectiveOperationException e) {
+           final AtomicInteger count = new AtomicInteger();
+
+           return Executors.newCachedThreadPool(new ThreadFactory() {
+               public Thread newThread(Runnable r) {
+                   Thread t = new Thread(r, "Listener:" + port + ".Connection-" + count.incrementAndGet());
+
+                   t.setDaemon(true);
+
+                   return t;
+               }
+           });
+       }
    }
 
    private synchronized boolean stopRequested()
@@ -276,6 +312,9 @@ public class Listener extends Thread
 
     private List<Socket> connections;
 
+    // Runs the Connection of each accepted socket.
+    private final ExecutorService _connection_executor;
+
     private static final boolean setTimeout = recoveryPropertyManager.getRecoveryEnvironmentBean().isTimeoutSocket();
 
 }
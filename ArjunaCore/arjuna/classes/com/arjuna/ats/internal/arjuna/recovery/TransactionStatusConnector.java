@@ -38,10 +38,12 @@ import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.net.Socket;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 import com.arjuna.ats.arjuna.common.Uid;
 import com.arjuna.ats.arjuna.coordinator.ActionStatus;
 import com.arjuna.ats.arjuna.logging.tsLogger;
+import com.arjuna.ats.arjuna.recovery.ActionStatusService;
 import com.arjuna.ats.arjuna.utils.Utility;
 
 public class TransactionStatusConnector
@@ -164,6 +166,82 @@ public class TransactionStatusConnector
       return status ;
    }
    
+   /**
+    * Retrieve the status of several transactions of the same type. When the
+    * TransactionStatusManager supports it the Uids are sent in batches, each
+    * answered in a single round trip, otherwise they are asked for one by one.
+    *
+    * @return the statuses, in the order of the Uids.
+    */
+
+   public int[] getTransactionStatus ( String transaction_type, Uid[] tranUids )
+   {
+      int[] status = new int[ tranUids.length ] ;
+
+      Arrays.fill( status, ActionStatus.INVALID ) ;
+
+      if ( ! _dead && ! _tsmFound )
+      {
+         _tsmFound = recreateTransactionStatusManagerItem() ;
+
+         if ( _tsmFound )
+         {
+            _tsmFound = establishConnection() ;
+         }
+      }
+
+      if ( _tsmFound && _batchSupported )
+      {
+         for ( int start = 0 ; start < tranUids.length ; start += _max_batch_size )
+         {
+            int end = Math.min( tranUids.length, start + _max_batch_size ) ;
+
+            if ( ! getBatchStatus( transaction_type, tranUids, start, end, status ) )
+               break ;
+         }
+      }
+      else
+      {
+         for ( int i = 0 ; i < tranUids.length ; i++ )
+            status[i] = getTransactionStatus( transaction_type, tranUids[i] ) ;
+      }
+
+      return status ;
+   }
+
+   private boolean getBatchStatus ( String transaction_type, Uid[] tranUids, int start, int end, int[] status )
+   {
+      try
+      {
+         _to_server.println ( ActionStatusService.BATCH_REQUEST + ( end - start ) ) ;
+
+         for ( int i = start ; i < end ; i++ )
+         {
+            _to_server.println ( transaction_type ) ;
+            _to_server.println ( tranUids[i].toString() ) ;
+         }
+
+         _to_server.flush() ;
+
+         for ( int i = start ; i < end ; i++ )
+         {
+            status[i] = Integer.parseInt ( _from_server.readLine() ) ;
+         }
+
+         return true ;
+      }
+      catch ( IOException ex ) {
+          tsLogger.i18NLogger.warn_recovery_TransactionStatusConnector_2();
+          _tsmFound = false;
+      }
+      catch ( Exception other ) {
+          tsLogger.i18NLogger.warn_recovery_TransactionStatusConnector_3();
+          _tsmFound = false;
+      }
+
+      return false ;
+   }
+
    /**
     * Assume the Transaction Status Managers' process has died.
     */
@@ -208,8 +286,38 @@ public class TransactionStatusConnector
             {
                if ( ! _testMode )
                {
-                  _to_server.println ( "OK" ) ;
-                  _to_server.flush() ;
+                  if ( _batchRefused )
+                  {
+                     _to_server.println ( "OK" ) ;
+                     _to_server.flush() ;
+                  }
+                  else
+                  {
+                     _to_server.println ( ActionStatusService.BATCH_HANDSHAKE ) ;
+                     _to_server.flush() ;
+
+                     String reply = null ;
+
+                     try
+                     {
+                        reply = _from_server.readLine() ;
+                     }
+                     catch ( IOException ex )
+                     {
+                        // treated as a refusal below
+                     }
+
+                     if ( ! ActionStatusService.BATCH_ACKNOWLEDGEMENT.equals( reply ) )
+                     {
+                        // an older TransactionStatusManager drops the connection, so ask again without batching
+                        _batchRefused = true ;
+                        _connector_socket.close() ;
+
+                        return establishConnection() ;
+                     }
+                  }
+
+                  _batchSupported = ! _batchRefused ;
 
                    tsLogger.i18NLogger.info_recovery_TransactionStatusConnector_4(_pid, serverHost, Integer.toString(serverPort), _connector_socket.toString());
                }
@@ -314,6 +422,14 @@ public class TransactionStatusConnector
    private BufferedReader _from_server;
    private PrintWriter    _to_server;
    
+   // Set once the TransactionStatusManager has acknowledged batched requests,
+   // or has refused them by dropping the connection.
+   private boolean _batchSupported = false ;
+   private boolean _batchRefused = false ;
+
+   // Upper bound on the number of Uids sent in one batched request.
+   private static final int _max_batch_size = 256 ;
+
    // Indicates the TransactionStatusManagers' process does not exist.
    private boolean _dead = false ;
    
@@ -54,14 +54,8 @@ public class ThreadActionData
 	public static BasicAction currentAction ()
 	{
 		ThreadActionData.setup();
-		Deque<BasicAction> txs = _threadList.get();
 
-		if (txs != null && !txs.isEmpty())
-		{
-			return txs.peekFirst();
-		}
-
-		return null;
+		return top(_threadList.get());
 	}
 
 	public static void pushAction (BasicAction a)
@@ -75,19 +69,32 @@ public class ThreadActionData
 	 * current changes.
 	 */
 
+	@SuppressWarnings("unchecked")
 	public static void pushAction (BasicAction a, boolean register)
 	{
-		Deque<BasicAction> txs = _threadList.get();
+		Object current = _threadList.get();
+
+		if (current == null)
+		{
+			/*
+			 * The common case of a thread with a single (top-level) action
+			 * holds the action directly. The stack is only created once
+			 * actions are nested.
+			 */
 
-		if (txs == null)
+			_threadList.set(a);
+		}
+		else if (current instanceof BasicAction)
 		{
-			txs = new ArrayDeque<BasicAction>();
+			Deque<BasicAction> txs = new ArrayDeque<BasicAction>(4);
+
+			txs.push((BasicAction) current);
 			txs.push(a);
 
 			_threadList.set(txs);
 		}
 		else
-			txs.push(a);
+			((Deque<BasicAction>) current).push(a);
 
 		if (register)
                     a.addChildThread(Thread.currentThread());
@@ -158,29 +165,38 @@ public class ThreadActionData
 	 * is not removed from the action.
 	 */
 
+	@SuppressWarnings("unchecked")
 	public static BasicAction popAction (String threadId, boolean unregister)
 			throws NoSuchElementException
 	{
-		Deque<BasicAction> txs = _threadList.get();
+		Object current = _threadList.get();
+		BasicAction a;
+
+		if (current == null)
+			return null;
 
-		if (txs != null)
+		if (current instanceof BasicAction)
 		{
-			BasicAction a = txs.pop();
+			a = (BasicAction) current;
 
-			if (a != null && unregister)
-			{
-				a.removeChildThread(threadId);
-			}
+			_threadList.set(null);
+		}
+		else
+		{
+			Deque<BasicAction> txs = (Deque<BasicAction>) current;
 
-			if (txs.size() == 0)
-			{
-				_threadList.set(null);
-			}
+			a = txs.pop();
 
-			return a;
+			if (txs.size() == 1)
+				_threadList.set(txs.peekFirst());
 		}
 
-		return null;
+		if (a != null && unregister)
+		{
+			a.removeChildThread(threadId);
+		}
+
+		return a;
 	}
 
 	public static void purgeAction (BasicAction act)
@@ -195,6 +211,7 @@ public class ThreadActionData
 		ThreadActionData.purgeAction(act, t, true);
 	}
 
+	@SuppressWarnings("unchecked")
 	public static void purgeAction (BasicAction act, Thread t, boolean unregister)
 			throws NoSuchElementException
 	{
@@ -203,16 +220,23 @@ public class ThreadActionData
 			act.removeChildThread(ThreadUtil.getThreadId(t));
         }
 
-		Deque<BasicAction> txs = _threadList.get();
+		Object current = _threadList.get();
 
-		if (txs != null)
+		if (current instanceof BasicAction)
+		{
+			if (current.equals(act))
+				_threadList.set(null);
+		}
+		else if (current != null)
 		{
+			Deque<BasicAction> txs = (Deque<BasicAction>) current;
+
 			txs.remove(act);
 
 			if (txs.size() == 0)
-			{
 				_threadList.set(null);
-			}
+			else if (txs.size() == 1)
+				_threadList.set(txs.peekFirst());
 		}
 	}
 
@@ -226,23 +250,35 @@ public class ThreadActionData
 		purgeActions(t, true);
 	}
 
+	@SuppressWarnings("unchecked")
 	public static void purgeActions (Thread t, boolean unregister)
 	{
-		Deque<BasicAction> txs = _threadList.get();
+		Object current = _threadList.get();
+
+		if (current == null)
+			return;
 
 		_threadList.set(null);
 
-		if (txs != null)
+		if (unregister)
 		{
-			if (unregister)
+			String threadId = ThreadUtil.getThreadId(t);
+
+			if (current instanceof BasicAction)
+			{
+				((BasicAction) current).removeChildThread(threadId);
+			}
+			else
 			{
+				Deque<BasicAction> txs = (Deque<BasicAction>) current;
+
 				while (!txs.isEmpty())
 				{
 					BasicAction act = txs.pop();
 
 					if (act != null)
                     {
-						act.removeChildThread(ThreadUtil.getThreadId(t));
+						act.removeChildThread(threadId);
                     }
 				}
 			}
@@ -283,6 +319,9 @@ public class ThreadActionData
 
 	private static void setup ()
 	{
+		if (_threadSetups.isEmpty())
+			return;
+
 		for (int i = 0; i < _threadSetups.size(); i++)
 		{
 			ThreadSetup s = _threadSetups.get(i);
@@ -292,7 +331,24 @@ public class ThreadActionData
 		}
 	}
 
-	private static ThreadLocal<Deque<BasicAction>> _threadList = new ThreadLocal<Deque<BasicAction>>();
+	@SuppressWarnings("unchecked")
+	private static BasicAction top (Object current)
+	{
+		if (current instanceof BasicAction)
+			return (BasicAction) current;
+
+		if (current != null)
+			return ((Deque<BasicAction>) current).peekFirst();
+
+		return null;
+	}
+
+	/*
+	 * Either null, the only action associated with the thread, or a Deque
+	 * of actions (innermost first) when they are nested.
+	 */
+
+	private static final ThreadLocal<Object> _threadList = new ThreadLocal<Object>();
 
 	private static ArrayList<ThreadSetup> _threadSetups = new ArrayList<ThreadSetup>();
 
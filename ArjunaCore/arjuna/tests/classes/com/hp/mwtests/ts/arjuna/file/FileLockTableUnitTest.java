@@ -0,0 +1,77 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2019, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+
+package com.hp.mwtests.ts.arjuna.file;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.Test;
+
+import com.arjuna.ats.arjuna.utils.FileLock;
+import com.arjuna.ats.internal.arjuna.objectstore.FileLockTable;
+
+public class FileLockTableUnitTest
+{
+    @Test
+    public void testReadersShareWritersExclude () throws Exception
+    {
+        FileLockTable table = FileLockTable.getInstance();
+        File file = tempFile();
+
+        assertTrue(table.lock(file, FileLock.F_RDLCK, false));
+        assertTrue(table.lock(file, FileLock.F_RDLCK, false));
+        assertFalse(table.lock(file, FileLock.F_WRLCK, false));
+
+        assertTrue(table.unlock(file));
+        assertFalse(table.lock(file, FileLock.F_WRLCK, false));
+        assertTrue(table.unlock(file));
+        assertFalse(table.isLocked(file));
+
+        assertTrue(table.lock(file, FileLock.F_WRLCK, false));
+        assertFalse(table.lock(file, FileLock.F_WRLCK, false));
+        assertFalse(table.lock(file, FileLock.F_RDLCK, false));
+        assertTrue(table.unlock(file));
+
+        assertFalse(table.unlock(file));
+    }
+
+    @Test
+    public void testCreate () throws Exception
+    {
+        FileLockTable table = FileLockTable.getInstance();
+        File file = tempFile();
+
+        assertTrue(file.delete());
+        assertTrue(table.lock(file, FileLock.F_WRLCK, true));
+        assertTrue(file.exists());
+        assertFalse(new File(file.getPath() + "_lock").exists());
+        assertTrue(table.unlock(file));
+    }
+
+    private static File tempFile () throws Exception
+    {
+        File file = File.createTempFile("FileLockTableUnitTest", null);
+
+        file.deleteOnExit();
+
+        return file;
+    }
+}
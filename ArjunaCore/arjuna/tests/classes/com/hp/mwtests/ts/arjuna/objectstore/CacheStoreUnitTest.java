@@ -0,0 +1,146 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2019, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+
+package com.hp.mwtests.ts.arjuna.objectstore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.arjuna.ats.arjuna.common.ObjectStoreEnvironmentBean;
+import com.arjuna.ats.arjuna.common.Uid;
+import com.arjuna.ats.arjuna.objectstore.StateStatus;
+import com.arjuna.ats.arjuna.state.InputObjectState;
+import com.arjuna.ats.arjuna.state.OutputObjectState;
+import com.arjuna.ats.internal.arjuna.objectstore.CacheStore;
+
+public class CacheStoreUnitTest
+{
+    private static final String TYPE = "/StateManager/CacheStoreUnitTest";
+
+    @Test
+    public void testCoalescedWrites () throws Exception
+    {
+        CacheStore store = new CacheStore(new ObjectStoreEnvironmentBean());
+        Uid u = new Uid();
+        long coalesced = CacheStore.getCoalescedWork();
+
+        for (int i = 0; i < 10; i++)
+            assertTrue(store.write_committed(u, TYPE, state(i)));
+
+        assertTrue(CacheStore.getCoalescedWork() - coalesced >= 9);
+        assertEquals(9, store.read_committed(u, TYPE).unpackInt());
+
+        store.sync();
+
+        assertEquals(0, CacheStore.getPendingWork());
+        assertEquals(0, CacheStore.getPendingBytes());
+        assertEquals(9, store.read_committed(u, TYPE).unpackInt());
+
+        assertTrue(store.remove_committed(u, TYPE));
+
+        store.sync();
+
+        assertEquals(StateStatus.OS_UNKNOWN, store.currentState(u, TYPE));
+    }
+
+    @Test
+    public void testCommitShadow () throws Exception
+    {
+        CacheStore store = new CacheStore(new ObjectStoreEnvironmentBean());
+        Uid u = new Uid();
+
+        assertTrue(store.write_committed(u, TYPE, state(1)));
+        assertTrue(store.write_uncommitted(u, TYPE, state(2)));
+        assertTrue(store.commit_state(u, TYPE));
+
+        // the committed shadow is visible before it reaches the disk
+        assertEquals(2, store.read_committed(u, TYPE).unpackInt());
+
+        store.sync();
+
+        assertEquals(2, store.read_committed(u, TYPE).unpackInt());
+        assertNull(store.read_uncommitted(u, TYPE));
+
+        assertTrue(store.remove_committed(u, TYPE));
+
+        store.sync();
+    }
+
+    @Test
+    public void testRemovePendingWrite () throws Exception
+    {
+        CacheStore store = new CacheStore(new ObjectStoreEnvironmentBean());
+        Uid u = new Uid();
+
+        assertTrue(store.write_committed(u, TYPE, state(1)));
+        assertNotNull(store.read_committed(u, TYPE));
+
+        // the write never reaches the disk
+        assertTrue(store.remove_committed(u, TYPE));
+        assertNull(store.read_committed(u, TYPE));
+
+        store.sync();
+
+        assertEquals(StateStatus.OS_UNKNOWN, store.currentState(u, TYPE));
+    }
+
+    @Test
+    public void testBoundedCache () throws Exception
+    {
+        ObjectStoreEnvironmentBean bean = new ObjectStoreEnvironmentBean();
+        CacheStore store = new CacheStore(bean);
+        Uid[] uids = new Uid[bean.getCacheStoreWorkItems() * 2];
+
+        for (int i = 0; i < uids.length; i++)
+        {
+            uids[i] = new Uid();
+
+            assertTrue(store.write_committed(uids[i], TYPE, state(i)));
+        }
+
+        // writers wait for the workers rather than growing the cache
+        assertTrue(CacheStore.getMaximumPendingWork() <= bean.getCacheStoreWorkItems());
+
+        store.sync();
+
+        for (int i = 0; i < uids.length; i++)
+        {
+            InputObjectState s = store.read_committed(uids[i], TYPE);
+
+            assertEquals(i, s.unpackInt());
+            assertTrue(store.remove_committed(uids[i], TYPE));
+        }
+
+        store.sync();
+
+        assertEquals(0, CacheStore.getPendingWork());
+    }
+
+    private static OutputObjectState state (int value) throws Exception
+    {
+        OutputObjectState state = new OutputObjectState();
+
+        state.packInt(value);
+
+        return state;
+    }
+}
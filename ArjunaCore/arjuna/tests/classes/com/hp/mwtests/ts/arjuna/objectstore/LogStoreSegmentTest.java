@@ -0,0 +1,397 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2019, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+
+package com.hp.mwtests.ts.arjuna.objectstore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.arjuna.ats.arjuna.common.ObjectStoreEnvironmentBean;
+import com.arjuna.ats.arjuna.common.Uid;
+import com.arjuna.ats.arjuna.common.arjPropertyManager;
+import com.arjuna.ats.arjuna.exceptions.ObjectStoreException;
+import com.arjuna.ats.arjuna.objectstore.StateStatus;
+import com.arjuna.ats.arjuna.state.InputObjectState;
+import com.arjuna.ats.arjuna.state.OutputObjectState;
+import com.arjuna.ats.internal.arjuna.common.UidHelper;
+import com.arjuna.ats.internal.arjuna.objectstore.LogStore;
+import com.hp.mwtests.ts.arjuna.resources.TestBase;
+
+public class LogStoreSegmentTest extends TestBase
+{
+    private static final String TYPE = "/StateManager/BasicAction/TwoPhaseCoordinator/AtomicAction/LogStoreSegmentTest";
+
+    private static final long LOG_SIZE = 1024;
+
+    @Test
+    public void testCompaction () throws Exception
+    {
+        LogStore store = new LogStore(bean("LogStoreSegmentTestA"));
+        Uid[] ids = new Uid[100];
+
+        for (int i = 0; i < ids.length; i++)
+        {
+            ids[i] = new Uid();
+
+            assertTrue(store.write_committed(ids[i], TYPE, state(i)));
+        }
+
+        for (int i = 0; i < ids.length; i++)
+        {
+            if (i % 5 != 0)
+                assertTrue(store.remove_committed(ids[i], TYPE));
+        }
+
+        // wait for the purger to delete or compact the frozen logs
+
+        List<File> logs = logs("LogStoreSegmentTestA");
+
+        for (int i = 0; (i < 100) && (size(logs) >= logs.size() * LOG_SIZE); i++)
+        {
+            Thread.sleep(100);
+
+            logs = logs("LogStoreSegmentTestA");
+        }
+
+        assertTrue(logs.size() > 1);
+        assertTrue(size(logs) < logs.size() * LOG_SIZE);
+
+        // the entries which weren't removed must have survived
+
+        assertEquals(ids.length / 5, count(store));
+
+        for (int i = 0; i < ids.length; i += 5)
+            assertEquals(i, store.read_committed(ids[i], TYPE).unpackInt());
+
+        for (int i = 0; i < ids.length; i += 5)
+            assertTrue(store.remove_committed(ids[i], TYPE));
+
+        assertEquals(0, count(store));
+    }
+
+    @Test
+    public void testRecoveredLog () throws Exception
+    {
+        LogStore store = new LogStore(bean("LogStoreSegmentTestB"));
+        Uid[] ids = { new Uid(), new Uid(), new Uid() };
+
+        for (int i = 0; i < ids.length; i++)
+            assertTrue(store.write_committed(ids[i], TYPE, state(i)));
+
+        assertTrue(store.remove_committed(ids[0], TYPE));
+
+        /*
+         * A store which didn't write the log has to find the entries in it
+         * as if it had been left by a previous run.
+         */
+
+        List<File> logs = logs("LogStoreSegmentTestB");
+
+        assertEquals(1, logs.size());
+
+        File copy = new File(new File(logs.get(0).getPath().replace("LogStoreSegmentTestB", "LogStoreSegmentTestC")).getParentFile(),
+                new Uid().fileStringForm());
+
+        copy.getParentFile().mkdirs();
+
+        Files.copy(logs.get(0).toPath(), copy.toPath());
+
+        // the transactions are finished as far as the original store is concerned
+
+        assertTrue(store.remove_committed(ids[1], TYPE));
+        assertTrue(store.remove_committed(ids[2], TYPE));
+
+        LogStore recovered = new LogStore(bean("LogStoreSegmentTestC"));
+
+        assertNull(recovered.read_committed(ids[0], TYPE));
+
+        InputObjectState s = recovered.read_committed(ids[1], TYPE);
+
+        assertNotNull(s);
+        assertEquals(1, s.unpackInt());
+        assertEquals(2, count(recovered));
+
+        // once everything in the recovered log has gone so does the log
+
+        assertTrue(recovered.remove_committed(ids[1], TYPE));
+        assertTrue(recovered.remove_committed(ids[2], TYPE));
+
+        for (int i = 0; (i < 100) && copy.exists(); i++)
+            Thread.sleep(100);
+
+        assertTrue(!copy.exists());
+        assertEquals(0, count(recovered));
+    }
+
+    @Test
+    public void testConcurrentWrites () throws Exception
+    {
+        ObjectStoreEnvironmentBean bean = bean("LogStoreSegmentTestD");
+
+        bean.setTxLogSize(64 * 1024);
+
+        final LogStore store = new LogStore(bean);
+        final Uid[][] ids = new Uid[10][50];
+        Thread[] threads = new Thread[ids.length];
+
+        for (int i = 0; i < threads.length; i++)
+        {
+            final Uid[] mine = ids[i];
+
+            threads[i] = new Thread()
+            {
+                public void run ()
+                {
+                    try
+                    {
+                        for (int j = 0; j < mine.length; j++)
+                        {
+                            mine[j] = new Uid();
+
+                            if (!store.write_committed(mine[j], TYPE, state(j)))
+                                mine[j] = null;
+                        }
+                    }
+                    catch (final Exception ex)
+                    {
+                        ex.printStackTrace();
+                    }
+                }
+            };
+
+            threads[i].start();
+        }
+
+        for (int i = 0; i < threads.length; i++)
+            threads[i].join();
+
+        // all of the entries fit in one log
+
+        List<File> logs = logs("LogStoreSegmentTestD");
+
+        assertEquals(1, logs.size());
+        assertTrue(logs.get(0).length() <= 64 * 1024);
+        assertEquals(ids.length * ids[0].length, count(store));
+
+        for (int i = 0; i < ids.length; i++)
+        {
+            for (int j = 0; j < ids[i].length; j++)
+            {
+                assertNotNull(ids[i][j]);
+                assertEquals(j, store.read_committed(ids[i][j], TYPE).unpackInt());
+            }
+        }
+    }
+
+    @Test
+    public void testSpareLog () throws Exception
+    {
+        LogStore store = new LogStore(bean("LogStoreSegmentTestF"));
+        List<Uid> ids = new ArrayList<Uid>();
+
+        // once the first log is half full the purger preallocates the next one
+
+        while (size(logs("LogStoreSegmentTestF")) <= LOG_SIZE / 2)
+            ids.add(write(store, ids.size()));
+
+        List<File> logs = logs("LogStoreSegmentTestF");
+
+        for (int i = 0; (i < 100) && (logs.size() < 2); i++)
+        {
+            Thread.sleep(100);
+
+            logs = logs("LogStoreSegmentTestF");
+        }
+
+        assertEquals(2, logs.size());
+
+        File spare = (logs.get(0).length() < LOG_SIZE) ? logs.get(1) : logs.get(0);
+
+        assertEquals(LOG_SIZE, spare.length());
+        assertEquals(0, firstByte(spare));
+
+        // when the first log is full the entries go into the spare, which doesn't grow
+
+        for (int i = 0; (i < 100) && (firstByte(spare) == 0); i++)
+            ids.add(write(store, ids.size()));
+
+        assertTrue(firstByte(spare) != 0);
+        assertEquals(LOG_SIZE, spare.length());
+        assertEquals(ids.size(), count(store));
+
+        for (int i = 0; i < ids.size(); i++)
+            assertEquals(i, store.read_committed(ids.get(i), TYPE).unpackInt());
+
+        for (Uid id : ids)
+            assertTrue(store.remove_committed(id, TYPE));
+
+        assertEquals(0, count(store));
+    }
+
+    @Test
+    public void testFailedUpdate () throws Exception
+    {
+        final boolean[] fail = { false };
+
+        LogStore store = new LogStore(bean("LogStoreSegmentTestE"))
+        {
+            protected File openAndLock (String fname, int lmode, boolean create) throws ObjectStoreException
+            {
+                if (fail[0])
+                    throw new ObjectStoreException("LogStoreSegmentTest");
+
+                return super.openAndLock(fname, lmode, create);
+            }
+        };
+        Uid updated = new Uid();
+        Uid added = new Uid();
+
+        assertTrue(store.write_committed(updated, TYPE, state(1)));
+
+        fail[0] = true;
+
+        for (Uid id : new Uid[] { updated, added })
+        {
+            try
+            {
+                store.write_committed(id, TYPE, state(2));
+
+                fail("write_committed should have failed");
+            }
+            catch (final ObjectStoreException ex)
+            {
+            }
+        }
+
+        fail[0] = false;
+
+        // the earlier entry for the updated transaction is still the live one
+
+        assertEquals(1, count(store));
+        assertEquals(1, store.read_committed(updated, TYPE).unpackInt());
+        assertNull(store.read_committed(added, TYPE));
+
+        assertTrue(store.remove_committed(updated, TYPE));
+        assertEquals(0, count(store));
+    }
+
+    private static ObjectStoreEnvironmentBean bean (String root)
+    {
+        ObjectStoreEnvironmentBean bean = new ObjectStoreEnvironmentBean();
+
+        bean.setObjectStoreDir(arjPropertyManager.getObjectStoreEnvironmentBean().getObjectStoreDir());
+        bean.setLocalOSRoot(root);
+        bean.setTxLogSize(LOG_SIZE);
+        bean.setPurgeTime(100);
+        bean.setSynchronousRemoval(true);
+
+        return bean;
+    }
+
+    private static List<File> logs (String root)
+    {
+        List<File> logs = new ArrayList<File>();
+
+        find(new File(arjPropertyManager.getObjectStoreEnvironmentBean().getObjectStoreDir()), File.separator + root + File.separator, logs);
+
+        return logs;
+    }
+
+    private static void find (File dir, String root, List<File> logs)
+    {
+        File[] contents = dir.listFiles();
+
+        if (contents == null)
+            return;
+
+        for (File f : contents)
+        {
+            if (f.isDirectory())
+                find(f, root, logs);
+            else if (f.getPath().contains(root))
+                logs.add(f);
+        }
+    }
+
+    private static long size (List<File> logs)
+    {
+        long size = 0;
+
+        for (File f : logs)
+            size += f.length();
+
+        return size;
+    }
+
+    private static int count (LogStore store) throws Exception
+    {
+        InputObjectState ios = new InputObjectState();
+        int count = 0;
+
+        assertTrue(store.allObjUids(TYPE, ios, StateStatus.OS_UNKNOWN));
+
+        while (UidHelper.unpackFrom(ios).notEquals(Uid.nullUid()))
+            count++;
+
+        return count;
+    }
+
+    private static Uid write (LogStore store, int value) throws Exception
+    {
+        Uid id = new Uid();
+
+        assertTrue(store.write_committed(id, TYPE, state(value)));
+
+        return id;
+    }
+
+    private static int firstByte (File log) throws Exception
+    {
+        InputStream in = new FileInputStream(log);
+
+        try
+        {
+            return in.read();
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    private static OutputObjectState state (int value) throws Exception
+    {
+        OutputObjectState state = new OutputObjectState();
+
+        state.packInt(value);
+
+        return state;
+    }
+}
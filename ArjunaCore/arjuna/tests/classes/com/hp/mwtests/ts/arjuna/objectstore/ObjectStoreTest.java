@@ -263,6 +263,44 @@ public class ObjectStoreTest
         }
     }
     
+    @Test
+    public void testHashedStoreBuckets () throws Exception
+    {
+        ObjectStoreEnvironmentBean objectStoreEnvironmentBean = new ObjectStoreEnvironmentBean();
+        objectStoreEnvironmentBean.setLocalOSRoot( "buckets" );
+
+        HashedStore as = new HashedStore(objectStoreEnvironmentBean);
+
+        final OutputObjectState buff = new OutputObjectState();
+        final String tn = "/StateManager/junit";
+        final int buckets = arjPropertyManager.getObjectStoreEnvironmentBean().getHashedDirectories();
+
+        buff.packString("foo");
+
+        Uid u = new Uid();
+
+        assertTrue(as.write_committed(u, tn, buff));
+
+        File typeDir = new File(as.locateStore(as.getStoreName()) + "StateManager" + File.separator + "junit");
+
+        for (int i = 0; i < buckets; i++)
+            assertTrue(new File(typeDir, "#" + i + "#").isDirectory());
+
+        File state = new File(new File(typeDir, "#" + (u.hashCode() % buckets) + "#"), u.fileStringForm());
+
+        assertTrue(state.exists());
+        assertTrue(as.read_committed(u, tn) != null);
+        assertTrue(as.remove_committed(u, tn));
+
+        // a new store instance over the same directory finds the buckets again
+
+        new File(typeDir, "#0#").delete();
+
+        new HashedStore(objectStoreEnvironmentBean);
+
+        assertTrue(new File(typeDir, "#0#").isDirectory());
+    }
+
     //@Test
     public void testCacheStore () throws Exception
     {
@@ -0,0 +1,101 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.hp.mwtests.ts.arjuna.performance;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.arjuna.ats.arjuna.common.ObjectStoreEnvironmentBean;
+import com.arjuna.ats.arjuna.common.Uid;
+import com.arjuna.ats.arjuna.state.InputObjectState;
+import com.arjuna.ats.arjuna.state.OutputObjectState;
+import com.arjuna.ats.internal.arjuna.objectstore.ShadowingStore;
+
+/**
+ * Compare the cost of a write/read/remove cycle on a ShadowingStore when file
+ * locks are kept in lock files on disk and in memory.
+ */
+public class FileLockPerformanceUnitTest
+{
+    private static final String TYPE = "/StateManager/LockManager/FileLockPerformanceUnitTest";
+
+    private static final int WARMUP = 200;
+
+    private static final int ITERATIONS = 2000;
+
+    @Test
+    public void testLockFiles() throws Exception
+    {
+        report("lock files", run(false));
+    }
+
+    @Test
+    public void testInMemoryLocks() throws Exception
+    {
+        report("in-memory locks", run(true));
+    }
+
+    private static long run(boolean inMemory) throws Exception
+    {
+        ObjectStoreEnvironmentBean bean = new ObjectStoreEnvironmentBean();
+
+        bean.setObjectStoreDir(System.getProperty("java.io.tmpdir") + File.separator + "FileLockPerformanceUnitTest");
+        bean.setObjectStoreSync(false); // measure the locking, not the disk
+        bean.setInMemoryFileLocking(inMemory);
+
+        ShadowingStore store = new ShadowingStore(bean);
+        OutputObjectState state = new OutputObjectState();
+
+        state.packBytes(new byte[1024]);
+
+        for (int i = 0; i < WARMUP; i++)
+            cycle(store, state);
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < ITERATIONS; i++)
+            cycle(store, state);
+
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private static void cycle(ShadowingStore store, OutputObjectState state) throws Exception
+    {
+        Uid u = new Uid();
+
+        Assert.assertTrue(store.write_committed(u, TYPE, state));
+
+        InputObjectState read = store.read_committed(u, TYPE);
+
+        Assert.assertNotNull(read);
+        Assert.assertTrue(store.remove_committed(u, TYPE));
+    }
+
+    private static void report(String mode, long millis)
+    {
+        System.out.println(mode + ": time for " + ITERATIONS + " write/read/remove cycles is " + millis);
+    }
+}
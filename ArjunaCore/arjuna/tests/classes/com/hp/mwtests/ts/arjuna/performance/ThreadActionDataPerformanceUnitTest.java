@@ -0,0 +1,170 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.hp.mwtests.ts.arjuna.performance;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.arjuna.ats.arjuna.AtomicAction;
+import com.arjuna.ats.arjuna.coordinator.BasicAction;
+
+import io.narayana.perf.Measurement;
+import io.narayana.perf.WorkerWorkload;
+
+/**
+ * Measure the cost of asking for the current action, as done by every
+ * BasicAction.Current() and TransactionManager.getTransaction() call, on
+ * platform threads and (when the JDK supports them) on virtual threads.
+ */
+public class ThreadActionDataPerformanceUnitTest
+{
+    private static final int LOOKUPS_PER_TRANSACTION = 20;
+
+    @Test
+    public void testPlatformThreads()
+    {
+        int warmUpCount = 1000;
+        int numberOfThreads = 10;
+        int batchSize = 1000;
+        int numberOfTransactions = numberOfThreads * batchSize * 10;
+
+        Measurement measurement = new Measurement.Builder(getClass().getName() + "_testPlatformThreads")
+                .maxTestTime(0L).numberOfCalls(numberOfTransactions)
+                .numberOfThreads(numberOfThreads).batchSize(batchSize)
+                .numberOfWarmupCalls(warmUpCount).build().measure(worker);
+
+        System.out.printf("%s%n", measurement.getInfo());
+        Assert.assertEquals(0, measurement.getNumberOfErrors());
+        Assert.assertFalse(measurement.getInfo(), measurement.shouldFail());
+
+        System.out.println("platform threads: time for " + numberOfTransactions + " transactions with "
+                + LOOKUPS_PER_TRANSACTION + " lookups each is " + measurement.getTotalMillis());
+    }
+
+    @Test
+    public void testVirtualThreads() throws Exception
+    {
+        ExecutorService executor = newVirtualThreadPerTaskExecutor();
+
+        if (executor == null)
+        {
+            System.out.println("virtual threads are not supported by this JDK, skipping");
+
+            return;
+        }
+
+        int numberOfThreads = 10000;
+        int batchSize = 10;
+        AtomicInteger errors = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>(numberOfThreads);
+
+        long start = System.nanoTime();
+
+        try
+        {
+            for (int i = 0; i < numberOfThreads; i++)
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < batchSize; j++)
+                    {
+                        if (!runTransaction())
+                            errors.incrementAndGet();
+                    }
+                }));
+
+            for (Future<?> f : futures)
+                f.get();
+        }
+        finally
+        {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+
+        long timeTaken = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        Assert.assertEquals(0, errors.get());
+
+        System.out.println("virtual threads: time for " + (numberOfThreads * batchSize) + " transactions on "
+                + numberOfThreads + " threads with " + LOOKUPS_PER_TRANSACTION + " lookups each is " + timeTaken);
+    }
+
+    private static boolean runTransaction()
+    {
+        AtomicAction A = new AtomicAction();
+        boolean ok = true;
+
+        A.begin();
+
+        for (int i = 0; i < LOOKUPS_PER_TRANSACTION; i++)
+        {
+            if (BasicAction.Current() != A)
+                ok = false;
+        }
+
+        A.commit();
+
+        return ok && BasicAction.Current() == null;
+    }
+
+    /*
+     * The test suite still builds on JDKs without virtual threads.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor()
+    {
+        try
+        {
+            Method m = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+
+            return (ExecutorService) m.invoke(null);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            return null;
+        }
+    }
+
+    WorkerWorkload<Void> worker = new WorkerWorkload<Void>() {
+        @Override
+        public Void doWork(Void context, int batchSize, Measurement<Void> measurement) {
+            for (int i = 0; i < batchSize; i++)
+            {
+                if (!runTransaction())
+                    measurement.incrementErrorCount();
+            }
+
+            return context;
+        }
+
+        @Override
+        public void finishWork(Measurement<Void> measurement) {
+        }
+    };
+}
@@ -33,6 +33,11 @@ package com.hp.mwtests.ts.arjuna.recovery;
 
 import static org.junit.Assert.assertEquals;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+
 import org.junit.Test;
 
 import com.arjuna.ats.arjuna.AtomicAction;
@@ -40,6 +45,7 @@ import com.arjuna.ats.arjuna.common.Uid;
 import com.arjuna.ats.arjuna.coordinator.ActionStatus;
 import com.arjuna.ats.arjuna.coordinator.AddOutcome;
 import com.arjuna.ats.arjuna.recovery.ActionStatusService;
+import com.arjuna.ats.arjuna.utils.Utility;
 
 public class ActionStatusServiceTest
 {
@@ -64,6 +70,38 @@ public class ActionStatusServiceTest
         runTest(crashType, expectedStatus, true);
     }
 
+    @Test
+    public void testBatch() throws Exception {
+        ActionStatusService _test_service = new ActionStatusService();
+        AtomicAction running = new AtomicAction();
+        AtomicAction aborted = new AtomicAction();
+
+        running.begin();
+        aborted.begin();
+        aborted.abort();
+
+        String request = ActionStatusService.BATCH_HANDSHAKE + "\n" +
+                ActionStatusService.BATCH_REQUEST + "2\n" +
+                running.type() + "\n" + running.getSavingUid() + "\n" +
+                aborted.type() + "\n" + aborted.getSavingUid() + "\n" +
+                running.type() + "\n" + running.getSavingUid() + "\n";
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+        _test_service.doWork(new ByteArrayInputStream(request.getBytes()), os);
+
+        BufferedReader in = new BufferedReader(new StringReader(os.toString()));
+
+        assertEquals(Utility.intToHexString(Utility.getpid()), in.readLine());
+        assertEquals(ActionStatusService.BATCH_ACKNOWLEDGEMENT, in.readLine());
+        assertEquals(Integer.toString(ActionStatus.RUNNING), in.readLine());
+        assertEquals(Integer.toString(ActionStatus.ABORTED), in.readLine());
+        // a single request still works on a batch connection
+        assertEquals(Integer.toString(ActionStatus.RUNNING), in.readLine());
+        assertEquals(null, in.readLine());
+
+        running.abort();
+    }
+
     public void runTest(int crashType, String[] expectedStatus, boolean doAbort)
     {
         ActionStatusService _test_service = new ActionStatusService();
@@ -20,8 +20,22 @@
  */
 package com.hp.mwtests.ts.arjuna.recovery;
 
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.CyclicBarrier;
+
 import org.junit.Test;
 
+import com.arjuna.ats.arjuna.AtomicAction;
+import com.arjuna.ats.arjuna.common.RecoveryEnvironmentBean;
+import com.arjuna.ats.arjuna.common.Uid;
+import com.arjuna.ats.arjuna.common.recoveryPropertyManager;
+import com.arjuna.ats.arjuna.coordinator.abstractrecord.RecordTypeManager;
+import com.arjuna.ats.arjuna.objectstore.RecoveryStore;
+import com.arjuna.ats.arjuna.objectstore.StateStatus;
+import com.arjuna.ats.arjuna.objectstore.StoreManager;
+import com.arjuna.ats.arjuna.state.OutputObjectState;
+import com.arjuna.ats.internal.arjuna.common.UidHelper;
 import com.arjuna.ats.internal.arjuna.recovery.AtomicActionRecoveryModule;
 
 public class RecoveryModuleUnitTest
@@ -34,4 +48,91 @@ public class RecoveryModuleUnitTest
         aarm.periodicWorkFirstPass();
         aarm.periodicWorkSecondPass();
     }
+
+    @Test
+    public void testParallelScan () throws Exception
+    {
+        RecoveryEnvironmentBean bean = recoveryPropertyManager.getRecoveryEnvironmentBean();
+        RecoveryStore recoveryStore = StoreManager.getRecoveryStore();
+        String tn = new AtomicAction().type();
+        Uid[] uids = new Uid[50];
+        int threads = bean.getRecoveryScanThreads();
+
+        // logs which can't be activated, so recovering them moves them aside
+
+        for (int i = 0; i < uids.length; i++)
+        {
+            OutputObjectState fluff = new OutputObjectState();
+
+            uids[i] = new Uid();
+
+            UidHelper.packInto(uids[i], fluff);
+
+            recoveryStore.write_committed(uids[i], tn, fluff);
+        }
+
+        bean.setRecoveryScanThreads(4);
+
+        try
+        {
+            AtomicActionRecoveryModule aarm = new AtomicActionRecoveryModule();
+
+            aarm.periodicWorkFirstPass();
+            aarm.periodicWorkSecondPass();
+        }
+        finally
+        {
+            bean.setRecoveryScanThreads(threads);
+        }
+
+        for (int i = 0; i < uids.length; i++)
+            assertEquals(StateStatus.OS_UNKNOWN, recoveryStore.currentState(uids[i], tn));
+    }
+
+    @Test
+    public void testParallelReplay () throws Exception
+    {
+        RecoveryEnvironmentBean bean = recoveryPropertyManager.getRecoveryEnvironmentBean();
+        RecoveryStore recoveryStore = StoreManager.getRecoveryStore();
+        AtomicAction[] actions = new AtomicAction[8];
+        int threads = bean.getRecoveryScanThreads();
+
+        RecordTypeManager.manager().add(new ReplayRecord.Map());
+
+        // transactions whose participant fails to commit, so their logs are kept for recovery
+
+        for (int i = 0; i < actions.length; i++)
+        {
+            actions[i] = new AtomicAction();
+
+            actions[i].begin();
+            actions[i].add(new ReplayRecord(true));
+            actions[i].commit();
+
+            assertEquals(StateStatus.OS_COMMITTED, recoveryStore.currentState(actions[i].get_uid(), actions[i].type()));
+        }
+
+        ReplayRecord.replayed.set(0);
+        ReplayRecord.barrier = new CyclicBarrier(2);
+
+        bean.setRecoveryScanThreads(4);
+
+        try
+        {
+            AtomicActionRecoveryModule aarm = new AtomicActionRecoveryModule();
+
+            aarm.periodicWorkFirstPass();
+            aarm.periodicWorkSecondPass();
+        }
+        finally
+        {
+            bean.setRecoveryScanThreads(threads);
+        }
+
+        // every participant was committed, which needs two replays running at a time
+        assertEquals(actions.length, ReplayRecord.replayed.get());
+
+        for (int i = 0; i < actions.length; i++)
+            assertEquals(StateStatus.OS_UNKNOWN, recoveryStore.currentState(actions[i].get_uid(), actions[i].type()));
+    }
 }
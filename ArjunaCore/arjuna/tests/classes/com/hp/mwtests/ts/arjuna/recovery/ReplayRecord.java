@@ -0,0 +1,178 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2021, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+
+package com.hp.mwtests.ts.arjuna.recovery;
+
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.arjuna.ats.arjuna.common.Uid;
+import com.arjuna.ats.arjuna.coordinator.AbstractRecord;
+import com.arjuna.ats.arjuna.coordinator.RecordType;
+import com.arjuna.ats.arjuna.coordinator.TwoPhaseOutcome;
+import com.arjuna.ats.arjuna.coordinator.abstractrecord.RecordTypeMap;
+import com.arjuna.ats.arjuna.state.InputObjectState;
+import com.arjuna.ats.arjuna.state.OutputObjectState;
+
+/**
+ * A participant which fails to commit when the transaction runs, so the log
+ * is kept, and commits when the recovery manager replays it. The replays meet
+ * at a barrier, so they only finish if the scan replays them concurrently.
+ */
+
+public class ReplayRecord extends AbstractRecord
+{
+    public static class Map implements RecordTypeMap
+    {
+        @SuppressWarnings("unchecked")
+        public Class getRecordClass ()
+        {
+            return ReplayRecord.class;
+        }
+
+        public int getType ()
+        {
+            return RecordType.USER_DEF_FIRST2;
+        }
+    }
+
+    public static final AtomicInteger replayed = new AtomicInteger();
+
+    public static volatile CyclicBarrier barrier;
+
+    public ReplayRecord ()
+    {
+        _fail = false;
+    }
+
+    public ReplayRecord (boolean fail)
+    {
+        super(new Uid());
+
+        _fail = fail;
+    }
+
+    public int typeIs()
+    {
+        return RecordType.USER_DEF_FIRST2;
+    }
+
+    public int nestedAbort()
+    {
+        return TwoPhaseOutcome.FINISH_OK;
+    }
+
+    public int nestedCommit()
+    {
+        return TwoPhaseOutcome.FINISH_ERROR;
+    }
+
+    public int nestedPrepare()
+    {
+        return TwoPhaseOutcome.PREPARE_NOTOK;
+    }
+
+    public int topLevelAbort()
+    {
+        return TwoPhaseOutcome.FINISH_OK;
+    }
+
+    public int topLevelCommit()
+    {
+        if (_fail)
+            return TwoPhaseOutcome.FINISH_ERROR;
+
+        try
+        {
+            barrier.await(10, TimeUnit.SECONDS);
+        }
+        catch (Exception ex)
+        {
+            return TwoPhaseOutcome.FINISH_ERROR;
+        }
+
+        replayed.incrementAndGet();
+
+        return TwoPhaseOutcome.FINISH_OK;
+    }
+
+    public int topLevelPrepare()
+    {
+        return TwoPhaseOutcome.PREPARE_OK;
+    }
+
+    public boolean doSave()
+    {
+        return true;
+    }
+
+    public boolean save_state(OutputObjectState os, int ot)
+    {
+        return super.save_state(os, ot);
+    }
+
+    public boolean restore_state(InputObjectState os, int ot)
+    {
+        return super.restore_state(os, ot);
+    }
+
+    public String type()
+    {
+        return "/StateManager/AbstractRecord/ReplayRecord";
+    }
+
+    public boolean shouldAdd(AbstractRecord a)
+    {
+        return false;
+    }
+
+    public boolean shouldMerge(AbstractRecord a)
+    {
+        return false;
+    }
+
+    public boolean shouldReplace(AbstractRecord a)
+    {
+        return false;
+    }
+
+    public boolean shouldAlter(AbstractRecord a)
+    {
+        return false;
+    }
+
+    public void merge(AbstractRecord a)
+    {
+    }
+
+    public void alter(AbstractRecord a)
+    {
+    }
+
+    public Object value()
+    {
+        return null;
+    }
+
+    public void setValue(Object o)
+    {
+    }
+
+    private final boolean _fail;
+}
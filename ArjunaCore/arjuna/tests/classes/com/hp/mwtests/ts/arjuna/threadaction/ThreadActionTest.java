@@ -32,6 +32,7 @@ package com.hp.mwtests.ts.arjuna.threadaction;
  */
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
@@ -109,4 +110,38 @@ public class ThreadActionTest
         
         ThreadActionData.popAction(Thread.currentThread().getName());
     }
+
+    @Test
+    public void testNesting ()
+    {
+        AtomicAction A = new AtomicAction();
+        AtomicAction B = new AtomicAction();
+        AtomicAction C = new AtomicAction();
+
+        ThreadActionData.pushAction(A, false);
+
+        assertEquals(A, ThreadActionData.currentAction());
+
+        ThreadActionData.pushAction(B, false);
+        ThreadActionData.pushAction(C, false);
+
+        assertEquals(C, ThreadActionData.currentAction());
+
+        ThreadActionData.purgeAction(B, Thread.currentThread(), false);
+
+        assertEquals(C, ThreadActionData.popAction(false));
+        assertEquals(A, ThreadActionData.currentAction());
+
+        ThreadActionData.pushAction(B, false);
+
+        assertEquals(B, ThreadActionData.popAction(false));
+        assertEquals(A, ThreadActionData.popAction(false));
+        assertNull(ThreadActionData.currentAction());
+        assertNull(ThreadActionData.popAction(false));
+
+        ThreadActionData.pushAction(A, false);
+        ThreadActionData.purgeAction(A, Thread.currentThread(), false);
+
+        assertNull(ThreadActionData.currentAction());
+    }
 }
@@ -26,6 +26,10 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -38,8 +42,11 @@ import com.arjuna.ats.arjuna.coordinator.ActionStatus;
 import com.arjuna.ats.arjuna.coordinator.RecordType;
 import com.arjuna.ats.arjuna.coordinator.abstractrecord.RecordTypeManager;
 import com.arjuna.ats.arjuna.coordinator.abstractrecord.RecordTypeMap;
+import com.arjuna.ats.arjuna.objectstore.RecoveryStore;
+import com.arjuna.ats.arjuna.objectstore.StoreManager;
 import com.arjuna.ats.arjuna.recovery.RecoveryDriver;
 import com.arjuna.ats.arjuna.recovery.RecoveryManager;
+import com.arjuna.ats.arjuna.state.OutputObjectState;
 import com.arjuna.ats.arjuna.tools.osb.mbean.ActionBean;
 import com.arjuna.ats.arjuna.tools.osb.mbean.LogRecordWrapper;
 import com.arjuna.ats.arjuna.tools.osb.mbean.OSEntryBean;
@@ -235,6 +242,44 @@ public class ObjStoreBrowserTest {
 		osb.stop();
 	}
 
+	@Test
+	public void pagedQueryTest() throws Exception {
+		ObjStoreBrowser osb = createObjStoreBrowser();
+		RecoveryStore store = StoreManager.getRecoveryStore();
+		String type = "/StateManager/PagedQueryTest";
+		Uid[] uids = new Uid[5];
+
+		for (int i = 0; i < uids.length; i++) {
+			uids[i] = new Uid();
+			assertTrue(store.write_committed(uids[i], type, new OutputObjectState()));
+		}
+
+		osb.start();
+		osb.probe();
+
+		// records of an unhandled type are queryable but are not exposed as MBeans
+		assertNull(osb.findUid(uids[0]));
+		assertEquals(uids.length, osb.countUids(type));
+		assertTrue(Arrays.asList(osb.listTypes()).contains(ObjStoreBrowser.canonicalType(type)));
+
+		Set<String> paged = new HashSet<String>();
+
+		for (int start = 0; start < uids.length; start += 2)
+			paged.addAll(Arrays.asList(osb.listUids(type, start, 2)));
+
+		assertEquals(uids.length, paged.size());
+		assertEquals(0, osb.listUids(type, uids.length, 2).length);
+
+		for (Uid uid : uids) {
+			assertTrue(paged.contains(uid.stringForm()));
+			assertTrue(store.remove_committed(uid, type));
+		}
+
+		assertEquals(0, osb.countUids(type));
+
+		osb.stop();
+	}
+
 	// define an MBean interface for use in the next test
 	public interface NotAnotherMBean extends ObjStoreItemMBean {}
 
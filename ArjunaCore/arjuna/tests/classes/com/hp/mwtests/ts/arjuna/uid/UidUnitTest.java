@@ -20,7 +20,9 @@
  */
 package com.hp.mwtests.ts.arjuna.uid;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -132,6 +134,25 @@ public class UidUnitTest
         assertTrue(u1.equals(u2));
     }
 
+    @Test
+    public void testCachedForms () throws Exception
+    {
+        Uid u1 = new Uid();
+
+        assertSame(u1.stringForm(), u1.stringForm());
+        assertSame(u1.fileStringForm(), u1.fileStringForm());
+        assertEquals(u1.stringForm().replace(':', '_'), u1.fileStringForm());
+        assertEquals(Uid.UID_SIZE, u1.getBytes().length);
+
+        Uid u2 = new Uid(u1.getBytes());
+
+        assertTrue(u1.equals(u2));
+        assertEquals(u1.stringForm(), u2.stringForm());
+        assertEquals(u1.fileStringForm(), new Uid(u1.getBytes()).fileStringForm());
+        assertArrayEquals(u1.getBytes(), u2.getBytes());
+        assertEquals(u1.stringForm(), new Uid(u1.stringForm()).stringForm());
+    }
+
     @Test
     public void testMaxMinUid () throws Exception
     {
@@ -229,6 +229,10 @@ public interface txojI18NLogger {
 	@LogMessage(level = WARN)
 	public void warn_LockManager_14(@Cause() Throwable arg0);
 
+	@Message(id = 15053, value = "STM InvocationHandler could not create a snapshot of {0}, reverting to locked reads", format = MESSAGE_FORMAT)
+	@LogMessage(level = WARN)
+	public void warn_InvocationHandler_snapshot(String type, @Cause() Throwable arg1);
+
     /*
         Allocate new messages directly above this notice.
           - id: use the next id number in sequence. Don't reuse ids.
@@ -0,0 +1,192 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.narayana.jta.jms;
+
+import com.arjuna.ats.jta.logging.jtaLogger;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+import javax.jms.XAConnectionFactory;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Proxy connection factory to wrap around provided {@link XAConnectionFactory} which pools XA connections and sessions.
+ * <p>
+ * Connections and sessions are used in exactly the same way as with {@link ConnectionFactoryProxy}: XA resources are
+ * enlisted and delisted by {@link ConnectionProxy} and {@link SessionProxy} through the {@link TransactionHelper}. The
+ * only difference is that closing a connection or a session, which inside a transaction happens in
+ * {@link ConnectionClosingSynchronization#afterCompletion(int)} and
+ * {@link SessionClosingSynchronization#afterCompletion(int)}, returns it to the pool instead of closing it with the
+ * broker.
+ */
+public class PooledConnectionFactoryProxy implements ConnectionFactory {
+
+    public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 8;
+
+    public static final int DEFAULT_MAX_IDLE_SESSIONS = 16;
+
+    private final XAConnectionFactory xaConnectionFactory;
+
+    private final TransactionHelper transactionHelper;
+
+    private final int maxIdleConnections;
+
+    private final int maxIdleSessions;
+
+    private final XAConnectionPoolMetrics metrics = new XAConnectionPoolMetrics();
+
+    private final XAConnectionPool defaultPool;
+
+    private final Map<Credentials, XAConnectionPool> pools = new ConcurrentHashMap<>();
+
+    /**
+     * @param xaConnectionFactory factory to get XA connection instances, not null.
+     * @param transactionHelper utility to make transaction resources registration easier.
+     */
+    public PooledConnectionFactoryProxy(XAConnectionFactory xaConnectionFactory, TransactionHelper transactionHelper) {
+        this(xaConnectionFactory, transactionHelper, DEFAULT_MAX_IDLE_CONNECTIONS, DEFAULT_MAX_IDLE_SESSIONS);
+    }
+
+    /**
+     * @param xaConnectionFactory factory to get XA connection instances, not null.
+     * @param transactionHelper utility to make transaction resources registration easier.
+     * @param maxIdleConnections maximum number of connections kept open while not in use, per set of credentials.
+     * @param maxIdleSessions maximum number of XA sessions kept open per connection while not in use.
+     */
+    public PooledConnectionFactoryProxy(XAConnectionFactory xaConnectionFactory, TransactionHelper transactionHelper,
+            int maxIdleConnections, int maxIdleSessions) {
+        this.xaConnectionFactory = xaConnectionFactory;
+        this.transactionHelper = transactionHelper;
+        this.maxIdleConnections = maxIdleConnections;
+        this.maxIdleSessions = maxIdleSessions;
+        this.defaultPool = new XAConnectionPool(xaConnectionFactory, null, null, maxIdleConnections, maxIdleSessions,
+                metrics);
+    }
+
+    /**
+     * Get XA connection from the pool and wrap it with {@link ConnectionProxy}.
+     *
+     * @return XA connection wrapped with {@link ConnectionProxy}.
+     * @throws JMSException if failure occurred creating XA connection.
+     */
+    @Override
+    public Connection createConnection() throws JMSException {
+        return createConnection(defaultPool);
+    }
+
+    /**
+     * Get XA connection created with the given credentials from the pool and wrap it with {@link ConnectionProxy}.
+     *
+     * @param userName
+     * @param password
+     * @return XA connection wrapped with {@link ConnectionProxy}.
+     * @throws JMSException if failure occurred creating XA connection.
+     */
+    @Override
+    public Connection createConnection(String userName, String password) throws JMSException {
+        XAConnectionPool pool = pools.computeIfAbsent(new Credentials(userName, password),
+                k -> new XAConnectionPool(xaConnectionFactory, userName, password, maxIdleConnections, maxIdleSessions,
+                        metrics));
+
+        return createConnection(pool);
+    }
+
+    /**
+     * @return counters describing the usage of the pooled connections and sessions.
+     */
+    public XAConnectionPoolMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Close all idle connections. Connections which are in use are closed once they are returned.
+     */
+    public void close() {
+        defaultPool.close();
+
+        for (XAConnectionPool pool : pools.values()) {
+            pool.close();
+        }
+    }
+
+    private Connection createConnection(XAConnectionPool pool) throws JMSException {
+        Connection connection = new ConnectionProxy(pool.getConnection(), transactionHelper);
+
+        if (jtaLogger.logger.isTraceEnabled()) {
+            jtaLogger.logger.trace("Created new proxied pooled connection: " + connection);
+        }
+
+        return connection;
+    }
+
+    /**
+     * Key of the pool for a set of credentials. The password is only kept as a digest.
+     */
+    private static final class Credentials {
+
+        private final String userName;
+
+        private final byte[] passwordDigest;
+
+        private Credentials(String userName, String password) {
+            this.userName = userName;
+            this.passwordDigest = password == null ? null : digest(password);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof Credentials)) {
+                return false;
+            }
+
+            Credentials other = (Credentials) o;
+
+            return Objects.equals(userName, other.userName) && Arrays.equals(passwordDigest, other.passwordDigest);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Objects.hashCode(userName) + Arrays.hashCode(passwordDigest);
+        }
+
+        private static byte[] digest(String password) {
+            try {
+                return MessageDigest.getInstance("SHA-256").digest(password.getBytes(StandardCharsets.UTF_8));
+            } catch (NoSuchAlgorithmException e) {
+                // every Java platform is required to support SHA-256
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,321 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.narayana.jta.jms;
+
+import com.arjuna.ats.jta.logging.jtaLogger;
+
+import javax.jms.ConnectionConsumer;
+import javax.jms.ConnectionMetaData;
+import javax.jms.Destination;
+import javax.jms.ExceptionListener;
+import javax.jms.JMSException;
+import javax.jms.ServerSessionPool;
+import javax.jms.Session;
+import javax.jms.Topic;
+import javax.jms.XAConnection;
+import javax.jms.XASession;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Physical XA connection owned by {@link XAConnectionPool} together with the XA sessions which were created with it and
+ * are currently not in use.
+ * <p>
+ * Users never see this class directly. Each time the connection is taken from the pool a new lease is handed out, so
+ * that a stale reference held by a previous user cannot affect the current one.
+ */
+final class PooledXAConnection {
+
+    private final XAConnectionPool pool;
+
+    private final XAConnection xaConnection;
+
+    private final Deque<XASession> idleSessions = new ArrayDeque<>();
+
+    private volatile ExceptionListener exceptionListener;
+
+    private volatile boolean broken;
+
+    private boolean destroyed;
+
+    PooledXAConnection(XAConnectionPool pool, XAConnection xaConnection) throws JMSException {
+        this.pool = pool;
+        this.xaConnection = xaConnection;
+
+        xaConnection.setExceptionListener(e -> {
+            // Connection failed, don't give it or its sessions to anyone else
+            broken = true;
+
+            ExceptionListener listener = exceptionListener;
+
+            if (listener != null) {
+                listener.onException(e);
+            }
+        });
+    }
+
+    XAConnection lease() {
+        return new Lease();
+    }
+
+    boolean isBroken() {
+        return broken;
+    }
+
+    /**
+     * Take an idle XA session of this connection, or create a new one if none is available.
+     */
+    XASession borrowSession() throws JMSException {
+        synchronized (idleSessions) {
+            XASession xaSession = idleSessions.pollFirst();
+
+            if (xaSession != null) {
+                pool.getMetrics().sessionReused();
+                return xaSession;
+            }
+        }
+
+        XASession xaSession = xaConnection.createXASession();
+        pool.getMetrics().sessionCreated();
+
+        if (jtaLogger.logger.isTraceEnabled()) {
+            jtaLogger.logger.trace("Created new pooled session: " + xaSession + " with connection " + xaConnection);
+        }
+
+        return xaSession;
+    }
+
+    /**
+     * Put an XA session back to the idle sessions of this connection. The session is closed instead if the connection
+     * has failed or if there are already enough idle sessions.
+     */
+    void releaseSession(XASession xaSession) {
+        synchronized (idleSessions) {
+            if (!broken && !destroyed && idleSessions.size() < pool.getMaxIdleSessions()) {
+                idleSessions.addFirst(xaSession);
+                pool.getMetrics().sessionReleased();
+                return;
+            }
+        }
+
+        discardSession(xaSession);
+    }
+
+    /**
+     * Close an XA session of this connection which must not be reused.
+     */
+    void discardSession(XASession xaSession) {
+        pool.getMetrics().sessionDestroyed();
+
+        try {
+            xaSession.close();
+        } catch (JMSException e) {
+            jtaLogger.i18NLogger.warn_failed_to_close_jms_session(xaSession.toString(), e);
+        }
+    }
+
+    /**
+     * Close the physical connection and all of its idle sessions.
+     */
+    void destroy() {
+        synchronized (idleSessions) {
+            destroyed = true;
+            pool.getMetrics().idleSessionsDestroyed(idleSessions.size());
+            idleSessions.clear();
+        }
+
+        if (jtaLogger.logger.isTraceEnabled()) {
+            jtaLogger.logger.trace("Closing pooled connection " + xaConnection);
+        }
+
+        // Closing the connection also closes its sessions
+        try {
+            xaConnection.close();
+        } catch (JMSException e) {
+            jtaLogger.i18NLogger.warn_failed_to_close_jms_connection(xaConnection.toString(), e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PooledXAConnection{xaConnection=" + xaConnection + ", broken=" + broken + "}";
+    }
+
+    /**
+     * Connection handed out to a single user of the pool. Closing it returns the physical connection to the pool.
+     */
+    private final class Lease implements XAConnection {
+
+        private final List<PooledXASession> sessions = new ArrayList<>();
+
+        private boolean clientIDSet;
+
+        private boolean sessionsNotPooled;
+
+        private boolean closed;
+
+        /**
+         * Get a pooled XA session. Closing the session (normally done by {@link SessionClosingSynchronization} after
+         * the transaction has completed) returns it to the pool.
+         */
+        @Override
+        public XASession createXASession() throws JMSException {
+            PooledXASession session;
+
+            synchronized (this) {
+                checkClosed();
+                session = new PooledXASession(PooledXAConnection.this, borrowSession(), this::forget);
+                sessions.add(session);
+            }
+
+            return session;
+        }
+
+        /**
+         * Sessions which are not used with XA are not pooled. Since they can only be closed by closing the physical
+         * connection, the connection is not returned to the pool once such a session was created.
+         */
+        @Override
+        public Session createSession(boolean transacted, int acknowledgeMode) throws JMSException {
+            synchronized (this) {
+                checkClosed();
+                sessionsNotPooled = true;
+            }
+
+            return xaConnection.createSession(transacted, acknowledgeMode);
+        }
+
+        /**
+         * Close all sessions created with this lease and return the connection to the pool. A connection with a client ID
+         * or with sessions which are not pooled cannot be shared, so it is closed instead.
+         */
+        @Override
+        public void close() throws JMSException {
+            List<PooledXASession> toClose;
+
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+
+                closed = true;
+                toClose = new ArrayList<>(sessions);
+                sessions.clear();
+            }
+
+            exceptionListener = null;
+
+            for (PooledXASession session : toClose) {
+                session.close();
+            }
+
+            if (clientIDSet || sessionsNotPooled) {
+                broken = true;
+            } else if (!broken) {
+                try {
+                    xaConnection.stop();
+                } catch (JMSException e) {
+                    broken = true;
+                }
+            }
+
+            pool.release(PooledXAConnection.this);
+        }
+
+        @Override
+        public String getClientID() throws JMSException {
+            checkClosed();
+            return xaConnection.getClientID();
+        }
+
+        @Override
+        public void setClientID(String clientID) throws JMSException {
+            checkClosed();
+            xaConnection.setClientID(clientID);
+            clientIDSet = true;
+        }
+
+        @Override
+        public ConnectionMetaData getMetaData() throws JMSException {
+            checkClosed();
+            return xaConnection.getMetaData();
+        }
+
+        @Override
+        public ExceptionListener getExceptionListener() throws JMSException {
+            checkClosed();
+            return exceptionListener;
+        }
+
+        @Override
+        public void setExceptionListener(ExceptionListener listener) throws JMSException {
+            checkClosed();
+            exceptionListener = listener;
+        }
+
+        @Override
+        public void start() throws JMSException {
+            checkClosed();
+            xaConnection.start();
+        }
+
+        @Override
+        public void stop() throws JMSException {
+            checkClosed();
+            xaConnection.stop();
+        }
+
+        @Override
+        public ConnectionConsumer createConnectionConsumer(Destination destination, String messageSelector,
+                ServerSessionPool sessionPool, int maxMessages) throws JMSException {
+            checkClosed();
+            return xaConnection.createConnectionConsumer(destination, messageSelector, sessionPool, maxMessages);
+        }
+
+        @Override
+        public ConnectionConsumer createDurableConnectionConsumer(Topic topic, String subscriptionName,
+                String messageSelector, ServerSessionPool sessionPool, int maxMessages) throws JMSException {
+            checkClosed();
+            return xaConnection.createDurableConnectionConsumer(topic, subscriptionName, messageSelector, sessionPool,
+                    maxMessages);
+        }
+
+        private synchronized void forget(PooledXASession session) {
+            sessions.remove(session);
+        }
+
+        private synchronized void checkClosed() throws JMSException {
+            if (closed) {
+                throw new javax.jms.IllegalStateException("Connection is closed");
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "PooledXAConnection.Lease{" + PooledXAConnection.this + "}";
+        }
+
+    }
+
+}
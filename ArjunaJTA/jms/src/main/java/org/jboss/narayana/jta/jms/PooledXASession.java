@@ -0,0 +1,343 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.narayana.jta.jms;
+
+import com.arjuna.ats.jta.logging.jtaLogger;
+
+import javax.jms.BytesMessage;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.MapMessage;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageListener;
+import javax.jms.MessageProducer;
+import javax.jms.ObjectMessage;
+import javax.jms.Queue;
+import javax.jms.QueueBrowser;
+import javax.jms.Session;
+import javax.jms.StreamMessage;
+import javax.jms.TemporaryQueue;
+import javax.jms.TemporaryTopic;
+import javax.jms.TextMessage;
+import javax.jms.Topic;
+import javax.jms.TopicSubscriber;
+import javax.jms.XASession;
+import javax.transaction.xa.XAResource;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * XA session borrowed from a {@link PooledXAConnection}. Closing it closes the producers, consumers and browsers created
+ * with it, deletes its temporary queues and topics and returns the underlying XA session to the pool, so that it can
+ * be enlisted with another transaction.
+ */
+final class PooledXASession implements XASession {
+
+    private final PooledXAConnection connection;
+
+    private final XASession xaSession;
+
+    private final Consumer<PooledXASession> onClose;
+
+    private final List<Object> children = new ArrayList<>();
+
+    private final List<Object> temporaryDestinations = new ArrayList<>();
+
+    private boolean closed;
+
+    PooledXASession(PooledXAConnection connection, XASession xaSession, Consumer<PooledXASession> onClose) {
+        this.connection = connection;
+        this.xaSession = xaSession;
+        this.onClose = onClose;
+    }
+
+    /**
+     * Return the underlying XA session to the pool. Sessions with a message listener cannot be safely reused, so they
+     * are closed instead.
+     */
+    @Override
+    public void close() {
+        List<Object> toClose;
+        List<Object> toDelete;
+
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+            toClose = new ArrayList<>(children);
+            children.clear();
+            toDelete = new ArrayList<>(temporaryDestinations);
+            temporaryDestinations.clear();
+        }
+
+        boolean reusable = true;
+
+        try {
+            for (Object child : toClose) {
+                if (child instanceof MessageProducer) {
+                    ((MessageProducer) child).close();
+                } else if (child instanceof MessageConsumer) {
+                    ((MessageConsumer) child).close();
+                } else if (child instanceof QueueBrowser) {
+                    ((QueueBrowser) child).close();
+                }
+            }
+
+            reusable = xaSession.getMessageListener() == null;
+        } catch (JMSException e) {
+            jtaLogger.i18NLogger.warn_failed_to_close_jms_session(xaSession.toString(), e);
+            reusable = false;
+        }
+
+        // Temporary destinations live as long as the pooled connection, so delete them once their consumers are closed
+        for (Object destination : toDelete) {
+            try {
+                if (destination instanceof TemporaryQueue) {
+                    ((TemporaryQueue) destination).delete();
+                } else {
+                    ((TemporaryTopic) destination).delete();
+                }
+            } catch (JMSException e) {
+                jtaLogger.i18NLogger.warn_failed_to_delete_jms_temporary_destination(destination.toString(), e);
+            }
+        }
+
+        if (reusable) {
+            connection.releaseSession(xaSession);
+        } else {
+            connection.discardSession(xaSession);
+        }
+
+        onClose.accept(this);
+    }
+
+    @Override
+    public Session getSession() throws JMSException {
+        checkClosed();
+        return this;
+    }
+
+    @Override
+    public XAResource getXAResource() {
+        return xaSession.getXAResource();
+    }
+
+    @Override
+    public BytesMessage createBytesMessage() throws JMSException {
+        checkClosed();
+        return xaSession.createBytesMessage();
+    }
+
+    @Override
+    public MapMessage createMapMessage() throws JMSException {
+        checkClosed();
+        return xaSession.createMapMessage();
+    }
+
+    @Override
+    public Message createMessage() throws JMSException {
+        checkClosed();
+        return xaSession.createMessage();
+    }
+
+    @Override
+    public ObjectMessage createObjectMessage() throws JMSException {
+        checkClosed();
+        return xaSession.createObjectMessage();
+    }
+
+    @Override
+    public ObjectMessage createObjectMessage(Serializable serializable) throws JMSException {
+        checkClosed();
+        return xaSession.createObjectMessage(serializable);
+    }
+
+    @Override
+    public StreamMessage createStreamMessage() throws JMSException {
+        checkClosed();
+        return xaSession.createStreamMessage();
+    }
+
+    @Override
+    public TextMessage createTextMessage() throws JMSException {
+        checkClosed();
+        return xaSession.createTextMessage();
+    }
+
+    @Override
+    public TextMessage createTextMessage(String s) throws JMSException {
+        checkClosed();
+        return xaSession.createTextMessage(s);
+    }
+
+    @Override
+    public boolean getTransacted() throws JMSException {
+        checkClosed();
+        return xaSession.getTransacted();
+    }
+
+    @Override
+    public int getAcknowledgeMode() throws JMSException {
+        checkClosed();
+        return xaSession.getAcknowledgeMode();
+    }
+
+    @Override
+    public void commit() throws JMSException {
+        checkClosed();
+        xaSession.commit();
+    }
+
+    @Override
+    public void rollback() throws JMSException {
+        checkClosed();
+        xaSession.rollback();
+    }
+
+    @Override
+    public void recover() throws JMSException {
+        checkClosed();
+        xaSession.recover();
+    }
+
+    @Override
+    public MessageListener getMessageListener() throws JMSException {
+        checkClosed();
+        return xaSession.getMessageListener();
+    }
+
+    @Override
+    public void setMessageListener(MessageListener messageListener) throws JMSException {
+        checkClosed();
+        xaSession.setMessageListener(messageListener);
+    }
+
+    @Override
+    public void run() {
+        xaSession.run();
+    }
+
+    @Override
+    public MessageProducer createProducer(Destination destination) throws JMSException {
+        checkClosed();
+        return track(xaSession.createProducer(destination));
+    }
+
+    @Override
+    public MessageConsumer createConsumer(Destination destination) throws JMSException {
+        checkClosed();
+        return track(xaSession.createConsumer(destination));
+    }
+
+    @Override
+    public MessageConsumer createConsumer(Destination destination, String s) throws JMSException {
+        checkClosed();
+        return track(xaSession.createConsumer(destination, s));
+    }
+
+    @Override
+    public MessageConsumer createConsumer(Destination destination, String s, boolean b) throws JMSException {
+        checkClosed();
+        return track(xaSession.createConsumer(destination, s, b));
+    }
+
+    @Override
+    public Queue createQueue(String s) throws JMSException {
+        checkClosed();
+        return xaSession.createQueue(s);
+    }
+
+    @Override
+    public Topic createTopic(String s) throws JMSException {
+        checkClosed();
+        return xaSession.createTopic(s);
+    }
+
+    @Override
+    public TopicSubscriber createDurableSubscriber(Topic topic, String s) throws JMSException {
+        checkClosed();
+        return track(xaSession.createDurableSubscriber(topic, s));
+    }
+
+    @Override
+    public TopicSubscriber createDurableSubscriber(Topic topic, String s, String s1, boolean b) throws JMSException {
+        checkClosed();
+        return track(xaSession.createDurableSubscriber(topic, s, s1, b));
+    }
+
+    @Override
+    public QueueBrowser createBrowser(Queue queue) throws JMSException {
+        checkClosed();
+        return track(xaSession.createBrowser(queue));
+    }
+
+    @Override
+    public QueueBrowser createBrowser(Queue queue, String s) throws JMSException {
+        checkClosed();
+        return track(xaSession.createBrowser(queue, s));
+    }
+
+    @Override
+    public TemporaryQueue createTemporaryQueue() throws JMSException {
+        checkClosed();
+        return trackTemporary(xaSession.createTemporaryQueue());
+    }
+
+    @Override
+    public TemporaryTopic createTemporaryTopic() throws JMSException {
+        checkClosed();
+        return trackTemporary(xaSession.createTemporaryTopic());
+    }
+
+    @Override
+    public void unsubscribe(String s) throws JMSException {
+        checkClosed();
+        xaSession.unsubscribe(s);
+    }
+
+    private synchronized <T> T track(T child) {
+        children.add(child);
+        return child;
+    }
+
+    private synchronized <T> T trackTemporary(T destination) {
+        temporaryDestinations.add(destination);
+        return destination;
+    }
+
+    private synchronized void checkClosed() throws JMSException {
+        if (closed) {
+            throw new javax.jms.IllegalStateException("Session is closed");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PooledXASession{xaSession=" + xaSession + "}";
+    }
+
+}
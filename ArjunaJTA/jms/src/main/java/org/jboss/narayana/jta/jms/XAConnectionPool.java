@@ -0,0 +1,162 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.narayana.jta.jms;
+
+import com.arjuna.ats.jta.logging.jtaLogger;
+
+import javax.jms.JMSException;
+import javax.jms.XAConnection;
+import javax.jms.XAConnectionFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Pool of XA connections created with a single set of credentials. Each pooled connection keeps its own pool of
+ * idle XA sessions.
+ *
+ * @see PooledConnectionFactoryProxy
+ */
+public class XAConnectionPool {
+
+    private final XAConnectionFactory xaConnectionFactory;
+
+    private final String user;
+
+    private final String pass;
+
+    private final int maxIdleConnections;
+
+    private final int maxIdleSessions;
+
+    private final XAConnectionPoolMetrics metrics;
+
+    private final Deque<PooledXAConnection> idleConnections = new ArrayDeque<>();
+
+    private boolean closed;
+
+    /**
+     * @param xaConnectionFactory factory to get XA connection instances, not null.
+     * @param user user name to create connections with, or null to use the default credentials.
+     * @param pass password to create connections with, or null to use the default credentials.
+     * @param maxIdleConnections maximum number of connections kept open while not in use.
+     * @param maxIdleSessions maximum number of XA sessions kept open per connection while not in use.
+     * @param metrics counters to be updated by this pool.
+     */
+    public XAConnectionPool(XAConnectionFactory xaConnectionFactory, String user, String pass, int maxIdleConnections,
+            int maxIdleSessions, XAConnectionPoolMetrics metrics) {
+        this.xaConnectionFactory = xaConnectionFactory;
+        this.user = user;
+        this.pass = pass;
+        this.maxIdleConnections = maxIdleConnections;
+        this.maxIdleSessions = maxIdleSessions;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Get an idle connection from the pool or create a new one if none is available. Closing the returned connection
+     * hands it back to the pool.
+     *
+     * @return pooled XA connection.
+     * @throws JMSException if the pool is closed or if failure occurred creating XA connection.
+     */
+    public XAConnection getConnection() throws JMSException {
+        synchronized (idleConnections) {
+            if (closed) {
+                throw new JMSException("Connection pool is closed");
+            }
+
+            PooledXAConnection connection = idleConnections.pollFirst();
+
+            if (connection != null) {
+                metrics.connectionReused();
+                return connection.lease();
+            }
+        }
+
+        PooledXAConnection connection = new PooledXAConnection(this, createXAConnection());
+        metrics.connectionCreated();
+
+        if (jtaLogger.logger.isTraceEnabled()) {
+            jtaLogger.logger.trace("Created new pooled connection: " + connection);
+        }
+
+        return connection.lease();
+    }
+
+    /**
+     * Close all idle connections and stop pooling connections which are currently in use.
+     */
+    public void close() {
+        List<PooledXAConnection> connections;
+
+        synchronized (idleConnections) {
+            closed = true;
+            connections = new ArrayList<>(idleConnections);
+            idleConnections.clear();
+        }
+
+        for (PooledXAConnection connection : connections) {
+            metrics.idleConnectionDestroyed();
+            connection.destroy();
+        }
+    }
+
+    /**
+     * @return counters describing the usage of this pool.
+     */
+    public XAConnectionPoolMetrics getMetrics() {
+        return metrics;
+    }
+
+    int getMaxIdleSessions() {
+        return maxIdleSessions;
+    }
+
+    /**
+     * Take back a connection once its user has closed it (and any transaction it was used in has completed).
+     *
+     * @param connection connection to be returned to the pool.
+     */
+    void release(PooledXAConnection connection) {
+        synchronized (idleConnections) {
+            if (!closed && !connection.isBroken() && idleConnections.size() < maxIdleConnections) {
+                idleConnections.addFirst(connection);
+                metrics.connectionReleased();
+                return;
+            }
+        }
+
+        metrics.connectionDestroyed();
+        connection.destroy();
+    }
+
+    private XAConnection createXAConnection() throws JMSException {
+        if (user == null && pass == null) {
+            return xaConnectionFactory.createXAConnection();
+        }
+
+        return xaConnectionFactory.createXAConnection(user, pass);
+    }
+
+}
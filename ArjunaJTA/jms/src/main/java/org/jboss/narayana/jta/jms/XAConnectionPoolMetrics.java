@@ -0,0 +1,155 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.narayana.jta.jms;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters describing the usage of the connections and sessions pooled by {@link PooledConnectionFactoryProxy}.
+ */
+public class XAConnectionPoolMetrics {
+
+    private final AtomicLong connectionsCreated = new AtomicLong();
+
+    private final AtomicLong connectionsReused = new AtomicLong();
+
+    private final AtomicLong connectionsDestroyed = new AtomicLong();
+
+    private final AtomicLong idleConnections = new AtomicLong();
+
+    private final AtomicLong sessionsCreated = new AtomicLong();
+
+    private final AtomicLong sessionsReused = new AtomicLong();
+
+    private final AtomicLong sessionsDestroyed = new AtomicLong();
+
+    private final AtomicLong idleSessions = new AtomicLong();
+
+    /**
+     * @return number of physical XA connections opened with the broker.
+     */
+    public long getConnectionsCreated() {
+        return connectionsCreated.get();
+    }
+
+    /**
+     * @return number of times an idle XA connection was handed out instead of opening a new one.
+     */
+    public long getConnectionsReused() {
+        return connectionsReused.get();
+    }
+
+    /**
+     * @return number of physical XA connections closed by the pool.
+     */
+    public long getConnectionsDestroyed() {
+        return connectionsDestroyed.get();
+    }
+
+    /**
+     * @return number of XA connections currently waiting in the pool.
+     */
+    public long getIdleConnections() {
+        return idleConnections.get();
+    }
+
+    /**
+     * @return number of physical XA sessions created with the broker.
+     */
+    public long getSessionsCreated() {
+        return sessionsCreated.get();
+    }
+
+    /**
+     * @return number of times an idle XA session was handed out instead of creating a new one.
+     */
+    public long getSessionsReused() {
+        return sessionsReused.get();
+    }
+
+    /**
+     * @return number of physical XA sessions closed by the pool.
+     */
+    public long getSessionsDestroyed() {
+        return sessionsDestroyed.get();
+    }
+
+    /**
+     * @return number of XA sessions currently waiting in the pool.
+     */
+    public long getIdleSessions() {
+        return idleSessions.get();
+    }
+
+    void connectionCreated() {
+        connectionsCreated.incrementAndGet();
+    }
+
+    void connectionReused() {
+        connectionsReused.incrementAndGet();
+        idleConnections.decrementAndGet();
+    }
+
+    void connectionDestroyed() {
+        connectionsDestroyed.incrementAndGet();
+    }
+
+    void connectionReleased() {
+        idleConnections.incrementAndGet();
+    }
+
+    void idleConnectionDestroyed() {
+        idleConnections.decrementAndGet();
+        connectionsDestroyed.incrementAndGet();
+    }
+
+    void sessionCreated() {
+        sessionsCreated.incrementAndGet();
+    }
+
+    void sessionReused() {
+        sessionsReused.incrementAndGet();
+        idleSessions.decrementAndGet();
+    }
+
+    void sessionDestroyed() {
+        sessionsDestroyed.incrementAndGet();
+    }
+
+    void sessionReleased() {
+        idleSessions.incrementAndGet();
+    }
+
+    void idleSessionsDestroyed(int count) {
+        idleSessions.addAndGet(-count);
+        sessionsDestroyed.addAndGet(count);
+    }
+
+    @Override
+    public String toString() {
+        return "XAConnectionPoolMetrics{connectionsCreated=" + connectionsCreated + ", connectionsReused=" + connectionsReused
+                + ", connectionsDestroyed=" + connectionsDestroyed + ", idleConnections=" + idleConnections
+                + ", sessionsCreated=" + sessionsCreated + ", sessionsReused=" + sessionsReused
+                + ", sessionsDestroyed=" + sessionsDestroyed + ", idleSessions=" + idleSessions + "}";
+    }
+
+}
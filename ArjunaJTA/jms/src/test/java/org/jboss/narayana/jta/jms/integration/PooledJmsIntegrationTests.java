@@ -0,0 +1,190 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.narayana.jta.jms.integration;
+
+import com.arjuna.ats.jta.TransactionManager;
+import org.jboss.narayana.jta.jms.PooledConnectionFactoryProxy;
+import org.jboss.narayana.jta.jms.TransactionHelperImpl;
+import org.jboss.narayana.jta.jms.XAConnectionPoolMetrics;
+import org.jboss.narayana.jta.jms.helpers.JmsHelper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.jms.Connection;
+import javax.jms.JMSException;
+import javax.jms.MessageConsumer;
+import javax.jms.Session;
+import javax.jms.TemporaryQueue;
+import javax.jms.TextMessage;
+import javax.jms.XAConnectionFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of {@link PooledConnectionFactoryProxy} against an embedded broker.
+ */
+public class PooledJmsIntegrationTests extends AbstractIntegrationTests {
+
+    private PooledConnectionFactoryProxy connectionFactory;
+
+    @Before
+    public void before() {
+        try {
+            initNarayana();
+            initJms();
+        } catch (Exception e) {
+            throw new IntegrationTestRuntimeException(e.getMessage());
+        }
+
+        connectionFactory = new PooledConnectionFactoryProxy(
+                (XAConnectionFactory) jmsServer.lookup(JmsHelper.FACTORY_NAME),
+                new TransactionHelperImpl(TransactionManager.transactionManager()));
+    }
+
+    @After
+    public void after() {
+        if (connectionFactory != null) {
+            connectionFactory.close();
+        }
+
+        closeResources();
+    }
+
+    @Test
+    public void testSessionReusedAcrossTransactions() throws Exception {
+        int transactions = 5;
+
+        for (int i = 0; i < transactions; i++) {
+            TransactionManager.transactionManager().begin();
+
+            Connection pooledConnection = connectionFactory.createConnection();
+            Session session = pooledConnection.createSession(true, Session.AUTO_ACKNOWLEDGE);
+            session.createProducer(queue).send(session.createTextMessage("Test " + i));
+            session.close();
+            pooledConnection.close();
+
+            TransactionManager.transactionManager().commit();
+        }
+
+        XAConnectionPoolMetrics metrics = connectionFactory.getMetrics();
+        assertEquals(1, metrics.getConnectionsCreated());
+        assertEquals(transactions - 1, metrics.getConnectionsReused());
+        assertEquals(1, metrics.getSessionsCreated());
+        assertEquals(transactions - 1, metrics.getSessionsReused());
+        assertEquals(1, metrics.getIdleSessions());
+        assertEquals(1, metrics.getIdleConnections());
+
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        MessageConsumer messageConsumer = session.createConsumer(queue);
+
+        for (int i = 0; i < transactions; i++) {
+            TextMessage receivedMessage = (TextMessage) messageConsumer.receive(1000);
+            assertNotNull(receivedMessage);
+            assertEquals("Test " + i, receivedMessage.getText());
+        }
+    }
+
+    @Test
+    public void testRollbackWithPooledSession() throws Exception {
+        TransactionManager.transactionManager().begin();
+
+        Connection pooledConnection = connectionFactory.createConnection();
+        Session session = pooledConnection.createSession(true, Session.AUTO_ACKNOWLEDGE);
+        session.createProducer(queue).send(session.createTextMessage("Rolled back"));
+        session.close();
+        pooledConnection.close();
+
+        TransactionManager.transactionManager().rollback();
+
+        assertEquals(1, connectionFactory.getMetrics().getIdleSessions());
+
+        Session plainSession = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        assertNull(plainSession.createConsumer(queue).receive(100));
+    }
+
+    @Test
+    public void testSessionNotReusedBeforeCompletion() throws Exception {
+        TransactionManager.transactionManager().begin();
+
+        Connection pooledConnection = connectionFactory.createConnection();
+        Session first = pooledConnection.createSession(true, Session.AUTO_ACKNOWLEDGE);
+        first.close();
+        Session second = pooledConnection.createSession(true, Session.AUTO_ACKNOWLEDGE);
+        second.close();
+        pooledConnection.close();
+
+        // The first session is only returned once the transaction has completed
+        assertEquals(2, connectionFactory.getMetrics().getSessionsCreated());
+        assertEquals(0, connectionFactory.getMetrics().getIdleSessions());
+
+        TransactionManager.transactionManager().commit();
+
+        assertEquals(2, connectionFactory.getMetrics().getIdleSessions());
+    }
+
+    @Test
+    public void testCredentialsDoNotSharePool() throws Exception {
+        connectionFactory.createConnection("user:a", "b").close();
+        connectionFactory.createConnection("user", "a:b").close();
+        connectionFactory.createConnection("user", "a:b").close();
+
+        assertEquals(2, connectionFactory.getMetrics().getConnectionsCreated());
+        assertEquals(1, connectionFactory.getMetrics().getConnectionsReused());
+    }
+
+    @Test
+    public void testTemporaryQueueDeletedWithSession() throws Exception {
+        TransactionManager.transactionManager().begin();
+
+        Connection pooledConnection = connectionFactory.createConnection();
+        Session session = pooledConnection.createSession(true, Session.AUTO_ACKNOWLEDGE);
+        TemporaryQueue temporaryQueue = session.createTemporaryQueue();
+        session.close();
+        pooledConnection.close();
+
+        TransactionManager.transactionManager().commit();
+
+        // The same connection is reused, but the temporary queue went with the session which created it
+        TransactionManager.transactionManager().begin();
+
+        pooledConnection = connectionFactory.createConnection();
+        session = pooledConnection.createSession(true, Session.AUTO_ACKNOWLEDGE);
+
+        try {
+            session.createConsumer(temporaryQueue);
+            fail("Temporary queue should have been deleted");
+        } catch (JMSException e) {
+            // expected
+        } finally {
+            session.close();
+            pooledConnection.close();
+            TransactionManager.transactionManager().rollback();
+        }
+
+        assertEquals(1, connectionFactory.getMetrics().getConnectionsCreated());
+    }
+
+}
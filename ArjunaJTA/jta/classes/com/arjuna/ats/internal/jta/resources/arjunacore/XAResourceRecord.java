@@ -66,10 +66,13 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Vector;
+import java.util.WeakHashMap;
 
 import org.jboss.tm.FirstResource;
 import org.jboss.tm.LastResource;
@@ -205,13 +208,29 @@ public class XAResourceRecord extends AbstractRecord implements ExceptionDeferre
 			return TwoPhaseOutcome.PREPARE_NOTOK;
 		}
 
+		XAResourceRetryManager retryManager = XAResourceRetryManager.getInstance();
+
+		if (retryManager.isEnabled() && !retryManager.allowRequest(getResourceManagerName()))
+		{
+			jtaLogger.i18NLogger.warn_resources_arjunacore_circuitopen(getResourceManagerName(), XAHelper.xidToString(_tranID));
+
+			if (_rollbackOptimization) // won't have rollback called on it
+				removeConnection();
+
+			return TwoPhaseOutcome.PREPARE_NOTOK;
+		}
+
 		try
 		{
 			endAssociation(XAResource.TMSUCCESS, TxInfo.NOT_ASSOCIATED);
 
 			_prepared = true;
 
-			if (_theXAResource.prepare(_tranID) == XAResource.XA_RDONLY)
+			int vote = _theXAResource.prepare(_tranID);
+
+			retryManager.recordSuccess(getResourceManagerName());
+
+			if (vote == XAResource.XA_RDONLY)
 			{
 			    if (TxControl.isReadonlyOptimisation())
 			    {
@@ -239,6 +258,9 @@ public class XAResourceRecord extends AbstractRecord implements ExceptionDeferre
 			if (_rollbackOptimization) // won't have rollback called on it
 				removeConnection();
 
+			if (e1.errorCode == XAException.XAER_RMFAIL)
+				retryManager.recordFailure(getResourceManagerName());
+
 			switch (e1.errorCode)
 			{
 			case XAException.XAER_RMERR:
@@ -359,7 +381,7 @@ public class XAResourceRecord extends AbstractRecord implements ExceptionDeferre
 
 				try
 				{
-					_theXAResource.rollback(_tranID);
+					rollbackBranch();
 				}
 				catch (XAException e1)
 				{
@@ -468,9 +490,37 @@ public class XAResourceRecord extends AbstractRecord implements ExceptionDeferre
 				 * point by going through prepare.
 				 */
 
+				XAResourceRetryManager retryManager = XAResourceRetryManager.getInstance();
+				boolean retryInBackground = retryManager.isEnabled() && !_recovered;
+
+				if (_recovered)
+				{
+					// stop any retry of the branch in this JVM, recovery owns it now
+					retryManager.recoveryStarted(_tranID);
+				}
+
+				if (retryInBackground && !retryManager.allowRequest(getResourceManagerName()))
+				{
+					/*
+					 * The resource manager is known to be failing so don't hold up the
+					 * other participants. Leave the branch to the retry threads (and
+					 * the recovery manager if they don't manage it).
+					 */
+
+					jtaLogger.i18NLogger.warn_resources_arjunacore_circuitopen(getResourceManagerName(), XAHelper.xidToString(_tranID));
+
+					_committed = true;  // will cause log to be rewritten
+					scheduleCommitRetry(retryManager);
+					removeConnection();
+
+					return TwoPhaseOutcome.FINISH_ERROR;
+				}
+
 				try
 				{
-					_theXAResource.commit(_tranID, false);
+					commitBranch();
+
+					retryManager.recordSuccess(getResourceManagerName());
 				}
 				catch (XAException e1)
 				{
@@ -530,7 +580,15 @@ public class XAResourceRecord extends AbstractRecord implements ExceptionDeferre
                                                      * Could do timeout retry here, but that could cause other resources in the list to go down the
                                                      * heuristic path (some are far too keen to do this). Fail and let recovery retry. Meanwhile
                                                      * the coordinator will continue to commit the other resources immediately.
+                                                     * If enabled, the retry manager retries in the background with backoff
+                                                     * so that recovery is only needed for longer outages.
                                                      */
+							if (retryInBackground)
+							{
+								retryManager.recordFailure(getResourceManagerName());
+								scheduleCommitRetry(retryManager);
+							}
+
 							return TwoPhaseOutcome.FINISH_ERROR;
 						case XAException.XAER_INVAL: // resource manager failed, did it rollback?
 						default:
@@ -812,7 +870,16 @@ public class XAResourceRecord extends AbstractRecord implements ExceptionDeferre
 		{
 			try
 			{
-				_theXAResource.forget(_tranID);
+				if (_recovered)
+				{
+					synchronized (replayLock())
+					{
+						_theXAResource.forget(_tranID);
+					}
+				}
+				else
+					_theXAResource.forget(_tranID);
+
 				// only update the heuristic state if forget succeeded
 				_heuristic = TwoPhaseOutcome.FINISH_OK;
 				_forgotten = true;
@@ -826,6 +893,45 @@ public class XAResourceRecord extends AbstractRecord implements ExceptionDeferre
 		}
 	}
 
+	private void commitBranch() throws XAException
+	{
+		if (_recovered)
+		{
+			synchronized (replayLock())
+			{
+				_theXAResource.commit(_tranID, false);
+			}
+		}
+		else
+			_theXAResource.commit(_tranID, false);
+	}
+
+	private void rollbackBranch() throws XAException
+	{
+		if (_recovered)
+		{
+			synchronized (replayLock())
+			{
+				_theXAResource.rollback(_tranID);
+			}
+		}
+		else
+			_theXAResource.rollback(_tranID);
+	}
+
+	/*
+	 * XARecoveryModule hands the XAResource it obtained during its scan to
+	 * every recovered record of that resource manager, and the recovery
+	 * manager may replay several transactions at once (recoveryScanThreads).
+	 * An XAResource need not be thread safe, so the calls recovered records
+	 * make on a shared instance are serialised.
+	 */
+
+	private Object replayLock()
+	{
+		return _replayLocks.computeIfAbsent(_theXAResource, r -> new Object());
+	}
+
 	/*
 	 * Independant recovery cannot occur. Must be driven by the recovery of the
 	 * local transaction, i.e., top-down recovery.
@@ -1268,6 +1374,37 @@ public class XAResourceRecord extends AbstractRecord implements ExceptionDeferre
 		return null;
 	}
 
+	/**
+	 * The identity used to group branches by resource manager for retries and
+	 * circuit breaking, see {@link XAResourceRetryManager#getStatistics(String)}.
+	 * isSameRM would need a call to the (possibly unreachable) resource manager,
+	 * so the configured names are used instead.
+	 *
+	 * @return the resource manager name.
+	 */
+
+	public String getResourceManagerName()
+	{
+		if (_jndiName != null)
+			return _jndiName;
+
+		if (_productName != null)
+			return (_productVersion != null) ? _productName + "/" + _productVersion : _productName;
+
+		return (_theXAResource != null) ? _theXAResource.getClass().getName() : "unknown";
+	}
+
+	/*
+	 * Once a retry is scheduled it is using the resource, so the connection is
+	 * closed by the retry rather than by removeConnection.
+	 */
+
+	private void scheduleCommitRetry(XAResourceRetryManager retryManager)
+	{
+		if (retryManager.scheduleCommitRetry(getResourceManagerName(), _tranID, _theXAResource, _recoveryObject))
+			_retryOwnsConnection = true;
+	}
+
 	private final void removeConnection()
 	{
 		/*
@@ -1276,7 +1413,7 @@ public class XAResourceRecord extends AbstractRecord implements ExceptionDeferre
 		 * optimisation).
 		 */
 
-		if (_recoveryObject != null)
+		if (_recoveryObject != null && !_retryOwnsConnection)
 		{
 			_recoveryObject.close();
 		}
@@ -1332,6 +1469,7 @@ public class XAResourceRecord extends AbstractRecord implements ExceptionDeferre
 	
 	private TransactionImple _theTransaction;
     private boolean _recovered = false;
+    private boolean _retryOwnsConnection = false;
 
     // extra metadata from the wrapper, if present
     private String _productName;
@@ -1340,6 +1478,8 @@ public class XAResourceRecord extends AbstractRecord implements ExceptionDeferre
     private static final XAResourceRecordWrappingPlugin _xaResourceRecordWrappingPlugin =
             jtaPropertyManager.getJTAEnvironmentBean().getXAResourceRecordWrappingPlugin();
 
+	private static final Map<XAResource, Object> _replayLocks = Collections.synchronizedMap(new WeakHashMap<XAResource, Object>());
+
 	private static final boolean _rollbackOptimization = jtaPropertyManager.getJTAEnvironmentBean().isXaRollbackOptimization();
 
     /*
@@ -0,0 +1,437 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2021, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ *
+ * (C) 2021,
+ * @author JBoss Inc.
+ */
+
+package com.arjuna.ats.internal.jta.resources.arjunacore;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+
+import com.arjuna.ats.arjuna.coordinator.TxControl;
+import com.arjuna.ats.jta.common.JTAEnvironmentBean;
+import com.arjuna.ats.jta.common.jtaPropertyManager;
+import com.arjuna.ats.jta.logging.jtaLogger;
+import com.arjuna.ats.jta.utils.XAHelper;
+import com.arjuna.ats.jta.xa.RecoverableXAConnection;
+import com.arjuna.ats.jta.xa.XidImple;
+
+/**
+ * Retries second phase commits that failed with XA_RETRY or XAER_RMFAIL in the
+ * background, backing off exponentially between attempts, and keeps a circuit
+ * breaker per resource manager so that a failing resource manager is not called
+ * by every transaction that uses it. Branches that cannot be completed within
+ * the retry budget are left to the recovery manager, as they would be without
+ * this class.
+ *
+ * A retry keeps the connection that the branch was committed through open
+ * until it is done with it. Once the recovery manager starts to replay the
+ * branch it owns the Xid, so the retry stops (see {@link #recoveryStarted(Xid)}).
+ *
+ * The retry threads are stopped when the transaction system is, see
+ * {@link TxControl#disable(boolean)}.
+ *
+ * Disabled by default, see {@link JTAEnvironmentBean#setXaRetryBackoffEnabled(boolean)}.
+ */
+
+public class XAResourceRetryManager
+{
+    public static XAResourceRetryManager getInstance ()
+    {
+        return InstanceHolder.INSTANCE;
+    }
+
+    XAResourceRetryManager (JTAEnvironmentBean config)
+    {
+        _enabled = config.isXaRetryBackoffEnabled();
+        _initialBackoff = Math.max(1, config.getXaRetryInitialBackoff());
+        _maxBackoff = Math.max(_initialBackoff, config.getXaRetryMaxBackoff());
+        _maxAttempts = Math.max(0, config.getXaRetryMaxAttempts());
+        _failureThreshold = Math.max(1, config.getXaCircuitBreakerFailureThreshold());
+        _openPeriod = Math.max(0, config.getXaCircuitBreakerOpenPeriod());
+        _poolSize = Math.max(1, config.getXaRetryPoolSize());
+    }
+
+    public boolean isEnabled ()
+    {
+        return _enabled;
+    }
+
+    /**
+     * @return true if the resource manager may be called, false if its circuit is open.
+     */
+    public boolean allowRequest (String resourceManager)
+    {
+        return !_enabled || statistics(resourceManager).allowRequest(System.currentTimeMillis());
+    }
+
+    public void recordSuccess (String resourceManager)
+    {
+        if (_enabled)
+            statistics(resourceManager).success();
+    }
+
+    public void recordFailure (String resourceManager)
+    {
+        if (_enabled)
+            statistics(resourceManager).failure(System.currentTimeMillis(), _failureThreshold, _openPeriod);
+    }
+
+    /**
+     * Commit the branch again later on a retry thread. The caller must already have
+     * reported the outcome of the branch, ie the recovery manager remains responsible
+     * for it should the retries not succeed.
+     *
+     * @param connection if not null, the connection the resource belongs to. If a
+     * retry is scheduled it is closed once the retry is done with the resource,
+     * otherwise it is left to the caller.
+     * @return true if a retry was scheduled.
+     */
+    public boolean scheduleCommitRetry (String resourceManager, Xid xid, XAResource xaResource, RecoverableXAConnection connection)
+    {
+        if (!_enabled || _maxAttempts == 0)
+            return false;
+
+        CommitRetry retry = new CommitRetry(resourceManager, new XidImple(xid), xaResource, connection);
+        CommitRetry previous = _retries.put(retry._xid, retry);
+
+        if (previous != null)
+            previous.cancel();
+
+        if (!schedule(retry, 1))
+        {
+            _retries.remove(retry._xid, retry);
+
+            return false;
+        }
+
+        return true;
+    }
+
+    public boolean scheduleCommitRetry (String resourceManager, Xid xid, XAResource xaResource)
+    {
+        return scheduleCommitRetry(resourceManager, xid, xaResource, null);
+    }
+
+    /**
+     * Called when the recovery manager is about to complete the branch. Any retry of
+     * the branch is stopped, waiting for an attempt that is in progress to finish, so
+     * that the two do not drive the resource manager concurrently.
+     *
+     * @return true if a retry of the branch was stopped.
+     */
+    public boolean recoveryStarted (Xid xid)
+    {
+        if (!_enabled || xid == null)
+            return false;
+
+        CommitRetry retry = _retries.remove(new XidImple(xid));
+
+        if (retry == null)
+            return false;
+
+        retry.cancel();
+
+        statistics(retry._resourceManager).handedToRecovery();
+
+        return true;
+    }
+
+    /**
+     * @return true if a retry of the branch is outstanding.
+     */
+    public boolean isRetrying (Xid xid)
+    {
+        return (xid != null) && _retries.containsKey(new XidImple(xid));
+    }
+
+    /**
+     * @return a snapshot of the per resource manager statistics, keyed by resource manager.
+     */
+    public Map<String, XAResourceRetryStatistics> getStatistics ()
+    {
+        return Collections.unmodifiableMap(new HashMap<String, XAResourceRetryStatistics>(_statistics));
+    }
+
+    public XAResourceRetryStatistics getStatistics (String resourceManager)
+    {
+        return _statistics.get(resourceManager);
+    }
+
+    /**
+     * Stop retrying. Outstanding branches remain with the recovery manager.
+     */
+    public void shutdown ()
+    {
+        synchronized (this)
+        {
+            if (_executor != null)
+            {
+                _executor.shutdownNow();
+                _executor = null;
+
+                TxControl.removeShutdownAction(_shutdownAction);
+            }
+        }
+
+        for (CommitRetry retry : _retries.values())
+        {
+            if (_retries.remove(retry._xid, retry))
+                retry.cancel();
+        }
+    }
+
+    /*
+     * min(initial * 2^(attempt - 1), max) with up to 25% jitter so that the branches
+     * of many transactions failing at the same time do not all retry together.
+     */
+
+    long backoff (int attempt)
+    {
+        long delay = _initialBackoff;
+
+        for (int i = 1; i < attempt && delay < _maxBackoff; i++)
+            delay <<= 1;
+
+        delay = Math.min(delay, _maxBackoff);
+
+        return delay - ThreadLocalRandom.current().nextLong(delay / 4 + 1);
+    }
+
+    private XAResourceRetryStatistics statistics (String resourceManager)
+    {
+        XAResourceRetryStatistics stats = _statistics.get(resourceManager);
+
+        if (stats == null)
+        {
+            XAResourceRetryStatistics newStats = new XAResourceRetryStatistics(resourceManager);
+
+            stats = _statistics.putIfAbsent(resourceManager, newStats);
+
+            if (stats == null)
+                stats = newStats;
+        }
+
+        return stats;
+    }
+
+    private boolean schedule (CommitRetry retry, int attempt)
+    {
+        retry._attempt = attempt;
+
+        try
+        {
+            executor().schedule(retry, backoff(attempt), TimeUnit.MILLISECONDS);
+        }
+        catch (RejectedExecutionException ex)
+        {
+            return false;
+        }
+
+        statistics(retry._resourceManager).retryScheduled();
+
+        return true;
+    }
+
+    private synchronized ScheduledThreadPoolExecutor executor ()
+    {
+        if (_executor == null)
+        {
+            _executor = new ScheduledThreadPoolExecutor(_poolSize, new RetryThreadFactory());
+            _executor.setRemoveOnCancelPolicy(true);
+
+            TxControl.addShutdownAction(_shutdownAction);
+        }
+
+        return _executor;
+    }
+
+    private class CommitRetry implements Runnable
+    {
+        CommitRetry (String resourceManager, XidImple xid, XAResource xaResource, RecoverableXAConnection connection)
+        {
+            _resourceManager = resourceManager;
+            _xid = xid;
+            _xaResource = xaResource;
+            _connection = connection;
+        }
+
+        /*
+         * Holds the lock for the whole of an attempt so that cancel waits for one that
+         * is in progress.
+         */
+
+        public synchronized void run ()
+        {
+            if (_done)
+                return;
+
+            XAResourceRetryStatistics stats = statistics(_resourceManager);
+
+            if (!stats.allowRequest(System.currentTimeMillis()))
+            {
+                retryLater(stats);
+
+                return;
+            }
+
+            try
+            {
+                _xaResource.commit(_xid, false);
+
+                stats.success();
+                stats.retrySucceeded();
+                finish();
+
+                if (jtaLogger.logger.isTraceEnabled())
+                    jtaLogger.logger.trace("XAResourceRetryManager committed " + XAHelper.xidToString(_xid) + " on attempt " + _attempt);
+            }
+            catch (XAException e)
+            {
+                switch (e.errorCode)
+                {
+                    case XAException.XA_RETRY:
+                    case XAException.XAER_RMFAIL:
+                        stats.failure(System.currentTimeMillis(), _failureThreshold, _openPeriod);
+                        retryLater(stats);
+                        break;
+                    case XAException.XAER_NOTA:
+                        // already completed, probably by the recovery manager
+                        stats.success();
+                        stats.retrySucceeded();
+                        finish();
+                        break;
+                    default:
+                        stats.handedToRecovery();
+                        finish();
+                        jtaLogger.i18NLogger.warn_resources_arjunacore_retryfailed(XAHelper.xidToString(_xid), _resourceManager,
+                                XAHelper.printXAErrorCode(e), e);
+                        break;
+                }
+            }
+            catch (RuntimeException e)
+            {
+                stats.handedToRecovery();
+                finish();
+                jtaLogger.i18NLogger.warn_resources_arjunacore_retryfailed(XAHelper.xidToString(_xid), _resourceManager,
+                        e.toString(), e);
+            }
+        }
+
+        synchronized void cancel ()
+        {
+            if (!_done)
+            {
+                _done = true;
+
+                close();
+            }
+        }
+
+        private void retryLater (XAResourceRetryStatistics stats)
+        {
+            if (_attempt >= _maxAttempts || !schedule(this, _attempt + 1))
+            {
+                stats.handedToRecovery();
+                finish();
+                jtaLogger.i18NLogger.warn_resources_arjunacore_retryexhausted(XAHelper.xidToString(_xid), _resourceManager);
+            }
+        }
+
+        private void finish ()
+        {
+            _done = true;
+
+            _retries.remove(_xid, this);
+
+            close();
+        }
+
+        private void close ()
+        {
+            if (_connection != null)
+            {
+                try
+                {
+                    _connection.close();
+                }
+                catch (RuntimeException e)
+                {
+                    if (jtaLogger.logger.isTraceEnabled())
+                        jtaLogger.logger.trace("XAResourceRetryManager failed to close the connection for " + XAHelper.xidToString(_xid), e);
+                }
+            }
+        }
+
+        private final String _resourceManager;
+        private final XidImple _xid;
+        private final XAResource _xaResource;
+        private final RecoverableXAConnection _connection;
+        private volatile int _attempt;
+        private boolean _done;
+    }
+
+    private static class RetryThreadFactory implements ThreadFactory
+    {
+        public Thread newThread (Runnable r)
+        {
+            Thread t = new Thread(r, "Narayana-XARetry_" + _counter.incrementAndGet());
+
+            t.setDaemon(true);
+
+            return t;
+        }
+
+        private final AtomicInteger _counter = new AtomicInteger();
+    }
+
+    private static class InstanceHolder
+    {
+        static final XAResourceRetryManager INSTANCE = new XAResourceRetryManager(jtaPropertyManager.getJTAEnvironmentBean());
+    }
+
+    private final boolean _enabled;
+    private final long _initialBackoff;
+    private final long _maxBackoff;
+    private final int _maxAttempts;
+    private final int _failureThreshold;
+    private final long _openPeriod;
+    private final int _poolSize;
+
+    // the outstanding retries, so that the recovery manager can take a branch over
+    private final ConcurrentHashMap<XidImple, CommitRetry> _retries = new ConcurrentHashMap<XidImple, CommitRetry>();
+
+    private final ConcurrentHashMap<String, XAResourceRetryStatistics> _statistics = new ConcurrentHashMap<String, XAResourceRetryStatistics>();
+
+    private final Runnable _shutdownAction = this::shutdown;
+
+    private ScheduledThreadPoolExecutor _executor;
+}
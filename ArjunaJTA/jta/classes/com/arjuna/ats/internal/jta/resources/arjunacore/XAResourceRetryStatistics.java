@@ -0,0 +1,175 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2021, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ *
+ * (C) 2021,
+ * @author JBoss Inc.
+ */
+
+package com.arjuna.ats.internal.jta.resources.arjunacore;
+
+/**
+ * Retry and circuit breaker state of a single resource manager, as tracked by
+ * {@link XAResourceRetryManager}. The counters are exposed for monitoring.
+ */
+
+public class XAResourceRetryStatistics
+{
+    XAResourceRetryStatistics (String resourceManager)
+    {
+        _resourceManager = resourceManager;
+    }
+
+    /**
+     * @return the identity of the resource manager (its JNDI name where known).
+     */
+    public String getResourceManager ()
+    {
+        return _resourceManager;
+    }
+
+    /**
+     * @return the number of XA_RETRY or XAER_RMFAIL errors reported by the resource manager.
+     */
+    public synchronized long getFailures ()
+    {
+        return _failures;
+    }
+
+    /**
+     * @return the number of background commit retries that were scheduled.
+     */
+    public synchronized long getRetriesScheduled ()
+    {
+        return _retriesScheduled;
+    }
+
+    /**
+     * @return the number of background commit retries that completed the branch.
+     */
+    public synchronized long getRetriesSucceeded ()
+    {
+        return _retriesSucceeded;
+    }
+
+    /**
+     * @return the number of branches that were left to the recovery manager by the retry subsystem.
+     */
+    public synchronized long getHandedToRecovery ()
+    {
+        return _handedToRecovery;
+    }
+
+    /**
+     * @return the number of prepare or commit calls that were not made because the circuit was open.
+     */
+    public synchronized long getRejectedRequests ()
+    {
+        return _rejected;
+    }
+
+    /**
+     * @return the number of times the circuit of this resource manager was opened.
+     */
+    public synchronized long getCircuitOpenings ()
+    {
+        return _circuitOpenings;
+    }
+
+    /**
+     * @return true if calls to this resource manager are currently being short-circuited.
+     */
+    public synchronized boolean isCircuitOpen ()
+    {
+        return _openUntil != 0 && System.currentTimeMillis() < _openUntil;
+    }
+
+    /*
+     * Circuit breaker: after threshold consecutive failures the resource manager is not called for
+     * the open period. Once that has elapsed calls are let through again and the first further failure
+     * opens the circuit again, whereas a success closes it.
+     */
+
+    synchronized boolean allowRequest (long now)
+    {
+        if (_openUntil == 0)
+            return true;
+
+        if (now >= _openUntil)
+        {
+            _openUntil = 0;
+
+            return true;
+        }
+
+        _rejected++;
+
+        return false;
+    }
+
+    synchronized void success ()
+    {
+        _consecutiveFailures = 0;
+        _openUntil = 0;
+    }
+
+    synchronized void failure (long now, int threshold, long openPeriod)
+    {
+        _failures++;
+        _consecutiveFailures++;
+
+        if (_consecutiveFailures >= threshold && _openUntil == 0)
+        {
+            _openUntil = now + openPeriod;
+            _circuitOpenings++;
+        }
+    }
+
+    synchronized void retryScheduled ()
+    {
+        _retriesScheduled++;
+    }
+
+    synchronized void retrySucceeded ()
+    {
+        _retriesSucceeded++;
+    }
+
+    synchronized void handedToRecovery ()
+    {
+        _handedToRecovery++;
+    }
+
+    public String toString ()
+    {
+        return "XAResourceRetryStatistics < " + _resourceManager + ", failures: " + getFailures()
+                + ", retriesScheduled: " + getRetriesScheduled() + ", retriesSucceeded: " + getRetriesSucceeded()
+                + ", handedToRecovery: " + getHandedToRecovery() + ", rejected: " + getRejectedRequests()
+                + ", circuitOpenings: " + getCircuitOpenings() + " >";
+    }
+
+    private final String _resourceManager;
+
+    private long _failures;
+    private long _retriesScheduled;
+    private long _retriesSucceeded;
+    private long _handedToRecovery;
+    private long _rejected;
+    private long _circuitOpenings;
+
+    private int _consecutiveFailures;
+    private long _openUntil;
+}
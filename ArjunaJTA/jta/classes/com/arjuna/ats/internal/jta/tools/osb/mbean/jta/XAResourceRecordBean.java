@@ -27,6 +27,8 @@ import com.arjuna.ats.arjuna.coordinator.AbstractRecord;
 import com.arjuna.ats.arjuna.state.InputObjectState;
 import com.arjuna.ats.arjuna.tools.osb.mbean.*;
 import com.arjuna.ats.internal.jta.resources.arjunacore.XAResourceRecord;
+import com.arjuna.ats.internal.jta.resources.arjunacore.XAResourceRetryManager;
+import com.arjuna.ats.internal.jta.resources.arjunacore.XAResourceRetryStatistics;
 import com.arjuna.ats.internal.jta.xa.XID;
 import com.arjuna.ats.jta.xa.XATxConverter;
 import com.arjuna.ats.jta.xa.XidImple;
@@ -48,6 +50,7 @@ public class XAResourceRecordBean extends LogRecordWrapper implements XAResource
     String eisProductName = "unavailable";
     String eisProductVersion = "unavailable";
     String jndiName = "unavailable";
+    String resourceManager = "unavailable";
     int timeout = 0;
     JTAXAResourceRecordWrapper xares;
     XidImple xidImple;
@@ -88,6 +91,7 @@ public class XAResourceRecordBean extends LogRecordWrapper implements XAResource
             eisProductName = xarec.getProductName();
             eisProductVersion = xarec.getProductVersion();
             jndiName = xarec.getJndiName();
+            resourceManager = xarec.getResourceManagerName();
         }
 
         if (rec.value() != null) {
@@ -109,6 +113,40 @@ public class XAResourceRecordBean extends LogRecordWrapper implements XAResource
     public String getEisProductVersion() { return eisProductVersion; }
     public String getJndiName() { return jndiName; }
     public int getTimeout() { return timeout; }
+    public String getResourceManager() { return resourceManager; }
+
+    public long getResourceManagerFailures() {
+        XAResourceRetryStatistics stats = getRetryStatistics();
+        return stats == null ? 0 : stats.getFailures();
+    }
+    public long getRetriesScheduled() {
+        XAResourceRetryStatistics stats = getRetryStatistics();
+        return stats == null ? 0 : stats.getRetriesScheduled();
+    }
+    public long getRetriesSucceeded() {
+        XAResourceRetryStatistics stats = getRetryStatistics();
+        return stats == null ? 0 : stats.getRetriesSucceeded();
+    }
+    public long getRetriesHandedToRecovery() {
+        XAResourceRetryStatistics stats = getRetryStatistics();
+        return stats == null ? 0 : stats.getHandedToRecovery();
+    }
+    public long getRejectedRequests() {
+        XAResourceRetryStatistics stats = getRetryStatistics();
+        return stats == null ? 0 : stats.getRejectedRequests();
+    }
+    public long getCircuitOpenings() {
+        XAResourceRetryStatistics stats = getRetryStatistics();
+        return stats == null ? 0 : stats.getCircuitOpenings();
+    }
+    public boolean isCircuitOpen() {
+        XAResourceRetryStatistics stats = getRetryStatistics();
+        return stats != null && stats.isCircuitOpen();
+    }
+
+    private XAResourceRetryStatistics getRetryStatistics() {
+        return XAResourceRetryManager.getInstance().getStatistics(resourceManager);
+    }
 
     @Override
     public String getHeuristicStatus() {
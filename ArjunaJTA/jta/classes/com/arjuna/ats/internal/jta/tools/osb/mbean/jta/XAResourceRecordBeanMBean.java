@@ -20,6 +20,7 @@
 package com.arjuna.ats.internal.jta.tools.osb.mbean.jta;
 
 import com.arjuna.ats.arjuna.tools.osb.annotation.MXBeanDescription;
+import com.arjuna.ats.arjuna.tools.osb.annotation.MXBeanPropertyDescription;
 
 /**
  * @deprecated as of 5.0.5.Final In a subsequent release we will change packages names in order to 
@@ -28,4 +29,20 @@ import com.arjuna.ats.arjuna.tools.osb.annotation.MXBeanDescription;
 @Deprecated // in order to provide a better separation between public and internal classes.
 @MXBeanDescription("Management view of an XAResource participating in a transaction")
 public interface XAResourceRecordBeanMBean extends XAResourceMBean {
+	@MXBeanPropertyDescription("The resource manager that the commit retry statistics of this bean refer to")
+	String getResourceManager();
+	@MXBeanPropertyDescription("The number of XA_RETRY or XAER_RMFAIL errors reported by the resource manager")
+	long getResourceManagerFailures();
+	@MXBeanPropertyDescription("The number of background commit retries scheduled for the resource manager")
+	long getRetriesScheduled();
+	@MXBeanPropertyDescription("The number of background commit retries that completed a branch of the resource manager")
+	long getRetriesSucceeded();
+	@MXBeanPropertyDescription("The number of branches of the resource manager that commit retries left to the recovery manager")
+	long getRetriesHandedToRecovery();
+	@MXBeanPropertyDescription("The number of calls to the resource manager that were not made because its circuit was open")
+	long getRejectedRequests();
+	@MXBeanPropertyDescription("The number of times the circuit of the resource manager was opened")
+	long getCircuitOpenings();
+	@MXBeanPropertyDescription("Whether calls to the resource manager are currently being short-circuited")
+	boolean isCircuitOpen();
 }
@@ -1154,9 +1154,17 @@ public class TransactionImple implements javax.transaction.Transaction,
 		final BasicAction current = BasicAction.Current();
 		if (current != null)
 		{
-			final Uid txid = current.get_uid();
+			/*
+			 * Registered transactions are referenced from their action so the
+			 * common case does not need to go through the index.
+			 */
+
+			final Object view = current.getTransactionView();
 
-			tx = (TransactionImple) _transactions.get(txid);
+			if (view instanceof TransactionImple)
+				return (TransactionImple) view;
+
+			tx = _transactions.get(current.get_uid());
 			if (tx == null)
 				tx = new TransactionImple(current);
 		}
@@ -1169,7 +1177,7 @@ public class TransactionImple implements javax.transaction.Transaction,
 		try
 		{
 			if (id != null)
-				return (TransactionImple) _transactions.get(id);
+				return _transactions.get(id);
 			else
 				return null;
 		}
@@ -1671,11 +1679,17 @@ public class TransactionImple implements javax.transaction.Transaction,
 	static final protected void putTransaction(TransactionImple tx)
 	{
 		_transactions.put(tx.get_uid(), tx);
+
+		if (tx._theTransaction != null)
+			tx._theTransaction.setTransactionView(tx);
 	}
 
 	public static final void removeTransaction(TransactionImple tx)
 	{
 		_transactions.remove(tx.get_uid());
+
+		if (tx._theTransaction != null && tx._theTransaction.getTransactionView() == tx)
+			tx._theTransaction.setTransactionView(null);
 	}
 
 	private static boolean getXATransactionTimeoutEnabled()
@@ -1743,7 +1757,7 @@ public class TransactionImple implements javax.transaction.Transaction,
         }
 	}
 
-	private static final ConcurrentHashMap _transactions = new ConcurrentHashMap();
+	private static final ConcurrentHashMap<Uid, TransactionImple> _transactions = new ConcurrentHashMap<Uid, TransactionImple>();
 	
 	private static final List<String> commitMarkableResourceJNDINames = BeanPopulator
 			.getDefaultInstance(JTAEnvironmentBean.class)
@@ -123,6 +123,20 @@ public class JTAEnvironmentBean implements JTAEnvironmentBeanMBean
 	private boolean transactionToThreadListenersEnabled = false;
 
 	private List<String> xaResourceIsSameRMClassNames = new ArrayList<>();
+
+	private volatile boolean xaRetryBackoffEnabled = false;
+
+	private volatile int xaRetryInitialBackoff = 100;
+
+	private volatile int xaRetryMaxBackoff = 10000;
+
+	private volatile int xaRetryMaxAttempts = 5;
+
+	private volatile int xaRetryPoolSize = 2;
+
+	private volatile int xaCircuitBreakerFailureThreshold = 5;
+
+	private volatile int xaCircuitBreakerOpenPeriod = 30000;
 	/**
      * Returns true if subtransactions are allowed.
      * Warning: subtransactions are not JTA spec compliant and most XA resource managers don't understand them.
@@ -1376,4 +1390,163 @@ public class JTAEnvironmentBean implements JTAEnvironmentBeanMBean
             }
         }
     }
+
+    /**
+     * Returns true if commits that fail with XA_RETRY or XAER_RMFAIL are retried in the background
+     * with exponential backoff, and if resource managers that keep failing are short-circuited
+     * during prepare and commit instead of being called.
+     *
+     * Default: false.
+     *
+     * @return true if adaptive retry of XA commits is enabled.
+     */
+    public boolean isXaRetryBackoffEnabled()
+    {
+        return xaRetryBackoffEnabled;
+    }
+
+    /**
+     * Sets if commits that fail with XA_RETRY or XAER_RMFAIL are retried in the background.
+     *
+     * @param xaRetryBackoffEnabled true to enable adaptive retry, false to leave the work to recovery.
+     */
+    public void setXaRetryBackoffEnabled(boolean xaRetryBackoffEnabled)
+    {
+        this.xaRetryBackoffEnabled = xaRetryBackoffEnabled;
+    }
+
+    /**
+     * Returns the delay, in milliseconds, before the first background retry of a failed commit.
+     * Each further attempt doubles the delay up to {@link #getXaRetryMaxBackoff()}.
+     *
+     * Default: 100 milliseconds.
+     *
+     * @return the initial retry delay in milliseconds.
+     */
+    public int getXaRetryInitialBackoff()
+    {
+        return xaRetryInitialBackoff;
+    }
+
+    /**
+     * Sets the delay, in milliseconds, before the first background retry of a failed commit.
+     *
+     * @param xaRetryInitialBackoff the initial retry delay in milliseconds.
+     */
+    public void setXaRetryInitialBackoff(int xaRetryInitialBackoff)
+    {
+        this.xaRetryInitialBackoff = xaRetryInitialBackoff;
+    }
+
+    /**
+     * Returns the upper bound, in milliseconds, of the delay between background retries of a failed commit.
+     *
+     * Default: 10000 milliseconds.
+     *
+     * @return the maximum retry delay in milliseconds.
+     */
+    public int getXaRetryMaxBackoff()
+    {
+        return xaRetryMaxBackoff;
+    }
+
+    /**
+     * Sets the upper bound, in milliseconds, of the delay between background retries of a failed commit.
+     *
+     * @param xaRetryMaxBackoff the maximum retry delay in milliseconds.
+     */
+    public void setXaRetryMaxBackoff(int xaRetryMaxBackoff)
+    {
+        this.xaRetryMaxBackoff = xaRetryMaxBackoff;
+    }
+
+    /**
+     * Returns the number of background retries of a failed commit before it is left to the recovery manager.
+     *
+     * Default: 5.
+     *
+     * @return the retry budget of a failed commit.
+     */
+    public int getXaRetryMaxAttempts()
+    {
+        return xaRetryMaxAttempts;
+    }
+
+    /**
+     * Sets the number of background retries of a failed commit before it is left to the recovery manager.
+     *
+     * @param xaRetryMaxAttempts the retry budget of a failed commit.
+     */
+    public void setXaRetryMaxAttempts(int xaRetryMaxAttempts)
+    {
+        this.xaRetryMaxAttempts = xaRetryMaxAttempts;
+    }
+
+    /**
+     * Returns the number of threads used to run background retries of failed commits.
+     *
+     * Default: 2.
+     *
+     * @return the size of the retry thread pool.
+     */
+    public int getXaRetryPoolSize()
+    {
+        return xaRetryPoolSize;
+    }
+
+    /**
+     * Sets the number of threads used to run background retries of failed commits.
+     *
+     * @param xaRetryPoolSize the size of the retry thread pool.
+     */
+    public void setXaRetryPoolSize(int xaRetryPoolSize)
+    {
+        this.xaRetryPoolSize = xaRetryPoolSize;
+    }
+
+    /**
+     * Returns the number of consecutive XA_RETRY or XAER_RMFAIL failures of a resource manager after which
+     * it is no longer called until {@link #getXaCircuitBreakerOpenPeriod()} has elapsed.
+     *
+     * Default: 5.
+     *
+     * @return the failure threshold of the per resource manager circuit breaker.
+     */
+    public int getXaCircuitBreakerFailureThreshold()
+    {
+        return xaCircuitBreakerFailureThreshold;
+    }
+
+    /**
+     * Sets the number of consecutive failures of a resource manager after which it is no longer called.
+     *
+     * @param xaCircuitBreakerFailureThreshold the failure threshold of the per resource manager circuit breaker.
+     */
+    public void setXaCircuitBreakerFailureThreshold(int xaCircuitBreakerFailureThreshold)
+    {
+        this.xaCircuitBreakerFailureThreshold = xaCircuitBreakerFailureThreshold;
+    }
+
+    /**
+     * Returns the time, in milliseconds, for which a failing resource manager is not called before
+     * a single trial request is let through again.
+     *
+     * Default: 30000 milliseconds.
+     *
+     * @return the open period of the per resource manager circuit breaker.
+     */
+    public int getXaCircuitBreakerOpenPeriod()
+    {
+        return xaCircuitBreakerOpenPeriod;
+    }
+
+    /**
+     * Sets the time, in milliseconds, for which a failing resource manager is not called.
+     *
+     * @param xaCircuitBreakerOpenPeriod the open period of the per resource manager circuit breaker.
+     */
+    public void setXaCircuitBreakerOpenPeriod(int xaCircuitBreakerOpenPeriod)
+    {
+        this.xaCircuitBreakerOpenPeriod = xaCircuitBreakerOpenPeriod;
+    }
 }
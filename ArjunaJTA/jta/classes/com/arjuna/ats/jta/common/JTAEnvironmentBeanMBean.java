@@ -58,4 +58,18 @@ public interface JTAEnvironmentBeanMBean
     boolean isXaTransactionTimeoutEnabled();
 
     String getLastResourceOptimisationInterfaceClassName();
+
+    boolean isXaRetryBackoffEnabled();
+
+    int getXaRetryInitialBackoff();
+
+    int getXaRetryMaxBackoff();
+
+    int getXaRetryMaxAttempts();
+
+    int getXaRetryPoolSize();
+
+    int getXaCircuitBreakerFailureThreshold();
+
+    int getXaCircuitBreakerOpenPeriod();
 }
@@ -614,6 +614,22 @@ public interface jtaI18NLogger {
     @Message(id = 16152, value = "TransactionScoped context is not active as there is no active transaction on the thread", format = MESSAGE_FORMAT)
     String get_contextual_is_not_active();
 
+    @Message(id = 16153, value = "Resource manager {0} is failing, not calling it for transaction {1}", format = MESSAGE_FORMAT)
+    @LogMessage(level = WARN)
+    public void warn_resources_arjunacore_circuitopen(String rm, String xid);
+
+    @Message(id = 16154, value = "Retry budget exhausted committing transaction {0} with resource manager {1}, leaving it to the recovery manager", format = MESSAGE_FORMAT)
+    @LogMessage(level = WARN)
+    public void warn_resources_arjunacore_retryexhausted(String xid, String rm);
+
+    @Message(id = 16155, value = "Retried commit of transaction {0} with resource manager {1} failed with {2}, leaving it to the recovery manager", format = MESSAGE_FORMAT)
+    @LogMessage(level = WARN)
+    public void warn_resources_arjunacore_retryfailed(String xid, String rm, String error, @Cause() Throwable e);
+
+    @Message(id = 16156, value = "Failed to delete JMS temporary destination {0}", format = MESSAGE_FORMAT)
+    @LogMessage(level = WARN)
+    void warn_failed_to_delete_jms_temporary_destination(String arg0, @Cause() Exception e);
+
 
     /*
         Allocate new messages directly above this notice.
@@ -0,0 +1,404 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2021, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ *
+ * (C) 2021,
+ * @author JBoss Inc.
+ */
+
+package com.arjuna.ats.internal.jta.resources.arjunacore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.XAConnection;
+import javax.sql.XADataSource;
+import javax.transaction.Transaction;
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.arjuna.ats.arjuna.common.Uid;
+import com.arjuna.ats.arjuna.coordinator.TxControl;
+import com.arjuna.ats.arjuna.state.InputObjectState;
+import com.arjuna.ats.arjuna.state.OutputObjectState;
+import com.arjuna.ats.jta.common.JTAEnvironmentBean;
+import com.arjuna.ats.jta.xa.RecoverableXAConnection;
+import com.arjuna.ats.jta.xa.XidImple;
+
+public class XAResourceRetryManagerUnitTest
+{
+    @After
+    public void tearDown ()
+    {
+        if (_manager != null)
+            _manager.shutdown();
+    }
+
+    @Test
+    public void testDisabled () throws Exception
+    {
+        _manager = new XAResourceRetryManager(new JTAEnvironmentBean());
+
+        assertFalse(_manager.isEnabled());
+        assertTrue(_manager.allowRequest("rm"));
+        assertFalse(_manager.scheduleCommitRetry("rm", new XidImple(new Uid()), new FlakyXAResource(0)));
+        assertTrue(_manager.getStatistics().isEmpty());
+    }
+
+    @Test
+    public void testBackoff () throws Exception
+    {
+        _manager = new XAResourceRetryManager(config(3));
+
+        for (int attempt = 1; attempt < 10; attempt++)
+        {
+            long expected = Math.min(10L << (attempt - 1), 100);
+            long delay = _manager.backoff(attempt);
+
+            assertTrue(delay <= expected);
+            assertTrue(delay >= expected - expected / 4);
+        }
+    }
+
+    @Test
+    public void testCircuitBreaker () throws Exception
+    {
+        _manager = new XAResourceRetryManager(config(3));
+
+        _manager.recordFailure("rm");
+        _manager.recordFailure("rm");
+
+        assertTrue(_manager.allowRequest("rm"));
+
+        _manager.recordFailure("rm");
+
+        assertFalse(_manager.allowRequest("rm"));
+        assertTrue(_manager.allowRequest("other"));
+
+        XAResourceRetryStatistics stats = _manager.getStatistics("rm");
+
+        assertTrue(stats.isCircuitOpen());
+        assertEquals(1, stats.getCircuitOpenings());
+        assertEquals(1, stats.getRejectedRequests());
+
+        Thread.sleep(OPEN_PERIOD + 50);
+
+        assertTrue(_manager.allowRequest("rm"));
+
+        _manager.recordSuccess("rm");
+
+        assertFalse(stats.isCircuitOpen());
+        assertEquals(3, stats.getFailures());
+    }
+
+    @Test
+    public void testRetrySucceeds () throws Exception
+    {
+        _manager = new XAResourceRetryManager(config(3));
+
+        FlakyXAResource xares = new FlakyXAResource(2);
+
+        assertTrue(_manager.scheduleCommitRetry("rm", new XidImple(new Uid()), xares));
+        assertTrue(xares.committed.await(10, TimeUnit.SECONDS));
+
+        XAResourceRetryStatistics stats = _manager.getStatistics("rm");
+        long deadline = System.currentTimeMillis() + 10000;
+
+        while (stats.getRetriesSucceeded() == 0 && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+
+        assertEquals(3, xares.calls.get());
+        assertEquals(3, stats.getRetriesScheduled());
+        assertEquals(1, stats.getRetriesSucceeded());
+        assertEquals(0, stats.getHandedToRecovery());
+    }
+
+    @Test
+    public void testRetryExhausted () throws Exception
+    {
+        _manager = new XAResourceRetryManager(config(2));
+
+        FlakyXAResource xares = new FlakyXAResource(Integer.MAX_VALUE);
+
+        assertTrue(_manager.scheduleCommitRetry("rm", new XidImple(new Uid()), xares));
+
+        XAResourceRetryStatistics stats = _manager.getStatistics("rm");
+        long deadline = System.currentTimeMillis() + 10000;
+
+        while (stats.getHandedToRecovery() == 0 && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+
+        assertEquals(1, stats.getHandedToRecovery());
+        assertEquals(2, xares.calls.get());
+        assertEquals(0, stats.getRetriesSucceeded());
+    }
+
+    @Test
+    public void testConnectionClosedByRetry () throws Exception
+    {
+        _manager = new XAResourceRetryManager(config(3));
+
+        FlakyXAResource xares = new FlakyXAResource(1);
+        TestConnection connection = new TestConnection();
+        Xid xid = new XidImple(new Uid());
+
+        assertTrue(_manager.scheduleCommitRetry("rm", xid, xares, connection));
+        assertTrue(_manager.isRetrying(xid));
+
+        // the resource is still in use, so the connection must stay open
+        assertEquals(0, connection.closes.get());
+
+        assertTrue(xares.committed.await(10, TimeUnit.SECONDS));
+
+        long deadline = System.currentTimeMillis() + 10000;
+
+        while (connection.closes.get() == 0 && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+
+        assertEquals(1, connection.closes.get());
+        assertFalse(_manager.isRetrying(xid));
+    }
+
+    @Test
+    public void testRecoveryTakesOver () throws Exception
+    {
+        _manager = new XAResourceRetryManager(config(100));
+
+        FlakyXAResource xares = new FlakyXAResource(Integer.MAX_VALUE);
+        TestConnection connection = new TestConnection();
+        Xid xid = new XidImple(new Uid());
+
+        assertTrue(_manager.scheduleCommitRetry("rm", xid, xares, connection));
+
+        long deadline = System.currentTimeMillis() + 10000;
+
+        while (xares.calls.get() == 0 && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+
+        // the recovery manager finds the branch in its own copy of the log
+        assertTrue(_manager.recoveryStarted(new XidImple(xid)));
+        assertFalse(_manager.isRetrying(xid));
+        assertFalse(_manager.recoveryStarted(xid));
+
+        int calls = xares.calls.get();
+
+        Thread.sleep(300);
+
+        assertEquals(calls, xares.calls.get());
+        assertEquals(1, connection.closes.get());
+        assertEquals(1, _manager.getStatistics("rm").getHandedToRecovery());
+    }
+
+    @Test
+    public void testStoppedWithTransactionSystem () throws Exception
+    {
+        _manager = new XAResourceRetryManager(config(100));
+
+        FlakyXAResource xares = new FlakyXAResource(Integer.MAX_VALUE);
+        TestConnection connection = new TestConnection();
+        Xid xid = new XidImple(new Uid());
+
+        assertTrue(_manager.scheduleCommitRetry("rm", xid, xares, connection));
+
+        long deadline = System.currentTimeMillis() + 10000;
+
+        while (xares.calls.get() == 0 && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+
+        TxControl.disable(true);
+
+        try
+        {
+            assertFalse(_manager.isRetrying(xid));
+            assertEquals(1, connection.closes.get());
+
+            int calls = xares.calls.get();
+
+            Thread.sleep(300);
+
+            assertEquals(calls, xares.calls.get());
+            assertFalse(retryThreadsAlive());
+        }
+        finally
+        {
+            TxControl.enable();
+        }
+    }
+
+    private static boolean retryThreadsAlive ()
+    {
+        for (Thread t : Thread.getAllStackTraces().keySet())
+        {
+            if (t.getName().startsWith("Narayana-XARetry_") && t.isAlive())
+                return true;
+        }
+
+        return false;
+    }
+
+    private static JTAEnvironmentBean config (int maxAttempts)
+    {
+        JTAEnvironmentBean config = new JTAEnvironmentBean();
+
+        config.setXaRetryBackoffEnabled(true);
+        config.setXaRetryInitialBackoff(10);
+        config.setXaRetryMaxBackoff(100);
+        config.setXaRetryMaxAttempts(maxAttempts);
+        config.setXaCircuitBreakerFailureThreshold(3);
+        config.setXaCircuitBreakerOpenPeriod(OPEN_PERIOD);
+
+        return config;
+    }
+
+    private static class FlakyXAResource implements XAResource
+    {
+        FlakyXAResource (int failures)
+        {
+            _failures = failures;
+        }
+
+        public void commit (Xid xid, boolean onePhase) throws XAException
+        {
+            if (calls.incrementAndGet() <= _failures)
+                throw new XAException(XAException.XAER_RMFAIL);
+
+            committed.countDown();
+        }
+
+        public void end (Xid xid, int flags) throws XAException
+        {
+        }
+
+        public void forget (Xid xid) throws XAException
+        {
+        }
+
+        public int getTransactionTimeout () throws XAException
+        {
+            return 0;
+        }
+
+        public boolean isSameRM (XAResource xares) throws XAException
+        {
+            return xares == this;
+        }
+
+        public int prepare (Xid xid) throws XAException
+        {
+            return XA_OK;
+        }
+
+        public Xid[] recover (int flag) throws XAException
+        {
+            return null;
+        }
+
+        public void rollback (Xid xid) throws XAException
+        {
+        }
+
+        public boolean setTransactionTimeout (int seconds) throws XAException
+        {
+            return false;
+        }
+
+        public void start (Xid xid, int flags) throws XAException
+        {
+        }
+
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch committed = new CountDownLatch(1);
+
+        private final int _failures;
+    }
+
+    private static class TestConnection implements RecoverableXAConnection
+    {
+        public boolean packInto (OutputObjectState os)
+        {
+            return true;
+        }
+
+        public boolean unpackFrom (InputObjectState os)
+        {
+            return true;
+        }
+
+        public XAResource getResource () throws SQLException
+        {
+            return null;
+        }
+
+        public XAConnection getConnection () throws SQLException
+        {
+            return null;
+        }
+
+        public XAConnection getCurrentConnection () throws SQLException
+        {
+            return null;
+        }
+
+        public XADataSource getDataSource () throws SQLException
+        {
+            return null;
+        }
+
+        public void closeCloseCurrentConnection () throws SQLException
+        {
+        }
+
+        public boolean inuse ()
+        {
+            return closes.get() == 0;
+        }
+
+        public void reset ()
+        {
+        }
+
+        public void close ()
+        {
+            closes.incrementAndGet();
+        }
+
+        public boolean setTransaction (Transaction tx)
+        {
+            return true;
+        }
+
+        public boolean validTransaction (Transaction tx)
+        {
+            return true;
+        }
+
+        final AtomicInteger closes = new AtomicInteger();
+    }
+
+    private static final int OPEN_PERIOD = 200;
+
+    private XAResourceRetryManager _manager;
+}
@@ -0,0 +1,120 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2021, Red Hat, Inc., and individual contributors 
+ * as indicated by the @author tags. 
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors. 
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A 
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA  02110-1301, USA.
+ * 
+ * (C) 2021,
+ * @author JBoss Inc.
+ */
+package com.arjuna.ats.jta.xa.performance;
+
+import io.narayana.perf.Measurement;
+import io.narayana.perf.Worker;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.arjuna.ats.arjuna.common.arjPropertyManager;
+import com.arjuna.ats.internal.arjuna.objectstore.TwoPhaseVolatileStore;
+
+/**
+ * Measure the cost of looking up the current transaction in the way a container
+ * interceptor chain does: every interceptor asks the transaction manager for the
+ * transaction (and its status) associated with the calling thread.
+ */
+public class TransactionLookupPerformanceUnitTest
+{
+    private static final int INTERCEPTORS_PER_CALL = 20;
+
+    public static void main (String[] args)
+    {
+        TransactionLookupPerformanceUnitTest obj = new TransactionLookupPerformanceUnitTest();
+
+        obj.test();
+    }
+
+    @Test
+    public void test()
+    {
+        int warmUpCount = 1000;
+        int numberOfThreads = 10;
+        int batchSize = 1000;
+        int numberOfTransactions = numberOfThreads * batchSize;
+
+        Measurement measurement = new Measurement.Builder(getClass().getName() + "_test1")
+                .maxTestTime(0L).numberOfCalls(numberOfTransactions)
+                .numberOfThreads(numberOfThreads).batchSize(batchSize)
+                .numberOfWarmupCalls(warmUpCount).build().measure(worker, worker);
+
+        System.out.printf("%s%n", measurement.getInfo());
+        Assert.assertEquals(0, measurement.getNumberOfErrors());
+        Assert.assertFalse(measurement.getInfo(), measurement.shouldFail());
+
+        long timeTaken = measurement.getTotalMillis();
+
+        System.out.println("time for " + numberOfTransactions + " transactions with "
+                + INTERCEPTORS_PER_CALL + " lookups each is " + timeTaken);
+        System.out.println("throughput: " + (float) (numberOfTransactions / (timeTaken / 1000.0)));
+    }
+
+    Worker<Void> worker = new Worker<Void>() {
+        javax.transaction.TransactionManager tm;
+
+        @Override
+        public void init() {
+            arjPropertyManager.getObjectStoreEnvironmentBean().setObjectStoreType(TwoPhaseVolatileStore.class.getName());
+
+            tm = com.arjuna.ats.jta.TransactionManager.transactionManager();
+        }
+
+        @Override
+        public void fini() {
+        }
+
+        @Override
+        public Void doWork(Void context, int batchSize, Measurement<Void> measurement) {
+            for (int i = 0; i < batchSize; i++)
+            {
+                try
+                {
+                    tm.begin();
+
+                    javax.transaction.Transaction tx = tm.getTransaction();
+
+                    for (int j = 0; j < INTERCEPTORS_PER_CALL; j++)
+                    {
+                        if (tm.getTransaction() != tx || tm.getStatus() != javax.transaction.Status.STATUS_ACTIVE)
+                            measurement.incrementErrorCount();
+                    }
+
+                    tm.commit();
+                }
+                catch (Exception e)
+                {
+                    if (measurement.getNumberOfErrors() == 0)
+                        e.printStackTrace();
+
+                    measurement.incrementErrorCount();
+                }
+            }
+
+            return context;
+        }
+
+        @Override
+        public void finishWork(Measurement<Void> measurement) {
+        }
+    };
+
+}
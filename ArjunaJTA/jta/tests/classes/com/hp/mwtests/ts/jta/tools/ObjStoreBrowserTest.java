@@ -108,7 +108,11 @@ public class ObjStoreBrowserTest {
     {
         FailureXAResource failureXAResource = new FailureXAResource(FailureXAResource.FailLocation.commit); // generates a heuristic on commit
 
-        getHeuristicMBean(osb, new TransactionImple(1000000000), failureXAResource);
+        XAResourceRecordBeanMBean resourceBean = getHeuristicMBean(osb, new TransactionImple(1000000000), failureXAResource);
+
+        // the commit retry statistics are those of the resource manager of the participant
+        assertEquals(failureXAResource.getClass().getName(), resourceBean.getResourceManager());
+        assertFalse(resourceBean.isCircuitOpen());
     }
 
     /**
@@ -34,6 +34,7 @@ package com.hp.mwtests.ts.jta.twophase;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -50,6 +51,7 @@ import javax.transaction.xa.Xid;
 
 import org.junit.Test;
 
+import com.arjuna.ats.arjuna.coordinator.BasicAction;
 import com.arjuna.ats.internal.arjuna.thread.ThreadActionData;
 import com.arjuna.ats.internal.jta.transaction.arjunacore.TransactionImple;
 import com.arjuna.ats.jta.TransactionManager;
@@ -98,6 +100,30 @@ class DummyXAModifier implements XAModifier
 
 public class TransactionImpleUnitTest
 {
+    @Test
+    public void testCurrentTransactionLookup () throws Exception
+    {
+        ThreadActionData.purgeActions();
+
+        javax.transaction.TransactionManager tm = TransactionManager.transactionManager();
+
+        tm.begin();
+
+        TransactionImple tx = TransactionImple.getTransaction();
+        BasicAction action = BasicAction.Current();
+
+        // the registered transaction is referenced directly from its action
+        assertSame(tx, action.getTransactionView());
+        assertSame(tx, TransactionImple.getTransaction());
+        assertSame(tx, tm.getTransaction());
+        assertSame(tx, TransactionImple.getTransaction(tx.get_uid()));
+
+        tm.commit();
+
+        assertNull(action.getTransactionView());
+        assertNull(TransactionImple.getTransaction(tx.get_uid()));
+    }
+
     @Test
     public void test () throws Exception
     {
@@ -34,13 +34,26 @@ package com.hp.mwtests.ts.jta.twophase;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+
 import org.junit.Test;
 
 import com.arjuna.ats.arjuna.ObjectType;
 import com.arjuna.ats.arjuna.common.Uid;
 import com.arjuna.ats.arjuna.coordinator.TwoPhaseOutcome;
+import com.arjuna.ats.arjuna.recovery.RecoveryManager;
 import com.arjuna.ats.arjuna.state.InputObjectState;
 import com.arjuna.ats.arjuna.state.OutputObjectState;
+import com.arjuna.ats.internal.jta.recovery.arjunacore.XARecoveryModule;
 import com.arjuna.ats.internal.jta.resources.arjunacore.XAResourceRecord;
 import com.arjuna.ats.internal.jta.transaction.arjunacore.TransactionImple;
 import com.arjuna.ats.jta.xa.XidImple;
@@ -228,4 +241,142 @@ public class XAResourceRecordUnitTest
         assertEquals(xares.nestedCommit(), TwoPhaseOutcome.FINISH_OK);
         assertEquals(xares.nestedAbort(), TwoPhaseOutcome.FINISH_OK);
     }
+
+    @Test
+    public void testConcurrentReplay () throws Exception
+    {
+        final SharedXA shared = new SharedXA();
+        XARecoveryModule module = new XARecoveryModule()
+        {
+            @Override
+            public XAResource getNewXAResource (XAResourceRecord xaResourceRecord)
+            {
+                return shared;
+            }
+        };
+        RecoveryManager manager = RecoveryManager.manager();
+        List<XAResourceRecord> records = new ArrayList<XAResourceRecord>();
+
+        manager.addModule(module);
+
+        try
+        {
+            // recovered records of one resource manager all get the XAResource found by its scan
+
+            for (int i = 0; i < 20; i++)
+            {
+                TransactionImple tx = new TransactionImple(0);
+                XAResourceRecord xares = new XAResourceRecord(tx, shared, tx.getTxId(), null);
+                OutputObjectState os = new OutputObjectState();
+
+                assertTrue(xares.save_state(os, ObjectType.ANDPERSISTENT));
+
+                xares = new XAResourceRecord();
+
+                assertTrue(xares.restore_state(new InputObjectState(os), ObjectType.ANDPERSISTENT));
+
+                records.add(xares);
+            }
+
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            List<Future<Integer>> outcomes = new ArrayList<Future<Integer>>();
+
+            try
+            {
+                for (final XAResourceRecord xares : records)
+                    outcomes.add(executor.submit(() -> (records.indexOf(xares) % 2 == 0) ? xares.topLevelCommit() : xares.topLevelAbort()));
+
+                for (Future<Integer> outcome : outcomes)
+                    assertEquals(TwoPhaseOutcome.FINISH_OK, outcome.get().intValue());
+            }
+            finally
+            {
+                executor.shutdown();
+            }
+        }
+        finally
+        {
+            manager.removeModule(module, false);
+        }
+
+        // the replays ran one at a time on the shared resource
+        assertEquals(records.size(), shared.calls.get());
+        assertEquals(1, shared.maxConcurrent);
+    }
+
+    private static class SharedXA implements XAResource
+    {
+        public void commit (Xid xid, boolean onePhase) throws XAException
+        {
+            call();
+        }
+
+        public void rollback (Xid xid) throws XAException
+        {
+            call();
+        }
+
+        public void end (Xid xid, int flags) throws XAException
+        {
+        }
+
+        public void forget (Xid xid) throws XAException
+        {
+        }
+
+        public int getTransactionTimeout () throws XAException
+        {
+            return 0;
+        }
+
+        public boolean isSameRM (XAResource xares) throws XAException
+        {
+            return xares == this;
+        }
+
+        public int prepare (Xid xid) throws XAException
+        {
+            return XAResource.XA_OK;
+        }
+
+        public Xid[] recover (int flag) throws XAException
+        {
+            return null;
+        }
+
+        public boolean setTransactionTimeout (int seconds) throws XAException
+        {
+            return false;
+        }
+
+        public void start (Xid xid, int flags) throws XAException
+        {
+        }
+
+        private void call ()
+        {
+            int concurrent = active.incrementAndGet();
+
+            synchronized (this)
+            {
+                maxConcurrent = Math.max(maxConcurrent, concurrent);
+            }
+
+            try
+            {
+                Thread.sleep(10);
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+            }
+
+            active.decrementAndGet();
+            calls.incrementAndGet();
+        }
+
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger calls = new AtomicInteger();
+        int maxConcurrent;
+    }
 }
@@ -31,9 +31,13 @@
 
 package com.arjuna.ats.internal.jts.context;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.EmptyStackException;
-import java.util.Hashtable;
-import java.util.Stack;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.omg.CORBA.Any;
 import org.omg.CORBA.BAD_OPERATION;
@@ -106,21 +110,10 @@ public class ContextManager
 
     public ControlWrapper current (String threadId) throws SystemException
     {
-	Object arg = otsCurrent.get(threadId);
-	ControlWrapper wrapper = null;
+	ThreadContext context = context(threadId);
 
-	if (arg != null)
-	{
-	    try
-	    {
-		Stack hier = (Stack) arg;
-
-		return (ControlWrapper) hier.peek();
-	    }
-	    catch (EmptyStackException e)
-	    {
-	    }
-	}
+	if (context != null)
+	    return context._hierarchy.peekFirst();
 
 	return null;
     }
@@ -138,22 +131,11 @@ public class ContextManager
         jtsLogger.logger.trace("ContextManager::current ()");
     }
 
-	Object arg = otsCurrent.get(ThreadUtil.getThreadId());
+	ThreadContext context = _localContext.get();
 	ControlWrapper wrapper = null;
 
-	if (arg != null)
-	{
-	    try
-	    {
-		Stack hier = (Stack) arg;
-
-		wrapper = (ControlWrapper) hier.peek();
-	    }
-	    catch (EmptyStackException e)
-	    {
-		e.printStackTrace();
-	    }
-	}
+	if (context != null)
+	    wrapper = context._hierarchy.peekFirst();
 
 	/*
 	 * If we do not have a context currently, then check to see if
@@ -194,35 +176,25 @@ public class ContextManager
     }
 
 	ControlWrapper action = null;
-	Object arg = threadId == null ? null : otsCurrent.get(threadId);
+	ThreadContext context = threadId == null ? null : context(threadId);
 
-	if (arg != null)
+	if (context != null && !context._hierarchy.isEmpty())
 	{
-	    Stack sl = (Stack) arg;
-
-	    try
-	    {
-		/*
-		 * When we pushed the action we did the check for whether
-		 * it was local to save time now.
-		 */
+	    /*
+	     * When we pushed the action we did the check for whether
+	     * it was local to save time now.
+	     */
 
-		action = (ControlWrapper) sl.pop();
-	    }
-	    catch (EmptyStackException e)
-	    {
-	    }
+	    action = context._hierarchy.pop();
 
 	    /*
 	     * If size now zero we can delete from thread
 	     * specific data.
 	     */
 
-	    if (sl.size() == 0)
+	    if (context._hierarchy.isEmpty())
 	    {
-		sl = null;
-
-		otsCurrent.remove(threadId);
+		_contexts.remove(threadId, context);
 
 		disassociateContext(OTSManager.getLocalSlotId());
 	    }
@@ -406,7 +378,7 @@ public class ContextManager
 	{
 	    ActionControl actControl = cont;
 	    Control parentControl = actControl.getParentControl();
-	    Stack hier = new Stack();
+	    Deque<ControlWrapper> hier = new ArrayDeque<ControlWrapper>();
 
 	    while (parentControl != null)
 	    {
@@ -427,22 +399,8 @@ public class ContextManager
 
 	    actControl = null;
 
-	    try
-	    {
-		ControlWrapper wrapper = (ControlWrapper) hier.pop();
-
-		while (wrapper != null)
-		{
-		    pushAction(wrapper);
-
-		    wrapper = null;
-
-		    wrapper = (ControlWrapper) hier.pop();
-		}
-	    }
-	    catch (EmptyStackException e)
-	    {
-	    }
+	    while (!hier.isEmpty())
+		pushAction(hier.pop());
 	}
 	catch (Exception e)
 	{
@@ -470,7 +428,7 @@ public class ContextManager
 	try
 	{
 	    ControlImple curr = which.getParentImple();
-	    Stack hier = new Stack();
+	    Deque<ControlWrapper> hier = new ArrayDeque<ControlWrapper>();
 
 	    while (curr != null)
 	    {
@@ -479,22 +437,8 @@ public class ContextManager
 		curr = curr.getParentImple();
 	    }
 
-	    try
-	    {
-		ControlWrapper wrapper = (ControlWrapper) hier.pop();
-
-		while (wrapper != null)
-		{
-		    pushAction(wrapper);
-
-		    wrapper = null;
-
-		    wrapper = (ControlWrapper) hier.pop();
-		}
-	    }
-	    catch (EmptyStackException e)
-	    {
-	    }
+	    while (!hier.isEmpty())
+		pushAction(hier.pop());
 	}
 	catch (Exception e)
 	{
@@ -520,14 +464,13 @@ public class ContextManager
         jtsLogger.logger.trace("ContextManager::pushAction ()");
     }
 
-	final String threadId = ThreadUtil.getThreadId() ;
-	Stack sl = (Stack) otsCurrent.get(threadId);
-	boolean isNew = false;
+	ThreadContext context = _localContext.get();
 
-	if (sl == null)
+	if (context == null)
 	{
-	    isNew = true;
-	    sl = new Stack();
+	    context = new ThreadContext(ThreadUtil.getThreadId(), Thread.currentThread());
+
+	    _localContext.set(context);
 	}
 
 	// Check here that action is local and not a proxy.
@@ -546,10 +489,12 @@ public class ContextManager
 	 * can play with its own stack!
 	 */
 
-	sl.push(action);
+	boolean isNew = context._hierarchy.isEmpty();
+
+	context._hierarchy.push(action);
 
 	if (isNew)
-	    otsCurrent.put(threadId, sl);
+	    register(context);
 
 	associateContext();
 
@@ -790,7 +735,69 @@ public class ContextManager
 			return null;		
 	}
 
-    private Hashtable otsCurrent = new Hashtable();
+    /*
+     * The hierarchy of the calling thread is found through the thread local.
+     * The ORB interceptors may also ask for (or purge) the hierarchy of a
+     * thread by id from another thread, so non-empty hierarchies are also
+     * registered by id. Such accesses are ordered by the ORB's request
+     * processing, as the thread that owns the hierarchy is blocked in the
+     * request at the time.
+     */
+
+    private ThreadContext context (String threadId)
+    {
+	ThreadContext context = _localContext.get();
+
+	if (context != null && context._threadId.equals(threadId))
+	    return context;
+
+	return _contexts.get(threadId);
+    }
+
+    private void register (ThreadContext context)
+    {
+	_contexts.put(context._threadId, context);
+
+	if (_registrations.incrementAndGet() % STALE_CHECK_INTERVAL == 0)
+	    removeStaleContexts();
+    }
+
+    /*
+     * Threads that end with transactions still associated would otherwise
+     * leave their hierarchy registered forever.
+     */
+
+    private void removeStaleContexts ()
+    {
+	Iterator<ThreadContext> iter = _contexts.values().iterator();
+
+	while (iter.hasNext())
+	{
+	    Thread owner = iter.next()._owner.get();
+
+	    if (owner == null || !owner.isAlive())
+		iter.remove();
+	}
+    }
+
+    private static final class ThreadContext
+    {
+	ThreadContext (String threadId, Thread owner)
+	{
+	    _threadId = threadId;
+	    _owner = new WeakReference<Thread>(owner);
+	}
+
+	final String _threadId;
+	final WeakReference<Thread> _owner;
+	final Deque<ControlWrapper> _hierarchy = new ArrayDeque<ControlWrapper>(4);
+    }
+
+    private final ThreadLocal<ThreadContext> _localContext = new ThreadLocal<ThreadContext>();
+    private final ConcurrentHashMap<String, ThreadContext> _contexts = new ConcurrentHashMap<String, ThreadContext>();
+    private final AtomicInteger _registrations = new AtomicInteger();
+
+    private static final int STALE_CHECK_INTERVAL = 1024;
 
     private org.omg.PortableInterceptor.Current _piCurrent = null;
 
@@ -31,8 +31,8 @@
 
 package com.arjuna.ats.internal.jts.interposition.resources.arjuna;
 
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.omg.CORBA.CompletionStatus;
 import org.omg.CORBA.SystemException;
@@ -57,7 +57,6 @@ public class Interposition
 
     public Interposition ()
     {
-        _head = new LinkedList(); // not synchronized as the methods that access it all are synchronized.
     }
 
 public static ControlImple create (PropagationContext context) throws SystemException
@@ -84,57 +83,70 @@ public static boolean destroy (Uid act)
      * run an explicit garbage collection phase for finished hierarchies.
      */
 
-public synchronized ControlImple setupHierarchy (PropagationContext context) throws SystemException
+public ControlImple setupHierarchy (PropagationContext context) throws SystemException
     {
-	ControlImple controlPtr = null;
-	Uid theUid = null;
-	ServerTopLevelAction proxyAction = null;
+	Uid theUid = topLevelUid(context);
 
-	if (context.parents.length == 0)
-	    theUid = Utility.otidToUid(context.current.otid);
-	else
-	    theUid = Utility.otidToUid(context.parents[context.parents.length-1].otid);
-
-	proxyAction = present(theUid);
+	/*
+	 * Lock the hierarchy (or rather its stripe) rather than the whole list,
+	 * so requests for different transactions do not wait for each other.
+	 */
 
-	if (proxyAction == null)
+	synchronized (hierarchyLock(theUid))
 	{
-	    /*
-	     * Create a new proxyAction element and return the
-	     * "current" transaction.
-	     */
+	    ServerTopLevelAction proxyAction = present(theUid);
 
-	    controlPtr = createHierarchy(context, theUid);
-	}
-	else
-	{
-	    /*
-	     * Check hierarchy of existing element.
-	     */
+	    if (proxyAction == null)
+	    {
+		/*
+		 * Create a new proxyAction element and return the
+		 * "current" transaction.
+		 */
 
-	    controlPtr = checkHierarchy(proxyAction, context);
-	    proxyAction = null;
+		return createHierarchy(context, theUid);
+	    }
+	    else
+	    {
+		/*
+		 * Check hierarchy of existing element.
+		 */
+
+		return checkHierarchy(proxyAction, context);
+	    }
 	}
+    }
 
-	return controlPtr;
+    /**
+     * @return the Uid under which the hierarchy of the context is indexed.
+     */
+
+protected Uid topLevelUid (PropagationContext context)
+    {
+	if (context.parents.length == 0)
+	    return Utility.otidToUid(context.current.otid);
+	else
+	    return Utility.otidToUid(context.parents[context.parents.length-1].otid);
     }
 
-    protected final synchronized ServerTopLevelAction present (Uid actUid)
+    protected final ServerTopLevelAction present (Uid actUid)
     {
-        if(_head == null) {
+        if (actUid == null)
             return null;
-        }
 
-        for(ServerTopLevelAction action : _head) {
-            if(actUid.equals(action.get_uid())) {
-                return action;
-            }
-        }
+        return _hierarchies.get(actUid);
+    }
 
-        return null;
+    protected final void addHierarchy (ServerTopLevelAction action)
+    {
+        _hierarchies.put(action.get_uid(), action);
     }
 
-protected synchronized ControlImple createHierarchy (PropagationContext ctx, Uid tlUid) throws SystemException
+    protected final Object hierarchyLock (Uid theUid)
+    {
+        return _hierarchyLocks[(theUid.hashCode() & 0x7fffffff) % _hierarchyLocks.length];
+    }
+
+protected ControlImple createHierarchy (PropagationContext ctx, Uid tlUid) throws SystemException
     {
 	/*
 	 * Start at the parent and work our way down to "current". The current
@@ -194,7 +206,7 @@ protected synchronized ControlImple createHierarchy (PropagationContext ctx, Uid
 
 	ServerTopLevelAction newElement = (ServerTopLevelAction)action;
 
-	_head.add(newElement);
+	addHierarchy(newElement);
 
 	if (depth > 0) // current is a nested transaction
 	{
@@ -299,7 +311,7 @@ protected synchronized ControlImple createHierarchy (PropagationContext ctx, Uid
      * same way as we did for creating a completely new hierarchy.
      */
 
-protected synchronized ControlImple checkHierarchy (ServerTopLevelAction hier,
+protected ControlImple checkHierarchy (ServerTopLevelAction hier,
 						   PropagationContext context) throws SystemException
     {
 	ServerControl control = null;
@@ -480,20 +492,13 @@ protected synchronized ControlImple checkHierarchy (ServerTopLevelAction hier,
 	return control;
     }
 
-    protected final synchronized boolean removeHierarchy (Uid theUid)
+    protected final boolean removeHierarchy (Uid theUid)
     {
-        ServerTopLevelAction action = present(theUid);
-
-        if (action != null)
-        {
-            _head.remove(action);
+        if (theUid != null && _hierarchies.remove(theUid) != null)
             return true;
-        }
-        else
-        {
-            if (jtsLogger.logger.isTraceEnabled()) {
-                jtsLogger.i18NLogger.warn_interposition_resources_arjuna_ipfail("Interposition.removeHeirarchy", theUid);
-            }
+
+        if (jtsLogger.logger.isTraceEnabled()) {
+            jtsLogger.i18NLogger.warn_interposition_resources_arjuna_ipfail("Interposition.removeHeirarchy", theUid);
         }
 
         return false;
@@ -619,7 +624,20 @@ protected final void compareHierarchies (PropagationContext ctx, ServerTopLevelA
         return hier;
     }
 
-protected List<ServerTopLevelAction> _head;
+    /*
+     * Shared by all of the interposition variants, since destroy is
+     * static and so cannot tell which one imported the hierarchy.
+     */
+
+private static final ConcurrentHashMap<Uid, ServerTopLevelAction> _hierarchies = new ConcurrentHashMap<Uid, ServerTopLevelAction>();
+
+private static final Object[] _hierarchyLocks = new Object[64];
+
+    static
+    {
+	for (int i = 0; i < _hierarchyLocks.length; i++)
+	    _hierarchyLocks[i] = new Object();
+    }
 
 private static Interposition __list = new Interposition();
 
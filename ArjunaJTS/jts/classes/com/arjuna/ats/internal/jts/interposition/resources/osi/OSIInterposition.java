@@ -66,37 +66,20 @@ public static ControlImple create (PropagationContext context) throws SystemExce
      * really the same transaction.
      */
 
-public synchronized ControlImple setupHierarchy (PropagationContext context) throws SystemException
+protected Uid topLevelUid (PropagationContext context)
     {
 	/*
 	 * Map otid to a Uid.
 	 */
 
-	Uid theUid = OTIDMap.find(context.current.otid);
-	ServerTopLevelAction proxyAction = present(theUid);
-	ControlImple controlPtr = null;
-
-	if (proxyAction == null)
-	{
-	    /*
-	     * Create a new proxyAction element and return the "current" transaction.
-	     */
-
-	    controlPtr = createHierarchy(context, theUid);
-	}
-	else
-	{
-	    controlPtr = checkHierarchy(proxyAction, context);
-	}
-
-	return controlPtr;
+	return OTIDMap.find(context.current.otid);
     }
 
 protected OSIInterposition ()
     {
     }
 
-protected synchronized ControlImple createHierarchy (PropagationContext ctx,
+protected ControlImple createHierarchy (PropagationContext ctx,
 						    Uid currentUid) throws SystemException
     {
 	/*
@@ -161,7 +144,7 @@ protected synchronized ControlImple createHierarchy (PropagationContext ctx,
 
 	ServerTopLevelAction newElement = (ServerOSITopLevelAction)action;
 
-	_head.add(newElement);
+	addHierarchy(newElement);
 
 	if (depth > 0)  // current is a nested transaction
 	{
@@ -289,7 +272,7 @@ protected synchronized ControlImple createHierarchy (PropagationContext ctx,
      * the right hierarchy gets sent out!
      */
 
-protected synchronized ControlImple checkHierarchy (ServerTopLevelAction hier,
+protected ControlImple checkHierarchy (ServerTopLevelAction hier,
 						   PropagationContext context)
     {
 	ServerControl control = null;
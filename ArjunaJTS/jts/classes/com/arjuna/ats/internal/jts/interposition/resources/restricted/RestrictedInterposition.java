@@ -64,50 +64,7 @@ public class RestrictedInterposition extends Interposition
             return null;
     }
 
-    /*
-     * Assume that all actions in the imported hierarchy are of the same type,
-     * i.e., all JBoss transactions. Because of the way garbage collection works
-     * in the ORB we have to run an explicit garbage collection phase for
-     * finished hierarchies.
-     */
-
-    public synchronized ControlImple setupHierarchy (PropagationContext context)
-            throws SystemException
-    {
-        ControlImple controlPtr = null;
-        Uid theUid = null;
-        ServerTopLevelAction proxyAction = null;
-
-        if (context.parents.length == 0)
-            theUid = Utility.otidToUid(context.current.otid);
-        else
-            theUid = Utility
-                    .otidToUid(context.parents[context.parents.length - 1].otid);
-
-        proxyAction = super.present(theUid);
-
-        if (proxyAction == null)
-        {
-            /*
-             * Create a new proxyAction element and return the "current"
-             * transaction.
-             */
-
-            controlPtr = createHierarchy(context, theUid);
-        }
-        else
-        {
-            /*
-             * Check hierarchy of existing element.
-             */
-
-            controlPtr = checkHierarchy(proxyAction, context);
-        }
-
-        return controlPtr;
-    }
-
-    protected synchronized ControlImple createHierarchy (
+    protected ControlImple createHierarchy (
             PropagationContext ctx, Uid tlUid) throws SystemException
     {
         /*
@@ -166,7 +123,7 @@ public class RestrictedInterposition extends Interposition
 
         ServerTopLevelAction newElement = tlAction;
 
-        super._head.add(newElement);
+        addHierarchy(newElement);
 
         if (depth > 0) // current is a nested transaction
         {
@@ -259,7 +216,7 @@ public class RestrictedInterposition extends Interposition
      * actions.
      */
 
-    protected synchronized ControlImple checkHierarchy (
+    protected ControlImple checkHierarchy (
             ServerTopLevelAction hier, PropagationContext context)
             throws SystemException
     {
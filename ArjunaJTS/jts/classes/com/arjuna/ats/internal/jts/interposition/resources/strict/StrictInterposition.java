@@ -75,7 +75,7 @@ protected StrictInterposition ()
     {
     }
 
-protected synchronized ControlImple createHierarchy (PropagationContext ctx, Uid currentUid) throws SystemException
+protected ControlImple createHierarchy (PropagationContext ctx, Uid currentUid) throws SystemException
     {
 	/*
 	 * Start at the parent and work our way down to "current". The current
@@ -137,7 +137,7 @@ protected synchronized ControlImple createHierarchy (PropagationContext ctx, Uid
 
 	ServerTopLevelAction newElement = (ServerStrictTopLevelAction)action;
 
-	_head.add(newElement);
+	addHierarchy(newElement);
 
 	if (depth > 0)  // current is a nested transaction
 	{
@@ -262,7 +262,7 @@ protected synchronized ControlImple createHierarchy (PropagationContext ctx, Uid
  * hierarchy gets sent out!
  */
 
-protected synchronized ControlImple checkHierarchy (ServerTopLevelAction hier, PropagationContext context)
+protected ControlImple checkHierarchy (ServerTopLevelAction hier, PropagationContext context)
     {
 	ServerControl control = null;
 	ServerResource currentAction = hier;  // top-level transaction
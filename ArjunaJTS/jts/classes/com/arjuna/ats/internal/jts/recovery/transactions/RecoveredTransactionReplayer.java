@@ -31,19 +31,22 @@
 
 package com.arjuna.ats.internal.jts.recovery.transactions;
 
-
-import java.util.Hashtable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.omg.CosTransactions.Resource;
 import org.omg.CosTransactions.Status;
 
 import com.arjuna.ats.arjuna.common.Uid;
-
-
+import com.arjuna.ats.jts.common.jtsPropertyManager;
 
 /**
  * Threaded object used to replay phase 2 of the commit protocol in a
- * background thread.  
+ * background thread. If JTSEnvironmentBean.recoveryReplayPoolSize is set
+ * the replays share a pool of that many threads instead.
  */
 public class RecoveredTransactionReplayer extends Thread
 {
@@ -110,7 +113,12 @@ public final void tidyup ()
      */
     public final void replayPhase2()
     {
-	start();
+	ExecutorService pool = replayPool();
+
+	if (pool != null)
+	    pool.execute(this);
+	else
+	    start();
     }
     
     public final void run()
@@ -127,7 +135,7 @@ public final void tidyup ()
 
 public static Object isPresent (Uid theUid)
     {
-	RecoveredTransactionReplayer rp = (RecoveredTransactionReplayer) _recoveringCache.get(theUid);
+	RecoveredTransactionReplayer rp = _recoveringCache.get(theUid);
 
 	if (rp != null)
 	    return rp._actionType;
@@ -139,6 +147,35 @@ public static Object isPresent (Uid theUid)
     private String		       _actionType = null;
     private CachedRecoveredTransaction _cachedRecoveredTransaction = null;
 
-private static Hashtable _recoveringCache = new Hashtable();
+    private static synchronized ExecutorService replayPool ()
+    {
+	if (_replayPool == null)
+	{
+	    int poolSize = jtsPropertyManager.getJTSEnvironmentBean().getRecoveryReplayPoolSize();
+
+	    if (poolSize <= 0)
+		return null;
+
+	    _replayPool = Executors.newFixedThreadPool(poolSize, new ThreadFactory()
+	    {
+		public Thread newThread (Runnable r)
+		{
+		    Thread t = new Thread(r, "Narayana-RecoveryReplay_" + _threadCount.incrementAndGet());
+
+		    t.setDaemon(true);
+
+		    return t;
+		}
+
+		private final AtomicInteger _threadCount = new AtomicInteger();
+	    });
+	}
+
+	return _replayPool;
+    }
+
+private static final ConcurrentHashMap<Uid, RecoveredTransactionReplayer> _recoveringCache = new ConcurrentHashMap<Uid, RecoveredTransactionReplayer>();
+
+private static ExecutorService _replayPool;
 
 }
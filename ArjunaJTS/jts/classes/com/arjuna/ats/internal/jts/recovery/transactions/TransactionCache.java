@@ -31,7 +31,13 @@
 
 package com.arjuna.ats.internal.jts.recovery.transactions;
 
-import java.util.Hashtable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.omg.CORBA.SystemException;
 import org.omg.CosTransactions.Resource;
@@ -50,6 +56,12 @@ import com.arjuna.ats.jts.logging.jtsLogger;
  * (e.g. number of attempts to recover since first activated
  * in this RecoveryManager run)
  * <P>
+ * Each transaction is locked individually. The cache is bounded in size and
+ * optionally by idle time (see JTSEnvironmentBean); evicted transactions
+ * are reactivated from the object store when next needed. The attempt count
+ * and known status are kept apart from the cached items, so eviction does
+ * not lose them; they are only dropped once the transaction has completed.
+ * <P>
  * @authors Dave Ingham (dave@arjuna.com), Peter Furniss
  * @version $Id: TransactionCache.java 2342 2006-03-30 13:06:17Z  $
  * @see CachedRecoveredTransaction
@@ -69,21 +81,22 @@ public class TransactionCache
     public static Status get_status (Uid actionUid, String theType) throws SystemException
     {
 	Status theStatus = Status.StatusUnknown;
-	TransactionCacheItem cacheItem = get(actionUid, theType);
+	TransactionCacheItem cacheItem = lock(actionUid, theType);
 
-	if (cacheItem != null)
+	try
 	{
-	    synchronized (cacheItem)
+	    RecoveringTransaction theTransaction = cacheItem.freshTransaction();
+	    if (theTransaction != null)
 	    {
-		RecoveringTransaction theTransaction = cacheItem.freshTransaction();
-		if (theTransaction != null)
-		{
-		    theStatus = theTransaction.get_status();
-		    // remember the status in the cacheitem
-		    cacheItem.setStatus(theStatus);
-		}
+		theStatus = theTransaction.get_status();
+		// remember the status in the cacheitem
+		cacheItem.setStatus(theStatus);
 	    }
 	}
+	finally
+	{
+	    cacheItem.unlock();
+	}
 	return theStatus;
     }
 
@@ -99,6 +112,14 @@ public class TransactionCache
 	    return cacheItem.getStatus();
 	}
 
+	// the item may have been evicted, but what was known about it is kept
+	TransactionCacheItem.RecoveryState state = _recoveryStates.get(actionUid);
+
+	if (state != null)
+	{
+	    return state._knownStatus;
+	}
+
 	return Status.StatusNoTransaction;  // used to mean it isn't cached
     }
 
@@ -110,45 +131,47 @@ public class TransactionCache
     public static Status getOriginalStatus (Uid actionUid, String theType) throws SystemException
     {
 	Status theStatus = Status.StatusUnknown;
-	TransactionCacheItem cacheItem = get (actionUid, theType);
+	TransactionCacheItem cacheItem = lock (actionUid, theType);
 
-	if (cacheItem != null)
+	try
 	{
-	    synchronized (cacheItem)
+	    RecoveringTransaction theTransaction = cacheItem.freshTransaction();
+	    if (theTransaction != null)
 	    {
-		RecoveringTransaction theTransaction = cacheItem.freshTransaction();
-		if (theTransaction != null)
-		{
-		    if (jtsLogger.logger.isDebugEnabled()) {
-                jtsLogger.logger.debug("asking the tran for original status");
-            }
-		    theStatus = theTransaction.getOriginalStatus();
-		} else {
-		    if (jtsLogger.logger.isDebugEnabled()) {
-                jtsLogger.logger.debug("no transaction in cache so not asking for original status");
-            }
-		}
+		if (jtsLogger.logger.isDebugEnabled()) {
+            jtsLogger.logger.debug("asking the tran for original status");
+        }
+		theStatus = theTransaction.getOriginalStatus();
+	    } else {
+		if (jtsLogger.logger.isDebugEnabled()) {
+            jtsLogger.logger.debug("no transaction in cache so not asking for original status");
+        }
 	    }
 	}
+	finally
+	{
+	    cacheItem.unlock();
+	}
 	return theStatus;
     }
 
     public static int getRecoveryStatus (Uid actionUid, String theType)
     {
 	int theRecoveryStatus = RecoveryStatus.NEW;
-	TransactionCacheItem cacheItem = get (actionUid, theType);
+	TransactionCacheItem cacheItem = lock (actionUid, theType);
 
-	if (cacheItem != null)
+	try
 	{
-	    synchronized (cacheItem)
+	    RecoveringTransaction theTransaction = cacheItem.transaction();
+	    if (theTransaction != null)
 	    {
-		RecoveringTransaction theTransaction = cacheItem.transaction();
-		if (theTransaction != null)
-		{
-		    theRecoveryStatus = theTransaction.getRecoveryStatus();
-		}
+		theRecoveryStatus = theTransaction.getRecoveryStatus();
 	    }
 	}
+	finally
+	{
+	    cacheItem.unlock();
+	}
 	return theRecoveryStatus;
     }
 
@@ -162,25 +185,26 @@ public class TransactionCache
      */
     public static void addResourceRecord (Uid actionUid, String theType, Uid rcUid, Resource r)
     {
-	TransactionCacheItem cacheItem = get (actionUid, theType);
+	TransactionCacheItem cacheItem = lock (actionUid, theType);
 
-	if (cacheItem != null)
+	try
 	{
-	    synchronized (cacheItem)
+	    RecoveringTransaction theTransaction = cacheItem.freshTransaction();
+	    if (theTransaction != null)
 	    {
-		RecoveringTransaction theTransaction = cacheItem.freshTransaction();
-		if (theTransaction != null)
-		{
-		    // As long as the transaction activated okay then try and add
-		    // the record.
-		    if (theTransaction.getRecoveryStatus() != RecoveryStatus.ACTIVATE_FAILED) {
-			theTransaction.addResourceRecord(rcUid, r);
-		    }
-		    // with a new resource record, start counting attempts from zero
-		    cacheItem.resetAttemptCount();
+		// As long as the transaction activated okay then try and add
+		// the record.
+		if (theTransaction.getRecoveryStatus() != RecoveryStatus.ACTIVATE_FAILED) {
+		    theTransaction.addResourceRecord(rcUid, r);
 		}
+		// with a new resource record, start counting attempts from zero
+		cacheItem.resetAttemptCount();
 	    }
 	}
+	finally
+	{
+	    cacheItem.unlock();
+	}
     }
 
     /**
@@ -190,129 +214,316 @@ public class TransactionCache
     {
     ReplayPhaseReturnStatus returnStatus = ReplayPhaseReturnStatus.STANDARD_PROCESSING;
 
-	TransactionCacheItem cacheItem = get (actionUid, theType);
+	TransactionCacheItem cacheItem = lock (actionUid, theType);
 
-	if (cacheItem != null)
+	try
 	{
-	    synchronized (cacheItem)
-	    {
-		boolean fullyCompleted = false;
-		RecoveringTransaction theTransaction = cacheItem.freshTransaction();
+	    boolean fullyCompleted = false;
+	    RecoveringTransaction theTransaction = cacheItem.freshTransaction();
 
-		if (theTransaction != null)
+	    if (theTransaction != null)
+	    {
+		// As long as the transaction activated okay then
+		// try to replay phase 2.
+		if (theTransaction.getRecoveryStatus() != RecoveryStatus.ACTIVATE_FAILED)
 		{
-		    // As long as the transaction activated okay then
-		    // try to replay phase 2.
-		    if (theTransaction.getRecoveryStatus() != RecoveryStatus.ACTIVATE_FAILED)
+		    /* if the transaction is known to be committed, make only a
+		     * limited number of attempts before assuming the subordinate
+		     * resources have received a commit order. In case they have not
+		     * the transaction will be preserved as "assumedcomplete". If the
+		     * subordinate sends a replay_completion, the transaction will be
+		     * reactivated, and a commit sent (to the new resource reference)
+		     * This only applies to transactions that are known to be committed -
+		     * a server transaction in prepared state will retry indefinitely
+		     *
+		     * attempt count is only for this run of the recovery manager, so
+		     * is kept by the cache, not the transaction
+		     */
+		    boolean converting = false;
+		    if ( cacheItem.getStatus() == Status.StatusCommitted )
 		    {
-			/* if the transaction is known to be committed, make only a
-			 * limited number of attempts before assuming the subordinate
-			 * resources have received a commit order. In case they have not
-			 * the transaction will be preserved as "assumedcomplete". If the
-			 * subordinate sends a replay_completion, the transaction will be
-			 * reactivated, and a commit sent (to the new resource reference)
-			 * This only applies to transactions that are known to be committed -
-			 * a server transaction in prepared state will retry indefinitely
-			 *
-			 * attempt count is only for this run of the recovery manager, so
-			 * is kept by the cache, not the transaction
-			 */
-			boolean converting = false;
-			if ( cacheItem.getStatus() == Status.StatusCommitted )
-			{
-			    // will skip this if transaction previously unknown
-			    int previousAttempts = cacheItem.countAttempts();
-			    if (previousAttempts >= attemptsBeforeConversion) {
-				converting = theTransaction.assumeComplete();
-				if (converting && (jtsLogger.logger.isDebugEnabled())) {
-                    jtsLogger.logger.debug(" Transaction "+actionUid+" assumed complete - changing type.");
-                }
-			    }
+			// will skip this if transaction previously unknown
+			int previousAttempts = cacheItem.countAttempts();
+			if (previousAttempts >= attemptsBeforeConversion) {
+			    converting = theTransaction.assumeComplete();
+			    if (converting && (jtsLogger.logger.isDebugEnabled())) {
+                jtsLogger.logger.debug(" Transaction "+actionUid+" assumed complete - changing type.");
+            }
 			}
-			// replayPhase2 will cause a re-persist unless it completes
-			// in which case it will cause a removal, so we mark it for 
-			// removal from the cache
-			theTransaction.replayPhase2();
+		    }
+		    // replayPhase2 will cause a re-persist unless it completes
+		    // in which case it will cause a removal, so we mark it for 
+		    // removal from the cache
+		    theTransaction.replayPhase2();
 
-			cacheItem.setStatus(theTransaction.get_status());
+		    cacheItem.setStatus(theTransaction.get_status());
 
-			/*
-			 * This appears to be always false. Why?!
-			 */
+		    /*
+		     * This appears to be always false. Why?!
+		     */
 
-			fullyCompleted = theTransaction.allCompleted(); // only remove if committed?
+		    fullyCompleted = theTransaction.allCompleted(); // only remove if committed?
 
-			if (converting && !fullyCompleted) {
+		    if (converting && !fullyCompleted) {
                 jtsLogger.i18NLogger.info_recovery_transactions_TransactionCache_4(actionUid);
-			    theTransaction.removeOldStoreEntry();
-			    cacheItem.updateType();
-			    returnStatus = ReplayPhaseReturnStatus.ASSUME_COMPLETED;
-			}
-
+			theTransaction.removeOldStoreEntry();
+			cacheItem.updateType();
+			returnStatus = ReplayPhaseReturnStatus.ASSUME_COMPLETED;
 		    }
+
 		}
+	    }
 
-		/*
-		 * Now remove the transaction from the cache, only removing
-		 * the item if it is truly completed.
-		 */
+	    /*
+	     * Now remove the transaction from the cache, only removing
+	     * the item if it is truly completed.
+	     */
 
-		if (fullyCompleted) {
+	    if (fullyCompleted) {
             jtsLogger.i18NLogger.info_recovery_transactions_TransactionCache_5(actionUid);
 
-		    remove(actionUid);
+		remove(cacheItem);
 
-		    // should leave in cache for a while
+		// should leave in cache for a while
 
-		} else {
-		    cacheItem.clearTransaction();  // just force a reactivate later
-		}
+	    } else {
+		cacheItem.clearTransaction();  // just force a reactivate later
 	    }
 	}
+	finally
+	{
+	    cacheItem.unlock();
+	}
 	return returnStatus;
     }
 
+    /**
+     * @return the number of transactions currently cached.
+     */
+    public static int getSize ()
+    {
+	return _theCache.size();
+    }
+
+    /**
+     * @return the number of lookups that found the transaction in the cache.
+     */
+    public static long getHitCount ()
+    {
+	return _hits.get();
+    }
+
+    /**
+     * @return the number of lookups that had to activate the transaction.
+     */
+    public static long getMissCount ()
+    {
+	return _misses.get();
+    }
+
+    /**
+     * @return the number of transactions evicted because of the size or idle limits.
+     */
+    public static long getEvictionCount ()
+    {
+	return _evictions.get();
+    }
+
     // get an item that is already known - or nothing
-    private static synchronized TransactionCacheItem getKnown (Uid theUid)
+    private static TransactionCacheItem getKnown (Uid theUid)
     {
-	TransactionCacheItem cacheItem = (TransactionCacheItem) _theCache.get(theUid);
+	TransactionCacheItem cacheItem = _theCache.get(theUid);
+
+	if (cacheItem != null)
+	{
+	    _hits.incrementAndGet();
+	    cacheItem.touch();
+	}
 
 	return cacheItem;
     }
 
-    private static synchronized TransactionCacheItem get (Uid theUid, String theType)
+    /*
+     * Get the item for the transaction, creating it if need be, and lock it.
+     * The item may have been evicted or removed between looking it up and
+     * getting the lock, in which case look again.
+     */
+
+    private static TransactionCacheItem lock (Uid theUid, String theType)
     {
-	TransactionCacheItem cacheItem = (TransactionCacheItem) _theCache.get(theUid);
+	for (;;)
+	{
+	    TransactionCacheItem cacheItem = get(theUid, theType);
+
+	    cacheItem.lock();
 
-	if (cacheItem == null)
+	    if (!cacheItem.isRemoved())
+		return cacheItem;
+
+	    cacheItem.unlock();
+	}
+    }
+
+    private static TransactionCacheItem get (Uid theUid, String theType)
+    {
+	TransactionCacheItem cacheItem = getKnown(theUid);
+
+	if (cacheItem != null)
+	    return cacheItem;
+
+	/*
+	 * Creating an item activates the transaction, so make sure only one
+	 * thread does it, without holding up lookups of other transactions.
+	 */
+
+	synchronized (_creationLocks[(theUid.hashCode() & 0x7fffffff) % _creationLocks.length])
 	{
-	    // No entry in cache -> create it
-	    cacheItem = new TransactionCacheItem(theUid, theType);
-	    _theCache.put(theUid, cacheItem);
+	    cacheItem = _theCache.get(theUid);
+
+	    if (cacheItem == null)
+	    {
+		// No entry in cache -> create it
+		cacheItem = new TransactionCacheItem(theUid, theType, recoveryState(theUid));
+		_theCache.put(cacheItem.uid(), cacheItem);
+		_misses.incrementAndGet();
+	    }
+	    else
+		cacheItem.touch();
 	}
+
+	evictIfNeeded();
+
 	return cacheItem;
     }
 
-    private static void remove (Uid theUid)
+    private static TransactionCacheItem.RecoveryState recoveryState (Uid theUid)
+    {
+	TransactionCacheItem.RecoveryState state = _recoveryStates.get(theUid);
+
+	if (state == null)
+	{
+	    TransactionCacheItem.RecoveryState newState = new TransactionCacheItem.RecoveryState();
+
+	    state = _recoveryStates.putIfAbsent(new Uid(theUid), newState);
+
+	    if (state == null)
+		state = newState;
+	}
+
+	return state;
+    }
+
+    /*
+     * Only called with the lock held. Unlike eviction, this forgets what is
+     * known about the recovery of the transaction.
+     */
+
+    private static void remove (TransactionCacheItem cacheItem)
     {
-	TransactionCacheItem cacheItem = (TransactionCacheItem) _theCache.get(theUid);
+	cacheItem.markRemoved();
 
-	if (cacheItem == null)
+	_recoveryStates.remove(cacheItem.uid());
+
+	if (_theCache.remove(cacheItem.uid(), cacheItem))
 	{
 	    if (jtsLogger.logger.isDebugEnabled()) {
-            jtsLogger.logger.debug("TransactionCache.remove "+theUid+": transaction not in cache");
+            jtsLogger.logger.debug("TransactionCache.remove "+cacheItem.uid()+": removed transaction from cache");
         }
 	}
 	else
 	{
-	    synchronized (cacheItem) 
+	    if (jtsLogger.logger.isDebugEnabled()) {
+            jtsLogger.logger.debug("TransactionCache.remove "+cacheItem.uid()+": transaction not in cache");
+        }
+	}
+    }
+
+    /*
+     * Evict idle items, then the least recently used ones if there are still
+     * too many. Items that are in use are skipped rather than waited for. Only
+     * one thread evicts at a time; the others carry on.
+     */
+
+    private static void evictIfNeeded ()
+    {
+	int maxSize = jtsPropertyManager.getJTSEnvironmentBean().getTransactionCacheMaxSize();
+	long idleTimeout = jtsPropertyManager.getJTSEnvironmentBean().getTransactionCacheIdleTimeout();
+	long now = System.currentTimeMillis();
+
+	boolean overSize = maxSize > 0 && _theCache.size() > maxSize;
+	boolean sweep = idleTimeout > 0 && now - _lastSweep.get() > idleTimeout / 2;
+
+	if (!(overSize || sweep) || !_evicting.compareAndSet(false, true))
+	    return;
+
+	try
+	{
+	    if (sweep)
 	    {
-		_theCache.remove(theUid);
+		_lastSweep.set(now);
+
+		for (TransactionCacheItem cacheItem : _theCache.values())
+		{
+		    if (now - cacheItem.lastAccess() > idleTimeout)
+			evict(cacheItem);
+		}
+	    }
+
+	    int excess = (maxSize > 0) ? _theCache.size() - maxSize : 0;
+
+	    if (excess > 0)
+	    {
+		List<TransactionCacheItem> items = new ArrayList<TransactionCacheItem>(_theCache.values());
+
+		Collections.sort(items, new Comparator<TransactionCacheItem>()
+		{
+		    public int compare (TransactionCacheItem o1, TransactionCacheItem o2)
+		    {
+			return Long.compare(o1.lastAccess(), o2.lastAccess());
+		    }
+		});
+
+		/*
+		 * Take off an extra tenth so that we don't sort on every miss.
+		 */
+
+		excess += maxSize / 10;
+
+		for (int i = 0; i < items.size() && excess > 0; i++)
+		{
+		    if (evict(items.get(i)))
+			excess--;
+		}
 	    }
-	    
+	}
+	finally
+	{
+	    _evicting.set(false);
+	}
+    }
+
+    private static boolean evict (TransactionCacheItem cacheItem)
+    {
+	if (!cacheItem.tryLock())
+	    return false;
+
+	try
+	{
+	    if (cacheItem.isRemoved() || !_theCache.remove(cacheItem.uid(), cacheItem))
+		return false;
+
+	    cacheItem.markRemoved();
+	    _evictions.incrementAndGet();
+
 	    if (jtsLogger.logger.isDebugEnabled()) {
-            jtsLogger.logger.debug("TransactionCache.remove "+theUid+": removed transaction from cache");
+            jtsLogger.logger.debug("TransactionCache.evict "+cacheItem.uid());
         }
+
+	    return true;
+	}
+	finally
+	{
+	    cacheItem.unlock();
 	}
     }
 
@@ -320,7 +531,23 @@ public class TransactionCache
         STANDARD_PROCESSING, ASSUME_COMPLETED
     }
     
-    private static final Hashtable _theCache = new Hashtable();
+    private static final ConcurrentHashMap<Uid, TransactionCacheItem> _theCache = new ConcurrentHashMap<Uid, TransactionCacheItem>();
+    // attempt counts and known status for this run of the recovery manager, not subject to eviction
+    private static final ConcurrentHashMap<Uid, TransactionCacheItem.RecoveryState> _recoveryStates = new ConcurrentHashMap<Uid, TransactionCacheItem.RecoveryState>();
+    private static final Object[] _creationLocks = new Object[64];
+
+    private static final AtomicLong _hits = new AtomicLong();
+    private static final AtomicLong _misses = new AtomicLong();
+    private static final AtomicLong _evictions = new AtomicLong();
+    private static final AtomicLong _lastSweep = new AtomicLong(System.currentTimeMillis());
+    private static final AtomicBoolean _evicting = new AtomicBoolean();
+
     private static final int attemptsBeforeConversion = jtsPropertyManager.getJTSEnvironmentBean()
             .getCommitedTransactionRetryLimit();
+
+    static
+    {
+	for (int i = 0; i < _creationLocks.length; i++)
+	    _creationLocks[i] = new Object();
+    }
 }
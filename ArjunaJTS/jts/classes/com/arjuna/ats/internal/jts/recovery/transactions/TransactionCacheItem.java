@@ -32,6 +32,8 @@
 
 package com.arjuna.ats.internal.jts.recovery.transactions;
 
+import java.util.concurrent.locks.ReentrantLock;
+
 import org.omg.CosTransactions.Status;
 
 import com.arjuna.ats.arjuna.common.Uid;
@@ -47,20 +49,33 @@ import com.arjuna.ats.jts.logging.jtsLogger;
  */
 class TransactionCacheItem
 {
+    /**
+     * What is known about the recovery of a transaction during this run of the
+     * recovery manager. It is kept by the cache apart from the item, so that it
+     * survives the eviction of the item.
+     */
+    static class RecoveryState
+    {
+	int		 _attempts = 0;
+	// NoTransaction is used to mean that the status is not
+	// actually known
+	volatile Status	 _knownStatus = Status.StatusNoTransaction;
+    }
+
     private Uid		      _uid;
     private RecoveringTransaction _transaction;
     private String		  _type;
-    private int		      _attempts;    
-    private Status		  _knownStatus;
+    private final RecoveryState	  _state;
+    private volatile long	  _lastAccess;
+    private boolean		  _removed;
+    private final ReentrantLock   _lock = new ReentrantLock();
     
-    TransactionCacheItem(Uid uid,String type)
+    TransactionCacheItem(Uid uid,String type,RecoveryState state)
     {
 	_uid = new Uid(uid);   // copy as usual (I wonder ... )
 	_type = type;
-	_attempts=0;
-	// NoTransaction is used to mean that the status is not
-	// actually known
-	_knownStatus = Status.StatusNoTransaction;
+	_state = state;
+	_lastAccess = System.currentTimeMillis();
 	loadTransaction(true);
     }
     
@@ -184,7 +199,7 @@ class TransactionCacheItem
      */
     int countAttempts()
     {
-	return _attempts++;
+	return _state._attempts++;
     }
     
     /**
@@ -192,7 +207,7 @@ class TransactionCacheItem
      */
     void resetAttemptCount()
     {
-	_attempts = 0;
+	_state._attempts = 0;
     }
     
     /**
@@ -200,7 +215,7 @@ class TransactionCacheItem
      */
     void setStatus(Status status)
     {
-	_knownStatus = status;
+	_state._knownStatus = status;
     }
     
     /**
@@ -208,6 +223,61 @@ class TransactionCacheItem
      */
     Status getStatus()
     {
-	return _knownStatus;
+	return _state._knownStatus;
+    }
+
+    Uid uid()
+    {
+	return _uid;
+    }
+
+    void touch()
+    {
+	_lastAccess = System.currentTimeMillis();
+    }
+
+    long lastAccess()
+    {
+	return _lastAccess;
+    }
+
+    /*
+     * The lock serialises the threads working with the transaction. An item
+     * that has been removed from the cache must not be used: whoever finds it
+     * removed has to look the transaction up again.
+     */
+
+    void lock()
+    {
+	_lock.lock();
+    }
+
+    /**
+     * Fails if the item is busy, including with the calling thread.
+     */
+    boolean tryLock()
+    {
+	return !_lock.isHeldByCurrentThread() && _lock.tryLock();
+    }
+
+    void unlock()
+    {
+	_lock.unlock();
+    }
+
+    /**
+     * Only called with the lock held.
+     */
+    void markRemoved()
+    {
+	_removed = true;
+    }
+
+    /**
+     * Only called with the lock held.
+     */
+    boolean isRemoved()
+    {
+	return _removed;
     }
 }
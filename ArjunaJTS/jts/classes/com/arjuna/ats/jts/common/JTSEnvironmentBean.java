@@ -22,6 +22,7 @@ package com.arjuna.ats.jts.common;
 
 import java.net.InetAddress;
 
+import com.arjuna.ats.internal.jts.recovery.transactions.TransactionCache;
 import com.arjuna.common.internal.util.propertyservice.FullPropertyName;
 import com.arjuna.common.internal.util.propertyservice.PropertyPrefix;
 
@@ -56,6 +57,10 @@ public class JTSEnvironmentBean implements JTSEnvironmentBeanMBean
     private volatile int commitedTransactionRetryLimit = 3;
     private volatile int transactionServiceId = 0xDEADBEEF;
 
+    private volatile int transactionCacheMaxSize = 10000;
+    private volatile int transactionCacheIdleTimeout = 0;
+    private volatile int recoveryReplayPoolSize = 0;
+
 
     /**
      * Returns if an external transaction manager process should be used.
@@ -424,4 +429,119 @@ public class JTSEnvironmentBean implements JTSEnvironmentBeanMBean
     public void setTransactionServiceId(int transactionServiceId) {
         this.transactionServiceId = transactionServiceId;
     }
+
+    /**
+     * Returns the maximum number of transactions held by the recovery transaction cache.
+     * The least recently used entries are evicted when the limit is exceeded. Evicted
+     * transactions are simply reactivated from the object store when next needed. The
+     * count of commit attempts made during this run of the recovery manager is kept
+     * apart from the cache, so eviction does not reset it.
+     *
+     * Default: 10000
+     *
+     * @return the maximum number of cached transactions, or 0 for no limit.
+     */
+    public int getTransactionCacheMaxSize()
+    {
+        return transactionCacheMaxSize;
+    }
+
+    /**
+     * Sets the maximum number of transactions held by the recovery transaction cache.
+     *
+     * @param transactionCacheMaxSize the maximum number of cached transactions, or 0 for no limit.
+     */
+    public void setTransactionCacheMaxSize(int transactionCacheMaxSize)
+    {
+        this.transactionCacheMaxSize = transactionCacheMaxSize;
+    }
+
+    /**
+     * Returns the time after which an unused entry is evicted from the recovery
+     * transaction cache. This should be well above the recovery period, otherwise
+     * transactions are reactivated from the object store on every pass.
+     *
+     * Default: 0
+     *
+     * @return the idle time in milliseconds, or 0 to keep entries until the size limit is reached.
+     */
+    public int getTransactionCacheIdleTimeout()
+    {
+        return transactionCacheIdleTimeout;
+    }
+
+    /**
+     * Sets the time after which an unused entry is evicted from the recovery transaction cache.
+     *
+     * @param transactionCacheIdleTimeout the idle time in milliseconds, or 0 to disable.
+     */
+    public void setTransactionCacheIdleTimeout(int transactionCacheIdleTimeout)
+    {
+        this.transactionCacheIdleTimeout = transactionCacheIdleTimeout;
+    }
+
+    /**
+     * Returns the number of threads used to replay phase 2 of transactions in
+     * response to replay_completion.
+     *
+     * Default: 0
+     *
+     * @return the size of the replay pool, or 0 to start a new thread for every replay.
+     */
+    public int getRecoveryReplayPoolSize()
+    {
+        return recoveryReplayPoolSize;
+    }
+
+    /**
+     * Sets the number of threads used to replay phase 2 of transactions in
+     * response to replay_completion.
+     *
+     * @param recoveryReplayPoolSize the size of the replay pool, or 0 to start a new thread for every replay.
+     */
+    public void setRecoveryReplayPoolSize(int recoveryReplayPoolSize)
+    {
+        this.recoveryReplayPoolSize = recoveryReplayPoolSize;
+    }
+
+    /**
+     * Returns the number of transactions currently held by the recovery transaction cache.
+     *
+     * @return the size of the cache.
+     */
+    public int getTransactionCacheSize()
+    {
+        return TransactionCache.getSize();
+    }
+
+    /**
+     * Returns the number of lookups in the recovery transaction cache that found the transaction.
+     *
+     * @return the number of cache hits.
+     */
+    public long getTransactionCacheHitCount()
+    {
+        return TransactionCache.getHitCount();
+    }
+
+    /**
+     * Returns the number of lookups in the recovery transaction cache that had to activate the transaction.
+     *
+     * @return the number of cache misses.
+     */
+    public long getTransactionCacheMissCount()
+    {
+        return TransactionCache.getMissCount();
+    }
+
+    /**
+     * Returns the number of transactions evicted from the recovery transaction cache because of
+     * transactionCacheMaxSize or transactionCacheIdleTimeout.
+     *
+     * @return the number of evictions.
+     */
+    public long getTransactionCacheEvictionCount()
+    {
+        return TransactionCache.getEvictionCount();
+    }
 }
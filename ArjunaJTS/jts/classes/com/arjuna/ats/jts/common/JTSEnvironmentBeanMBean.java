@@ -56,4 +56,18 @@ public interface JTSEnvironmentBeanMBean
     boolean isIssueRecoveryRollback();
 
     int getCommitedTransactionRetryLimit();
+
+    int getTransactionCacheMaxSize();
+
+    int getTransactionCacheIdleTimeout();
+
+    int getRecoveryReplayPoolSize();
+
+    int getTransactionCacheSize();
+
+    long getTransactionCacheHitCount();
+
+    long getTransactionCacheMissCount();
+
+    long getTransactionCacheEvictionCount();
 }
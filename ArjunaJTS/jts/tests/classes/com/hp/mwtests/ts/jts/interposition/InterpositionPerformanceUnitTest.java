@@ -0,0 +1,173 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.hp.mwtests.ts.jts.interposition;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import io.narayana.perf.Measurement;
+import io.narayana.perf.WorkerWorkload;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.arjuna.ats.arjuna.common.Uid;
+import com.arjuna.ats.internal.jts.interposition.resources.arjuna.Interposition;
+import com.arjuna.ats.internal.jts.orbspecific.interposition.resources.arjuna.ServerTopLevelAction;
+
+/**
+ * Measure the lookup of imported hierarchies, which happens for every
+ * incoming request that carries a propagation context, while other
+ * threads import and finish transactions.
+ */
+public class InterpositionPerformanceUnitTest
+{
+    private static final int NUMBER_OF_HIERARCHIES = 5000;
+
+    @Before
+    public void setUp ()
+    {
+        for (int i = 0; i < _actions.length; i++)
+        {
+            _actions[i] = new DummyTopLevelAction(new Uid());
+            _interposition.add(_actions[i]);
+        }
+    }
+
+    @After
+    public void tearDown ()
+    {
+        for (DummyTopLevelAction action : _actions)
+            _interposition.remove(action.get_uid());
+    }
+
+    @Test
+    public void testIndex ()
+    {
+        DummyTopLevelAction action = new DummyTopLevelAction(new Uid());
+
+        assertNull(_interposition.find(action.get_uid()));
+
+        _interposition.add(action);
+
+        assertSame(action, _interposition.find(new Uid(action.get_uid())));
+        assertSame(_actions[0], _interposition.find(_actions[0].get_uid()));
+
+        assertTrue(_interposition.remove(action.get_uid()));
+        assertFalse(_interposition.remove(action.get_uid()));
+        assertNull(_interposition.find(action.get_uid()));
+    }
+
+    @Test
+    public void testLookup ()
+    {
+        int numberOfThreads = 10;
+        int batchSize = 1000;
+        int numberOfCalls = numberOfThreads * batchSize * 10;
+
+        Measurement<Void> measurement = new Measurement.Builder<Void>(getClass().getName() + "_testLookup")
+                .maxTestTime(0L).numberOfCalls(numberOfCalls)
+                .numberOfThreads(numberOfThreads).batchSize(batchSize)
+                .numberOfWarmupCalls(1000).build().measure(worker);
+
+        System.out.printf("%s%n", measurement.getInfo());
+        assertEquals(0, measurement.getNumberOfErrors());
+        assertFalse(measurement.getInfo(), measurement.shouldFail());
+
+        System.out.println("time for " + numberOfCalls + " lookups against " + NUMBER_OF_HIERARCHIES
+                + " imported hierarchies is " + measurement.getTotalMillis());
+    }
+
+    /*
+     * Every tenth call imports and then finishes a transaction, the rest
+     * look up one of the existing hierarchies.
+     */
+    WorkerWorkload<Void> worker = new WorkerWorkload<Void>() {
+        @Override
+        public Void doWork(Void context, int batchSize, Measurement<Void> measurement) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+
+            for (int i = 0; i < batchSize; i++)
+            {
+                if (i % 10 == 0)
+                {
+                    DummyTopLevelAction action = new DummyTopLevelAction(new Uid());
+
+                    _interposition.add(action);
+
+                    if (_interposition.find(action.get_uid()) != action || !_interposition.remove(action.get_uid()))
+                        measurement.incrementErrorCount();
+                }
+                else
+                {
+                    DummyTopLevelAction action = _actions[random.nextInt(_actions.length)];
+
+                    if (_interposition.find(action.get_uid()) != action)
+                        measurement.incrementErrorCount();
+                }
+            }
+
+            return context;
+        }
+
+        @Override
+        public void finishWork(Measurement<Void> measurement) {
+        }
+    };
+
+    private static class DummyTopLevelAction extends ServerTopLevelAction
+    {
+        DummyTopLevelAction (Uid uid)
+        {
+            super();
+
+            _theUid = uid;
+        }
+    }
+
+    private static class TestInterposition extends Interposition
+    {
+        ServerTopLevelAction find (Uid uid)
+        {
+            return present(uid);
+        }
+
+        void add (ServerTopLevelAction action)
+        {
+            addHierarchy(action);
+        }
+
+        boolean remove (Uid uid)
+        {
+            return removeHierarchy(uid);
+        }
+    }
+
+    private final TestInterposition _interposition = new TestInterposition();
+    private final DummyTopLevelAction[] _actions = new DummyTopLevelAction[NUMBER_OF_HIERARCHIES];
+}
@@ -0,0 +1,128 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.hp.mwtests.ts.jts.local.transactions;
+
+import static org.junit.Assert.fail;
+
+import io.narayana.perf.Measurement;
+import io.narayana.perf.Worker;
+import org.junit.Assert;
+import org.junit.Test;
+import org.omg.CORBA.ORBPackage.InvalidName;
+import org.omg.CosTransactions.Control;
+
+import com.arjuna.ats.internal.jts.ORBManager;
+import com.arjuna.ats.jts.OTSManager;
+import com.arjuna.orbportability.OA;
+import com.arjuna.orbportability.ORB;
+import com.arjuna.orbportability.RootOA;
+
+/**
+ * Measure the throughput of CurrentImple when every transaction also looks
+ * up, suspends and resumes its context, as container code does around calls.
+ */
+public class CurrentPerformanceUnitTest
+{
+    @Test
+    public void test() throws Exception
+    {
+        int numberOfThreads = 10;
+        int batchSize = 100;
+        int numberOfCalls = numberOfThreads * batchSize * 10;
+
+        Measurement measurement = new Measurement.Builder(getClass().getName() + "_test")
+                .maxTestTime(0L).numberOfCalls(numberOfCalls)
+                .numberOfThreads(numberOfThreads).batchSize(batchSize)
+                .numberOfWarmupCalls(100).build().measure(worker, worker);
+
+        System.out.printf("%s%n", measurement.getInfo());
+        Assert.assertEquals(0, measurement.getNumberOfErrors());
+        Assert.assertFalse(measurement.getInfo(), measurement.shouldFail());
+
+        System.out.println("time for " + numberOfCalls + " transactions is " + measurement.getTotalMillis());
+        System.out.printf("TPS: %f%n", measurement.getThroughput());
+    }
+
+    Worker<Void> worker = new Worker<Void>() {
+        ORB myORB = null;
+        RootOA myOA = null;
+        org.omg.CosTransactions.Current current;
+
+        @Override
+        public void init() {
+            myORB = ORB.getInstance("test");
+            myOA = OA.getRootOA(myORB);
+
+            myORB.initORB(new String[] {}, null);
+
+            try {
+                myOA.initOA();
+            } catch (InvalidName invalidName) {
+                fail(invalidName.getMessage());
+            }
+
+            ORBManager.setORB(myORB);
+            ORBManager.setPOA(myOA);
+
+            current = OTSManager.get_current();
+        }
+
+        @Override
+        public void fini() {
+            myOA.destroy();
+            myORB.shutdown();
+        }
+
+        @Override
+        public Void doWork(Void context, int batchSize, Measurement<Void> measurement) {
+            for (int i = 0; i < batchSize; i++)
+            {
+                try {
+                    current.begin();
+
+                    Control control = current.get_control();
+
+                    if (current.suspend() == null || current.get_control() != null)
+                        measurement.incrementErrorCount();
+
+                    current.resume(control);
+                    current.commit(true);
+
+                    if (current.get_control() != null)
+                        measurement.incrementErrorCount();
+                } catch (Exception e) {
+                    if (measurement.getNumberOfErrors() == 0)
+                        e.printStackTrace();
+
+                    measurement.incrementErrorCount();
+                }
+            }
+
+            return context;
+        }
+
+        @Override
+        public void finishWork(Measurement<Void> measurement) {
+        }
+    };
+}
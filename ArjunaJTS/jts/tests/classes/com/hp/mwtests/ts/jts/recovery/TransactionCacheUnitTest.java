@@ -0,0 +1,142 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package com.hp.mwtests.ts.jts.recovery;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.omg.CosTransactions.Status;
+
+import com.arjuna.ats.arjuna.common.Uid;
+import com.arjuna.ats.internal.jts.orbspecific.coordinator.ArjunaTransactionImple;
+import com.arjuna.ats.internal.jts.recovery.transactions.RecoveryStatus;
+import com.arjuna.ats.internal.jts.recovery.transactions.TransactionCache;
+import com.arjuna.ats.jts.common.JTSEnvironmentBean;
+import com.arjuna.ats.jts.common.jtsPropertyManager;
+
+public class TransactionCacheUnitTest
+{
+    @Before
+    public void setUp ()
+    {
+        _maxSize = jtsPropertyManager.getJTSEnvironmentBean().getTransactionCacheMaxSize();
+        jtsPropertyManager.getJTSEnvironmentBean().setTransactionCacheMaxSize(MAX_SIZE);
+    }
+
+    @After
+    public void tearDown ()
+    {
+        jtsPropertyManager.getJTSEnvironmentBean().setTransactionCacheMaxSize(_maxSize);
+    }
+
+    @Test
+    public void testHits ()
+    {
+        Uid uid = new Uid();
+        long misses = TransactionCache.getMissCount();
+        long hits = TransactionCache.getHitCount();
+
+        /*
+         * The transaction isn't in the store, so activation fails, but it is still cached.
+         */
+
+        assertEquals(RecoveryStatus.ACTIVATE_FAILED, TransactionCache.getRecoveryStatus(uid, ArjunaTransactionImple.typeName()));
+        assertEquals(RecoveryStatus.ACTIVATE_FAILED, TransactionCache.getRecoveryStatus(uid, ArjunaTransactionImple.typeName()));
+
+        assertEquals(misses + 1, TransactionCache.getMissCount());
+        assertEquals(hits + 1, TransactionCache.getHitCount());
+    }
+
+    @Test
+    public void testEviction () throws Exception
+    {
+        long evictions = TransactionCache.getEvictionCount();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+
+        try
+        {
+            for (int i = 0; i < MAX_SIZE * 10; i++)
+            {
+                results.add(executor.submit(() -> TransactionCache.getRecoveryStatus(new Uid(), ArjunaTransactionImple.typeName())));
+            }
+
+            for (Future<Integer> result : results)
+                assertEquals(RecoveryStatus.ACTIVATE_FAILED, (int) result.get());
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        // once the others are done, the next miss brings the size back down
+        TransactionCache.getRecoveryStatus(new Uid(), ArjunaTransactionImple.typeName());
+
+        assertTrue(TransactionCache.getEvictionCount() - evictions >= MAX_SIZE * 8);
+        assertTrue(TransactionCache.getSize() <= MAX_SIZE);
+    }
+
+    @Test
+    public void testStatusSurvivesEviction () throws Exception
+    {
+        Uid uid = new Uid();
+        long evictions = TransactionCache.getEvictionCount();
+
+        // a transaction which can't be activated is taken to have rolled back
+        assertEquals(Status.StatusRolledBack, TransactionCache.get_status(uid, ArjunaTransactionImple.typeName()));
+
+        for (int i = 0; i < MAX_SIZE * 2; i++)
+            TransactionCache.getRecoveryStatus(new Uid(), ArjunaTransactionImple.typeName());
+
+        assertTrue(TransactionCache.getEvictionCount() > evictions);
+
+        // the least recently used transaction has been evicted, but its status is still known
+        assertEquals(Status.StatusRolledBack, TransactionCache.getCachedStatus(uid));
+    }
+
+    @Test
+    public void testMetricsOnEnvironmentBean ()
+    {
+        JTSEnvironmentBean bean = jtsPropertyManager.getJTSEnvironmentBean();
+
+        TransactionCache.getRecoveryStatus(new Uid(), ArjunaTransactionImple.typeName());
+
+        assertEquals(TransactionCache.getSize(), bean.getTransactionCacheSize());
+        assertEquals(TransactionCache.getMissCount(), bean.getTransactionCacheMissCount());
+        assertEquals(TransactionCache.getEvictionCount(), bean.getTransactionCacheEvictionCount());
+        assertTrue(bean.getTransactionCacheMissCount() > 0);
+    }
+
+    private static final int MAX_SIZE = 20;
+
+    private int _maxSize;
+}
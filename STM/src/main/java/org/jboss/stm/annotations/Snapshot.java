@@ -0,0 +1,43 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2021, Red Hat, Inc., and others contributors as indicated 
+ * by the @authors tag. All rights reserved. 
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors. 
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A 
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA  02110-1301, USA.
+ * 
+ * (C) 2021,
+ */
+
+package org.jboss.stm.annotations;
+
+import java.lang.annotation.*;
+
+/**
+ * Serve @ReadLock methods from an immutable copy of the last committed
+ * state rather than acquiring a read lock on the object. Readers never
+ * block, or are blocked by, writers, but see the object as it was when
+ * the most recent writing transaction committed (snapshot isolation).
+ * A transaction that has written to the object continues to read its own
+ * updates through the usual locked path.
+ * 
+ * Only applies to pessimistic objects in a container using the SINGLE model.
+ * The implementation class needs a no-argument constructor (or be an inner
+ * class with one) so that copies can be created.
+ */
+
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.TYPE })
+@Inherited
+public @interface Snapshot
+{
+}
@@ -24,16 +24,11 @@ package org.jboss.stm.internal.proxy;
 import java.io.IOException;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
-import java.util.ArrayList;
 
 import org.jboss.stm.InvalidAnnotationException;
-import org.jboss.stm.annotations.NotState;
-import org.jboss.stm.annotations.RestoreState;
-import org.jboss.stm.annotations.SaveState;
 import org.jboss.stm.annotations.Transactional;
 import org.jboss.stm.internal.RecoverableContainer;
+import org.jboss.stm.internal.reflect.ClassMetadata;
 
 import com.arjuna.ats.arjuna.ObjectModel;
 import com.arjuna.ats.arjuna.common.Uid;
@@ -114,45 +109,15 @@ public class LockManagerProxy<T> extends LockManager
             {
                 res = true;
                 
-                if (_fields == null)
-                {
-                    Field[] fields = _theObject.getClass().getDeclaredFields(); // get all fields including private
+                final Field[] fields = ClassMetadata.forClass(_theObject.getClass()).getStateFields(false);
                 
-                    _fields = new ArrayList<Field>();
-                    
-                    try
-                    {
-                        for (Field afield : fields)
-                        {
-                            // ignore if flagged with @NotState
-
-                            if (!afield.isAnnotationPresent(NotState.class) && (!THIS_NAME.equals(afield.getName())))
-                            {
-                                /*
-                                 * DO NOT try to save final values, since we cannot restore them
-                                 * anyway! Also stay away from transients!
-                                 */
-                                
-                                if (!((afield.getModifiers() & Modifier.FINAL) == Modifier.FINAL) &&
-                                        !((afield.getModifiers() & Modifier.TRANSIENT) == Modifier.TRANSIENT))
-                                {
-                                    _fields.add(afield);
-                                }
-                            }
-                        }
-                    }
-                    catch (final Throwable ex)
-                    {
-                        res = false;
-                    }
-                }
+                if (fields == null)
+                    res = false;
                 
-                for (int i = 0; (i < _fields.size()) && res; i++)
+                for (int i = 0; res && (i < fields.length); i++)
                 {
-                    Field afield = _fields.get(i);
+                    Field afield = fields[i];
                     
-                    afield.setAccessible(true);
-    
                     /*
                      * TODO check that the user hasn't marked statics, finals etc.
                      */
@@ -170,8 +135,6 @@ public class LockManagerProxy<T> extends LockManager
                         else
                             res = packObjectType(afield, os);
                     }
-    
-                    afield.setAccessible(false);
                 }
             }
         }
@@ -211,43 +174,14 @@ public class LockManagerProxy<T> extends LockManager
             {
                 res = true;
                 
-                if (_fields == null)
-                {
-                    Field[] fields = _theObject.getClass().getDeclaredFields(); // get all fields including private
-                    
-                    _fields = new ArrayList<Field>();
-                    
-                    try
-                    {
-                        for (Field afield : fields)
-                        {
-                            // ignore if flagged with @NotState
-                            
-                            if (!afield.isAnnotationPresent(NotState.class) && (!THIS_NAME.equals(afield.getName())))
-                            {
-                                /*
-                                 * DO NOT try to restore final values! Or transients!
-                                 */
-                                
-                                if (!((afield.getModifiers() & Modifier.FINAL) == Modifier.FINAL) &&
-                                        !((afield.getModifiers() & Modifier.TRANSIENT) == Modifier.TRANSIENT))
-                                {
-                                    _fields.add(afield);
-                                }
-                            }
-                        }
-                    }
-                    catch (final Throwable ex)
-                    {
-                        res = false;
-                    }
-                }
+                final Field[] fields = ClassMetadata.forClass(_theObject.getClass()).getStateFields(false);
+                
+                if (fields == null)
+                    res = false;
                 
-                for (int i = 0; (i < _fields.size()) && res; i++)
+                for (int i = 0; res && (i < fields.length); i++)
                 {
-                    Field afield = _fields.get(i);
-                    
-                    afield.setAccessible(true);
+                    Field afield = fields[i];
                     
                     /*
                      * TODO check that the user hasn't marked statics, finals etc.
@@ -266,9 +200,7 @@ public class LockManagerProxy<T> extends LockManager
                         else
                             res = unpackObjectType(afield, os);
                     }
-                    
-                    afield.setAccessible(false);
-                }
+                                }
             }
         }
         catch (final Throwable ex)
@@ -899,11 +831,11 @@ public class LockManagerProxy<T> extends LockManager
         
         checkValidity(_theObject.getClass());
         
-        if (_saveState != null)
+        if (_metadata.getSaveStateMethod() != null)
         {
             try
             {
-                _saveState.invoke(_theObject, os);
+                _metadata.saveState(_theObject, os);
                 
                 res = true;
             }
@@ -922,11 +854,11 @@ public class LockManagerProxy<T> extends LockManager
         
         checkValidity(_theObject.getClass());
         
-        if (_restoreState != null)
+        if (_metadata.getRestoreStateMethod() != null)
         {
             try
             {
-                _restoreState.invoke(_theObject, os);
+                _metadata.restoreState(_theObject, os);
                 
                 res = true;
             }
@@ -946,40 +878,10 @@ public class LockManagerProxy<T> extends LockManager
         
         try
         {
-            Method[] methods = toCheck.getDeclaredMethods();
-    
-            if (methods != null)
-            {
-                for (Method mt : methods)
-                {
-                    if ((mt.isAnnotationPresent(SaveState.class) && (_saveState == null)))
-                    {
-                        _saveState = mt;
-                    }
-                    
-                    if ((mt.isAnnotationPresent(RestoreState.class) && (_restoreState == null)))
-                    {
-                        _restoreState = mt;
-                    }
-                }
-            }
+            _metadata = ClassMetadata.forClass(toCheck);
             
-            if ((_saveState != null) && (_restoreState != null))
-            {
-                return;
-            }
-            else
-            {
-                if ((_restoreState == null) && (_saveState == null))
-                {
-                    Class<?> superClass = toCheck.getSuperclass();
-    
-                    if (superClass != Object.class)
-                        checkValidity(superClass);
-                }
-                else
-                    throw new InvalidAnnotationException("WARNING: both save_state and restore_state are not present!");
-            }
+            if (!_metadata.isSaveRestoreValid())
+                throw new InvalidAnnotationException("WARNING: both save_state and restore_state are not present!");
         }
         finally
         {      
@@ -1111,11 +1013,6 @@ public class LockManagerProxy<T> extends LockManager
     // the cached methods/fields
     
     private boolean _checkSaveRestore = false;
-    private Method _saveState = null;
-    private Method _restoreState = null;
+    private ClassMetadata _metadata = null;
     private RecoverableContainer<T> _container = null;
-    
-    private ArrayList<Field> _fields = null;
-    
-    private static final String THIS_NAME = "this$0";  // stop us trying to pack this!
 }
@@ -0,0 +1,720 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2021, Red Hat, Inc., and others contributors as indicated 
+ * by the @authors tag. All rights reserved. 
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors. 
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A 
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, 
+ * MA  02110-1301, USA.
+ * 
+ * (C) 2021,
+ */
+
+package org.jboss.stm.internal.reflect;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jboss.stm.annotations.LockFree;
+import org.jboss.stm.annotations.Nested;
+import org.jboss.stm.annotations.NestedTopLevel;
+import org.jboss.stm.annotations.NotState;
+import org.jboss.stm.annotations.Optimistic;
+import org.jboss.stm.annotations.ReadLock;
+import org.jboss.stm.annotations.RestoreState;
+import org.jboss.stm.annotations.Retry;
+import org.jboss.stm.annotations.SaveState;
+import org.jboss.stm.annotations.Snapshot;
+import org.jboss.stm.annotations.Timeout;
+import org.jboss.stm.annotations.TransactionFree;
+import org.jboss.stm.annotations.WriteLock;
+
+import com.arjuna.ats.arjuna.state.InputObjectState;
+import com.arjuna.ats.arjuna.state.OutputObjectState;
+import com.arjuna.ats.txoj.LockManager;
+import com.arjuna.ats.txoj.LockMode;
+
+/**
+ * The STM annotations and state fields of a transactional implementation class,
+ * worked out once per class and shared by every instance enlisted in a container.
+ * 
+ * Previously each InvocationHandler scanned the declared methods of its object on
+ * first use of every method and re-read the annotations of lock free and
+ * transaction free methods on every call, and each proxy walked the declared
+ * fields of its object and toggled their accessibility on every save and restore.
+ */
+
+public final class ClassMetadata
+{
+    /**
+     * How a method of a transactional object is to be invoked.
+     */
+    
+    public static final class MethodInfo
+    {
+        MethodInfo (Method method, Method target, int lockType, int timeout, int retry, boolean lockFree, boolean transactionFree)
+        {
+            _method = method;
+            _handle = createHandle(method, INVOKE_TYPE);
+            _target = target;
+            _lockType = lockType;
+            _timeout = timeout;
+            _retry = retry;
+            _lockFree = lockFree;
+            _transactionFree = transactionFree;
+        }
+        
+        /**
+         * @return the implementation method carrying the annotations.
+         */
+        
+        public Method getTarget ()
+        {
+            return _target;
+        }
+        
+        /**
+         * @return the lock mode to acquire, or -1 if no lock is required.
+         */
+        
+        public int getLockType ()
+        {
+            return _lockType;
+        }
+        
+        public int getTimeout ()
+        {
+            return _timeout;
+        }
+        
+        public int getRetry ()
+        {
+            return _retry;
+        }
+        
+        public boolean isLockFree ()
+        {
+            return _lockFree;
+        }
+        
+        public boolean isTransactionFree ()
+        {
+            return _transactionFree;
+        }
+        
+        /**
+         * @return true if a lock must be acquired before invoking the method.
+         */
+        
+        public boolean requiresLock ()
+        {
+            return !_lockFree && !_transactionFree;
+        }
+        
+        /**
+         * Invoke the method on an instance of the class.
+         * 
+         * @param target the instance.
+         * @param args the arguments, or null if there are none.
+         * @return the result of the method.
+         * @throws Throwable whatever the method throws.
+         */
+        
+        public Object invoke (Object target, Object[] args) throws Throwable
+        {
+            if (_handle == null)
+                return ClassMetadata.invoke(_method, target, args);
+            
+            return _handle.invokeExact(target, args);
+        }
+        
+        public String toString ()
+        {
+            return "Lock < "+LockMode.stringForm(_lockType)+", "+_timeout+", "+_retry+" >";
+        }
+        
+        private final Method _method;
+        private final MethodHandle _handle;
+        private final Method _target;
+        private final int _lockType;
+        private final int _timeout;
+        private final int _retry;
+        private final boolean _lockFree;
+        private final boolean _transactionFree;
+    }
+    
+    /**
+     * Get the metadata for a class.
+     * 
+     * @param type the implementation class.
+     * @return the metadata, created on first use.
+     */
+    
+    public static ClassMetadata forClass (Class<?> type)
+    {
+        return METADATA.get(type);
+    }
+    
+    private ClassMetadata (Class<?> type)
+    {
+        _type = type;
+        _methods = type.getDeclaredMethods();
+        
+        /*
+         * Default is pessimistic.
+         */
+        
+        _optimistic = isAnnotated(type, Optimistic.class);
+        
+        /*
+         * Can read only methods be served from a copy of the committed state?
+         */
+        
+        _snapshot = isAnnotated(type, Snapshot.class);
+        
+        /*
+         * Do we need to create (sub-) transactions when each method
+         * is called?
+         */
+        
+        boolean nested = false;
+        boolean nestedTopLevel = false;
+        
+        for (Class<?> c = type; c != null; c = c.getSuperclass())
+        {
+            if (c.getAnnotation(Nested.class) != null)
+            {
+                nested = true;
+                
+                break;
+            }
+            
+            if (c.getAnnotation(NestedTopLevel.class) != null)
+            {
+                nestedTopLevel = true;
+                
+                break;
+            }
+        }
+        
+        if (!nested || !nestedTopLevel)
+        {
+            for (Class<?> i : type.getInterfaces())
+            {
+                if (i.getAnnotation(Nested.class) != null)
+                {
+                    nested = true;
+                    
+                    break;
+                }
+                
+                if (i.getAnnotation(NestedTopLevel.class) != null)
+                {
+                    nestedTopLevel = true;
+                    
+                    break;
+                }
+            }
+        }
+        
+        _nestedTransactions = nested;
+        _nestedTopLevel = nestedTopLevel;
+        
+        Method[] saveRestore = new Method[2];
+        
+        _saveRestoreValid = findSaveRestore(type, saveRestore);
+        _saveState = saveRestore[0];
+        _restoreState = saveRestore[1];
+        _saveStateHandle = (_saveState == null) ? null : createHandle(_saveState, STATE_TYPE);
+        _restoreStateHandle = (_restoreState == null) ? null : createHandle(_restoreState, STATE_TYPE);
+    }
+    
+    public Class<?> getType ()
+    {
+        return _type;
+    }
+    
+    public boolean isOptimistic ()
+    {
+        return _optimistic;
+    }
+    
+    public boolean isSnapshot ()
+    {
+        return _snapshot;
+    }
+    
+    public boolean isNestedTransactions ()
+    {
+        return _nestedTransactions;
+    }
+    
+    public boolean isNestedTopLevel ()
+    {
+        return _nestedTopLevel;
+    }
+    
+    /**
+     * Get the invocation details of a method called through the transactional proxy.
+     * 
+     * @param method the interface method being invoked.
+     * @return the details, or null if the class does not declare a matching method.
+     */
+    
+    public MethodInfo getMethodInfo (Method method)
+    {
+        MethodInfo info = _methodInfo.get(method);
+        
+        if (info == null)
+        {
+            info = createMethodInfo(method);
+            
+            if (info == null)
+                return null;
+            
+            MethodInfo existing = _methodInfo.putIfAbsent(method, info);
+            
+            if (existing != null)
+                info = existing;
+        }
+        
+        return info;
+    }
+    
+    /**
+     * Get the fields which are saved and restored automatically, already made accessible.
+     * Fields marked with @NotState, transient fields and the outer instance reference of
+     * inner classes are excluded.
+     * 
+     * @param includeFinal whether final fields are included.
+     * @return the fields, or null if they cannot be made accessible.
+     */
+    
+    public Field[] getStateFields (boolean includeFinal)
+    {
+        Field[] fields = includeFinal ? _allStateFields : _stateFields;
+        
+        if (fields == null)
+        {
+            fields = createStateFields(includeFinal);
+            
+            if (fields == null)
+                return null;
+            
+            if (includeFinal)
+                _allStateFields = fields;
+            else
+                _stateFields = fields;
+        }
+        
+        return fields;
+    }
+    
+    /**
+     * @return the method annotated with @SaveState, or null.
+     */
+    
+    public Method getSaveStateMethod ()
+    {
+        return _saveState;
+    }
+    
+    /**
+     * @return the method annotated with @RestoreState, or null.
+     */
+    
+    public Method getRestoreStateMethod ()
+    {
+        return _restoreState;
+    }
+    
+    /**
+     * Call the @SaveState method of an instance of the class.
+     * 
+     * @param target the instance.
+     * @param os the state to pack into.
+     * @throws Throwable whatever the method throws.
+     */
+    
+    public void saveState (Object target, OutputObjectState os) throws Throwable
+    {
+        if (_saveStateHandle == null)
+            invoke(_saveState, target, new Object[] { os });
+        else
+            _saveStateHandle.invokeExact(target, new Object[] { os });
+    }
+    
+    /**
+     * Call the @RestoreState method of an instance of the class.
+     * 
+     * @param target the instance.
+     * @param os the state to unpack from.
+     * @throws Throwable whatever the method throws.
+     */
+    
+    public void restoreState (Object target, InputObjectState os) throws Throwable
+    {
+        if (_restoreStateHandle == null)
+            invoke(_restoreState, target, new Object[] { os });
+        else
+            _restoreStateHandle.invokeExact(target, new Object[] { os });
+    }
+    
+    /**
+     * @return false if only one of @SaveState and @RestoreState is present.
+     */
+    
+    public boolean isSaveRestoreValid ()
+    {
+        return _saveRestoreValid;
+    }
+    
+    /**
+     * Create a copy of an instance for use as a read only snapshot. The copy is
+     * created through the no-argument constructor of the class (or the one which
+     * only takes the enclosing instance for inner classes). If the class has
+     * @SaveState and @RestoreState methods they are used to transfer the state,
+     * otherwise every instance field is copied, with arrays being cloned.
+     * 
+     * @param source the instance to copy.
+     * @return the copy.
+     * @throws Throwable if the class cannot be copied.
+     */
+    
+    public Object copy (Object source) throws Throwable
+    {
+        Object copy = getCopyConstructor().newInstance(_enclosingField == null ? new Object[0] : new Object[] { _enclosingField.get(source) });
+        
+        if ((_saveState != null) && (_restoreState != null))
+        {
+            OutputObjectState os = new OutputObjectState();
+            
+            saveState(source, os);
+            restoreState(copy, new InputObjectState(os));
+        }
+        else
+        {
+            for (Field afield : getCopyFields())
+            {
+                Object value = afield.get(source);
+                
+                if ((value != null) && value.getClass().isArray())
+                {
+                    int length = Array.getLength(value);
+                    Object array = Array.newInstance(value.getClass().getComponentType(), length);
+                    
+                    System.arraycopy(value, 0, array, 0, length);
+                    
+                    value = array;
+                }
+                
+                afield.set(copy, value);
+            }
+        }
+        
+        return copy;
+    }
+    
+    private MethodInfo createMethodInfo (Method method)
+    {
+        Method theMethod = null;
+        
+        /*
+         * Look for the corresponding method in the original object and
+         * check the annotations applied there.
+         */
+        
+        for (Method mt : _methods)
+        {
+            if (mt.getName().equals(method.getName()))
+            {
+                if (mt.getReturnType().equals(method.getReturnType()))
+                {
+                    if (Arrays.equals(mt.getParameterTypes(), method.getParameterTypes()))
+                        theMethod = mt;
+                }
+            }
+        }
+        
+        if (theMethod == null)
+            return null;
+        
+        int lockType = -1;
+        boolean lockFree = false;
+        boolean transactionFree = false;
+        
+        /*
+         * What about other lock types?
+         */
+        
+        if (theMethod.isAnnotationPresent(ReadLock.class))
+            lockType = LockMode.READ;
+        else
+        {
+            if (theMethod.isAnnotationPresent(WriteLock.class))
+                lockType = LockMode.WRITE;
+            else
+            {
+                if (theMethod.isAnnotationPresent(TransactionFree.class))
+                    transactionFree = true;
+                else
+                {
+                    if (theMethod.isAnnotationPresent(LockFree.class))
+                        lockFree = true;
+                }
+            }
+        }
+        
+        int timeout = LockManager.defaultSleepTime;
+        int retry = LockManager.defaultRetry;
+        
+        if (!lockFree && !transactionFree)
+        {
+            if (theMethod.isAnnotationPresent(Timeout.class))
+                timeout = theMethod.getAnnotation(Timeout.class).period();
+            
+            if (theMethod.isAnnotationPresent(Retry.class))
+                retry = theMethod.getAnnotation(Retry.class).count();
+            
+            if (lockType == -1) // default to WRITE
+                lockType = LockMode.WRITE;
+        }
+        
+        return new MethodInfo(method, theMethod, lockType, timeout, retry, lockFree, transactionFree);
+    }
+    
+    private Field[] createStateFields (boolean includeFinal)
+    {
+        ArrayList<Field> fields = new ArrayList<Field>();
+        
+        try
+        {
+            for (Field afield : _type.getDeclaredFields()) // get all fields including private
+            {
+                // ignore if flagged with @NotState
+                
+                if (!afield.isAnnotationPresent(NotState.class) && (!THIS_NAME.equals(afield.getName())))
+                {
+                    /*
+                     * Stay away from transients. Finals cannot be restored through
+                     * a pessimistic proxy so they are only included if asked for.
+                     */
+                    
+                    int modifiers = afield.getModifiers();
+                    
+                    if (((modifiers & Modifier.TRANSIENT) != Modifier.TRANSIENT) &&
+                            (includeFinal || ((modifiers & Modifier.FINAL) != Modifier.FINAL)))
+                    {
+                        afield.setAccessible(true);
+                        
+                        fields.add(afield);
+                    }
+                }
+            }
+        }
+        catch (final Throwable ex)
+        {
+            return null;
+        }
+        
+        return fields.toArray(new Field[fields.size()]);
+    }
+    
+    /*
+     * Use the first class in the hierarchy which declares either method.
+     */
+    
+    private static boolean findSaveRestore (Class<?> toCheck, Method[] saveRestore)
+    {
+        for (Method mt : toCheck.getDeclaredMethods())
+        {
+            if (mt.isAnnotationPresent(SaveState.class) && (saveRestore[0] == null))
+                saveRestore[0] = mt;
+            
+            if (mt.isAnnotationPresent(RestoreState.class) && (saveRestore[1] == null))
+                saveRestore[1] = mt;
+        }
+        
+        if ((saveRestore[0] != null) && (saveRestore[1] != null))
+            return true;
+        
+        if ((saveRestore[0] == null) && (saveRestore[1] == null))
+        {
+            Class<?> superClass = toCheck.getSuperclass();
+            
+            if ((superClass != null) && (superClass != Object.class))
+                return findSaveRestore(superClass, saveRestore);
+            
+            return true;
+        }
+        
+        return false;
+    }
+    
+    private Constructor<?> getCopyConstructor () throws NoSuchMethodException, NoSuchFieldException
+    {
+        Constructor<?> constructor = _copyConstructor;
+        
+        if (constructor == null)
+        {
+            Class<?> enclosing = Modifier.isStatic(_type.getModifiers()) ? null : _type.getEnclosingClass();
+            
+            if (enclosing == null)
+                constructor = _type.getDeclaredConstructor();
+            else
+            {
+                constructor = _type.getDeclaredConstructor(enclosing);
+                
+                for (Field afield : _type.getDeclaredFields())
+                {
+                    if (afield.isSynthetic() && afield.getType().equals(enclosing))
+                    {
+                        afield.setAccessible(true);
+                        
+                        _enclosingField = afield;
+                    }
+                }
+                
+                if (_enclosingField == null)
+                    throw new NoSuchFieldException("No reference to the enclosing instance in "+_type);
+            }
+            
+            constructor.setAccessible(true);
+            
+            _copyConstructor = constructor;
+        }
+        
+        return constructor;
+    }
+    
+    private Field[] getCopyFields ()
+    {
+        Field[] fields = _copyFields;
+        
+        if (fields == null)
+        {
+            ArrayList<Field> all = new ArrayList<Field>();
+            
+            for (Class<?> c = _type; (c != null) && (c != Object.class); c = c.getSuperclass())
+            {
+                for (Field afield : c.getDeclaredFields())
+                {
+                    if (!Modifier.isStatic(afield.getModifiers()) && !afield.isSynthetic())
+                    {
+                        afield.setAccessible(true);
+                        
+                        all.add(afield);
+                    }
+                }
+            }
+            
+            fields = all.toArray(new Field[all.size()]);
+            
+            _copyFields = fields;
+        }
+        
+        return fields;
+    }
+    
+    /*
+     * Method.invoke checks access and the arguments on every call, so methods are
+     * called through a handle resolved once, adapted to take the target and the
+     * argument array as they come from the proxy. If the method cannot be looked
+     * up this way it is left to reflection.
+     */
+    
+    private static MethodHandle createHandle (Method method, MethodType type)
+    {
+        try
+        {
+            return MethodHandles.lookup().unreflect(method).asSpreader(Object[].class, method.getParameterCount()).asType(type);
+        }
+        catch (final IllegalAccessException ex)
+        {
+            return null;
+        }
+    }
+    
+    static Object invoke (Method method, Object target, Object[] args) throws Throwable
+    {
+        try
+        {
+            return method.invoke(target, args);
+        }
+        catch (final InvocationTargetException ex)
+        {
+            throw (ex.getCause() != null) ? ex.getCause() : ex;
+        }
+    }
+    
+    private static boolean isAnnotated (Class<?> type, Class<? extends Annotation> annotation)
+    {
+        for (Class<?> c = type; c != null; c = c.getSuperclass())
+        {
+            if (c.getAnnotation(annotation) != null)
+                return true;
+        }
+        
+        for (Class<?> i : type.getInterfaces())
+        {
+            if (i.getAnnotation(annotation) != null)
+                return true;
+        }
+        
+        return false;
+    }
+    
+    private static final ClassValue<ClassMetadata> METADATA = new ClassValue<ClassMetadata>()
+    {
+        protected ClassMetadata computeValue (Class<?> type)
+        {
+            return new ClassMetadata(type);
+        }
+    };
+    
+    private static final MethodType INVOKE_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+    private static final MethodType STATE_TYPE = MethodType.methodType(void.class, Object.class, Object[].class);
+    
+    private static final String THIS_NAME = "this$0";  // stop us trying to pack this!
+    
+    private final Class<?> _type;
+    private final Method[] _methods;
+    private final ConcurrentMap<Method, MethodInfo> _methodInfo = new ConcurrentHashMap<Method, MethodInfo>();
+    private final boolean _optimistic;
+    private final boolean _snapshot;
+    private final boolean _nestedTransactions;
+    private final boolean _nestedTopLevel;
+    private final Method _saveState;
+    private final Method _restoreState;
+    private final MethodHandle _saveStateHandle;
+    private final MethodHandle _restoreStateHandle;
+    private final boolean _saveRestoreValid;
+    
+    // racy lazy initialisation is fine, the arrays are never modified once published
+    
+    private volatile Field[] _stateFields;
+    private volatile Field[] _allStateFields;
+    private volatile Field[] _copyFields;
+    private volatile Constructor<?> _copyConstructor;
+    private volatile Field _enclosingField;
+}
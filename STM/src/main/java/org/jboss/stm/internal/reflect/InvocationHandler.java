@@ -21,23 +21,12 @@
 
 package org.jboss.stm.internal.reflect;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.Arrays;
-import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.arjuna.ats.txoj.logging.txojLogger;
 import org.jboss.stm.LockException;
 import org.jboss.stm.TransactionException;
-import org.jboss.stm.annotations.LockFree;
-import org.jboss.stm.annotations.NestedTopLevel;
-import org.jboss.stm.annotations.Optimistic;
-import org.jboss.stm.annotations.Retry;
-import org.jboss.stm.annotations.Timeout;
-import org.jboss.stm.annotations.TransactionFree;
-import org.jboss.stm.annotations.Nested;
-import org.jboss.stm.annotations.ReadLock;
-import org.jboss.stm.annotations.WriteLock;
 import org.jboss.stm.internal.RecoverableContainer;
 import org.jboss.stm.internal.optimistic.OptimisticLock;
 import org.jboss.stm.internal.proxy.LockManagerProxy;
@@ -50,7 +39,10 @@ import com.arjuna.ats.arjuna.TopLevelAction;
 import com.arjuna.ats.arjuna.common.ObjectStoreEnvironmentBean;
 import com.arjuna.ats.arjuna.common.Uid;
 import com.arjuna.ats.arjuna.coordinator.ActionStatus;
+import com.arjuna.ats.arjuna.coordinator.AddOutcome;
 import com.arjuna.ats.arjuna.coordinator.BasicAction;
+import com.arjuna.ats.arjuna.coordinator.SynchronizationRecord;
+import com.arjuna.ats.arjuna.coordinator.TwoPhaseCoordinator;
 import com.arjuna.ats.arjuna.objectstore.StoreManager;
 import com.arjuna.ats.internal.arjuna.objectstore.TwoPhaseVolatileStore;
 import com.arjuna.ats.txoj.Lock;
@@ -75,30 +67,6 @@ public class InvocationHandler<T> implements java.lang.reflect.InvocationHandler
     @SuppressWarnings("unused")
     private static final String SETTER_NAME = "SET";
     
-    class LockInformation
-    {
-        public LockInformation (int lockType)
-        {
-            this(lockType, LockManager.defaultSleepTime, LockManager.defaultRetry);
-        }
-        
-        public LockInformation (int lockType, int timeout, int retry)
-        {
-            _lockType = lockType;
-            _timeout = timeout;
-            _retry = retry;
-        }
-        
-        public String toString ()
-        {
-            return "Lock < "+LockMode.stringForm(_lockType)+", "+_timeout+", "+_retry+" >";
-        }
-        
-        public int _lockType;
-        public int _timeout;
-        public int _retry;
-    }
-    
     /*
      * Not all possible LockManager options are available. We only support those that we need
      * at any given moment in STM.
@@ -118,38 +86,8 @@ public class InvocationHandler<T> implements java.lang.reflect.InvocationHandler
          * Do we need to use the optimistic LockManager instance?
          */
         
-        Class<?> c = obj.getClass();
-        
-        while (c != null)
-        {
-            /*
-             * Default is pessimistic.
-             */
-            
-            if (c.getAnnotation(Optimistic.class) != null)
-            {
-                _optimistic = true;
-                
-                break;
-            }
-
-            c = c.getSuperclass();
-        }
-        
-        if (!_optimistic)
-        {
-            Class<?>[] interfaces = obj.getClass().getInterfaces();
-    
-            for (Class<?> i : interfaces)
-            {
-                if (i.getAnnotation(Optimistic.class) != null)
-                {
-                    _optimistic = true;
-                    
-                    break;
-                }
-            }
-        }
+        _metadata = ClassMetadata.forClass(obj.getClass());
+        _optimistic = _metadata.isOptimistic();
 
         if (_optimistic)
         {
@@ -212,57 +150,21 @@ public class InvocationHandler<T> implements java.lang.reflect.InvocationHandler
             action.commit();
         }
         
-        _methods = obj.getClass().getDeclaredMethods();
-        
         /*
          * Do we need to create (sub-) transactions when each method
          * is called?
-         */       
-        
-        c = obj.getClass();
+         */
         
-        // yeah ok, should use isAnnotationPresent ...
+        _nestedTransactions = _metadata.isNestedTransactions();
+        _nestedTopLevel = _metadata.isNestedTopLevel();
         
-        while (c != null)
-        {
-            if (c.getAnnotation(Nested.class) != null)
-            {
-                _nestedTransactions = true;
-                
-                break;
-            }
-            
-            if (c.getAnnotation(NestedTopLevel.class) != null)
-            {
-                _nestedTopLevel = true;
-                
-                break;
-            }
-
-            c = c.getSuperclass();
-        }
+        /*
+         * Can @ReadLock methods be served from a copy of the committed state? Only
+         * if this is the sole in-memory instance, otherwise the copy could silently
+         * become stale.
+         */
         
-        if (!_nestedTransactions || !_nestedTopLevel)
-        {
-            Class<?>[] interfaces = obj.getClass().getInterfaces();
-    
-            for (Class<?> i : interfaces)
-            {
-                if (i.getAnnotation(Nested.class) != null)
-                {
-                    _nestedTransactions = true;
-                    
-                    break;
-                }
-                
-                if (i.getAnnotation(NestedTopLevel.class) != null)
-                {
-                    _nestedTopLevel = true;
-                    
-                    break;
-                }
-            }
-        }
+        _snapshotReads = _metadata.isSnapshot() && !_optimistic && (cont.objectModel() == ObjectModel.SINGLE);
     }
     
     public Uid get_uid ()
@@ -287,6 +189,24 @@ public class InvocationHandler<T> implements java.lang.reflect.InvocationHandler
         if (_txObject == null)
             throw new LockException("Transactional object is null!");
         
+        /*
+         * Read only methods of snapshot objects do not need any monitors or locks
+         * unless the current transaction has updated the object.
+         */
+        
+        if (_snapshotReads)
+        {
+            CommittedState<T> snapshot = _snapshot.get();
+            
+            if (snapshot != null)
+            {
+                ClassMetadata.MethodInfo info = _metadata.getMethodInfo(method);
+                
+                if ((info != null) && info.requiresLock() && (info.getLockType() == LockMode.READ) && !isSnapshotWriter(BasicAction.Current()))
+                    return invoke(method, snapshot._instance, args);
+            }
+        }
+        
         AtomicAction currentTx = null;
         
         synchronized (_txObject)
@@ -294,6 +214,8 @@ public class InvocationHandler<T> implements java.lang.reflect.InvocationHandler
             synchronized (_theObject)
             {
                 AtomicAction act = null;
+                boolean unlockedUpdate = false;
+                boolean snapshotOnCommit = false;
                 
                 /*
                  * We could maybe be a bit more intelligent here and not create any
@@ -319,126 +241,80 @@ public class InvocationHandler<T> implements java.lang.reflect.InvocationHandler
                 
                 try
                 {
-                    LockInformation cachedLock = _cachedMethods.get(method);
-        
-                    
                     // todo allow null transaction context - not an issue for now with STM though!
                     
                     if (BasicAction.Current() != null)
                     {
-                        Method theMethod = null;
-        
                         /*
                          * Look for the corresponding method in the original object and
-                         * check the annotations applied there.
-                         * 
-                         * Check to see if we've cached this before.
+                         * check the annotations applied there. This is only done once per
+                         * method for each class.
                          */
         
-                        int lockType = -1;
-                        boolean lockFree = false;
-                        boolean transactionFree = false;
+                        ClassMetadata.MethodInfo info = _metadata.getMethodInfo(method);
+        
+                        /*
+                         * Should we catch common methods, like equals, and call Object... automatically?
+                         */
         
-                        if (cachedLock == null)
+                        if (info == null)
+                            throw new LockException("Could not locate method "+method);
+        
+                        // TODO type specific concurrency control (define Lock class in annotation?)
+
+                        if (info.requiresLock())
                         {
-                            for (Method mt : _methods)
+                            int result = _txObject.setlock((_optimistic ? new OptimisticLock(info.getLockType()) : new Lock(info.getLockType())), info.getRetry(), info.getTimeout());
+
+                            if (result != GRANTED)
                             {
-                                if (mt.getName().equals(method.getName()))
-                                {
-                                    if (mt.getReturnType().equals(method.getReturnType()))
-                                    {
-                                        if (Arrays.equals(mt.getParameterTypes(), method.getParameterTypes()))
-                                            theMethod = mt;
-                                    }
-                                }
+                                throw new LockException(Thread.currentThread()+" could not set "+LockMode.stringForm(info.getLockType())+" lock. Got: "+LockResult.stringForm(result));
                             }
-        
-                            /*
-                             * Should we catch common methods, like equals, and call Object... automatically?
-                             */
-        
-                            if (theMethod == null)
-                                throw new LockException("Could not locate method "+method);
-        
-                            /*
-                             * What about other lock types?
-                             */
                             
-                            if (theMethod.isAnnotationPresent(ReadLock.class))
-                                lockType = LockMode.READ;
-                            else
+                            if (_snapshotReads)
                             {
-                                if (theMethod.isAnnotationPresent(WriteLock.class))
-                                    lockType = LockMode.WRITE;
+                                if (info.getLockType() == LockMode.WRITE)
+                                    snapshotOnCommit = registerSnapshotWriter(act);
                                 else
                                 {
-                                    if (theMethod.isAnnotationPresent(TransactionFree.class))
-                                        transactionFree = true;
-                                    else
-                                    {
-                                        if (theMethod.isAnnotationPresent(LockFree.class))
-                                            lockFree = true;
-                                    }
+                                    // no other transaction can be updating the object while we hold the read lock
+                                    
+                                    if ((_snapshot.get() == null) && !isSnapshotWriter(BasicAction.Current()))
+                                        publishSnapshot(createSnapshot());
                                 }
                             }
-
-                            // if TransactionFree then suspend any transactions and don't do locking
-
-                            if (!lockFree && !transactionFree)
-                            {
-                                int timeout = LockManager.defaultSleepTime;
-                                int retry = LockManager.defaultRetry;
-            
-                                if (theMethod.isAnnotationPresent(Timeout.class))
-                                    timeout = theMethod.getAnnotation(Timeout.class).period();
-            
-                                if (theMethod.isAnnotationPresent(Retry.class))
-                                    retry = theMethod.getAnnotation(Retry.class).count();
-            
-                                if (lockType == -1) // default to WRITE
-                                    lockType = LockMode.WRITE;    
-
-                                cachedLock = new LockInformation(lockType, timeout, retry);
-                                _cachedMethods.put(method, cachedLock);
-                            }
-                            else
-                            {
-                                if (transactionFree)
-                                    currentTx = AtomicAction.suspend();
-                            }
-                        }          
-        
-                        // TODO type specific concurrency control (define Lock class in annotation?)
-
-                        if (!lockFree && !transactionFree)
+                        }
+                        else
                         {
-                            int result = _txObject.setlock((_optimistic ? new OptimisticLock(cachedLock._lockType) : new Lock(cachedLock._lockType)), cachedLock._retry, cachedLock._timeout);
-
-                            if (result != GRANTED)
-                            {
-                                throw new LockException(Thread.currentThread()+" could not set "+LockMode.stringForm(cachedLock._lockType)+" lock. Got: "+LockResult.stringForm(result));
-                            }
+                            // if TransactionFree then suspend any transactions and don't do locking
+                            
+                            if (info.isTransactionFree())
+                                currentTx = AtomicAction.suspend();
                         }
                     }
+                    else
+                        unlockedUpdate = _snapshotReads;
 
-                    try {
-                        return method.invoke(_theObject, args);
-                    } catch (InvocationTargetException e) {
-                        if (txojLogger.logger.isTraceEnabled()) {
-                            Throwable ae = e.getCause() != null ? e.getCause() : e;
-                            txojLogger.logger.tracef("STM InvocationHandler::invoke application method %s threw exception %s",
-                                    method.getName(), ae.getMessage());
-                        }
-
-                        throw e.getCause() != null ? e.getCause() : e;
-                    }
+                    return invoke(method, _theObject, args);
                 }
                 finally
                 {
+                    /*
+                     * Without a transaction the object is updated in place, so all we
+                     * can do is take a new snapshot afterwards.
+                     */
+                    
+                    if (unlockedUpdate)
+                        publishSnapshot(createSnapshot());
+                    
                     if (act != null)
                     {
+                        CommittedState<T> staged = (snapshotOnCommit ? createSnapshot() : null);
                         int status = act.commit();
                         
+                        if ((staged != null) && (status == ActionStatus.COMMITTED))
+                            publishSnapshot(staged);
+                        
                         if ((status != ActionStatus.COMMITTED) && (status != ActionStatus.COMMITTING))
                         {
                             if (currentTx != null)
@@ -455,6 +331,120 @@ public class InvocationHandler<T> implements java.lang.reflect.InvocationHandler
         }
     }
     
+    private Object invoke (java.lang.reflect.Method method, T target, Object[] args) throws Throwable
+    {
+        ClassMetadata.MethodInfo info = _metadata.getMethodInfo(method);
+        
+        try {
+            // methods the class does not declare itself, e.g., those of Object, go through reflection
+            return (info != null) ? info.invoke(target, args) : ClassMetadata.invoke(method, target, args);
+        } catch (Throwable e) {
+            if (txojLogger.logger.isTraceEnabled()) {
+                txojLogger.logger.tracef("STM InvocationHandler::invoke application method %s threw exception %s",
+                        method.getName(), e.getMessage());
+            }
+
+            throw e;
+        }
+    }
+    
+    /*
+     * Does the transaction belong to the top-level transaction which is currently
+     * updating the object? If so it must see its own updates rather than the snapshot.
+     */
+    
+    private boolean isSnapshotWriter (BasicAction current)
+    {
+        Uid writer = _snapshotWriter.get();
+        
+        return (writer != null) && (current != null) && writer.equals(current.topLevelAction().get_uid());
+    }
+    
+    /*
+     * Called with the write lock held. The snapshot is taken while the top-level
+     * transaction still holds the lock and published once it has committed. If the
+     * top-level transaction is the one created for this invocation then we do that
+     * directly and return true.
+     */
+    
+    private boolean registerSnapshotWriter (AtomicAction act)
+    {
+        BasicAction top = BasicAction.Current().topLevelAction();
+        
+        if (top == act)
+            return true;
+        
+        Uid tx = top.get_uid();
+        
+        if (!tx.equals(_snapshotWriter.get()))
+        {
+            _snapshotWriter.set(tx);
+            
+            if (!(top instanceof TwoPhaseCoordinator) ||
+                    (((TwoPhaseCoordinator) top).addSynchronization(new SnapshotSynchronization(tx)) != AddOutcome.AR_ADDED))
+            {
+                disableSnapshots(new IllegalStateException("Could not register with transaction "+tx));
+            }
+        }
+        
+        return false;
+    }
+    
+    /*
+     * Called with the object monitors held and no other transaction updating the object.
+     */
+    
+    @SuppressWarnings("unchecked")
+    private CommittedState<T> createSnapshot ()
+    {
+        if (!_snapshotReads)
+            return null;
+        
+        try
+        {
+            return new CommittedState<T>(_snapshotVersion.incrementAndGet(), (T) _metadata.copy(_theObject));
+        }
+        catch (final Throwable ex)
+        {
+            disableSnapshots(ex);
+            
+            return null;
+        }
+    }
+    
+    /*
+     * Snapshots are versioned in the order the updates were made, which may not be the
+     * order in which the transactions finish, so never replace a later one.
+     */
+    
+    private void publishSnapshot (CommittedState<T> snapshot)
+    {
+        if (snapshot == null)
+            return;
+        
+        for (;;)
+        {
+            CommittedState<T> current = _snapshot.get();
+            
+            if ((current != null) && (current._version >= snapshot._version))
+                return;
+            
+            if (_snapshot.compareAndSet(current, snapshot))
+                return;
+        }
+    }
+    
+    private void disableSnapshots (Throwable ex)
+    {
+        if (_snapshotReads)
+        {
+            _snapshotReads = false;
+            _snapshot.set(null);
+            
+            txojLogger.i18NLogger.warn_InvocationHandler_snapshot(_theObject.getClass().getName(), ex);
+        }
+    }
+    
     /**
      * It might be useful to get the Container for the object at some points.
      * 
@@ -510,11 +500,97 @@ public class InvocationHandler<T> implements java.lang.reflect.InvocationHandler
     private RecoverableContainer<T> _container;  // could be a persistent container, but not an issue for this class
     private T _theObject;
     private LockManager _txObject;
-    private Method[] _methods;
-    private HashMap<Method, InvocationHandler<T>.LockInformation> _cachedMethods = new HashMap<Method, InvocationHandler<T>.LockInformation>();
+    private ClassMetadata _metadata;
     private boolean _nestedTransactions = false;  // todo change default?
     private boolean _nestedTopLevel = false;
     private boolean _optimistic = false;
     
+    private volatile boolean _snapshotReads = false;
+    private final AtomicReference<CommittedState<T>> _snapshot = new AtomicReference<CommittedState<T>>();
+    private final AtomicReference<Uid> _snapshotWriter = new AtomicReference<Uid>();
+    private final AtomicLong _snapshotVersion = new AtomicLong();
+    
     private static StoreManager _storeManager = null;
+    
+    private static final class CommittedState<T>
+    {
+        CommittedState (long version, T instance)
+        {
+            _version = version;
+            _instance = instance;
+        }
+        
+        final long _version;
+        final T _instance;
+    }
+    
+    /*
+     * Takes the snapshot for a transaction which updated the object before it
+     * releases its locks, and publishes it if the transaction commits.
+     */
+    
+    private class SnapshotSynchronization implements SynchronizationRecord
+    {
+        SnapshotSynchronization (Uid tx)
+        {
+            _tx = tx;
+        }
+        
+        public Uid get_uid ()
+        {
+            return _uid;
+        }
+        
+        public boolean beforeCompletion ()
+        {
+            synchronized (_txObject)
+            {
+                synchronized (_theObject)
+                {
+                    /*
+                     * If another transaction has registered since then our locks
+                     * were released early (nested abort) and the state is not ours.
+                     */
+                    
+                    if (_tx.equals(_snapshotWriter.get()))
+                        _staged = createSnapshot();
+                }
+            }
+            
+            return true;
+        }
+        
+        public boolean afterCompletion (int status)
+        {
+            _snapshotWriter.compareAndSet(_tx, null);
+            
+            if (status == ActionStatus.COMMITTED)
+                publishSnapshot(_staged);
+            
+            _staged = null;
+            
+            return true;
+        }
+        
+        public boolean isInterposed ()
+        {
+            return false;
+        }
+        
+        public int compareTo (Object o)
+        {
+            SynchronizationRecord other = (SynchronizationRecord) o;
+            
+            if (other.isInterposed())
+                return -1;
+            else if (_uid.equals(other.get_uid()))
+                return 0;
+            else
+                return _uid.lessThan(other.get_uid()) ? -1 : 1;
+        }
+        
+        private final Uid _tx;
+        private final Uid _uid = new Uid();
+        private volatile CommittedState<T> _staged;
+    }
 }
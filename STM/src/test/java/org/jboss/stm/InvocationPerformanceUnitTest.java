@@ -0,0 +1,231 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2021, Red Hat, Inc., and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.stm;
+
+import java.lang.reflect.Method;
+
+import org.jboss.stm.annotations.ReadLock;
+import org.jboss.stm.annotations.State;
+import org.jboss.stm.annotations.Transactional;
+import org.jboss.stm.annotations.WriteLock;
+import org.jboss.stm.internal.proxy.LockManagerProxy;
+import org.jboss.stm.internal.reflect.ClassMetadata;
+
+import com.arjuna.ats.arjuna.AtomicAction;
+import com.arjuna.ats.arjuna.ObjectType;
+import com.arjuna.ats.arjuna.state.InputObjectState;
+import com.arjuna.ats.arjuna.state.OutputObjectState;
+
+import junit.framework.TestCase;
+
+/**
+ * Rough timings of method invocation and state saving through the STM proxies,
+ * and of the dispatch to the object on its own, which is the part that does not
+ * disappear behind the cost of the transactions.
+ */
+
+public class InvocationPerformanceUnitTest extends TestCase
+{
+    @Transactional
+    public interface Sample
+    {
+       public void increment ();
+       
+       public int value ();
+       
+       public void add (int amount);
+       
+       public long total (int a, long b);
+    }
+    
+    public class SampleLockable implements Sample
+    {
+        @ReadLock
+        public int value ()
+        {
+            return _isState;
+        }
+
+        @WriteLock
+        public void increment ()
+        {
+            _isState++;
+        }
+
+        @WriteLock
+        public void add (int amount)
+        {
+            _isState += amount;
+        }
+
+        @ReadLock
+        public long total (int a, long b)
+        {
+            return _isState + a + b;
+        }
+
+        @State
+        private int _isState;
+        
+        @State
+        private long _otherState;
+        
+        @State
+        private String _name = "sample";
+    }
+    
+    public void testInvocation ()
+    {
+        Container<Sample> theContainer = new Container<Sample>();
+        Sample obj = theContainer.create(new SampleLockable());
+        
+        run(obj, WARMUP);
+        
+        long start = System.nanoTime();
+        
+        run(obj, ITERATIONS);
+        
+        long duration = System.nanoTime() - start;
+        
+        System.out.println("InvocationPerformanceUnitTest: "+ITERATIONS*TX_SIZE+" invocations in "+duration/1000000+" ms ("+
+                (duration/(ITERATIONS*TX_SIZE))+" ns per invocation)");
+        
+        assertEquals((WARMUP+ITERATIONS)*(TX_SIZE/2), obj.value());
+    }
+    
+    public void testSaveRestore ()
+    {
+        SampleLockable sample = new SampleLockable();
+        LockManagerProxy<SampleLockable> proxy = new LockManagerProxy<SampleLockable>(sample);
+        
+        for (int i = 0; i < WARMUP; i++)
+            assertTrue(saveRestore(proxy));
+        
+        long start = System.nanoTime();
+        
+        for (int i = 0; i < ITERATIONS; i++)
+            assertTrue(saveRestore(proxy));
+        
+        long duration = System.nanoTime() - start;
+        
+        System.out.println("InvocationPerformanceUnitTest: "+ITERATIONS+" save/restore cycles in "+duration/1000000+" ms ("+
+                (duration/ITERATIONS)+" ns per cycle)");
+        
+        assertEquals("sample", sample._name);
+    }
+    
+    /*
+     * Calls the methods of the object the way the proxy does, so the call site sees
+     * every method of the interface, through reflection and through the handles
+     * held in the class metadata.
+     */
+    
+    public void testDispatch () throws Throwable
+    {
+        SampleLockable sample = new SampleLockable();
+        ClassMetadata metadata = ClassMetadata.forClass(SampleLockable.class);
+        Method[] methods = Sample.class.getMethods();
+        ClassMetadata.MethodInfo[] infos = new ClassMetadata.MethodInfo[methods.length];
+        Object[][] args = new Object[methods.length][];
+        
+        for (int i = 0; i < methods.length; i++)
+        {
+            infos[i] = metadata.getMethodInfo(methods[i]);
+            args[i] = new Object[methods[i].getParameterCount()];
+            
+            for (int j = 0; j < args[i].length; j++)
+                args[i][j] = (methods[i].getParameterTypes()[j] == Long.TYPE) ? (Object) 1L : (Object) 1;
+        }
+        
+        long reflection = 0;
+        long handles = 0;
+        
+        for (int round = 0; round < ROUNDS; round++)
+        {
+            long start = System.nanoTime();
+            
+            for (int i = 0; i < DISPATCHES; i++)
+            {
+                int k = i % methods.length;
+                
+                methods[k].invoke(sample, args[k]);
+            }
+            
+            long middle = System.nanoTime();
+            
+            for (int i = 0; i < DISPATCHES; i++)
+            {
+                int k = i % methods.length;
+                
+                infos[k].invoke(sample, args[k]);
+            }
+            
+            // the first rounds are warm up
+            
+            if (round >= ROUNDS / 2)
+            {
+                reflection += middle - start;
+                handles += System.nanoTime() - middle;
+            }
+        }
+        
+        int measured = DISPATCHES * (ROUNDS - ROUNDS / 2);
+        
+        System.out.println("InvocationPerformanceUnitTest: "+measured+" dispatches, Method.invoke "+(reflection/1000000)+" ms ("+
+                ((double) reflection/measured)+" ns per call), method handle "+(handles/1000000)+" ms ("+((double) handles/measured)+" ns per call)");
+    }
+    
+    private boolean saveRestore (LockManagerProxy<SampleLockable> proxy)
+    {
+        OutputObjectState os = new OutputObjectState();
+        
+        if (!proxy.save_state(os, ObjectType.RECOVERABLE))
+            return false;
+        
+        return proxy.restore_state(new InputObjectState(os), ObjectType.RECOVERABLE);
+    }
+    
+    private void run (Sample obj, int iterations)
+    {
+        for (int i = 0; i < iterations; i++)
+        {
+            AtomicAction A = new AtomicAction();
+            
+            A.begin();
+            
+            for (int j = 0; j < TX_SIZE / 2; j++)
+            {
+                obj.increment();
+                obj.value();
+            }
+            
+            A.commit();
+        }
+    }
+    
+    private static final int WARMUP = 2000;
+    private static final int ITERATIONS = 10000;
+    private static final int TX_SIZE = 10;
+    private static final int ROUNDS = 10;
+    private static final int DISPATCHES = 10000000;
+}
@@ -0,0 +1,241 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2021, Red Hat, Inc., and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.stm;
+
+import org.jboss.stm.annotations.ReadLock;
+import org.jboss.stm.annotations.Retry;
+import org.jboss.stm.annotations.Snapshot;
+import org.jboss.stm.annotations.State;
+import org.jboss.stm.annotations.Timeout;
+import org.jboss.stm.annotations.Transactional;
+import org.jboss.stm.annotations.WriteLock;
+
+import com.arjuna.ats.arjuna.AtomicAction;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for snapshot reads.
+ */
+
+public class SnapshotUnitTest extends TestCase
+{
+    @Transactional
+    public interface Sample
+    {
+       public void increment ();
+       
+       public int value ();
+       
+       public int[] values ();
+    }
+    
+    @Snapshot
+    public class SampleLockable implements Sample
+    {
+        public SampleLockable ()
+        {
+            this(0);
+        }
+        
+        public SampleLockable (int init)
+        {
+            _isState = init;
+        }
+        
+        @ReadLock
+        @Timeout(period=10)
+        @Retry(count=0)
+        public int value ()
+        {
+            return _isState;
+        }
+        
+        @ReadLock
+        @Timeout(period=10)
+        @Retry(count=0)
+        public int[] values ()
+        {
+            return _array;
+        }
+
+        @WriteLock
+        @Timeout(period=10)
+        @Retry(count=0)
+        public void increment ()
+        {
+            _isState++;
+            _array[0]++;
+        }
+
+        @State
+        private int _isState;
+        
+        @State
+        private int[] _array = new int[1];
+    }
+    
+    public class Reader extends Thread
+    {
+        public Reader (Sample obj)
+        {
+            _obj = obj;
+        }
+        
+        public void run ()
+        {
+            AtomicAction A = new AtomicAction();
+            
+            A.begin();
+            
+            try
+            {
+                _value = _obj.value();
+            }
+            catch (final Throwable ex)
+            {
+                _value = -1;
+            }
+            
+            A.commit();
+        }
+        
+        private Sample _obj;
+        private volatile int _value;
+    }
+    
+    public void testCommittedReads () throws Exception
+    {
+        Container<Sample> theContainer = new Container<Sample>();
+        Sample obj = theContainer.create(new SampleLockable(10));
+        AtomicAction A = new AtomicAction();
+        
+        A.begin();
+        
+        assertEquals(10, obj.value());  // takes the initial snapshot
+        
+        A.commit();
+        
+        A = new AtomicAction();
+        
+        A.begin();
+        
+        obj.increment();
+        
+        // our own update is visible to us
+        
+        assertEquals(11, obj.value());
+        
+        // but not to anyone else, who does not block on our write lock
+        
+        Reader reader = new Reader(obj);
+        
+        reader.start();
+        reader.join();
+        
+        assertEquals(10, reader._value);
+        
+        A.commit();
+        
+        reader = new Reader(obj);
+        
+        reader.start();
+        reader.join();
+        
+        assertEquals(11, reader._value);
+    }
+    
+    public void testAbortedUpdate () throws Exception
+    {
+        Container<Sample> theContainer = new Container<Sample>();
+        Sample obj = theContainer.create(new SampleLockable(10));
+        AtomicAction A = new AtomicAction();
+        
+        A.begin();
+        
+        assertEquals(10, obj.value());
+        
+        A.commit();
+        
+        A = new AtomicAction();
+        
+        A.begin();
+        
+        obj.increment();
+        
+        A.abort();
+        
+        A = new AtomicAction();
+        
+        A.begin();
+        
+        assertEquals(10, obj.value());
+        assertEquals(0, obj.values()[0]);
+        
+        A.commit();
+    }
+    
+    public void testSnapshotIsCopy () throws Exception
+    {
+        Container<Sample> theContainer = new Container<Sample>();
+        Sample obj = theContainer.create(new SampleLockable());
+        AtomicAction A = new AtomicAction();
+        
+        A.begin();
+        
+        obj.increment();
+        
+        A.commit();
+        
+        A = new AtomicAction();
+        
+        A.begin();
+        
+        int[] values = obj.values();
+        
+        assertEquals(1, values[0]);
+        
+        A.commit();
+        
+        A = new AtomicAction();
+        
+        A.begin();
+        
+        obj.increment();
+        
+        A.commit();
+        
+        // the earlier snapshot is unaffected by later updates
+        
+        assertEquals(1, values[0]);
+        
+        A = new AtomicAction();
+        
+        A.begin();
+        
+        assertEquals(2, obj.value());
+        assertEquals(2, obj.values()[0]);
+        
+        A.commit();
+    }
+}
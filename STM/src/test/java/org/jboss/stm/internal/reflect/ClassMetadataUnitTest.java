@@ -0,0 +1,216 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2021, Red Hat, Inc., and individual contributors as indicated
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.stm.internal.reflect;
+
+import java.lang.reflect.Field;
+
+import org.jboss.stm.annotations.LockFree;
+import org.jboss.stm.annotations.NotState;
+import org.jboss.stm.annotations.Optimistic;
+import org.jboss.stm.annotations.ReadLock;
+import org.jboss.stm.annotations.RestoreState;
+import org.jboss.stm.annotations.Retry;
+import org.jboss.stm.annotations.SaveState;
+import org.jboss.stm.annotations.Timeout;
+import org.jboss.stm.annotations.TransactionFree;
+import org.jboss.stm.annotations.Transactional;
+import org.jboss.stm.annotations.WriteLock;
+
+import com.arjuna.ats.arjuna.state.InputObjectState;
+import com.arjuna.ats.arjuna.state.OutputObjectState;
+import com.arjuna.ats.txoj.LockManager;
+import com.arjuna.ats.txoj.LockMode;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for the ClassMetadata class.
+ */
+
+public class ClassMetadataUnitTest extends TestCase
+{
+    @Transactional
+    public interface Sample
+    {
+        public int value ();
+        public void increment ();
+        public void reset ();
+        public void nothing ();
+        public String name ();
+    }
+    
+    public class SampleImple implements Sample
+    {
+        @ReadLock
+        @Timeout(period=50)
+        @Retry(count=2)
+        public int value ()
+        {
+            return _value;
+        }
+        
+        @WriteLock
+        public void increment ()
+        {
+            _value++;
+        }
+        
+        public void reset ()
+        {
+            _value = 0;
+        }
+        
+        @TransactionFree
+        public void nothing ()
+        {
+        }
+        
+        @LockFree
+        public String name ()
+        {
+            return _name;
+        }
+        
+        private int _value;
+        private final String _name = "sample";
+        private transient int _transient;
+        
+        @NotState
+        private int _notState;
+    }
+    
+    @Optimistic
+    public class OptimisticImple extends SampleImple
+    {
+    }
+    
+    public class SaveRestoreImple
+    {
+        @SaveState
+        public void save (OutputObjectState os)
+        {
+        }
+        
+        @RestoreState
+        public void restore (InputObjectState os)
+        {
+        }
+    }
+    
+    public class InheritedSaveRestoreImple extends SaveRestoreImple
+    {
+    }
+    
+    public class InvalidSaveRestoreImple
+    {
+        @SaveState
+        public void save (OutputObjectState os)
+        {
+        }
+    }
+    
+    public void testMethods () throws Throwable
+    {
+        ClassMetadata metadata = ClassMetadata.forClass(SampleImple.class);
+        
+        assertSame(metadata, ClassMetadata.forClass(SampleImple.class));
+        assertFalse(metadata.isOptimistic());
+        assertFalse(metadata.isNestedTransactions());
+        assertFalse(metadata.isNestedTopLevel());
+        
+        ClassMetadata.MethodInfo info = metadata.getMethodInfo(Sample.class.getMethod("value"));
+        
+        assertSame(info, metadata.getMethodInfo(Sample.class.getMethod("value")));
+        assertEquals(SampleImple.class.getMethod("value"), info.getTarget());
+        assertTrue(info.requiresLock());
+        assertEquals(LockMode.READ, info.getLockType());
+        assertEquals(50, info.getTimeout());
+        assertEquals(2, info.getRetry());
+        
+        info = metadata.getMethodInfo(Sample.class.getMethod("increment"));
+        
+        assertEquals(LockMode.WRITE, info.getLockType());
+        assertEquals(LockManager.defaultSleepTime, info.getTimeout());
+        assertEquals(LockManager.defaultRetry, info.getRetry());
+        
+        SampleImple sample = new SampleImple();
+        
+        assertNull(info.invoke(sample, null));
+        assertEquals(1, metadata.getMethodInfo(Sample.class.getMethod("value")).invoke(sample, new Object[0]));
+        
+        info = metadata.getMethodInfo(Sample.class.getMethod("reset"));
+        
+        assertTrue(info.requiresLock());
+        assertEquals(LockMode.WRITE, info.getLockType());
+        
+        info = metadata.getMethodInfo(Sample.class.getMethod("nothing"));
+        
+        assertFalse(info.requiresLock());
+        assertTrue(info.isTransactionFree());
+        
+        info = metadata.getMethodInfo(Sample.class.getMethod("name"));
+        
+        assertFalse(info.requiresLock());
+        assertTrue(info.isLockFree());
+        
+        assertNull(metadata.getMethodInfo(Object.class.getMethod("hashCode")));
+        
+        assertTrue(ClassMetadata.forClass(OptimisticImple.class).isOptimistic());
+    }
+    
+    public void testStateFields () throws Exception
+    {
+        ClassMetadata metadata = ClassMetadata.forClass(SampleImple.class);
+        Field[] fields = metadata.getStateFields(false);
+        
+        assertEquals(1, fields.length);
+        assertEquals("_value", fields[0].getName());
+        assertTrue(fields[0].isAccessible());
+        assertSame(fields, metadata.getStateFields(false));
+        
+        fields = metadata.getStateFields(true);
+        
+        assertEquals(2, fields.length);
+    }
+    
+    public void testSaveRestore () throws Exception
+    {
+        ClassMetadata metadata = ClassMetadata.forClass(SampleImple.class);
+        
+        assertTrue(metadata.isSaveRestoreValid());
+        assertNull(metadata.getSaveStateMethod());
+        assertNull(metadata.getRestoreStateMethod());
+        
+        metadata = ClassMetadata.forClass(InheritedSaveRestoreImple.class);
+        
+        assertTrue(metadata.isSaveRestoreValid());
+        assertEquals("save", metadata.getSaveStateMethod().getName());
+        assertEquals("restore", metadata.getRestoreStateMethod().getName());
+        
+        metadata = ClassMetadata.forClass(InvalidSaveRestoreImple.class);
+        
+        assertFalse(metadata.isSaveRestoreValid());
+        assertNotNull(metadata.getSaveStateMethod());
+        assertNull(metadata.getRestoreStateMethod());
+    }
+}
@@ -319,6 +319,14 @@ public interface wscI18NLogger {
 	@LogMessage(level = ERROR)
 	public void error_failure_to_create_coordination_context(String coordinationType, @Cause() Throwable t);
 
+	@Message(id = 42089, value = "Unable to create transport timer service {0}, falling back to the default", format = MESSAGE_FORMAT)
+	@LogMessage(level = WARN)
+	public void warn_transport_timer_service_create_failed(String className, @Cause() Throwable t);
+
+	@Message(id = 42090, value = "Transport timer task {0} failed", format = MESSAGE_FORMAT)
+	@LogMessage(level = WARN)
+	public void warn_transport_timer_task_failed(Object task, @Cause() Throwable t);
+
     /*
         Allocate new messages directly above this notice.
           - id: use the next id number in numeric sequence. Don't reuse ids.
@@ -0,0 +1,379 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2021, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ *
+ * (C) 2021,
+ * @author JBoss Inc.
+ */
+package com.arjuna.webservices.util;
+
+import com.arjuna.webservices.logging.WSCLogger;
+import org.jboss.jbossts.xts.environment.WSCEnvironmentBean;
+import org.jboss.jbossts.xts.environment.XTSPropertyManager;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Transport timer service implemented as a hashed timing wheel.
+ *
+ * A single daemon tick thread advances the wheel once per tick duration, expiring
+ * the tasks in the current bucket whose deadline has passed. Scheduling and
+ * cancellation are constant time: both only enqueue the task for the tick thread,
+ * which owns the buckets and links or unlinks the task on its next tick. Expired
+ * tasks are handed to a small pool so that a slow resend cannot delay the timeouts
+ * of other transactions.
+ */
+public class HashedWheelTimerService implements TransportTimerService
+{
+    private final long tickNanos ;
+    private final int mask ;
+    private final TransportTimerTask[] heads ;
+    private final TransportTimerTask[] tails ;
+
+    /**
+     * Tasks scheduled but not yet placed in a bucket.
+     */
+    private final Queue<TransportTimerTask> pending = new ConcurrentLinkedQueue<TransportTimerTask>() ;
+    /**
+     * Tasks cancelled while scheduled, to be unlinked from their bucket.
+     */
+    private final Queue<TransportTimerTask> cancelled = new ConcurrentLinkedQueue<TransportTimerTask>() ;
+
+    private final ExecutorService executor ;
+    private final Thread tickThread ;
+    private final long startTime ;
+    private volatile boolean shutdown ;
+
+    /**
+     * Create a timer service configured from the WS-C environment bean.
+     */
+    public HashedWheelTimerService()
+    {
+        this(XTSPropertyManager.getWSCEnvironmentBean()) ;
+    }
+
+    private HashedWheelTimerService(final WSCEnvironmentBean wscEnvironmentBean)
+    {
+        this(wscEnvironmentBean.getTransportTimerTickDuration(), wscEnvironmentBean.getTransportTimerWheelSize(),
+            wscEnvironmentBean.getTransportTimerPoolSize()) ;
+    }
+
+    /**
+     * Create a timer service.
+     * @param tickDuration The tick duration in milliseconds.
+     * @param wheelSize The number of buckets, rounded up to a power of two.
+     * @param poolSize The number of threads running expired tasks, zero to run them on the tick thread.
+     */
+    public HashedWheelTimerService(final long tickDuration, final int wheelSize, final int poolSize)
+    {
+        if (tickDuration <= 0)
+        {
+            throw new IllegalArgumentException("tickDuration must be positive: " + tickDuration) ;
+        }
+        if (wheelSize <= 0 || wheelSize > (1 << 30))
+        {
+            throw new IllegalArgumentException("wheelSize out of range: " + wheelSize) ;
+        }
+
+        int size = 1 ;
+        while (size < wheelSize)
+        {
+            size <<= 1 ;
+        }
+        tickNanos = TimeUnit.MILLISECONDS.toNanos(tickDuration) ;
+        mask = size - 1 ;
+        heads = new TransportTimerTask[size] ;
+        tails = new TransportTimerTask[size] ;
+
+        if (poolSize > 0)
+        {
+            final ThreadPoolExecutor pool = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new TimerThreadFactory("Narayana-XTSTransportTimer_")) ;
+            pool.allowCoreThreadTimeOut(true) ;
+            executor = pool ;
+        }
+        else
+        {
+            executor = null ;
+        }
+
+        startTime = System.nanoTime() ;
+        tickThread = new TimerThreadFactory("Narayana-XTSTransportTimerTick").newThread(new Worker()) ;
+        tickThread.start() ;
+    }
+
+    public void schedule(final TransportTimerTask task, final long delay)
+    {
+        if (shutdown)
+        {
+            throw new IllegalStateException("Transport timer service has been shutdown") ;
+        }
+        task.deadline = System.nanoTime() - startTime + TimeUnit.MILLISECONDS.toNanos(Math.max(delay, 0)) ;
+        task.scheduled(new Runnable() {
+            public void run() {
+                cancelled.add(task) ;
+            }
+        }) ;
+        pending.add(task) ;
+    }
+
+    public void shutdown()
+    {
+        shutdown = true ;
+        tickThread.interrupt() ;
+        if (executor != null)
+        {
+            executor.shutdown() ;
+        }
+    }
+
+    /**
+     * Return the number of buckets in the wheel.
+     * @return the wheel size.
+     */
+    public int getWheelSize()
+    {
+        return mask + 1 ;
+    }
+
+    private void processCancelled()
+    {
+        TransportTimerTask task ;
+        while ((task = cancelled.poll()) != null)
+        {
+            unlink(task) ;
+        }
+    }
+
+    private void transferPending(final long tick)
+    {
+        // bound the work per tick so that a burst of scheduling cannot starve expiry
+        for (int count = 0 ; count < 100000 ; count++)
+        {
+            final TransportTimerTask task = pending.poll() ;
+            if (task == null)
+            {
+                break ;
+            }
+            if (task.isCancelled())
+            {
+                continue ;
+            }
+            final long calculated = task.deadline / tickNanos ;
+            task.remainingRounds = (calculated - tick) / heads.length ;
+            // tasks whose deadline has already passed go into the current bucket
+            final long ticks = Math.max(calculated, tick) ;
+            link(task, (int) (ticks & mask)) ;
+        }
+    }
+
+    private void expire(final int index, final long now)
+    {
+        TransportTimerTask task = heads[index] ;
+        while (task != null)
+        {
+            final TransportTimerTask next = task.next ;
+            if (task.remainingRounds <= 0)
+            {
+                unlink(task) ;
+                if (task.deadline <= now)
+                {
+                    execute(task) ;
+                }
+                else
+                {
+                    // cannot happen while the wheel is advanced strictly in order, but never drop a task
+                    pending.add(task) ;
+                }
+            }
+            else if (task.isCancelled())
+            {
+                unlink(task) ;
+            }
+            else
+            {
+                task.remainingRounds-- ;
+            }
+            task = next ;
+        }
+    }
+
+    private void execute(final TransportTimerTask task)
+    {
+        if (!task.expire())
+        {
+            return ;
+        }
+        final Runnable runner = new Runnable() {
+            public void run() {
+                try
+                {
+                    task.run() ;
+                }
+                catch (final Throwable th)
+                {
+                    WSCLogger.i18NLogger.warn_transport_timer_task_failed(task, th) ;
+                }
+            }
+        } ;
+        if (executor == null)
+        {
+            runner.run() ;
+        }
+        else
+        {
+            try
+            {
+                executor.execute(runner) ;
+            }
+            catch (final RejectedExecutionException ree)
+            {
+                if (WSCLogger.logger.isTraceEnabled())
+                {
+                    WSCLogger.logger.tracev("Transport timer task {0} discarded after shutdown", task) ;
+                }
+            }
+        }
+    }
+
+    private void link(final TransportTimerTask task, final int index)
+    {
+        task.bucket = index ;
+        task.next = null ;
+        task.prev = tails[index] ;
+        if (tails[index] == null)
+        {
+            heads[index] = task ;
+        }
+        else
+        {
+            tails[index].next = task ;
+        }
+        tails[index] = task ;
+    }
+
+    private void unlink(final TransportTimerTask task)
+    {
+        final int index = task.bucket ;
+        if (index < 0)
+        {
+            return ;
+        }
+        if (task.prev == null)
+        {
+            heads[index] = task.next ;
+        }
+        else
+        {
+            task.prev.next = task.next ;
+        }
+        if (task.next == null)
+        {
+            tails[index] = task.prev ;
+        }
+        else
+        {
+            task.next.prev = task.prev ;
+        }
+        task.next = null ;
+        task.prev = null ;
+        task.bucket = -1 ;
+    }
+
+    /**
+     * The tick loop.
+     */
+    private class Worker implements Runnable
+    {
+        public void run()
+        {
+            long tick = 0 ;
+            while (!shutdown)
+            {
+                final long now = waitForNextTick(tick) ;
+                if (now < 0)
+                {
+                    break ;
+                }
+                processCancelled() ;
+                transferPending(tick) ;
+                expire((int) (tick & mask), now) ;
+                tick++ ;
+            }
+            pending.clear() ;
+            cancelled.clear() ;
+        }
+
+        /**
+         * Sleep until the end of the specified tick.
+         * @return the time relative to the start of the wheel, or -1 if shutdown.
+         */
+        private long waitForNextTick(final long tick)
+        {
+            final long deadline = tickNanos * (tick + 1) ;
+            for (;;)
+            {
+                final long now = System.nanoTime() - startTime ;
+                final long sleepMillis = TimeUnit.NANOSECONDS.toMillis(deadline - now + 999999) ;
+                if (sleepMillis <= 0)
+                {
+                    return now ;
+                }
+                try
+                {
+                    Thread.sleep(sleepMillis) ;
+                }
+                catch (final InterruptedException ie)
+                {
+                    if (shutdown)
+                    {
+                        return -1 ;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Factory for the named daemon threads used by the service.
+     */
+    private static class TimerThreadFactory implements ThreadFactory
+    {
+        private final AtomicInteger count = new AtomicInteger() ;
+        private final String prefix ;
+
+        TimerThreadFactory(final String prefix)
+        {
+            this.prefix = prefix ;
+        }
+
+        public Thread newThread(final Runnable runnable)
+        {
+            final String name = prefix.endsWith("_") ? prefix + count.incrementAndGet() : prefix ;
+            final Thread thread = new Thread(runnable, name) ;
+            thread.setDaemon(true) ;
+            return thread ;
+        }
+    }
+}
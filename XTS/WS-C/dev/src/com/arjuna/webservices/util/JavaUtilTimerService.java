@@ -0,0 +1,79 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2021, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ *
+ * (C) 2021,
+ * @author JBoss Inc.
+ */
+package com.arjuna.webservices.util;
+
+import com.arjuna.webservices.logging.WSCLogger;
+
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Transport timer service backed by a daemon {@link Timer}, matching the scheduling
+ * behaviour of earlier releases.
+ */
+public class JavaUtilTimerService implements TransportTimerService
+{
+    /**
+     * Daemon timer.
+     */
+    private final Timer timer = new Timer("Narayana-XTSTransportTimer", true) ;
+
+    public void schedule(final TransportTimerTask task, final long delay)
+    {
+        final TimerTask timerTask = new TimerTask() {
+            public void run() {
+                if (task.expire())
+                {
+                    try
+                    {
+                        task.run() ;
+                    }
+                    catch (final Throwable th)
+                    {
+                        WSCLogger.i18NLogger.warn_transport_timer_task_failed(task, th) ;
+                    }
+                }
+            }
+        } ;
+        task.scheduled(new Runnable() {
+            public void run() {
+                timerTask.cancel() ;
+            }
+        }) ;
+        try
+        {
+            timer.schedule(timerTask, delay) ;
+        }
+        catch (final IllegalStateException ise)
+        {
+            // the task may have been cancelled between being marked as scheduled and being queued
+            if (!task.isCancelled())
+            {
+                throw ise ;
+            }
+        }
+    }
+
+    public void shutdown()
+    {
+        timer.cancel() ;
+    }
+}
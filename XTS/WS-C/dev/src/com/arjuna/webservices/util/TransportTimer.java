@@ -20,6 +20,7 @@
  */
 package com.arjuna.webservices.util;
 
+import com.arjuna.webservices.logging.WSCLogger;
 import org.jboss.jbossts.xts.environment.WSCEnvironmentBean;
 import org.jboss.jbossts.xts.environment.XTSPropertyManager;
 
@@ -32,9 +33,9 @@ import java.util.Timer;
 public class TransportTimer
 {
     /**
-     * Daemon timer.
+     * The timer service used to schedule transport resends and timeouts.
      */
-    private static final Timer TIMER = new Timer(true) ;
+    private static volatile TransportTimerService TIMER_SERVICE ;
     
     /**
      * The transport timeout.
@@ -51,12 +52,72 @@ public class TransportTimer
     private static long MAX_PERIOD = 300000 ;
 
     /**
-     * Get the transport timer.
+     * Get a general purpose daemon timer. The protocol engines schedule their resends
+     * and timeouts through {@link #schedule(TransportTimerTask, long)} instead.
      * @return The transport timer.
      */
     public static Timer getTimer()
     {
-        return TIMER ;
+        return TimerHolder.TIMER ;
+    }
+
+    /**
+     * Schedule a task with the transport timer service.
+     * @param task The task to schedule.
+     * @param delay The delay in milliseconds.
+     */
+    public static void schedule(final TransportTimerTask task, final long delay)
+    {
+        TIMER_SERVICE.schedule(task, delay) ;
+    }
+
+    /**
+     * Get the transport timer service.
+     * @return The transport timer service.
+     */
+    public static TransportTimerService getTimerService()
+    {
+        return TIMER_SERVICE ;
+    }
+
+    /**
+     * Replace the transport timer service. The previous service is shutdown, discarding
+     * any tasks still outstanding.
+     * @param timerService The new transport timer service.
+     */
+    public static void setTimerService(final TransportTimerService timerService)
+    {
+        if (timerService == null)
+        {
+            throw new IllegalArgumentException("timerService must not be null") ;
+        }
+        final TransportTimerService previous = TIMER_SERVICE ;
+        TIMER_SERVICE = timerService ;
+        if (previous != null && previous != timerService)
+        {
+            previous.shutdown() ;
+        }
+    }
+
+    /**
+     * Create the configured timer service, falling back to the hashed wheel.
+     * @param className The name of the timer service class.
+     * @return The timer service.
+     */
+    private static TransportTimerService createTimerService(final String className)
+    {
+        if (className != null)
+        {
+            try
+            {
+                return (TransportTimerService) ClassLoaderHelper.forName(TransportTimer.class, className).newInstance() ;
+            }
+            catch (final Throwable th)
+            {
+                WSCLogger.i18NLogger.warn_transport_timer_service_create_failed(className, th) ;
+            }
+        }
+        return new HashedWheelTimerService() ;
     }
     
     /**
@@ -126,5 +187,14 @@ public class TransportTimer
         setTransportPeriod(wscEnvironmentBean.getInitialTransportPeriod());
         setMaximumTransportPeriod(wscEnvironmentBean.getMaximumTransportPeriod());
         setTransportTimeout(wscEnvironmentBean.getTransportTimeout());
+        TIMER_SERVICE = createTimerService(wscEnvironmentBean.getTransportTimerServiceClassName());
+    }
+
+    /**
+     * Lazily created daemon timer, only started if requested.
+     */
+    private static class TimerHolder
+    {
+        private static final Timer TIMER = new Timer(true) ;
     }
 }
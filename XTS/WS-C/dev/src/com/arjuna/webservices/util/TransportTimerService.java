@@ -0,0 +1,42 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2021, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ *
+ * (C) 2021,
+ * @author JBoss Inc.
+ */
+package com.arjuna.webservices.util;
+
+/**
+ * Service used to schedule transport resends and timeouts. Implementations are
+ * selected by the transport timer service class name held in the WS-C environment
+ * bean and must provide a public no-argument constructor.
+ */
+public interface TransportTimerService
+{
+    /**
+     * Schedule a task to run once after the specified delay.
+     * @param task The task, which must not previously have been scheduled.
+     * @param delay The delay in milliseconds.
+     * @throws IllegalStateException if the task has already been scheduled or cancelled, or the service has been shutdown.
+     */
+    public void schedule(final TransportTimerTask task, final long delay) ;
+
+    /**
+     * Shutdown the service, discarding all outstanding tasks.
+     */
+    public void shutdown() ;
+}
@@ -0,0 +1,108 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2021, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ *
+ * (C) 2021,
+ * @author JBoss Inc.
+ */
+package com.arjuna.webservices.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A task which can be scheduled once with a {@link TransportTimerService}.
+ * Cancellation is propagated to the service which scheduled the task so that it
+ * can release the task without waiting for its deadline.
+ */
+public abstract class TransportTimerTask implements Runnable
+{
+    static final int STATE_INITIAL = 0 ;
+    static final int STATE_SCHEDULED = 1 ;
+    static final int STATE_CANCELLED = 2 ;
+    static final int STATE_EXPIRED = 3 ;
+
+    private final AtomicInteger state = new AtomicInteger(STATE_INITIAL) ;
+
+    /**
+     * Callback installed by the scheduling service, invoked when a scheduled task is cancelled.
+     */
+    private volatile Runnable cancelHandler ;
+
+    // wheel bookkeeping, only accessed by the tick thread of a HashedWheelTimerService
+    long deadline ;
+    long remainingRounds ;
+    TransportTimerTask next ;
+    TransportTimerTask prev ;
+    int bucket = -1 ;
+
+    /**
+     * Cancel the task.
+     * @return true if the task was scheduled or unscheduled and will now never run, false if it had
+     * already run or been cancelled.
+     */
+    public boolean cancel()
+    {
+        final int previous = state.get() ;
+        if ((previous == STATE_INITIAL || previous == STATE_SCHEDULED) && state.compareAndSet(previous, STATE_CANCELLED))
+        {
+            final Runnable handler = cancelHandler ;
+            if (handler != null)
+            {
+                handler.run() ;
+            }
+            return true ;
+        }
+        return false ;
+    }
+
+    /**
+     * Has the task been cancelled?
+     * @return true if cancelled, false otherwise.
+     */
+    public boolean isCancelled()
+    {
+        return state.get() == STATE_CANCELLED ;
+    }
+
+    /**
+     * Mark the task as scheduled by a service.
+     * @param cancelHandler The handler to invoke on cancellation, may be null.
+     * @throws IllegalStateException if the task has already been scheduled or cancelled.
+     */
+    void scheduled(final Runnable cancelHandler)
+    {
+        this.cancelHandler = cancelHandler ;
+        if (!state.compareAndSet(STATE_INITIAL, STATE_SCHEDULED))
+        {
+            this.cancelHandler = null ;
+            throw new IllegalStateException("Transport timer task already scheduled or cancelled") ;
+        }
+    }
+
+    /**
+     * Mark the task as expired, claiming the right to run it.
+     * @return true if the task should be run, false if it was cancelled.
+     */
+    boolean expire()
+    {
+        if (state.compareAndSet(STATE_SCHEDULED, STATE_EXPIRED))
+        {
+            cancelHandler = null ;
+            return true ;
+        }
+        return false ;
+    }
+}
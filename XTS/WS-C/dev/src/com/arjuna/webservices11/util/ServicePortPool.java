@@ -0,0 +1,133 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2021, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.arjuna.webservices11.util;
+
+import javax.xml.ws.BindingProvider;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A shared pool of idle JAX-WS ports, keyed by the endpoint address they send to.
+ *
+ * A port is checked out by one thread at a time, reconfigured with the addressing
+ * properties of the outgoing message and returned once the message has been sent, so
+ * the cost of creating a port is only paid when no idle port exists for the endpoint.
+ * Ports which fail during an invocation should simply not be returned.
+ *
+ * @param <P> the port type.
+ */
+public class ServicePortPool<P>
+{
+    /**
+     * Request context property recording the pool key of a port.
+     */
+    private static final String POOL_KEY_PROPERTY = "com.arjuna.webservices11.util.ServicePortPool.key";
+
+    private final ConcurrentMap<String, ConcurrentLinkedDeque<P>> idle = new ConcurrentHashMap<String, ConcurrentLinkedDeque<P>>();
+    private final int maxEndpoints;
+    private final int maxIdlePerEndpoint;
+
+    /**
+     * Create a pool.
+     * @param maxEndpoints the maximum number of endpoints for which idle ports are retained.
+     * @param maxIdlePerEndpoint the maximum number of idle ports retained per endpoint.
+     */
+    public ServicePortPool(final int maxEndpoints, final int maxIdlePerEndpoint)
+    {
+        this.maxEndpoints = maxEndpoints;
+        this.maxIdlePerEndpoint = maxIdlePerEndpoint;
+    }
+
+    /**
+     * Check out an idle port for the endpoint.
+     * @param key the endpoint key.
+     * @return an idle port or null if none is available.
+     */
+    public P acquire(final String key)
+    {
+        final ConcurrentLinkedDeque<P> ports = idle.get(key);
+        return (ports == null ? null : ports.pollFirst());
+    }
+
+    /**
+     * Record the endpoint key of a newly created port so that it can later be returned to the pool.
+     * @param key the endpoint key.
+     * @param port the port.
+     */
+    public void register(final String key, final P port)
+    {
+        ((BindingProvider) port).getRequestContext().put(POOL_KEY_PROPERTY, key);
+    }
+
+    /**
+     * Return a port to the pool once it is no longer in use by the calling thread.
+     * @param port the port, which must have been registered with this pool.
+     */
+    public void release(final P port)
+    {
+        final Object key = ((BindingProvider) port).getRequestContext().get(POOL_KEY_PROPERTY);
+        if (!(key instanceof String))
+        {
+            return;
+        }
+
+        ConcurrentLinkedDeque<P> ports = idle.get(key);
+        if (ports == null)
+        {
+            // keys are endpoint addresses so the set of keys is small and long lived. once
+            // the bound is reached ports for further addresses are simply not retained.
+            if (idle.size() >= maxEndpoints)
+            {
+                return;
+            }
+            final ConcurrentLinkedDeque<P> newPorts = new ConcurrentLinkedDeque<P>();
+            ports = idle.putIfAbsent((String) key, newPorts);
+            if (ports == null)
+            {
+                ports = newPorts;
+            }
+        }
+        // the size check is approximate under contention, which only matters for the bound
+        if (ports.size() < maxIdlePerEndpoint)
+        {
+            ports.offerFirst(port);
+        }
+    }
+
+    /**
+     * Return the number of endpoints with idle ports.
+     * @return the number of endpoints.
+     */
+    public int getEndpointCount()
+    {
+        return idle.size();
+    }
+
+    /**
+     * Discard all idle ports.
+     */
+    public void clear()
+    {
+        idle.clear();
+    }
+}
@@ -34,6 +34,33 @@ public class WSCEnvironmentBean
     @FullPropertyName(name="org.jboss.jbossts.xts.transport.transportTimeout")
     private volatile int transportTimeout =  30 * 1000;
 
+    /**
+     * the class name of the timer service used to schedule protocol message resends and transport timeouts.
+     * the default is a hashed timing wheel driven by a single tick thread.
+     */
+    @FullPropertyName(name="org.jboss.jbossts.xts.transport.timerServiceClassName")
+    private volatile String transportTimerServiceClassName = "com.arjuna.webservices.util.HashedWheelTimerService";
+
+    /**
+     * the tick duration of the hashed wheel transport timer. timeouts fire on the first tick at or after
+     * their deadline so this bounds the precision of resend and timeout scheduling.
+     */
+    @FullPropertyName(name="org.jboss.jbossts.xts.transport.timerTickDuration")
+    private volatile int transportTimerTickDuration = 100;
+
+    /**
+     * the number of buckets in the hashed wheel transport timer. rounded up to a power of two.
+     */
+    @FullPropertyName(name="org.jboss.jbossts.xts.transport.timerWheelSize")
+    private volatile int transportTimerWheelSize = 512;
+
+    /**
+     * the number of threads used to run expired transport timer tasks. a value of zero runs them on
+     * the tick thread.
+     */
+    @FullPropertyName(name="org.jboss.jbossts.xts.transport.timerPoolSize")
+    private volatile int transportTimerPoolSize = 4;
+
     /**
      * the bind address on which the web service is listening. when running in JBoss AS this is derived from
      * the JBoss Web service bean by injection.
@@ -224,6 +251,87 @@ public class WSCEnvironmentBean
         this.transportTimeout = transportTimeout;
     }
 
+    /**
+     * Returns the class name of the timer service used to schedule protocol message resends and transport timeouts.
+     *
+     * Default: com.arjuna.webservices.util.HashedWheelTimerService
+     *
+     * @return the transport timer service class name.
+     */
+    public String getTransportTimerServiceClassName() {
+        return transportTimerServiceClassName;
+    }
+
+    /**
+     * Sets the class name of the timer service used to schedule protocol message resends and transport timeouts.
+     *
+     * @param transportTimerServiceClassName the transport timer service class name.
+     */
+    public void setTransportTimerServiceClassName(String transportTimerServiceClassName) {
+        this.transportTimerServiceClassName = transportTimerServiceClassName;
+    }
+
+    /**
+     * Returns the tick duration in milliseconds of the hashed wheel transport timer.
+     *
+     * Default: 100 ms
+     *
+     * @return the tick duration in milliseconds.
+     */
+    public int getTransportTimerTickDuration() {
+        return transportTimerTickDuration;
+    }
+
+    /**
+     * Sets the tick duration in milliseconds of the hashed wheel transport timer.
+     *
+     * @param transportTimerTickDuration the tick duration in milliseconds.
+     */
+    public void setTransportTimerTickDuration(int transportTimerTickDuration) {
+        this.transportTimerTickDuration = transportTimerTickDuration;
+    }
+
+    /**
+     * Returns the number of buckets in the hashed wheel transport timer.
+     *
+     * Default: 512
+     *
+     * @return the number of wheel buckets.
+     */
+    public int getTransportTimerWheelSize() {
+        return transportTimerWheelSize;
+    }
+
+    /**
+     * Sets the number of buckets in the hashed wheel transport timer. The value is rounded up to a power of two.
+     *
+     * @param transportTimerWheelSize the number of wheel buckets.
+     */
+    public void setTransportTimerWheelSize(int transportTimerWheelSize) {
+        this.transportTimerWheelSize = transportTimerWheelSize;
+    }
+
+    /**
+     * Returns the number of threads used to run expired transport timer tasks.
+     * A value of zero runs the tasks on the timer tick thread.
+     *
+     * Default: 4
+     *
+     * @return the transport timer pool size.
+     */
+    public int getTransportTimerPoolSize() {
+        return transportTimerPoolSize;
+    }
+
+    /**
+     * Sets the number of threads used to run expired transport timer tasks.
+     *
+     * @param transportTimerPoolSize the transport timer pool size.
+     */
+    public void setTransportTimerPoolSize(int transportTimerPoolSize) {
+        this.transportTimerPoolSize = transportTimerPoolSize;
+    }
+
     /**
      * this setter is used by the microcontainer to inject the inet address supplied during app server startup.
      */
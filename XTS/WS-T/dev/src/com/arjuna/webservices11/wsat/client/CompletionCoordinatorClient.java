@@ -88,6 +88,7 @@ public class CompletionCoordinatorClient
         Notification commit = new Notification();
 
         port.commitOperation(commit);
+        WSATClient.releaseCompletionCoordinatorPort(port);
     }
 
     /**
@@ -106,6 +107,7 @@ public class CompletionCoordinatorClient
         Notification rollback = new Notification();
                 
         port.rollbackOperation(rollback);
+        WSATClient.releaseCompletionCoordinatorPort(port);
     }
 
     /**
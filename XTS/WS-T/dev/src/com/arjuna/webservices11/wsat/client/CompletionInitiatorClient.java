@@ -89,6 +89,7 @@ public class CompletionInitiatorClient
         Notification commited = new Notification();
 
         port.committedOperation(commited);
+        WSATClient.releaseCompletionInitiatorPort(port);
     }
 
     /**
@@ -107,6 +108,7 @@ public class CompletionInitiatorClient
         Notification aborted = new Notification();
 
         port.abortedOperation(aborted);
+        WSATClient.releaseCompletionInitiatorPort(port);
     }
 
     /**
@@ -125,6 +127,7 @@ public class CompletionInitiatorClient
         soapFault.setAction(faultAction) ;
         Fault fault = ((SoapFault11)soapFault).toFault();
         port.soapFault(fault);
+        WSATClient.releaseCompletionInitiatorPort(port);
     }
 
     /**
@@ -143,6 +146,7 @@ public class CompletionInitiatorClient
         soapFault.setAction(faultAction) ;
         Fault fault = ((SoapFault11)soapFault).toFault();
         port.soapFault(fault);
+        WSATClient.releaseCompletionInitiatorPort(port);
     }
 
     /**
@@ -99,6 +99,7 @@ public class CoordinatorClient
         Notification prepared = new Notification();
 
         port.preparedOperation(prepared);
+        WSATClient.releaseCoordinatorPort(port);
     }
 
     /**
@@ -117,6 +118,7 @@ public class CoordinatorClient
         Notification aborted = new Notification();
 
         port.abortedOperation(aborted);
+        WSATClient.releaseCoordinatorPort(port);
     }
 
     /**
@@ -135,6 +137,7 @@ public class CoordinatorClient
         Notification readOnly = new Notification();
 
         port.readOnlyOperation(readOnly);
+        WSATClient.releaseCoordinatorPort(port);
     }
 
     /**
@@ -153,6 +156,7 @@ public class CoordinatorClient
         Notification committed = new Notification();
 
         port.committedOperation(committed);
+        WSATClient.releaseCoordinatorPort(port);
     }
 
     /**
@@ -171,6 +175,7 @@ public class CoordinatorClient
         soapFault.setAction(faultAction) ;
         Fault fault = ((SoapFault11)soapFault).toFault();
         port.soapFault(fault);
+        WSATClient.releaseCoordinatorPort(port);
     }
 
     /**
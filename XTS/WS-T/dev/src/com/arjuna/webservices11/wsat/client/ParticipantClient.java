@@ -91,6 +91,7 @@ public class ParticipantClient
         Notification prepare = new Notification();
 
         port.prepareOperation(prepare);
+        WSATClient.releaseParticipantPort(port);
     }
 
     /**
@@ -109,6 +110,7 @@ public class ParticipantClient
         Notification commit = new Notification();
 
         port.commitOperation(commit);
+        WSATClient.releaseParticipantPort(port);
     }
 
     /**
@@ -127,6 +129,7 @@ public class ParticipantClient
         Notification rollback = new Notification();
 
         port.rollbackOperation(rollback);
+        WSATClient.releaseParticipantPort(port);
     }
 
     /**
@@ -145,6 +148,7 @@ public class ParticipantClient
         soapFault.setAction(faultAction) ;
         Fault fault = ((SoapFault11)soapFault).toFault();
         port.soapFault(fault);
+        WSATClient.releaseParticipantPort(port);
     }
 
     /**
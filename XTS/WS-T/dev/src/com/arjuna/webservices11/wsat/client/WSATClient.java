@@ -1,15 +1,23 @@
 package com.arjuna.webservices11.wsat.client;
 
+import com.arjuna.webservices11.util.PrivilegedMapBuilderFactory;
 import com.arjuna.webservices11.util.PrivilegedServiceFactory;
 import com.arjuna.webservices11.util.PrivilegedServiceHelper;
+import com.arjuna.webservices11.util.ServicePortPool;
 import com.arjuna.webservices11.wsaddr.AddressingHelper;
+import com.arjuna.webservices11.wsaddr.EndpointHelper;
+import com.arjuna.webservices11.wsaddr.NativeEndpointReference;
 import org.jboss.ws.api.addressing.MAP;
 import org.oasis_open.docs.ws_tx.wsat._2006._06.*;
+import org.w3c.dom.Element;
 
 import javax.xml.ws.wsaddressing.W3CEndpointReference;
 import javax.xml.ws.BindingProvider;
 import javax.xml.ws.soap.AddressingFeature;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * Created by IntelliJ IDEA.
@@ -20,107 +28,163 @@ import java.util.Map;
  */
 public class WSATClient
 {
-    // TODO -- do we really need a thread local here or can we just use one service?
     /**
-     *  thread local which maintains a per thread coordinator service instance
+     * the maximum number of endpoints for which idle ports are retained, per port type
      */
-    private static ThreadLocal<CoordinatorService> coordinatorService = new ThreadLocal<CoordinatorService>();
+    private static final int MAX_POOLED_ENDPOINTS = 1024;
 
     /**
-     *  thread local which maintains a per thread participant service instance
+     * the maximum number of idle ports retained per endpoint
      */
-    private static ThreadLocal<ParticipantService> participantService = new ThreadLocal<ParticipantService>();
+    private static final int MAX_POOLED_PORTS_PER_ENDPOINT = 4;
 
     /**
-     *  thread local which maintains a per thread completion coordinator service instance
+     * the pool key used for ports which are not bound to an endpoint reference
      */
-    private static ThreadLocal<CompletionCoordinatorService> completionCoordinatorService = new ThreadLocal<CompletionCoordinatorService>();
+    private static final String NO_ENDPOINT_KEY = "";
 
     /**
-     *  thread local which maintains a per thread completion initiator service instance
+     * parsed endpoint references, held only while the engine holding the reference is alive
      */
-    private static ThreadLocal<CompletionInitiatorService> completionInitiatorService = new ThreadLocal<CompletionInitiatorService>();
+    private static final Map<W3CEndpointReference, NativeEndpointReference> nativeEndpoints =
+            Collections.synchronizedMap(new WeakHashMap<W3CEndpointReference, NativeEndpointReference>());
 
     /**
-     *  thread local which maintains a per thread completion coordinator service instance
+     * shared coordinator service instance
      */
-    private static ThreadLocal<CompletionCoordinatorRPCService> completionCoordinatorRPCService = new ThreadLocal<CompletionCoordinatorRPCService>();
+    private static volatile CoordinatorService coordinatorService;
 
     /**
-     * fetch a coordinator service unique to the current thread
+     * shared participant service instance
+     */
+    private static volatile ParticipantService participantService;
+
+    /**
+     * shared completion coordinator service instance
+     */
+    private static volatile CompletionCoordinatorService completionCoordinatorService;
+
+    /**
+     * shared completion initiator service instance
+     */
+    private static volatile CompletionInitiatorService completionInitiatorService;
+
+    /**
+     * shared RPC completion coordinator service instance
+     */
+    private static volatile CompletionCoordinatorRPCService completionCoordinatorRPCService;
+
+    private static final ServicePortPool<CoordinatorPortType> coordinatorPorts =
+            new ServicePortPool<CoordinatorPortType>(MAX_POOLED_ENDPOINTS, MAX_POOLED_PORTS_PER_ENDPOINT);
+
+    private static final ServicePortPool<ParticipantPortType> participantPorts =
+            new ServicePortPool<ParticipantPortType>(MAX_POOLED_ENDPOINTS, MAX_POOLED_PORTS_PER_ENDPOINT);
+
+    private static final ServicePortPool<CompletionCoordinatorPortType> completionCoordinatorPorts =
+            new ServicePortPool<CompletionCoordinatorPortType>(MAX_POOLED_ENDPOINTS, MAX_POOLED_PORTS_PER_ENDPOINT);
+
+    private static final ServicePortPool<CompletionInitiatorPortType> completionInitiatorPorts =
+            new ServicePortPool<CompletionInitiatorPortType>(MAX_POOLED_ENDPOINTS, MAX_POOLED_PORTS_PER_ENDPOINT);
+
+    private static final ServicePortPool<CompletionCoordinatorRPCPortType> completionCoordinatorRPCPorts =
+            new ServicePortPool<CompletionCoordinatorRPCPortType>(MAX_POOLED_ENDPOINTS, MAX_POOLED_PORTS_PER_ENDPOINT);
+
+    // services are thread safe so a single instance of each is shared. a race on first use
+    // may create more than one instance, which is harmless.
+
+    /**
+     * fetch the shared coordinator service
      * @return
      */
-    private static synchronized CoordinatorService getCoordinatorService()
+    private static CoordinatorService getCoordinatorService()
     {
-        if (coordinatorService.get() == null) {
-            coordinatorService.set(PrivilegedServiceFactory.getInstance(CoordinatorService.class).getService());
+        CoordinatorService service = coordinatorService;
+        if (service == null) {
+            service = PrivilegedServiceFactory.getInstance(CoordinatorService.class).getService();
+            coordinatorService = service;
         }
-        return coordinatorService.get();
+        return service;
     }
 
     /**
-     * fetch a participant service unique to the current thread
+     * fetch the shared participant service
      * @return
      */
-    private static synchronized ParticipantService getParticipantService()
+    private static ParticipantService getParticipantService()
     {
-        if (participantService.get() == null) {
-            participantService.set(PrivilegedServiceFactory.getInstance(ParticipantService.class).getService());
+        ParticipantService service = participantService;
+        if (service == null) {
+            service = PrivilegedServiceFactory.getInstance(ParticipantService.class).getService();
+            participantService = service;
         }
-        return participantService.get();
+        return service;
     }
 
     /**
-     * fetch a completion coordinator service unique to the current thread
+     * fetch the shared completion coordinator service
      * @return
      */
-    private static synchronized CompletionCoordinatorService getCompletionCoordinatorService()
+    private static CompletionCoordinatorService getCompletionCoordinatorService()
     {
-        if (completionCoordinatorService.get() == null) {
-            completionCoordinatorService.set(
-                    PrivilegedServiceFactory.getInstance(CompletionCoordinatorService.class).getService());
+        CompletionCoordinatorService service = completionCoordinatorService;
+        if (service == null) {
+            service = PrivilegedServiceFactory.getInstance(CompletionCoordinatorService.class).getService();
+            completionCoordinatorService = service;
         }
-        return completionCoordinatorService.get();
+        return service;
     }
 
     /**
-     * fetch a completion initiator service unique to the current thread
+     * fetch the shared completion initiator service
      * @return
      */
-    private static synchronized CompletionInitiatorService getCompletionInitiatorService()
+    private static CompletionInitiatorService getCompletionInitiatorService()
     {
-        if (completionInitiatorService.get() == null) {
-            completionInitiatorService.set(
-                    PrivilegedServiceFactory.getInstance(CompletionInitiatorService.class).getService());
+        CompletionInitiatorService service = completionInitiatorService;
+        if (service == null) {
+            service = PrivilegedServiceFactory.getInstance(CompletionInitiatorService.class).getService();
+            completionInitiatorService = service;
         }
-        return completionInitiatorService.get();
+        return service;
     }
 
     /**
-     * fetch an RPC completion coordinator service unique to the current thread
+     * fetch the shared RPC completion coordinator service
      * @return
      */
-    private static synchronized CompletionCoordinatorRPCService getCompletionCoordinatorRPCService()
+    private static CompletionCoordinatorRPCService getCompletionCoordinatorRPCService()
     {
-        if (completionCoordinatorRPCService.get() == null) {
-            completionCoordinatorRPCService.set(
-                    PrivilegedServiceFactory.getInstance(CompletionCoordinatorRPCService.class).getService());
+        CompletionCoordinatorRPCService service = completionCoordinatorRPCService;
+        if (service == null) {
+            service = PrivilegedServiceFactory.getInstance(CompletionCoordinatorRPCService.class).getService();
+            completionCoordinatorRPCService = service;
         }
-        return completionCoordinatorRPCService.get();
+        return service;
     }
 
-    // fetch ports when we HAVE an endpoint
+    // fetch ports when we HAVE an endpoint. there is one pool per port type and ports are
+    // keyed by the address of the endpoint, so every participant or coordinator at the same
+    // address shares the idle ports. the reference parameters which identify the individual
+    // endpoint are installed as headers of each message. a port must be handed back via the
+    // matching release method once the message has been sent. a port which is never released
+    // is simply not reused.
 
     public static CoordinatorPortType getCoordinatorPort(final W3CEndpointReference endpointReference,
                                                          String action,
                                                          MAP map)
     {
-        final CoordinatorService service = getCoordinatorService();
-        final CoordinatorPortType port = PrivilegedServiceHelper.getInstance().getPort(service, endpointReference,
-                CoordinatorPortType.class, new AddressingFeature(true, true));
+        final NativeEndpointReference endpoint = nativeEndpoint(endpointReference);
+        final String key = endpoint.getAddress();
+        CoordinatorPortType port = coordinatorPorts.acquire(key);
+        if (port == null) {
+            final CoordinatorService service = getCoordinatorService();
+            port = PrivilegedServiceHelper.getInstance().getPort(service,
+                    CoordinatorPortType.class, new AddressingFeature(true, true));
+            coordinatorPorts.register(key, port);
+        }
         BindingProvider bindingProvider = (BindingProvider)port;
 
-        configureEndpointPort(bindingProvider, action, map);
+        configureEndpointPort(bindingProvider, endpoint, action, map);
 
         return port;
     }
@@ -129,12 +193,18 @@ public class WSATClient
                                                          String action,
                                                          MAP map)
     {
-        final ParticipantService service = getParticipantService();
-        final ParticipantPortType port = PrivilegedServiceHelper.getInstance().getPort(service, endpointReference,
-                ParticipantPortType.class, new AddressingFeature(true, true));
+        final NativeEndpointReference endpoint = nativeEndpoint(endpointReference);
+        final String key = endpoint.getAddress();
+        ParticipantPortType port = participantPorts.acquire(key);
+        if (port == null) {
+            final ParticipantService service = getParticipantService();
+            port = PrivilegedServiceHelper.getInstance().getPort(service,
+                    ParticipantPortType.class, new AddressingFeature(true, true));
+            participantPorts.register(key, port);
+        }
         BindingProvider bindingProvider = (BindingProvider)port;
 
-        configureEndpointPort(bindingProvider, action, map);
+        configureEndpointPort(bindingProvider, endpoint, action, map);
 
         return port;
     }
@@ -143,12 +213,18 @@ public class WSATClient
                                                                              String action,
                                                                              MAP map)
     {
-        final CompletionCoordinatorService service = getCompletionCoordinatorService();
-        final CompletionCoordinatorPortType port = PrivilegedServiceHelper.getInstance().getPort(service,
-                endpointReference, CompletionCoordinatorPortType.class, new AddressingFeature(true, true));
+        final NativeEndpointReference endpoint = nativeEndpoint(endpointReference);
+        final String key = endpoint.getAddress();
+        CompletionCoordinatorPortType port = completionCoordinatorPorts.acquire(key);
+        if (port == null) {
+            final CompletionCoordinatorService service = getCompletionCoordinatorService();
+            port = PrivilegedServiceHelper.getInstance().getPort(service,
+                    CompletionCoordinatorPortType.class, new AddressingFeature(true, true));
+            completionCoordinatorPorts.register(key, port);
+        }
         BindingProvider bindingProvider = (BindingProvider)port;
 
-        configureEndpointPort(bindingProvider, action, map);
+        configureEndpointPort(bindingProvider, endpoint, action, map);
 
         return port;
     }
@@ -157,12 +233,18 @@ public class WSATClient
                                                                          String action,
                                                                          MAP map)
     {
-        final CompletionInitiatorService service = getCompletionInitiatorService();
-        final CompletionInitiatorPortType port = PrivilegedServiceHelper.getInstance().getPort(service, endpointReference,
-                        CompletionInitiatorPortType.class, new AddressingFeature(true, true));
+        final NativeEndpointReference endpoint = nativeEndpoint(endpointReference);
+        final String key = endpoint.getAddress();
+        CompletionInitiatorPortType port = completionInitiatorPorts.acquire(key);
+        if (port == null) {
+            final CompletionInitiatorService service = getCompletionInitiatorService();
+            port = PrivilegedServiceHelper.getInstance().getPort(service,
+                    CompletionInitiatorPortType.class, new AddressingFeature(true, true));
+            completionInitiatorPorts.register(key, port);
+        }
         BindingProvider bindingProvider = (BindingProvider)port;
 
-        configureEndpointPort(bindingProvider, action, map);
+        configureEndpointPort(bindingProvider, endpoint, action, map);
 
         return port;
     }
@@ -171,24 +253,35 @@ public class WSATClient
                                                                              String action,
                                                                              MAP map)
     {
-        final CompletionCoordinatorRPCService service = getCompletionCoordinatorRPCService();
-        final CompletionCoordinatorRPCPortType port = PrivilegedServiceHelper.getInstance().getPort(service,
-                endpointReference, CompletionCoordinatorRPCPortType.class, new AddressingFeature(true, true));
+        final NativeEndpointReference endpoint = nativeEndpoint(endpointReference);
+        final String key = endpoint.getAddress();
+        CompletionCoordinatorRPCPortType port = completionCoordinatorRPCPorts.acquire(key);
+        if (port == null) {
+            final CompletionCoordinatorRPCService service = getCompletionCoordinatorRPCService();
+            port = PrivilegedServiceHelper.getInstance().getPort(service,
+                    CompletionCoordinatorRPCPortType.class, new AddressingFeature(true, true));
+            completionCoordinatorRPCPorts.register(key, port);
+        }
         BindingProvider bindingProvider = (BindingProvider)port;
 
-        configureEndpointPort(bindingProvider, action, map);
+        configureEndpointPort(bindingProvider, endpoint, action, map);
 
         return port;
     }
 
-    // fetch ports when we have NO endpoint
+    // fetch ports when we have NO endpoint. these are fully reconfigured from the supplied
+    // addressing properties so a single pool key is used for all of them.
 
     public static CoordinatorPortType getCoordinatorPort(String action,
                                                          MAP map)
     {
-        final CoordinatorService service = getCoordinatorService();
-        final CoordinatorPortType port = PrivilegedServiceHelper.getInstance().getPort(service,
-                CoordinatorPortType.class, new AddressingFeature(true, true));
+        CoordinatorPortType port = coordinatorPorts.acquire(NO_ENDPOINT_KEY);
+        if (port == null) {
+            final CoordinatorService service = getCoordinatorService();
+            port = PrivilegedServiceHelper.getInstance().getPort(service,
+                    CoordinatorPortType.class, new AddressingFeature(true, true));
+            coordinatorPorts.register(NO_ENDPOINT_KEY, port);
+        }
         BindingProvider bindingProvider = (BindingProvider)port;
 
         configurePort(bindingProvider, action, map);
@@ -199,9 +292,13 @@ public class WSATClient
     public static ParticipantPortType getParticipantPort(String action,
                                                          MAP map)
     {
-        final ParticipantService service = getParticipantService();
-        final ParticipantPortType port = PrivilegedServiceHelper.getInstance().getPort(service,
-                ParticipantPortType.class, new AddressingFeature(true, true));
+        ParticipantPortType port = participantPorts.acquire(NO_ENDPOINT_KEY);
+        if (port == null) {
+            final ParticipantService service = getParticipantService();
+            port = PrivilegedServiceHelper.getInstance().getPort(service,
+                    ParticipantPortType.class, new AddressingFeature(true, true));
+            participantPorts.register(NO_ENDPOINT_KEY, port);
+        }
         BindingProvider bindingProvider = (BindingProvider)port;
 
         configurePort(bindingProvider, action, map);
@@ -212,9 +309,13 @@ public class WSATClient
     public static CompletionCoordinatorPortType getCompletionCoordinatorPort(String action,
                                                                              MAP map)
     {
-        final CompletionCoordinatorService service = getCompletionCoordinatorService();
-        final CompletionCoordinatorPortType port = PrivilegedServiceHelper.getInstance().getPort(service,
-                CompletionCoordinatorPortType.class, new AddressingFeature(true, true));
+        CompletionCoordinatorPortType port = completionCoordinatorPorts.acquire(NO_ENDPOINT_KEY);
+        if (port == null) {
+            final CompletionCoordinatorService service = getCompletionCoordinatorService();
+            port = PrivilegedServiceHelper.getInstance().getPort(service,
+                    CompletionCoordinatorPortType.class, new AddressingFeature(true, true));
+            completionCoordinatorPorts.register(NO_ENDPOINT_KEY, port);
+        }
         BindingProvider bindingProvider = (BindingProvider)port;
 
         configurePort(bindingProvider, action, map);
@@ -225,9 +326,13 @@ public class WSATClient
     public static CompletionInitiatorPortType getCompletionInitiatorPort(String action,
                                                                          MAP map)
     {
-        final CompletionInitiatorService service = getCompletionInitiatorService();
-        final CompletionInitiatorPortType port = PrivilegedServiceHelper.getInstance().getPort(service,
-                CompletionInitiatorPortType.class, new AddressingFeature(true, true));
+        CompletionInitiatorPortType port = completionInitiatorPorts.acquire(NO_ENDPOINT_KEY);
+        if (port == null) {
+            final CompletionInitiatorService service = getCompletionInitiatorService();
+            port = PrivilegedServiceHelper.getInstance().getPort(service,
+                    CompletionInitiatorPortType.class, new AddressingFeature(true, true));
+            completionInitiatorPorts.register(NO_ENDPOINT_KEY, port);
+        }
         BindingProvider bindingProvider = (BindingProvider)port;
 
         configurePort(bindingProvider, action, map);
@@ -235,7 +340,54 @@ public class WSATClient
         return port;
     }
 
-    private static void configureEndpointPort(BindingProvider bindingProvider, String action, MAP map)
+    // return ports to the pool once a message has been sent successfully
+
+    public static void releaseCoordinatorPort(final CoordinatorPortType port)
+    {
+        coordinatorPorts.release(port);
+    }
+
+    public static void releaseParticipantPort(final ParticipantPortType port)
+    {
+        participantPorts.release(port);
+    }
+
+    public static void releaseCompletionCoordinatorPort(final CompletionCoordinatorPortType port)
+    {
+        completionCoordinatorPorts.release(port);
+    }
+
+    public static void releaseCompletionInitiatorPort(final CompletionInitiatorPortType port)
+    {
+        completionInitiatorPorts.release(port);
+    }
+
+    public static void releaseCompletionCoordinatorRPCPort(final CompletionCoordinatorRPCPortType port)
+    {
+        completionCoordinatorRPCPorts.release(port);
+    }
+
+    /**
+     * fetch the parsed form of an endpoint reference. the engines pass the same reference
+     * for every message to a given participant or coordinator so the parsed form is cached
+     * for as long as the reference itself is in use.
+     * @param endpointReference the endpoint reference
+     * @return the parsed endpoint reference
+     */
+    private static NativeEndpointReference nativeEndpoint(final W3CEndpointReference endpointReference)
+    {
+        NativeEndpointReference endpoint = nativeEndpoints.get(endpointReference);
+        if (endpoint == null) {
+            endpoint = EndpointHelper.transform(NativeEndpointReference.class, endpointReference);
+            nativeEndpoints.put(endpointReference, endpoint);
+        }
+        return endpoint;
+    }
+
+    private static void configureEndpointPort(BindingProvider bindingProvider,
+                                              NativeEndpointReference endpoint,
+                                              String action,
+                                              MAP map)
     {
         /*
          * we no longer have to add the JaxWS WSAddressingClientHandler because we can specify the WSAddressing feature
@@ -243,11 +395,22 @@ public class WSATClient
         customHandlerChain.add(new WSAddressingClientHandler());
         bindingProvider.getBinding().setHandlerChain(customHandlerChain);
          */
+        // the port is shared by every endpoint at this address so the To and reference parameters
+        // of the endpoint go into a fresh map along with the caller properties. the whole map is
+        // installed for each message, so nothing is carried over from an earlier message.
         Map<String, Object> requestContext = bindingProvider.getRequestContext();
-        MAP requestMap = AddressingHelper.outboundMap(requestContext);
+        final MAP requestMap = PrivilegedMapBuilderFactory.getInstance().getBuilderInstance().newMap();
+        final String address = endpoint.getAddress();
+        requestMap.setTo(address);
+        final List<Element> referenceParameters = endpoint.getReferenceParameters();
+        if (referenceParameters != null) {
+            for (Element referenceParameter : referenceParameters) {
+                requestMap.addReferenceParameter(referenceParameter);
+            }
+        }
         map.setAction(action);
         AddressingHelper.installCallerProperties(map, requestMap);
-        AddressingHelper.configureRequestContext(requestContext, requestMap.getTo(), action);
+        AddressingHelper.configureRequestContext(requestContext, requestMap, address, action);
     }
 
     private static void configurePort(BindingProvider bindingProvider,
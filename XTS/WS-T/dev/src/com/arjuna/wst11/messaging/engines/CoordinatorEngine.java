@@ -4,6 +4,7 @@ import com.arjuna.webservices.SoapFault;
 import com.arjuna.webservices.SoapFaultType;
 import com.arjuna.webservices.logging.WSTLogger;
 import com.arjuna.webservices.util.TransportTimer;
+import com.arjuna.webservices.util.TransportTimerTask;
 import com.arjuna.webservices11.SoapFault11;
 import com.arjuna.webservices11.wsaddr.AddressingHelper;
 import org.jboss.ws.api.addressing.MAP;
@@ -19,7 +20,10 @@ import org.oasis_open.docs.ws_tx.wsat._2006._06.Notification;
 
 import javax.xml.namespace.QName;
 import javax.xml.ws.wsaddressing.W3CEndpointReference;
-import java.util.TimerTask;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 /**
  * The coordinator state engine
@@ -58,7 +62,15 @@ public class CoordinatorEngine implements CoordinatorInboundEvents
     /**
      * The associated timer task or null.
      */
-    private TimerTask timerTask ;
+    private TransportTimerTask timerTask ;
+    /**
+     * Asynchronous callers waiting for the state to change, or null.
+     */
+    private List<StateWaiter> waiters ;
+    /**
+     * Waiters released by a state change but not yet completed, or null.
+     */
+    private List<StateWaiter> releasedWaiters ;
 
     /**
      * Construct the initial engine for the coordinator.
@@ -111,17 +123,21 @@ public class CoordinatorEngine implements CoordinatorInboundEvents
      * Committing -&gt; Committing (invalid state)
      * Aborting -&gt; Aborting (forget)
      */
-    public synchronized void aborted(final Notification aborted, final MAP map, final ArjunaContext arjunaContext)
+    public void aborted(final Notification aborted, final MAP map, final ArjunaContext arjunaContext)
     {
-        final State current = state ;
-        if (current == State.STATE_ACTIVE)
-        {
-            changeState(State.STATE_ABORTING) ;
-        }
-        else if ((current == State.STATE_PREPARING) || (current == State.STATE_ABORTING))
+        synchronized(this)
         {
-            forget() ;
+            final State current = state ;
+            if (current == State.STATE_ACTIVE)
+            {
+                changeState(State.STATE_ABORTING) ;
+            }
+            else if ((current == State.STATE_PREPARING) || (current == State.STATE_ABORTING))
+            {
+                forget() ;
+            }
         }
+        completeWaiters() ;
     }
 
     /**
@@ -137,17 +153,21 @@ public class CoordinatorEngine implements CoordinatorInboundEvents
      * Committing -&gt; Committing (forget)
      * Aborting -&gt; Aborting (invalid state)
      */
-    public synchronized void committed(final Notification committed, final MAP map, final ArjunaContext arjunaContext)
+    public void committed(final Notification committed, final MAP map, final ArjunaContext arjunaContext)
     {
-        final State current = state ;
-        if (current == State.STATE_ACTIVE)
-        {
-            changeState(State.STATE_ABORTING) ;
-        }
-        else if ((current == State.STATE_PREPARING) || (current == State.STATE_COMMITTING))
+        synchronized(this)
         {
-            forget() ;
+            final State current = state ;
+            if (current == State.STATE_ACTIVE)
+            {
+                changeState(State.STATE_ABORTING) ;
+            }
+            else if ((current == State.STATE_PREPARING) || (current == State.STATE_COMMITTING))
+            {
+                forget() ;
+            }
         }
+        completeWaiters() ;
     }
 
     /**
@@ -178,6 +198,8 @@ public class CoordinatorEngine implements CoordinatorInboundEvents
                 changeState(State.STATE_PREPARED_SUCCESS) ;
             }
         }
+        completeWaiters() ;
+
         if (current == State.STATE_COMMITTING)
         {
             sendCommit() ;
@@ -190,6 +212,7 @@ public class CoordinatorEngine implements CoordinatorInboundEvents
                 sendUnknownTransaction(map, arjunaContext) ;
             }
             forget();
+            completeWaiters() ;
         }
         else if ((current == null) && !readOnly)
         {
@@ -217,18 +240,22 @@ public class CoordinatorEngine implements CoordinatorInboundEvents
      * Committing -&gt; Committing (invalid state)
      * Aborting -&gt; Aborting (forget)
      */
-    public synchronized void readOnly(final Notification readOnly, final MAP map, final ArjunaContext arjunaContext)
+    public void readOnly(final Notification readOnly, final MAP map, final ArjunaContext arjunaContext)
     {
-        final State current = state ;
-        if ((current == State.STATE_ACTIVE) || (current == State.STATE_PREPARING) ||
-            (current == State.STATE_ABORTING))
+        synchronized(this)
         {
-            if (current != State.STATE_ABORTING)
+            final State current = state ;
+            if ((current == State.STATE_ACTIVE) || (current == State.STATE_PREPARING) ||
+                (current == State.STATE_ABORTING))
             {
-                this.readOnly = true ;
+                if (current != State.STATE_ABORTING)
+                {
+                    this.readOnly = true ;
+                }
+                forget() ;
             }
-            forget() ;
         }
+        completeWaiters() ;
     }
 
     /**
@@ -260,6 +287,33 @@ public class CoordinatorEngine implements CoordinatorInboundEvents
      * Aborting -&gt; Aborting (invalid state)
      */
     public State prepare()
+    {
+        startPrepare() ;
+
+        waitForState(State.STATE_PREPARING, TransportTimer.getTransportTimeout()) ;
+
+        return prepareCompleted() ;
+    }
+
+    /**
+     * Handle the prepare event without blocking the caller.
+     *
+     * The returned stage completes with the state reached when the participant responds or
+     * the transport timeout expires, with the same meaning as the result of {@link #prepare()}.
+     * @return the completion stage.
+     */
+    public CompletionStage<State> prepareAsync()
+    {
+        startPrepare() ;
+
+        return waitForStateAsync(State.STATE_PREPARING, TransportTimer.getTransportTimeout())
+            .thenApply(ignore -> prepareCompleted()) ;
+    }
+
+    /**
+     * Move to preparing and send the prepare message if appropriate.
+     */
+    private void startPrepare()
     {
         final State current ;
         synchronized(this)
@@ -270,14 +324,20 @@ public class CoordinatorEngine implements CoordinatorInboundEvents
                 changeState(State.STATE_PREPARING) ;
             }
         }
+        completeWaiters() ;
 
         if ((current == State.STATE_ACTIVE) || (current == State.STATE_PREPARING))
         {
             sendPrepare() ;
         }
+    }
 
-        waitForState(State.STATE_PREPARING, TransportTimer.getTransportTimeout()) ;
-
+    /**
+     * Determine the outcome of a prepare once the wait for a response is over.
+     * @return the current state.
+     */
+    private State prepareCompleted()
+    {
         synchronized(this)
         {
             if (state != State.STATE_PREPARING)
@@ -310,6 +370,33 @@ public class CoordinatorEngine implements CoordinatorInboundEvents
      * Aborting -&gt; Aborting (invalid state)
      */
     public State commit()
+    {
+        startCommit() ;
+
+        waitForState(State.STATE_COMMITTING, TransportTimer.getTransportTimeout()) ;
+
+        return commitCompleted() ;
+    }
+
+    /**
+     * Handle the commit event without blocking the caller.
+     *
+     * The returned stage completes with the state reached when the participant responds or
+     * the transport timeout expires, with the same meaning as the result of {@link #commit()}.
+     * @return the completion stage.
+     */
+    public CompletionStage<State> commitAsync()
+    {
+        startCommit() ;
+
+        return waitForStateAsync(State.STATE_COMMITTING, TransportTimer.getTransportTimeout())
+            .thenApply(ignore -> commitCompleted()) ;
+    }
+
+    /**
+     * Move to committing and send the commit message if appropriate.
+     */
+    private void startCommit()
     {
         final State current ;
         synchronized(this)
@@ -320,14 +407,20 @@ public class CoordinatorEngine implements CoordinatorInboundEvents
                 changeState(State.STATE_COMMITTING) ;
             }
         }
+        completeWaiters() ;
 
         if ((current == State.STATE_PREPARED_SUCCESS) || (current == State.STATE_COMMITTING))
         {
             sendCommit() ;
         }
+    }
 
-        waitForState(State.STATE_COMMITTING, TransportTimer.getTransportTimeout()) ;
-
+    /**
+     * Determine the outcome of a commit once the wait for a response is over.
+     * @return the current state.
+     */
+    private State commitCompleted()
+    {
         synchronized(this)
         {
             if (state != State.STATE_COMMITTING)
@@ -368,6 +461,33 @@ public class CoordinatorEngine implements CoordinatorInboundEvents
      * Aborting -&gt; Aborting (do nothing)
      */
     public State rollback()
+    {
+        startRollback() ;
+
+        waitForState(State.STATE_ABORTING, TransportTimer.getTransportTimeout()) ;
+
+        return rollbackCompleted() ;
+    }
+
+    /**
+     * Handle the rollback event without blocking the caller.
+     *
+     * The returned stage completes with the state reached when the participant responds or
+     * the transport timeout expires, with the same meaning as the result of {@link #rollback()}.
+     * @return the completion stage.
+     */
+    public CompletionStage<State> rollbackAsync()
+    {
+        startRollback() ;
+
+        return waitForStateAsync(State.STATE_ABORTING, TransportTimer.getTransportTimeout())
+            .thenApply(ignore -> rollbackCompleted()) ;
+    }
+
+    /**
+     * Move to aborting and send the rollback message if appropriate.
+     */
+    private void startRollback()
     {
         final State current ;
         synchronized(this)
@@ -379,6 +499,7 @@ public class CoordinatorEngine implements CoordinatorInboundEvents
                 changeState(State.STATE_ABORTING) ;
             }
         }
+        completeWaiters() ;
 
         if ((current == State.STATE_ACTIVE) || (current == State.STATE_PREPARING) ||
             (current == State.STATE_PREPARED_SUCCESS))
@@ -388,10 +509,17 @@ public class CoordinatorEngine implements CoordinatorInboundEvents
         else if (current == State.STATE_ABORTING)
         {
             forget() ;
+            completeWaiters() ;
         }
+    }
 
-        waitForState(State.STATE_ABORTING, TransportTimer.getTransportTimeout()) ;
-
+    /**
+     * Determine the outcome of a rollback once the wait for a response is over.
+     * @return the current state.
+     */
+    private State rollbackCompleted()
+    {
+        final State result ;
         synchronized(this)
         {
             if (state != State.STATE_ABORTING)
@@ -409,8 +537,11 @@ public class CoordinatorEngine implements CoordinatorInboundEvents
 
             forget();
 
-            return State.STATE_ABORTING;
+            result = State.STATE_ABORTING;
         }
+        completeWaiters() ;
+
+        return result ;
     }
 
     /**
@@ -419,7 +550,7 @@ public class CoordinatorEngine implements CoordinatorInboundEvents
      * Preparing -&gt; Preparing (resend Prepare)
      * Committing -&gt; Committing (resend Commit)
      */
-    private void commsTimeout(TimerTask caller)
+    private void commsTimeout(TransportTimerTask caller)
     {
         final State current ;
         synchronized(this)
@@ -507,6 +638,113 @@ public class CoordinatorEngine implements CoordinatorInboundEvents
         {
             this.state = state ;
             notifyAll() ;
+            releaseWaiters() ;
+        }
+    }
+
+    /**
+     * Release any asynchronous waiters whose state has changed. They are completed by
+     * {@link #completeWaiters()} once the caller has dropped the lock on this engine, so
+     * that dependent stages never run while holding it.
+     * Must be called while holding the lock on this engine.
+     */
+    private void releaseWaiters()
+    {
+        if (waiters == null)
+        {
+            return ;
+        }
+        for (int i = waiters.size() - 1 ; i >= 0 ; i--)
+        {
+            final StateWaiter waiter = waiters.get(i) ;
+            if (waiter.origState != state)
+            {
+                waiters.remove(i) ;
+                if (releasedWaiters == null)
+                {
+                    releasedWaiters = new ArrayList<StateWaiter>() ;
+                }
+                releasedWaiters.add(waiter) ;
+            }
+        }
+        if (waiters.isEmpty())
+        {
+            waiters = null ;
+        }
+    }
+
+    /**
+     * Complete any waiters released by a state change.
+     * Must be called without holding the lock on this engine.
+     */
+    private void completeWaiters()
+    {
+        final List<StateWaiter> released ;
+        synchronized(this)
+        {
+            released = releasedWaiters ;
+            releasedWaiters = null ;
+        }
+        if (released != null)
+        {
+            for (StateWaiter waiter : released)
+            {
+                waiter.timeout.cancel() ;
+                waiter.future.complete(null) ;
+            }
+        }
+    }
+
+    /**
+     * Wait asynchronously for the state to change from the specified state.
+     * @param origState The original state.
+     * @param delay The maximum time to wait for (in milliseconds).
+     * @return a stage completed when the state changes or the delay expires.
+     */
+    private CompletableFuture<Void> waitForStateAsync(final State origState, final long delay)
+    {
+        final StateWaiter waiter = new StateWaiter(origState) ;
+        synchronized(this)
+        {
+            if (state != origState)
+            {
+                return CompletableFuture.completedFuture(null) ;
+            }
+            if (waiters == null)
+            {
+                waiters = new ArrayList<StateWaiter>() ;
+            }
+            waiters.add(waiter) ;
+            // scheduled under the lock so that the timeout cannot be cancelled before it is scheduled
+            TransportTimer.schedule(waiter.timeout, delay) ;
+        }
+        return waiter.future ;
+    }
+
+    /**
+     * An asynchronous caller waiting for the state to change.
+     */
+    private final class StateWaiter
+    {
+        final State origState ;
+        final CompletableFuture<Void> future = new CompletableFuture<Void>() ;
+        final TransportTimerTask timeout = new TransportTimerTask() {
+            public void run() {
+                final boolean waiting ;
+                synchronized(CoordinatorEngine.this)
+                {
+                    waiting = (waiters != null) && waiters.remove(StateWaiter.this) ;
+                }
+                if (waiting)
+                {
+                    future.complete(null) ;
+                }
+            }
+        } ;
+
+        StateWaiter(final State origState)
+        {
+            this.origState = origState ;
         }
     }
 
@@ -567,7 +805,7 @@ public class CoordinatorEngine implements CoordinatorInboundEvents
      */
     private void sendPrepare()
     {
-        TimerTask newTimerTask = createTimerTask();
+        TransportTimerTask newTimerTask = createTimerTask();
         synchronized (this) {
             // cancel any existing timer task
 
@@ -618,7 +856,7 @@ public class CoordinatorEngine implements CoordinatorInboundEvents
      */
     private void sendCommit()
     {
-        TimerTask newTimerTask = createTimerTask();
+        TransportTimerTask newTimerTask = createTimerTask();
         synchronized (this) {
             // cancel any existing timer task
 
@@ -708,9 +946,9 @@ public class CoordinatorEngine implements CoordinatorInboundEvents
      *
      * @return the timer task
      */
-    private TimerTask createTimerTask()
+    private TransportTimerTask createTimerTask()
     {
-        return new TimerTask() {
+        return new TransportTimerTask() {
             public void run() {
                 commsTimeout(this) ;
             }
@@ -722,9 +960,9 @@ public class CoordinatorEngine implements CoordinatorInboundEvents
      * @param timerTask the timer task to be scheduled
      */
 
-    private void scheduleTimer(TimerTask timerTask)
+    private void scheduleTimer(TransportTimerTask timerTask)
     {
-        TransportTimer.getTimer().schedule(timerTask, TransportTimer.getTransportPeriod()) ;
+        TransportTimer.schedule(timerTask, TransportTimer.getTransportPeriod()) ;
     }
 
     /**
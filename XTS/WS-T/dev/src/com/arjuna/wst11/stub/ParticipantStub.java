@@ -18,6 +18,8 @@ import javax.xml.ws.wsaddressing.W3CEndpointReference;
 import javax.xml.transform.stream.StreamSource;
 import java.io.StringWriter;
 import java.io.StringReader;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 
 public class ParticipantStub implements Participant, PersistableParticipant
 {
@@ -47,7 +49,32 @@ public class ParticipantStub implements Participant, PersistableParticipant
          * Committing - illegal state
          * Aborting - aborting
          */
-        final State state = coordinator.prepare() ;
+        return toVote(coordinator.prepare()) ;
+    }
+
+    /**
+     * Prepare the participant without blocking the caller, allowing votes to be collected
+     * from several participants in parallel.
+     * @return a stage completing with the vote, or exceptionally with a
+     * {@link WrongStateException} or {@link SystemException} as thrown by {@link #prepare()}.
+     */
+    public CompletionStage<Vote> prepareAsync()
+    {
+        return coordinator.prepareAsync().thenApply(state -> {
+            try
+            {
+                return toVote(state) ;
+            }
+            catch (final WrongStateException | SystemException ex)
+            {
+                throw new CompletionException(ex) ;
+            }
+        }) ;
+    }
+
+    private Vote toVote(final State state)
+        throws WrongStateException, SystemException
+    {
         if (state == State.STATE_PREPARED_SUCCESS)
         {
             return new Prepared() ;
@@ -93,7 +120,31 @@ public class ParticipantStub implements Participant, PersistableParticipant
          * Committing - no response
          * Aborting - illegal state
          */
-        final State state = coordinator.commit() ;
+        checkCommitted(coordinator.commit()) ;
+    }
+
+    /**
+     * Commit the participant without blocking the caller.
+     * @return a stage completing when the participant has committed, or exceptionally with a
+     * {@link WrongStateException} or {@link SystemException} as thrown by {@link #commit()}.
+     */
+    public CompletionStage<Void> commitAsync()
+    {
+        return coordinator.commitAsync().thenAccept(state -> {
+            try
+            {
+                checkCommitted(state) ;
+            }
+            catch (final WrongStateException | SystemException ex)
+            {
+                throw new CompletionException(ex) ;
+            }
+        }) ;
+    }
+
+    private static void checkCommitted(final State state)
+        throws WrongStateException, SystemException
+    {
         if (state != null)
         {
             if (state == State.STATE_COMMITTING)
@@ -122,7 +173,31 @@ public class ParticipantStub implements Participant, PersistableParticipant
          * Committing - illegal state
          * Aborting - no response
          */
-        final State state = coordinator.rollback() ;
+        checkAborted(coordinator.rollback()) ;
+    }
+
+    /**
+     * Roll back the participant without blocking the caller.
+     * @return a stage completing when the participant has rolled back, or exceptionally with a
+     * {@link WrongStateException} or {@link SystemException} as thrown by {@link #rollback()}.
+     */
+    public CompletionStage<Void> rollbackAsync()
+    {
+        return coordinator.rollbackAsync().thenAccept(state -> {
+            try
+            {
+                checkAborted(state) ;
+            }
+            catch (final WrongStateException | SystemException ex)
+            {
+                throw new CompletionException(ex) ;
+            }
+        }) ;
+    }
+
+    private static void checkAborted(final State state)
+        throws WrongStateException, SystemException
+    {
         if (state != null)
         {
             if (state == State.STATE_ABORTING)
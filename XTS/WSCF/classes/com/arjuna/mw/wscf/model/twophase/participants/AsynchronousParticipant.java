@@ -0,0 +1,43 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2021, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+
+package com.arjuna.mw.wscf.model.twophase.participants;
+
+import com.arjuna.mw.wscf.model.twophase.vote.Vote;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A two-phase participant which can be prepared without blocking the caller,
+ * allowing the coordinator to send prepare to all of its participants and then
+ * collect their votes as they arrive.
+ */
+
+public interface AsynchronousParticipant extends Participant
+{
+
+    /**
+     * Prepare the participant for top-level without waiting for its vote.
+     *
+     * @return a stage completing with the vote, or exceptionally with one of the
+     *         exceptions thrown by {@link Participant#prepare()}.
+     */
+
+    public CompletionStage<Vote> prepareAsync ();
+
+}
@@ -52,6 +52,10 @@ import com.arjuna.mw.wsas.exceptions.ProtocolViolationException;
 
 import com.arjuna.mw.wscf.exceptions.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * This class represents a specific coordination instance. It is essentially an
  * ArjunaCore TwoPhaseCoordinator, which gives us access to two-phase with
@@ -279,6 +283,72 @@ public class ATCoordinator extends TwoPhaseCoordinator
                     wscfLogger.i18NLogger.get_model_twophase_arjunacore_ATCoordinator_3());
 	}
 
+	/**
+	 * Drive the synchronizations and then send prepare to every participant
+	 * which can be prepared asynchronously, so that the votes of remote
+	 * participants are collected in parallel rather than one round trip at a
+	 * time, and without a thread waiting for each of them. The prepare phase
+	 * which follows uses the collected votes.
+	 *
+	 * @return true if successful, false otherwise.
+	 */
+
+	protected boolean beforeCompletion ()
+	{
+		return beforeCompletion(true);
+	}
+
+	/**
+	 * Drive the synchronizations.
+	 *
+	 * @param prepareAsynchronously true if asynchronous participants should
+	 *            then be sent prepare, false otherwise.
+	 *
+	 * @return true if successful, false otherwise.
+	 */
+
+	protected final boolean beforeCompletion (boolean prepareAsynchronously)
+	{
+		boolean result = super.beforeCompletion();
+
+		if (result && prepareAsynchronously)
+			prepareAsynchronousParticipants();
+
+		return result;
+	}
+
+	/**
+	 * Send prepare to the asynchronous participants and wait for all of their
+	 * votes, if the transaction is about to run a two-phase prepare.
+	 */
+
+	protected final synchronized void prepareAsynchronousParticipants ()
+	{
+		if ((parent() != null) || (status() != ActionStatus.RUNNING)
+				|| (pendingList == null) || (pendingList.size() < 2))
+		{
+			// nothing to prepare, or a single participant which is committed in one phase
+
+			return;
+		}
+
+		List<CompletableFuture<Void>> votes = new ArrayList<CompletableFuture<Void>>();
+		RecordListIterator iter = new RecordListIterator(pendingList);
+		AbstractRecord absRec = iter.iterate();
+
+		while (absRec != null)
+		{
+			if (absRec instanceof ParticipantRecord)
+				votes.add(((ParticipantRecord) absRec).topLevelPrepareAsync().toCompletableFuture());
+
+			absRec = iter.iterate();
+		}
+
+		// each stage completes normally once its participant has voted or timed out
+
+		CompletableFuture.allOf(votes.toArray(new CompletableFuture[votes.size()])).join();
+	}
+
     @Override
     public String type ()
 	{
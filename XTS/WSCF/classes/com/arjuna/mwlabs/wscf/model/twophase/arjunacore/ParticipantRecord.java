@@ -39,6 +39,7 @@ import com.arjuna.ats.arjuna.common.*;
 import com.arjuna.ats.arjuna.state.*;
 
 import com.arjuna.mw.wscf.model.twophase.vote.*;
+import com.arjuna.mw.wscf.model.twophase.participants.AsynchronousParticipant;
 import com.arjuna.mw.wscf.model.twophase.participants.Participant;
 import com.arjuna.mw.wscf.model.twophase.exceptions.*;
 
@@ -48,6 +49,9 @@ import com.arjuna.mw.wscf.exceptions.*;
 import com.arjuna.webservices.util.ClassLoaderHelper;
 
 import java.io.PrintWriter;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 
 /**
  * Arjuna abstract record to handle two-phase participants.
@@ -314,6 +318,17 @@ public class ParticipantRecord extends
 
 	public int topLevelPrepare ()
 	{
+		final Integer collected = _prepareOutcome;
+
+		if (collected != null)
+		{
+			// the vote was collected by topLevelPrepareAsync
+
+			_prepareOutcome = null;
+
+			return collected;
+		}
+
 		try
 		{
 			if (_resourceHandle != null)
@@ -324,65 +339,110 @@ public class ParticipantRecord extends
 				if (_readonly)
 					return TwoPhaseOutcome.PREPARE_READONLY;
 
-				try
-				{
-					Vote res = _resourceHandle.prepare();
-
-					if (res instanceof VoteConfirm)
-					{
-						return TwoPhaseOutcome.PREPARE_OK;
-					}
-					else
-					{
-						if (res instanceof VoteReadOnly)
-						{
-							_readonly = true;
-
-							return TwoPhaseOutcome.PREPARE_READONLY;
-						}
-						else
-						{
-							_rolledback = true;
-
-							return TwoPhaseOutcome.PREPARE_NOTOK;
-						}
-					}
-				}
-				catch (InvalidParticipantException ex)
-				{
-					return TwoPhaseOutcome.FINISH_ERROR;
-				}
-				catch (WrongStateException ex)
-				{
-					return TwoPhaseOutcome.FINISH_ERROR;
-				}
-				catch (HeuristicHazardException ex)
-				{
-					return TwoPhaseOutcome.HEURISTIC_HAZARD;
-				}
-				catch (HeuristicMixedException ex)
-				{
-					return TwoPhaseOutcome.HEURISTIC_MIXED;
-				}
-                catch(SystemCommunicationException ex)
-                {
-                    // if prepare timed out then we return error so it goes back on the
-                    // prepare list and is rolled back
-                    return TwoPhaseOutcome.PREPARE_NOTOK;
-                }
-				catch (SystemException ex)
-				{
-					return TwoPhaseOutcome.HEURISTIC_HAZARD;
-				}
+				return prepareOutcome(_resourceHandle.prepare());
 			}
 			else
 				return TwoPhaseOutcome.PREPARE_NOTOK;
 		}
-		catch (Exception e6) {
-            wscfLogger.i18NLogger.warn_model_twophase_arjunacore_ParticipantRecord_8(order(), e6);
+		catch (Exception ex)
+		{
+			return prepareOutcome(ex);
+		}
+	}
 
-            return TwoPhaseOutcome.PREPARE_NOTOK;
-        }
+	/**
+	 * Send prepare to the participant without waiting for its vote, if it is
+	 * an {@link AsynchronousParticipant}. The outcome is recorded and returned
+	 * by the next call to {@link #topLevelPrepare()}, so the coordinator can
+	 * prepare all of its participants at once and then run the usual prepare
+	 * phase over the collected votes.
+	 *
+	 * @return a stage completing, never exceptionally, once the vote has been
+	 *         collected, or immediately if the participant must be prepared
+	 *         synchronously.
+	 */
+
+	public CompletionStage<Void> topLevelPrepareAsync ()
+	{
+		if (!(_resourceHandle instanceof AsynchronousParticipant) || _rolledback || _readonly)
+			return CompletableFuture.completedFuture(null);
+
+		final CompletionStage<Vote> vote;
+
+		try
+		{
+			vote = ((AsynchronousParticipant) _resourceHandle).prepareAsync();
+		}
+		catch (Exception ex)
+		{
+			_prepareOutcome = prepareOutcome(ex);
+
+			return CompletableFuture.completedFuture(null);
+		}
+
+		return vote.handle((res, th) -> {
+			if (th == null)
+				_prepareOutcome = prepareOutcome(res);
+			else
+				_prepareOutcome = prepareOutcome((th instanceof CompletionException) && (th.getCause() != null) ? th.getCause() : th);
+
+			return null;
+		});
+	}
+
+	private int prepareOutcome (Vote res)
+	{
+		if (res instanceof VoteConfirm)
+		{
+			return TwoPhaseOutcome.PREPARE_OK;
+		}
+		else
+		{
+			if (res instanceof VoteReadOnly)
+			{
+				_readonly = true;
+
+				return TwoPhaseOutcome.PREPARE_READONLY;
+			}
+			else
+			{
+				_rolledback = true;
+
+				return TwoPhaseOutcome.PREPARE_NOTOK;
+			}
+		}
+	}
+
+	private int prepareOutcome (Throwable ex)
+	{
+		if ((ex instanceof InvalidParticipantException) || (ex instanceof WrongStateException))
+		{
+			return TwoPhaseOutcome.FINISH_ERROR;
+		}
+		else if (ex instanceof HeuristicHazardException)
+		{
+			return TwoPhaseOutcome.HEURISTIC_HAZARD;
+		}
+		else if (ex instanceof HeuristicMixedException)
+		{
+			return TwoPhaseOutcome.HEURISTIC_MIXED;
+		}
+		else if (ex instanceof SystemCommunicationException)
+		{
+			// if prepare timed out then we return error so it goes back on the
+			// prepare list and is rolled back
+			return TwoPhaseOutcome.PREPARE_NOTOK;
+		}
+		else if (ex instanceof SystemException)
+		{
+			return TwoPhaseOutcome.HEURISTIC_HAZARD;
+		}
+		else
+		{
+			wscfLogger.i18NLogger.warn_model_twophase_arjunacore_ParticipantRecord_8(order(), ex);
+
+			return TwoPhaseOutcome.PREPARE_NOTOK;
+		}
 	}
 
 	/**
@@ -670,4 +730,6 @@ public class ParticipantRecord extends
 
 	private boolean _readonly = false;
 
+	private volatile Integer _prepareOutcome = null;
+
 }
@@ -147,7 +147,8 @@ public class SubordinateATCoordinator extends ATCoordinator
      */
     public boolean prepareVolatile()
     {
-        return super.beforeCompletion();
+        // the durable participants are only prepared once the parent prepares this coordinator
+        return super.beforeCompletion(false);
     }
 
     /**
@@ -158,6 +159,7 @@ public class SubordinateATCoordinator extends ATCoordinator
 
 	public int prepare ()
 	{
+        prepareAsynchronousParticipants();
         int status = super.prepare(true);
         isReadonly = (status == TwoPhaseOutcome.PREPARE_READONLY);
         return status;
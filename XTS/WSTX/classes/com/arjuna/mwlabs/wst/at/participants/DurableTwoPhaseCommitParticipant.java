@@ -46,6 +46,11 @@ import com.arjuna.mw.wsas.exceptions.WrongStateException;
 import com.arjuna.mw.wsas.exceptions.SystemCommunicationException;
 import com.arjuna.mw.wstx.logging.wstxLogger;
 import com.arjuna.mwlabs.wst.util.PersistableParticipantHelper;
+import com.arjuna.wst11.stub.ParticipantStub;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 
 /**
  * @author Mark Little (mark.little@arjuna.com)
@@ -54,7 +59,7 @@ import com.arjuna.mwlabs.wst.util.PersistableParticipantHelper;
  * @since 1.0.
  */
 
-public class DurableTwoPhaseCommitParticipant implements Participant
+public class DurableTwoPhaseCommitParticipant implements AsynchronousParticipant
 {
     // default ctor for crash recovery
     public DurableTwoPhaseCommitParticipant() {
@@ -79,52 +84,111 @@ public class DurableTwoPhaseCommitParticipant implements Participant
 		try
 		{
 			if (_resource != null)
-			{
-				com.arjuna.wst.Vote vt = _resource.prepare();
-
-				if (vt instanceof com.arjuna.wst.ReadOnly)
-				{
-					_readonly = true;
-
-					return new VoteReadOnly();
-				}
-				else
-				{
-					if (vt instanceof com.arjuna.wst.Prepared)
-						return new VoteConfirm();
-					else
-					{
-						_rolledback = true;
-
-						return new VoteCancel();
-					}
-				}
-			}
+				return toVote(_resource.prepare());
 			else
 				return new VoteCancel();
 		}
 		catch (com.arjuna.wst.WrongStateException ex)
 		{
-			wstxLogger.i18NLogger.error_wst_at_participants_Durable2PC_prepare(_id, _resource, ex);
-			WrongStateException wse = new WrongStateException(ex.toString());
-			wse.addSuppressed(ex);
-			throw wse;
+			throw wrongStateAtPrepare(ex);
 		}
 		catch (com.arjuna.wst.stub.SystemCommunicationException ex) {
-		    wstxLogger.i18NLogger.warn_mwlabs_wst_at_participants_DurableTwoPhaseCommitParticipant_prepare_1(_id, _resource);
-		    SystemCommunicationException sce = new SystemCommunicationException(ex.toString());
-		    sce.addSuppressed(ex);
-		    throw sce;
+		    throw communicationFailureAtPrepare(ex);
 		}
 		catch (com.arjuna.wst.SystemException ex)
 		{
-		    wstxLogger.i18NLogger.error_wst_at_participants_Durable2PC_prepare(_id, _resource, ex);
-		    SystemException se = new SystemException(ex.toString());
-		    se.addSuppressed(ex);
-		    throw se;
+		    throw systemFailureAtPrepare(ex);
         }
 	}
 
+    /**
+     * tell the participant to prepare without waiting for its vote. a remote participant
+     * completes the stage when its response arrives, any other participant is prepared
+     * before returning.
+     *
+     * @return a stage completing with the participant's vote
+     */
+    public CompletionStage<Vote> prepareAsync ()
+    {
+        final CompletableFuture<Vote> result = new CompletableFuture<Vote>();
+
+        if (_resource instanceof ParticipantStub)
+        {
+            ((ParticipantStub) _resource).prepareAsync().whenComplete((vt, th) -> {
+                final Throwable cause = ((th instanceof CompletionException) && (th.getCause() != null)) ? th.getCause() : th;
+
+                if (cause == null)
+                    result.complete(toVote(vt));
+                else if (cause instanceof com.arjuna.wst.WrongStateException)
+                    result.completeExceptionally(wrongStateAtPrepare((com.arjuna.wst.WrongStateException) cause));
+                else if (cause instanceof com.arjuna.wst.stub.SystemCommunicationException)
+                    result.completeExceptionally(communicationFailureAtPrepare((com.arjuna.wst.stub.SystemCommunicationException) cause));
+                else if (cause instanceof com.arjuna.wst.SystemException)
+                    result.completeExceptionally(systemFailureAtPrepare((com.arjuna.wst.SystemException) cause));
+                else
+                    result.completeExceptionally(cause);
+            });
+        }
+        else
+        {
+            try
+            {
+                result.complete(prepare());
+            }
+            catch (Exception ex)
+            {
+                result.completeExceptionally(ex);
+            }
+        }
+
+        return result;
+    }
+
+    private Vote toVote (com.arjuna.wst.Vote vt)
+    {
+        if (vt instanceof com.arjuna.wst.ReadOnly)
+        {
+            _readonly = true;
+
+            return new VoteReadOnly();
+        }
+        else
+        {
+            if (vt instanceof com.arjuna.wst.Prepared)
+                return new VoteConfirm();
+            else
+            {
+                _rolledback = true;
+
+                return new VoteCancel();
+            }
+        }
+    }
+
+    private WrongStateException wrongStateAtPrepare (com.arjuna.wst.WrongStateException ex)
+    {
+        wstxLogger.i18NLogger.error_wst_at_participants_Durable2PC_prepare(_id, _resource, ex);
+        WrongStateException wse = new WrongStateException(ex.toString());
+        wse.addSuppressed(ex);
+        return wse;
+    }
+
+    private SystemCommunicationException communicationFailureAtPrepare (com.arjuna.wst.stub.SystemCommunicationException ex)
+    {
+        wstxLogger.i18NLogger.warn_mwlabs_wst_at_participants_DurableTwoPhaseCommitParticipant_prepare_1(_id, _resource);
+        SystemCommunicationException sce = new SystemCommunicationException(ex.toString());
+        sce.addSuppressed(ex);
+        return sce;
+    }
+
+    private SystemException systemFailureAtPrepare (com.arjuna.wst.SystemException ex)
+    {
+        wstxLogger.i18NLogger.error_wst_at_participants_Durable2PC_prepare(_id, _resource, ex);
+        SystemException se = new SystemException(ex.toString());
+        se.addSuppressed(ex);
+        return se;
+    }
+
     /**
      * attempt to commit the participant
      *
@@ -0,0 +1,246 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2021, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package com.arjuna.wsc.tests.local;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.arjuna.webservices.util.HashedWheelTimerService;
+import com.arjuna.webservices.util.TransportTimerTask;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HashedWheelTimerServiceTest {
+
+    private HashedWheelTimerService timer;
+
+    @After
+    public void tearDown() {
+        if (timer != null) {
+            timer.shutdown();
+        }
+    }
+
+    @Test
+    public void testWheelSize() {
+        timer = new HashedWheelTimerService(10, 100, 0);
+
+        Assert.assertEquals(128, timer.getWheelSize());
+    }
+
+    @Test
+    public void testSchedule() throws Exception {
+        timer = new HashedWheelTimerService(5, 64, 0);
+
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch done = new CountDownLatch(3);
+        final long start = System.nanoTime();
+        final long[] ran = new long[3];
+
+        for (final int delay : new int[] {150, 50, 100}) {
+            final int index = delay / 50 - 1;
+
+            timer.schedule(new TransportTimerTask() {
+                public void run() {
+                    ran[index] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    order.add(delay);
+                    done.countDown();
+                }
+            }, delay);
+        }
+
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(java.util.Arrays.asList(50, 100, 150), order);
+
+        for (int i = 0; i < ran.length; i++) {
+            Assert.assertTrue("task ran early: " + ran[i], ran[i] >= (i + 1) * 50);
+        }
+    }
+
+    @Test
+    public void testSeveralRotations() throws Exception {
+        // one rotation of the wheel is 4 * 5ms, so the task stays in its bucket for ten rotations
+        timer = new HashedWheelTimerService(5, 4, 0);
+
+        final CountDownLatch done = new CountDownLatch(1);
+        final long start = System.nanoTime();
+        final long[] ran = new long[1];
+
+        timer.schedule(new TransportTimerTask() {
+            public void run() {
+                ran[0] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                done.countDown();
+            }
+        }, 200);
+
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue("task ran early: " + ran[0], ran[0] >= 200);
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        timer = new HashedWheelTimerService(5, 8, 2);
+
+        final AtomicInteger runs = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(50);
+        final List<TransportTimerTask> tasks = new ArrayList<TransportTimerTask>();
+
+        for (int i = 0; i < 100; i++) {
+            final boolean keep = (i % 2 == 0);
+            final TransportTimerTask task = new TransportTimerTask() {
+                public void run() {
+                    runs.incrementAndGet();
+                    if (keep) {
+                        done.countDown();
+                    }
+                }
+            };
+            timer.schedule(task, 20 + i);
+            tasks.add(task);
+        }
+
+        for (int i = 1; i < tasks.size(); i += 2) {
+            Assert.assertTrue(tasks.get(i).cancel());
+            Assert.assertFalse(tasks.get(i).cancel());
+        }
+
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        // give any wrongly surviving task the chance to run
+        Thread.sleep(100);
+
+        Assert.assertEquals(50, runs.get());
+
+        for (int i = 0; i < tasks.size(); i += 2) {
+            Assert.assertFalse(tasks.get(i).cancel());
+        }
+    }
+
+    @Test
+    public void testCancelRacingExpiry() throws Exception {
+        timer = new HashedWheelTimerService(1, 16, 2);
+
+        final int count = 2000;
+        final AtomicInteger runs = new AtomicInteger();
+        final TransportTimerTask[] tasks = new TransportTimerTask[count];
+
+        for (int i = 0; i < count; i++) {
+            tasks[i] = new TransportTimerTask() {
+                public void run() {
+                    runs.incrementAndGet();
+                }
+            };
+            timer.schedule(tasks[i], i % 10);
+        }
+
+        int cancelled = 0;
+
+        for (int i = 0; i < count; i++) {
+            if (tasks[i].cancel()) {
+                cancelled++;
+            }
+        }
+
+        Thread.sleep(200);
+
+        // every task either ran once or was cancelled, never both
+        Assert.assertEquals(count, runs.get() + cancelled);
+    }
+
+    @Test
+    public void testFailingTask() throws Exception {
+        timer = new HashedWheelTimerService(5, 8, 0);
+
+        final CountDownLatch done = new CountDownLatch(1);
+
+        timer.schedule(new TransportTimerTask() {
+            public void run() {
+                throw new RuntimeException("expected");
+            }
+        }, 10);
+        timer.schedule(new TransportTimerTask() {
+            public void run() {
+                done.countDown();
+            }
+        }, 20);
+
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testScheduleTwice() {
+        timer = new HashedWheelTimerService(5, 8, 0);
+
+        final TransportTimerTask task = new TransportTimerTask() {
+            public void run() {
+            }
+        };
+
+        timer.schedule(task, 1000);
+
+        try {
+            timer.schedule(task, 1000);
+            Assert.fail("expected IllegalStateException");
+        } catch (final IllegalStateException ise) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testShutdown() throws Exception {
+        timer = new HashedWheelTimerService(5, 8, 2);
+
+        final AtomicInteger runs = new AtomicInteger();
+
+        timer.schedule(new TransportTimerTask() {
+            public void run() {
+                runs.incrementAndGet();
+            }
+        }, 50);
+
+        timer.shutdown();
+
+        try {
+            timer.schedule(new TransportTimerTask() {
+                public void run() {
+                    runs.incrementAndGet();
+                }
+            }, 0);
+            Assert.fail("expected IllegalStateException");
+        } catch (final IllegalStateException ise) {
+            // expected
+        }
+
+        Thread.sleep(150);
+
+        Assert.assertEquals(0, runs.get());
+
+        // the tick thread has gone
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if ("Narayana-XTSTransportTimerTick".equals(t.getName())) {
+                t.join(5000);
+                Assert.assertFalse(t.isAlive());
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2021, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package com.arjuna.wsc.tests.local;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.arjuna.webservices.util.HashedWheelTimerService;
+import com.arjuna.webservices.util.JavaUtilTimerService;
+import com.arjuna.webservices.util.TransportTimerService;
+import com.arjuna.webservices.util.TransportTimerTask;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Compare the cost of the transport timer services for the usual resend pattern,
+ * where almost every task is cancelled (the response arrived) long before it is due.
+ * Several threads schedule and cancel concurrently, as the transport does. The heap
+ * still in use afterwards shows whether cancelled tasks are released or are kept
+ * until they would have been due.
+ */
+public class TransportTimerPerformanceTest {
+
+    private static final int THREADS = 8;
+
+    private static final int WARMUP = 10000;
+
+    private static final int ITERATIONS = 100000;
+
+    @Test
+    public void testJavaUtilTimer() throws Exception {
+        final TransportTimerService timer = new JavaUtilTimerService();
+
+        try {
+            report("java.util.Timer", run(timer));
+        } finally {
+            timer.shutdown();
+        }
+    }
+
+    @Test
+    public void testHashedWheelTimer() throws Exception {
+        final TransportTimerService timer = new HashedWheelTimerService(100, 512, 2);
+
+        try {
+            report("hashed wheel", run(timer));
+        } finally {
+            timer.shutdown();
+        }
+    }
+
+    private static long[] run(final TransportTimerService timer) throws Exception {
+        cycles(timer, WARMUP);
+
+        final long before = usedMemory();
+        final long millis = cycles(timer, ITERATIONS);
+
+        // let the timer catch up with the cancellations
+        Thread.sleep(500);
+
+        return new long[] {millis, Math.max(0, usedMemory() - before) / 1024};
+    }
+
+    private static long usedMemory() throws InterruptedException {
+        final Runtime runtime = Runtime.getRuntime();
+
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long cycles(final TransportTimerService timer, final int iterations) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(THREADS);
+        final Throwable[] failure = new Throwable[1];
+
+        for (int t = 0; t < THREADS; t++) {
+            new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+
+                        for (int i = 0; i < iterations / THREADS; i++) {
+                            final TransportTimerTask task = new TransportTimerTask() {
+                                public void run() {
+                                }
+                            };
+
+                            timer.schedule(task, 60000);
+
+                            if (!task.cancel()) {
+                                throw new IllegalStateException("task was not cancelled");
+                            }
+                        }
+                    } catch (final Throwable th) {
+                        failure[0] = th;
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+
+        final long begin = System.nanoTime();
+
+        start.countDown();
+
+        Assert.assertTrue(done.await(60, TimeUnit.SECONDS));
+        Assert.assertNull(failure[0]);
+
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+    }
+
+    private static void report(final String timer, final long[] result) {
+        System.out.println(timer + ": time for " + ITERATIONS + " schedule/cancel cycles is " + result[0]
+            + ", heap retained afterwards (KB) is " + result[1]);
+    }
+}
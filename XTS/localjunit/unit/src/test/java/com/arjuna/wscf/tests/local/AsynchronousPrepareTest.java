@@ -0,0 +1,169 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2021, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package com.arjuna.wscf.tests.local;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.arjuna.ats.arjuna.coordinator.ActionStatus;
+import com.arjuna.ats.arjuna.state.InputObjectState;
+import com.arjuna.ats.arjuna.state.OutputObjectState;
+import com.arjuna.mw.wsas.exceptions.SystemCommunicationException;
+import com.arjuna.mw.wsas.exceptions.SystemException;
+import com.arjuna.mw.wscf.model.twophase.participants.AsynchronousParticipant;
+import com.arjuna.mw.wscf.model.twophase.vote.Vote;
+import com.arjuna.mw.wscf.model.twophase.vote.VoteConfirm;
+import com.arjuna.mwlabs.wscf.model.twophase.arjunacore.ATCoordinator;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that the coordinator sends prepare to all of its asynchronous participants
+ * before waiting for any vote.
+ */
+public class AsynchronousPrepareTest {
+
+    @Test
+    public void testVotesCollectedTogether() throws Exception {
+        final CountDownLatch prepared = new CountDownLatch(2);
+        final VoteLater first = new VoteLater("first", prepared);
+        final VoteLater second = new VoteLater("second", prepared);
+        final ATCoordinator coordinator = new ATCoordinator();
+
+        coordinator.start();
+        coordinator.enlistParticipant(first);
+        coordinator.enlistParticipant(second);
+
+        // neither vote arrives until both participants have been asked to prepare
+        final Thread voter = new Thread() {
+            public void run() {
+                try {
+                    if (prepared.await(10, TimeUnit.SECONDS)) {
+                        second.vote.complete(new VoteConfirm());
+                        first.vote.complete(new VoteConfirm());
+                    }
+                } catch (final InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        voter.start();
+
+        Assert.assertEquals(ActionStatus.COMMITTED, coordinator.end(true));
+
+        voter.join();
+
+        Assert.assertTrue(first.confirmed);
+        Assert.assertTrue(second.confirmed);
+    }
+
+    @Test
+    public void testVoteTimeout() throws Exception {
+        final CountDownLatch prepared = new CountDownLatch(2);
+        final VoteLater first = new VoteLater("first", prepared);
+        final VoteLater second = new VoteLater("second", prepared);
+        final ATCoordinator coordinator = new ATCoordinator();
+
+        coordinator.start();
+        coordinator.enlistParticipant(first);
+        coordinator.enlistParticipant(second);
+
+        first.vote.complete(new VoteConfirm());
+        second.vote.completeExceptionally(new SystemCommunicationException());
+
+        Assert.assertEquals(ActionStatus.ABORTED, coordinator.end(true));
+
+        Assert.assertFalse(first.confirmed);
+        Assert.assertTrue(first.cancelled);
+    }
+
+    /**
+     * A participant whose vote is supplied by the test once it has been asked to prepare.
+     */
+    public static class VoteLater implements AsynchronousParticipant {
+
+        final CompletableFuture<Vote> vote = new CompletableFuture<Vote>();
+
+        volatile boolean confirmed;
+
+        volatile boolean cancelled;
+
+        private final CountDownLatch prepared;
+
+        private String id;
+
+        public VoteLater() {
+            this(null, new CountDownLatch(0));
+        }
+
+        VoteLater(final String id, final CountDownLatch prepared) {
+            this.id = id;
+            this.prepared = prepared;
+        }
+
+        public CompletionStage<Vote> prepareAsync() {
+            prepared.countDown();
+
+            return vote;
+        }
+
+        public Vote prepare() throws SystemException {
+            throw new SystemException("prepare should not block the coordinator");
+        }
+
+        public void confirm() {
+            confirmed = true;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public void confirmOnePhase() {
+            confirmed = true;
+        }
+
+        public void forget() {
+        }
+
+        public String id() {
+            return id;
+        }
+
+        public boolean save_state(final OutputObjectState os) {
+            try {
+                os.packString(id);
+            } catch (final IOException ioe) {
+                return false;
+            }
+            return true;
+        }
+
+        public boolean restore_state(final InputObjectState os) {
+            try {
+                id = os.unpackString();
+            } catch (final IOException ioe) {
+                return false;
+            }
+            return true;
+        }
+    }
+}
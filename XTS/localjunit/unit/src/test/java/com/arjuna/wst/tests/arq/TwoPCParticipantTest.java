@@ -25,6 +25,7 @@ package com.arjuna.wst.tests.arq;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import javax.inject.Inject;
@@ -39,6 +40,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.oasis_open.docs.ws_tx.wsat._2006._06.CoordinatorPortType;
 
 import com.arjuna.webservices.SoapFaultType;
 import com.arjuna.webservices.wsarjtx.ArjunaTXConstants;
@@ -46,7 +48,9 @@ import com.arjuna.webservices11.SoapFault11;
 import com.arjuna.webservices11.wsaddr.AddressingHelper;
 import com.arjuna.webservices11.wsarj.ArjunaContext;
 import com.arjuna.webservices11.wsarj.InstanceIdentifier;
+import com.arjuna.webservices11.wsat.AtomicTransactionConstants;
 import com.arjuna.webservices11.wsat.client.CoordinatorClient;
+import com.arjuna.webservices11.wsat.client.WSATClient;
 import com.arjuna.webservices11.wsat.processors.CoordinatorProcessor;
 import com.arjuna.wst.tests.TestUtil;
 import com.arjuna.wst.tests.WarDeployment;
@@ -165,6 +169,45 @@ public class TwoPCParticipantTest extends BaseWSTTest {
         checkDetails(details, false, false, messageId, instanceIdentifier);
             }
 
+    @Test
+    public void testSendToSameAddressSharesPort()
+            throws Exception
+            {
+        final InstanceIdentifier firstIdentifier = new InstanceIdentifier("6") ;
+        final InstanceIdentifier secondIdentifier = new InstanceIdentifier("7") ;
+        W3CEndpointReference firstEndpoint = TestUtil.getCoordinatorEndpoint(firstIdentifier.getInstanceIdentifier());
+        W3CEndpointReference secondEndpoint = TestUtil.getCoordinatorEndpoint(secondIdentifier.getInstanceIdentifier());
+
+        // two coordinators at the same address are served by the same pooled port
+        final CoordinatorPortType firstPort = WSATClient.getCoordinatorPort(firstEndpoint,
+                AtomicTransactionConstants.WSAT_ACTION_COMMITTED,
+                AddressingHelper.createRequestContext(TestUtil.coordinatorServiceURI, "testSharedPort1"));
+        WSATClient.releaseCoordinatorPort(firstPort);
+        final CoordinatorPortType secondPort = WSATClient.getCoordinatorPort(secondEndpoint,
+                AtomicTransactionConstants.WSAT_ACTION_COMMITTED,
+                AddressingHelper.createRequestContext(TestUtil.coordinatorServiceURI, "testSharedPort2"));
+        WSATClient.releaseCoordinatorPort(secondPort);
+
+        assertSame(firstPort, secondPort);
+
+        // and each message still carries the reference parameters of its own endpoint
+        final String firstMessageId = "testSendToSameAddressSharesPort1" ;
+        final String secondMessageId = "testSendToSameAddressSharesPort2" ;
+
+        CoordinatorClient.getClient().sendCommitted(firstEndpoint,
+                AddressingHelper.createRequestContext(TestUtil.coordinatorServiceURI, firstMessageId), new InstanceIdentifier("sender"));
+        CoordinatorClient.getClient().sendCommitted(secondEndpoint,
+                AddressingHelper.createRequestContext(TestUtil.coordinatorServiceURI, secondMessageId), new InstanceIdentifier("sender"));
+
+        CoordinatorDetails firstDetails = testCoordinatorProcessor.getCoordinatorDetails(firstMessageId, 10000);
+        assertTrue(firstDetails.hasCommitted());
+        checkDetails(firstDetails, false, true, firstMessageId, firstIdentifier);
+
+        CoordinatorDetails secondDetails = testCoordinatorProcessor.getCoordinatorDetails(secondMessageId, 10000);
+        assertTrue(secondDetails.hasCommitted());
+        checkDetails(secondDetails, false, true, secondMessageId, secondIdentifier);
+            }
+
     @After
     public void tearDown()
             throws Exception
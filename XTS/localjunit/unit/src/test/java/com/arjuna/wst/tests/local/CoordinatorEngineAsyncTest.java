@@ -0,0 +1,279 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2021, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package com.arjuna.wst.tests.local;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.arjuna.webservices.util.HashedWheelTimerService;
+import com.arjuna.webservices.util.TransportTimer;
+import com.arjuna.webservices.util.TransportTimerService;
+import com.arjuna.webservices.util.TransportTimerTask;
+import com.arjuna.webservices11.wsat.State;
+import com.arjuna.webservices11.wsat.processors.CoordinatorProcessor;
+import com.arjuna.wst11.messaging.CoordinatorProcessorImpl;
+import com.arjuna.wst11.messaging.engines.CoordinatorEngine;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Drives the asynchronous prepare and commit of a coordinator engine by delivering the
+ * participant's notifications directly and by firing the transport timer by hand.
+ */
+public class CoordinatorEngineAsyncTest {
+
+    private static final long TIMEOUT = 30000;
+
+    private static final long PERIOD = 5000;
+
+    private ManualTimerService timer;
+
+    private CoordinatorProcessor origProcessor;
+
+    private long origTimeout;
+
+    private long origPeriod;
+
+    private int engines;
+
+    @Before
+    public void setUp() {
+        origProcessor = CoordinatorProcessor.setProcessor(new CoordinatorProcessorImpl());
+        origTimeout = TransportTimer.getTransportTimeout();
+        origPeriod = TransportTimer.getTransportPeriod();
+
+        TransportTimer.setTransportTimeout(TIMEOUT);
+        TransportTimer.setTransportPeriod(PERIOD);
+
+        timer = new ManualTimerService();
+        TransportTimer.setTimerService(timer);
+    }
+
+    @After
+    public void tearDown() {
+        TransportTimer.setTimerService(new HashedWheelTimerService());
+        TransportTimer.setTransportTimeout(origTimeout);
+        TransportTimer.setTransportPeriod(origPeriod);
+        CoordinatorProcessor.setProcessor(origProcessor);
+    }
+
+    @Test
+    public void testPrepareCompletesOnPrepared() throws Exception {
+        final CoordinatorEngine engine = createEngine();
+
+        final CompletableFuture<State> prepare = engine.prepareAsync().toCompletableFuture();
+
+        Assert.assertFalse(prepare.isDone());
+        Assert.assertEquals(State.STATE_PREPARING, engine.getState());
+
+        engine.prepared(null, null, null);
+
+        Assert.assertEquals(State.STATE_PREPARED_SUCCESS, prepare.get(10, TimeUnit.SECONDS));
+        Assert.assertEquals(0, timer.scheduled(TIMEOUT));
+
+        // the prepare has been answered so the pending resend does nothing
+        Assert.assertEquals(1, timer.fire(PERIOD));
+        Assert.assertEquals(0, timer.pending());
+    }
+
+    @Test
+    public void testCommitCompletesOnCommitted() throws Exception {
+        final CoordinatorEngine engine = createEngine();
+
+        engine.prepareAsync();
+        engine.prepared(null, null, null);
+
+        final CompletableFuture<State> commit = engine.commitAsync().toCompletableFuture();
+
+        Assert.assertFalse(commit.isDone());
+
+        engine.committed(null, null, null);
+
+        Assert.assertNull(commit.get(10, TimeUnit.SECONDS));
+        Assert.assertNull(engine.getState());
+    }
+
+    @Test
+    public void testPrepareCompletesOnAborted() throws Exception {
+        final CoordinatorEngine engine = createEngine();
+
+        final CompletableFuture<State> prepare = engine.prepareAsync().toCompletableFuture();
+
+        engine.aborted(null, null, null);
+
+        Assert.assertNull(prepare.get(10, TimeUnit.SECONDS));
+        Assert.assertFalse(engine.isReadOnly());
+    }
+
+    @Test
+    public void testPrepareTimeout() throws Exception {
+        final CoordinatorEngine engine = createEngine();
+
+        final CompletableFuture<State> prepare = engine.prepareAsync().toCompletableFuture();
+
+        Assert.assertEquals(1, timer.fire(TIMEOUT));
+
+        // no response, which the stub reports as a communication failure
+        Assert.assertEquals(State.STATE_PREPARING, prepare.get(10, TimeUnit.SECONDS));
+
+        // a late response still moves the engine on, but does not complete the stage again
+        engine.prepared(null, null, null);
+
+        Assert.assertEquals(State.STATE_PREPARED_SUCCESS, engine.getState());
+        Assert.assertEquals(State.STATE_PREPARING, prepare.get());
+    }
+
+    @Test
+    public void testPrepareResent() throws Exception {
+        final CoordinatorEngine engine = createEngine();
+
+        final CompletableFuture<State> prepare = engine.prepareAsync().toCompletableFuture();
+
+        // each resend of prepare schedules the next one
+        Assert.assertEquals(1, timer.fire(PERIOD));
+        Assert.assertEquals(1, timer.fire(PERIOD));
+        Assert.assertFalse(prepare.isDone());
+
+        // so does a second prepare, and both wait for the same response
+        final CompletableFuture<State> resend = engine.prepareAsync().toCompletableFuture();
+
+        Assert.assertEquals(1, timer.scheduled(PERIOD));
+        Assert.assertEquals(2, timer.scheduled(TIMEOUT));
+
+        engine.prepared(null, null, null);
+
+        Assert.assertEquals(State.STATE_PREPARED_SUCCESS, prepare.get(10, TimeUnit.SECONDS));
+        Assert.assertEquals(State.STATE_PREPARED_SUCCESS, resend.get(10, TimeUnit.SECONDS));
+        Assert.assertEquals(0, timer.scheduled(TIMEOUT));
+    }
+
+    @Test
+    public void testCommitResentOnPrepared() throws Exception {
+        final CoordinatorEngine engine = createEngine();
+
+        engine.prepareAsync();
+        engine.prepared(null, null, null);
+
+        final CompletableFuture<State> commit = engine.commitAsync().toCompletableFuture();
+
+        // a duplicate prepared while committing resends commit rather than completing the stage
+        engine.prepared(null, null, null);
+
+        Assert.assertFalse(commit.isDone());
+        Assert.assertEquals(1, timer.scheduled(PERIOD));
+
+        Assert.assertEquals(1, timer.fire(TIMEOUT));
+        Assert.assertEquals(State.STATE_COMMITTING, commit.get(10, TimeUnit.SECONDS));
+    }
+
+    private CoordinatorEngine createEngine() {
+        return new CoordinatorEngine("CoordinatorEngineAsyncTest-" + (++engines), true, null);
+    }
+
+    /**
+     * A timer service whose tasks only run when the test fires them.
+     */
+    private static class ManualTimerService implements TransportTimerService {
+
+        private final List<Scheduled> tasks = new ArrayList<Scheduled>();
+
+        public synchronized void schedule(final TransportTimerTask task, final long delay) {
+            tasks.add(new Scheduled(task, delay));
+        }
+
+        public synchronized void shutdown() {
+            tasks.clear();
+        }
+
+        /**
+         * Run the outstanding tasks scheduled with the specified delay.
+         * @return the number of tasks run.
+         */
+        int fire(final long delay) {
+            final List<TransportTimerTask> due = new ArrayList<TransportTimerTask>();
+
+            synchronized (this) {
+                final Iterator<Scheduled> iter = tasks.iterator();
+
+                while (iter.hasNext()) {
+                    final Scheduled scheduled = iter.next();
+
+                    if (scheduled.task.isCancelled()) {
+                        iter.remove();
+                    } else if (scheduled.delay == delay) {
+                        iter.remove();
+                        due.add(scheduled.task);
+                    }
+                }
+            }
+
+            for (TransportTimerTask task : due) {
+                task.run();
+            }
+
+            return due.size();
+        }
+
+        /**
+         * @return the number of outstanding tasks scheduled with the specified delay.
+         */
+        synchronized int scheduled(final long delay) {
+            int count = 0;
+
+            for (Scheduled scheduled : tasks) {
+                if (!scheduled.task.isCancelled() && (scheduled.delay == delay)) {
+                    count++;
+                }
+            }
+
+            return count;
+        }
+
+        /**
+         * @return the number of outstanding tasks.
+         */
+        synchronized int pending() {
+            int count = 0;
+
+            for (Scheduled scheduled : tasks) {
+                if (!scheduled.task.isCancelled()) {
+                    count++;
+                }
+            }
+
+            return count;
+        }
+    }
+
+    private static class Scheduled {
+
+        final TransportTimerTask task;
+
+        final long delay;
+
+        Scheduled(final TransportTimerTask task, final long delay) {
+            this.task = task;
+            this.delay = delay;
+        }
+    }
+}
@@ -32,12 +32,16 @@ import javax.enterprise.context.spi.Contextual;
 import javax.enterprise.context.spi.CreationalContext;
 import javax.enterprise.inject.spi.PassivationCapable;
 import java.lang.annotation.Annotation;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class CompensationContext implements Context {
 
-    private static final Map<Object, Map<String, Object>> beanStorePerTransaction = new HashMap<Object, Map<String, Object>>();
+    /**
+     * Beans of each transaction. Several threads may work in the same transaction and many transactions complete
+     * concurrently, so both levels need to be concurrent.
+     */
+    private static final ConcurrentMap<Object, ConcurrentMap<String, Object>> beanStorePerTransaction = new ConcurrentHashMap<>();
 
     private static ThreadLocal<Object> txContextToExtend = new ThreadLocal<Object>();
 
@@ -57,14 +61,21 @@ public class CompensationContext implements Context {
         }
 
         PassivationCapable bean = (PassivationCapable) contextual;
-        Map beans = getBeansForThisTransaction();
+        ConcurrentMap<String, Object> beans = getBeansForThisTransaction();
         Object resource = beans.get(bean.getId());
 
         if (resource != null) {
             return (T) resource;
         } else if (creationalContext != null) {
+            // Don't create under a lock of the map as creating the bean may need other beans from this context
             T t = contextual.create(creationalContext);
-            beans.put(bean.getId(), t);
+            Object existing = beans.putIfAbsent(bean.getId(), t);
+
+            if (existing != null) {
+                // another thread in this transaction got there first
+                contextual.destroy(t, creationalContext);
+                return (T) existing;
+            }
             return t;
         } else {
             return null;
@@ -76,7 +87,7 @@ public class CompensationContext implements Context {
         return get(contextual, null);
     }
 
-    private Map getBeansForThisTransaction() {
+    private ConcurrentMap<String, Object> getBeansForThisTransaction() {
 
         try {
 
@@ -85,10 +96,15 @@ public class CompensationContext implements Context {
                 currentTX = BAControllerFactory.getInstance().getCurrentTransaction();
             }
 
-            if (beanStorePerTransaction.get(currentTX) == null) {
-                beanStorePerTransaction.put(currentTX, new HashMap<String, Object>());
+            ConcurrentMap<String, Object> beans = beanStorePerTransaction.get(currentTX);
+            if (beans == null) {
+                beans = new ConcurrentHashMap<>();
+                ConcurrentMap<String, Object> existing = beanStorePerTransaction.putIfAbsent(currentTX, beans);
+                if (existing != null) {
+                    beans = existing;
+                }
             }
-            return beanStorePerTransaction.get(currentTX);
+            return beans;
 
         } catch (Exception e) {
             throw new CompensationTransactionRuntimeException("Error looking up Transaction", e);
@@ -124,5 +140,19 @@ public class CompensationContext implements Context {
         txContextToExtend.set(null);
         beanStorePerTransaction.remove(currentTX);
     }
+
+    /**
+     * Called once the business activity has been closed or cancelled. The beans are garbage collected straight away,
+     * unless some participants are still to run their handlers, in which case the last of them does it.
+     *
+     * @param currentTX the Transaction Context associated with this context.
+     */
+    public static void activityCompleted(Object currentTX) {
+
+        if (currentTX != null && !ParticipantImpl.hasParticipants(currentTX)) {
+            HandlerExecutor.release(currentTX);
+            close(currentTX);
+        }
+    }
 }
 
@@ -0,0 +1,327 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2019, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.narayana.compensations.internal;
+
+import org.jboss.logging.Logger;
+import org.jboss.narayana.compensations.api.HandlerOrder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs the compensation and confirmation handlers of a transaction.
+ * <p/>
+ * By default every handler runs on the thread which delivers the participant callback, one participant at a time. When
+ * the <code>org.jboss.narayana.compensations.parallelHandlers</code> system property is set to <code>true</code>, the
+ * first close or compensate callback of a transaction submits the handlers of all completed participants of that
+ * transaction to a bounded pool of <code>org.jboss.narayana.compensations.handlerThreads</code> threads. Handlers run
+ * concurrently unless {@link HandlerOrder} says otherwise, and each participant callback then only waits for its own
+ * handler. The result reported to the coordinator for each participant is therefore the same as in the sequential mode.
+ * <p/>
+ * The execution time of every handler is recorded in both modes and is available from {@link #getTimings()}.
+ */
+public final class HandlerExecutor {
+
+    public static final String PARALLEL_HANDLERS_PROPERTY = "org.jboss.narayana.compensations.parallelHandlers";
+
+    public static final String HANDLER_THREADS_PROPERTY = "org.jboss.narayana.compensations.handlerThreads";
+
+    private static final Logger LOGGER = Logger.getLogger(HandlerExecutor.class);
+
+    private static volatile boolean parallel = Boolean.getBoolean(PARALLEL_HANDLERS_PROPERTY);
+
+    private static final int THREADS = Math.max(1, Integer.getInteger(HANDLER_THREADS_PROPERTY,
+            Math.max(2, Runtime.getRuntime().availableProcessors())));
+
+    private static final ConcurrentMap<Object, Batch> BATCHES = new ConcurrentHashMap<>();
+
+    private static final ConcurrentMap<String, HandlerTiming> TIMINGS = new ConcurrentHashMap<>();
+
+    private static volatile ThreadPoolExecutor executor;
+
+    /**
+     * The kind of handler to run.
+     */
+    enum Kind {
+        CONFIRM, COMPENSATE
+    }
+
+    private HandlerExecutor() {
+
+    }
+
+    /**
+     * @return true if handlers of independent participants are executed concurrently.
+     */
+    public static boolean isParallel() {
+
+        return parallel;
+    }
+
+    /**
+     * Overrides the mode read from the <code>org.jboss.narayana.compensations.parallelHandlers</code> system property.
+     * Only transactions which complete their first participant after the change are affected.
+     *
+     * @param parallel true to execute the handlers of independent participants concurrently.
+     */
+    static void setParallel(boolean parallel) {
+
+        HandlerExecutor.parallel = parallel;
+    }
+
+    /**
+     * @return the execution statistics of each handler class, keyed by the handler class name.
+     */
+    public static Map<String, HandlerTiming> getTimings() {
+
+        return Collections.unmodifiableMap(TIMINGS);
+    }
+
+    /**
+     * Makes the participant's handlers eligible for parallel execution. Only participants which have completed their
+     * work are added, as the others may still exit or be cancelled.
+     */
+    static void completed(ParticipantImpl participant) {
+
+        if (parallel) {
+            BATCHES.computeIfAbsent(participant.getCurrentTX(), tx -> new Batch()).add(participant);
+        }
+    }
+
+    /**
+     * The participant left the transaction, so its handlers must never run.
+     */
+    static void exited(ParticipantImpl participant) {
+
+        Batch batch = BATCHES.get(participant.getCurrentTX());
+        if (batch != null) {
+            batch.remove(participant);
+        }
+    }
+    /**
+     * Runs the handler of the given kind for the participant, or waits for it if it has already been submitted as
+     * part of its transaction's batch.
+     */
+    static void execute(ParticipantImpl participant, Kind kind) {
+
+        // a batch only exists if the transaction's participants completed in parallel mode
+        Batch batch = BATCHES.get(participant.getCurrentTX());
+        CompletableFuture<Void> future = batch == null ? null : batch.start(kind, participant);
+
+        if (future == null) {
+            participant.runHandler(kind);
+            return;
+        }
+
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Forgets the batch of a transaction once all of its participants have been called.
+     */
+    static void release(Object currentTX) {
+
+        if (currentTX != null) {
+            BATCHES.remove(currentTX);
+        }
+    }
+
+    static void recordTiming(Object handler, Kind kind, long nanos) {
+
+        String name = handler.getClass().getName();
+        TIMINGS.computeIfAbsent(name, n -> new HandlerTiming()).record(nanos);
+
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.tracef("%s handler %s took %d us", kind, name, TimeUnit.NANOSECONDS.toMicros(nanos));
+        }
+    }
+
+    private static int getOrder(Object handler) {
+
+        HandlerOrder order = handler == null ? null : handler.getClass().getAnnotation(HandlerOrder.class);
+        return order == null ? 0 : order.value();
+    }
+
+    private static ThreadPoolExecutor getExecutor() {
+
+        ThreadPoolExecutor result = executor;
+        if (result == null) {
+            synchronized (HandlerExecutor.class) {
+                result = executor;
+                if (result == null) {
+                    AtomicInteger counter = new AtomicInteger();
+                    result = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                            r -> {
+                                Thread thread = new Thread(r, "compensation-handler-" + counter.incrementAndGet());
+                                thread.setDaemon(true);
+                                return thread;
+                            });
+                    result.allowCoreThreadTimeOut(true);
+                    executor = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The handlers of one transaction.
+     */
+    private static final class Batch {
+
+        private final Set<ParticipantImpl> participants = new LinkedHashSet<>();
+
+        private Map<ParticipantImpl, CompletableFuture<Void>> futures;
+
+        private Kind kind;
+
+        synchronized void add(ParticipantImpl participant) {
+
+            if (futures == null) {
+                participants.add(participant);
+            }
+        }
+
+        synchronized void remove(ParticipantImpl participant) {
+
+            participants.remove(participant);
+        }
+
+        /**
+         * Submits the handlers of every participant on the first call and returns the future of the given participant,
+         * or null if its handler is not part of this batch and should be run by the caller.
+         */
+        synchronized CompletableFuture<Void> start(Kind kind, ParticipantImpl participant) {
+
+            if (futures == null) {
+                this.kind = kind;
+                futures = submit(kind);
+            } else if (this.kind != kind) {
+                return null;
+            }
+            return futures.get(participant);
+        }
+
+        private Map<ParticipantImpl, CompletableFuture<Void>> submit(Kind kind) {
+
+            SortedMap<Integer, List<ParticipantImpl>> groups = new TreeMap<>();
+            for (ParticipantImpl participant : participants) {
+                Object handler = participant.getHandler(kind);
+                if (handler != null) {
+                    groups.computeIfAbsent(getOrder(handler), o -> new ArrayList<>()).add(participant);
+                }
+            }
+
+            ThreadPoolExecutor pool = getExecutor();
+            Map<ParticipantImpl, CompletableFuture<Void>> result = new HashMap<>();
+            CompletableFuture<Void> previous = CompletableFuture.completedFuture(null);
+
+            for (List<ParticipantImpl> group : groups.values()) {
+                List<CompletableFuture<Void>> current = new ArrayList<>(group.size());
+                for (ParticipantImpl participant : group) {
+                    CompletableFuture<Void> future = previous.thenRunAsync(() -> {
+                        try {
+                            participant.runHandler(kind);
+                        } finally {
+                            // pool threads must not keep the transaction's context
+                            CompensationContext.setTxContextToExtend(null);
+                        }
+                    }, pool);
+                    result.put(participant, future);
+                    current.add(future);
+                }
+                // a failed handler of a lower order must not prevent the handlers of a higher order from running
+                previous = CompletableFuture.allOf(current.toArray(new CompletableFuture[0])).handle((r, t) -> null);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Execution statistics of one handler class.
+     */
+    public static final class HandlerTiming {
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder totalNanos = new LongAdder();
+
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        public long getCount() {
+
+            return count.sum();
+        }
+
+        public long getTotalNanos() {
+
+            return totalNanos.sum();
+        }
+
+        public long getMaxNanos() {
+
+            return maxNanos.get();
+        }
+
+        @Override
+        public String toString() {
+
+            return "HandlerTiming{count=" + getCount() + ", totalNanos=" + getTotalNanos() + ", maxNanos="
+                    + getMaxNanos() + "}";
+        }
+    }
+}
@@ -31,16 +31,19 @@ import org.jboss.narayana.compensations.api.CompensationHandler;
 import org.jboss.narayana.compensations.api.ConfirmationHandler;
 import org.jboss.narayana.compensations.api.TransactionLoggedHandler;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * @author paul.robinson@redhat.com 22/03/2013
  */
 public class ParticipantImpl implements BusinessAgreementWithParticipantCompletionParticipant, ConfirmCompletedParticipant {
 
-    private static final Map<Object, AtomicInteger> PARTICIPANT_COUNTERS = new HashMap<>();
+    /**
+     * Number of participants per transaction which are still to complete. Updates only lock the entry of the
+     * transaction concerned.
+     */
+    private static final ConcurrentMap<Object, Integer> PARTICIPANT_COUNTERS = new ConcurrentHashMap<>();
 
     private CompensationHandler compensationHandler;
 
@@ -83,14 +86,7 @@ public class ParticipantImpl implements BusinessAgreementWithParticipantCompleti
     public void close() throws WrongStateException, SystemException {
 
         if (confirmationHandler != null) {
-
-            ClassLoader origClassLoader = Thread.currentThread().getContextClassLoader();
-            Thread.currentThread().setContextClassLoader(applicationClassloader);
-            CompensationContext.setTxContextToExtend(currentTX);
-
-            confirmationHandler.confirm();
-
-            Thread.currentThread().setContextClassLoader(origClassLoader);
+            HandlerExecutor.execute(this, HandlerExecutor.Kind.CONFIRM);
         }
 
         decrementParticipantsCounter();
@@ -99,6 +95,8 @@ public class ParticipantImpl implements BusinessAgreementWithParticipantCompleti
     @Override
     public void cancel() throws FaultedException, WrongStateException, SystemException {
         //TODO: Do nothing?
+
+        decrementParticipantsCounter();
     }
 
     @Override
@@ -106,14 +104,7 @@ public class ParticipantImpl implements BusinessAgreementWithParticipantCompleti
 
         try {
             if (compensationHandler != null) {
-
-                ClassLoader origClassLoader = Thread.currentThread().getContextClassLoader();
-                Thread.currentThread().setContextClassLoader(applicationClassloader);
-                CompensationContext.setTxContextToExtend(currentTX);
-
-                compensationHandler.compensate();
-
-                Thread.currentThread().setContextClassLoader(origClassLoader);
+                HandlerExecutor.execute(this, HandlerExecutor.Kind.COMPENSATE);
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -139,37 +130,92 @@ public class ParticipantImpl implements BusinessAgreementWithParticipantCompleti
     }
 
     /**
-     * Increments the counter of the Compensations participants in the transaction.
+     * Called once the work of this participant has completed, making its handlers eligible for parallel execution.
      */
-    private void incrementParticipantsCounter() {
+    public void completed() {
+
+        HandlerExecutor.completed(this);
+    }
+
+    /**
+     * Called when this participant leaves the transaction without its handlers ever being run.
+     */
+    public void exited() {
+
+        HandlerExecutor.exited(this);
+    }
+
+    Object getCurrentTX() {
 
-        synchronized (PARTICIPANT_COUNTERS) {
-            final AtomicInteger counter = PARTICIPANT_COUNTERS.get(currentTX);
+        return currentTX;
+    }
 
-            if (counter == null) {
-                PARTICIPANT_COUNTERS.put(currentTX, new AtomicInteger(1));
+    Object getHandler(HandlerExecutor.Kind kind) {
+
+        return kind == HandlerExecutor.Kind.CONFIRM ? confirmationHandler : compensationHandler;
+    }
+
+    /**
+     * Runs the handler of the given kind with the application's classloader and the compensation context of the
+     * transaction, on whichever thread calls it.
+     */
+    void runHandler(HandlerExecutor.Kind kind) {
+
+        Object handler = getHandler(kind);
+        ClassLoader origClassLoader = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(applicationClassloader);
+        CompensationContext.setTxContextToExtend(currentTX);
+
+        long start = System.nanoTime();
+        try {
+            if (kind == HandlerExecutor.Kind.CONFIRM) {
+                confirmationHandler.confirm();
             } else {
-                counter.incrementAndGet();
+                compensationHandler.compensate();
             }
+        } finally {
+            HandlerExecutor.recordTiming(handler, kind, System.nanoTime() - start);
+            Thread.currentThread().setContextClassLoader(origClassLoader);
         }
     }
 
+    /**
+     * @param currentTX the Transaction Context to check.
+     * @return true if the transaction has participants which are still to complete.
+     */
+    static boolean hasParticipants(Object currentTX) {
+
+        return PARTICIPANT_COUNTERS.containsKey(currentTX);
+    }
+
+    /**
+     * Increments the counter of the Compensations participants in the transaction.
+     */
+    private void incrementParticipantsCounter() {
+
+        PARTICIPANT_COUNTERS.merge(currentTX, 1, Integer::sum);
+    }
+
     /**
      * Decrements the counter of the Compensations participants in the transaction.
      * CompensationContext of the current transaction is destroyed once the counter reaches 0.
      */
     private void decrementParticipantsCounter() {
 
-        synchronized (PARTICIPANT_COUNTERS) {
-            final AtomicInteger counter = PARTICIPANT_COUNTERS.get(currentTX);
+        final boolean[] last = new boolean[1];
 
-            if (counter == null || counter.decrementAndGet() > 0) {
-                return;
+        PARTICIPANT_COUNTERS.computeIfPresent(currentTX, (tx, counter) -> {
+            if (counter > 1) {
+                return counter - 1;
             }
 
-            PARTICIPANT_COUNTERS.remove(currentTX);
-        }
+            last[0] = true;
+            return null;
+        });
 
-        CompensationContext.close(currentTX);
+        if (last[0]) {
+            HandlerExecutor.release(currentTX);
+            CompensationContext.close(currentTX);
+        }
     }
 }
@@ -11,6 +11,7 @@ import org.jboss.narayana.compensations.api.TransactionCompensatedException;
 import org.jboss.narayana.compensations.api.TransactionLoggedHandler;
 import org.jboss.narayana.compensations.internal.BAController;
 import org.jboss.narayana.compensations.internal.BeanManagerUtil;
+import org.jboss.narayana.compensations.internal.CompensationContext;
 import org.jboss.narayana.compensations.internal.CompensationManagerImpl;
 import org.jboss.narayana.compensations.internal.CompensationManagerState;
 import org.jboss.narayana.compensations.internal.ParticipantManager;
@@ -32,14 +33,24 @@ public class LocalBAController implements BAController {
     @Override
     public void closeBusinessActivity() throws Exception {
 
-        CoordinatorManagerFactory.coordinatorManager().close();
+        Object currentTX = getCurrentTransaction();
+        try {
+            CoordinatorManagerFactory.coordinatorManager().close();
+        } finally {
+            CompensationContext.activityCompleted(currentTX);
+        }
         CompensationManagerImpl.suspend();
     }
 
     @Override
     public void cancelBusinessActivity() throws Exception {
 
-        CoordinatorManagerFactory.coordinatorManager().cancel();
+        Object currentTX = getCurrentTransaction();
+        try {
+            CoordinatorManagerFactory.coordinatorManager().cancel();
+        } finally {
+            CompensationContext.activityCompleted(currentTX);
+        }
         CompensationManagerImpl.suspend();
     }
 
@@ -110,7 +121,7 @@ public class LocalBAController implements BAController {
 
         CoordinatorManagerFactory.coordinatorManager().enlistParticipant(participant);
 
-        return new LocalParticipantManager(participantId);
+        return new LocalParticipantManager(participantId, participant.getParticipant());
     }
 
     private <T> T instantiate(Class<T> clazz) {
@@ -52,6 +52,11 @@ public class LocalParticipant implements BAParticipant, Participant {
         this.participantId = participantId;
     }
 
+    public ParticipantImpl getParticipant() {
+
+        return participant;
+    }
+
     @Override
     public void confirmCompleted(boolean confirmed) {
 
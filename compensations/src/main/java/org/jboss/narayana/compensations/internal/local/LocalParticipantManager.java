@@ -1,6 +1,7 @@
 package org.jboss.narayana.compensations.internal.local;
 
 import com.arjuna.mw.wscf11.model.sagas.CoordinatorManagerFactory;
+import org.jboss.narayana.compensations.internal.ParticipantImpl;
 import org.jboss.narayana.compensations.internal.ParticipantManager;
 
 import javax.xml.namespace.QName;
@@ -12,21 +13,26 @@ public class LocalParticipantManager implements ParticipantManager {
 
     String participantId;
 
-    public LocalParticipantManager(String participantId) {
+    ParticipantImpl participant;
+
+    public LocalParticipantManager(String participantId, ParticipantImpl participant) {
 
         this.participantId = participantId;
+        this.participant = participant;
     }
 
     @Override
     public void exit() throws Exception {
 
         CoordinatorManagerFactory.coordinatorManager().delistParticipant(participantId);
+        participant.exited();
     }
 
     @Override
     public void completed() throws Exception {
 
         CoordinatorManagerFactory.coordinatorManager().participantCompleted(participantId);
+        participant.completed();
     }
 
     @Override
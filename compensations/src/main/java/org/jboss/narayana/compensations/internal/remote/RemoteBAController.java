@@ -15,6 +15,7 @@ import org.jboss.narayana.compensations.api.TransactionCompensatedException;
 import org.jboss.narayana.compensations.api.TransactionLoggedHandler;
 import org.jboss.narayana.compensations.internal.BAController;
 import org.jboss.narayana.compensations.internal.BeanManagerUtil;
+import org.jboss.narayana.compensations.internal.CompensationContext;
 import org.jboss.narayana.compensations.internal.CompensationManagerImpl;
 import org.jboss.narayana.compensations.internal.CompensationManagerState;
 import org.jboss.narayana.compensations.internal.ParticipantManager;
@@ -36,14 +37,24 @@ public class RemoteBAController implements BAController {
     @Override
     public void closeBusinessActivity() throws WrongStateException, UnknownTransactionException, TransactionRolledBackException, SystemException {
 
-        UserBusinessActivityFactory.userBusinessActivity().close();
+        Object currentTX = currentTransaction();
+        try {
+            UserBusinessActivityFactory.userBusinessActivity().close();
+        } finally {
+            CompensationContext.activityCompleted(currentTX);
+        }
         CompensationManagerImpl.suspend();
     }
 
     @Override
     public void cancelBusinessActivity() throws WrongStateException, UnknownTransactionException, SystemException {
 
-        UserBusinessActivityFactory.userBusinessActivity().cancel();
+        Object currentTX = currentTransaction();
+        try {
+            UserBusinessActivityFactory.userBusinessActivity().cancel();
+        } finally {
+            CompensationContext.activityCompleted(currentTX);
+        }
         CompensationManagerImpl.suspend();
     }
 
@@ -95,6 +106,15 @@ public class RemoteBAController implements BAController {
         return BusinessActivityManagerFactory.businessActivityManager().currentTransaction();
     }
 
+    private Object currentTransaction() throws SystemException {
+
+        BusinessActivityManager businessActivityManager = BusinessActivityManagerFactory.businessActivityManager();
+        if (businessActivityManager == null) {
+            return null;
+        }
+        return businessActivityManager.currentTransaction();
+    }
+
     @Override
     public ParticipantManager enlist(Class<? extends CompensationHandler> compensationHandlerClass,
                                      Class<? extends ConfirmationHandler> confirmationHandlerClass,
@@ -116,7 +136,7 @@ public class RemoteBAController implements BAController {
         BAParticipantManager baParticipantManager = BusinessActivityManagerFactory.businessActivityManager()
                 .enlistForBusinessAgreementWithParticipantCompletion(participant, String.valueOf(UUID.randomUUID()));
 
-        return new RemoteParticipantManager(baParticipantManager);
+        return new RemoteParticipantManager(baParticipantManager, participant.getParticipant());
     }
 
     private <T> T instantiate(Class<T> clazz) {
@@ -47,6 +47,11 @@ public class RemoteParticipant implements BAParticipant, BusinessAgreementWithPa
     }
 
 
+    public ParticipantImpl getParticipant() {
+
+        return participant;
+    }
+
     @Override
     public void confirmCompleted(boolean confirmed) {
 
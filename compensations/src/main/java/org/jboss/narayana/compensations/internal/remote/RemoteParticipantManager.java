@@ -4,6 +4,7 @@ import com.arjuna.wst.SystemException;
 import com.arjuna.wst.UnknownTransactionException;
 import com.arjuna.wst.WrongStateException;
 import com.arjuna.wst11.BAParticipantManager;
+import org.jboss.narayana.compensations.internal.ParticipantImpl;
 import org.jboss.narayana.compensations.internal.ParticipantManager;
 
 import javax.xml.namespace.QName;
@@ -15,21 +16,26 @@ public class RemoteParticipantManager implements ParticipantManager {
 
     BAParticipantManager baParticipantManager;
 
-    public RemoteParticipantManager(BAParticipantManager baParticipantManager) {
+    ParticipantImpl participant;
+
+    public RemoteParticipantManager(BAParticipantManager baParticipantManager, ParticipantImpl participant) {
 
         this.baParticipantManager = baParticipantManager;
+        this.participant = participant;
     }
 
     @Override
     public void exit() throws WrongStateException, UnknownTransactionException, SystemException {
 
         baParticipantManager.exit();
+        participant.exited();
     }
 
     @Override
     public void completed() throws WrongStateException, UnknownTransactionException, SystemException {
 
         baParticipantManager.completed();
+        participant.completed();
     }
 
     @Override
@@ -33,6 +33,7 @@ import org.jboss.narayana.compensations.functional.common.MultiService;
 import org.jboss.narayana.compensations.functional.common.MyRuntimeException;
 import org.jboss.narayana.compensations.functional.common.SingleService;
 import org.jboss.narayana.compensations.internal.BAControllerFactory;
+import org.jboss.narayana.compensations.internal.HandlerExecutor;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -120,6 +121,17 @@ public abstract class BasicTest {
         Assert.assertEquals(false, DummyConfirmationHandler2.getCalled());
     }
 
+    @Test
+    public void testHandlerTimings() throws Exception {
+
+        ParticipantCompletionCoordinatorRules.setParticipantCount(6);
+
+        multiService.testsMulti(false);
+
+        Assert.assertTrue(hasTiming(DummyConfirmationHandler1.class));
+        Assert.assertTrue(hasTiming(DummyConfirmationHandler2.class));
+    }
+
     @Test
     public void testAlternative() throws Exception {
 
@@ -168,4 +180,10 @@ public abstract class BasicTest {
         Assert.assertEquals(false, DummyCompensationHandler1.getCalled());
         Assert.assertEquals(false, DummyConfirmationHandler1.getCalled());
     }
+
+    private boolean hasTiming(Class<?> handlerClass) {
+
+        return HandlerExecutor.getTimings().entrySet().stream()
+                .anyMatch(e -> e.getKey().startsWith(handlerClass.getName()) && e.getValue().getCount() > 0);
+    }
 }
@@ -32,6 +32,13 @@ import org.junit.Test;
 
 import javax.enterprise.context.ContextNotActiveException;
 import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -120,6 +127,81 @@ public abstract class CompensationScopedTest {
         assertContextUnavailable();
     }
 
+    @Test
+    public void testConcurrentTransactions() throws Exception {
+
+        final int threadCount = 10;
+        final CyclicBarrier barrier = new CyclicBarrier(threadCount);
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+
+        try {
+            List<Future<String>> results = new ArrayList<>();
+
+            for (int i = 0; i < threadCount; i++) {
+                final String value = String.valueOf(i);
+
+                results.add(executor.submit(() -> {
+                    getBAController().beginBusinessActivity();
+                    try {
+                        // make the transactions create and use their beans at the same time
+                        barrier.await(30, TimeUnit.SECONDS);
+                        dummyData.setValue(value);
+                        barrier.await(30, TimeUnit.SECONDS);
+                        return dummyData.getValue();
+                    } finally {
+                        getBAController().closeBusinessActivity();
+                    }
+                }));
+            }
+
+            for (int i = 0; i < threadCount; i++) {
+                Assert.assertEquals(String.valueOf(i), results.get(i).get(60, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertContextUnavailable();
+    }
+
+    @Test
+    public void testConcurrentThreadsInTransaction() throws Exception {
+
+        final int threadCount = 10;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+
+        getBAController().beginBusinessActivity();
+        dummyData.setValue("shared");
+        final Object txContext = getBAController().suspend();
+
+        try {
+            List<Future<String>> results = new ArrayList<>();
+
+            for (int i = 0; i < threadCount; i++) {
+                results.add(executor.submit(() -> {
+                    getBAController().resume(txContext);
+                    try {
+                        return dummyData.getValue();
+                    } finally {
+                        getBAController().suspend();
+                    }
+                }));
+            }
+
+            for (Future<String> result : results) {
+                Assert.assertEquals("shared", result.get(60, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        getBAController().resume(txContext);
+        Assert.assertEquals("shared", dummyData.getValue());
+        getBAController().closeBusinessActivity();
+
+        assertContextUnavailable();
+    }
+
     private void assertContextUnavailable() {
 
         try {
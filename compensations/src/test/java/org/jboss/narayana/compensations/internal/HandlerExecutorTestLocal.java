@@ -0,0 +1,320 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2019, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.narayana.compensations.internal;
+
+import org.jboss.narayana.compensations.api.CompensationHandler;
+import org.jboss.narayana.compensations.api.ConfirmationHandler;
+import org.jboss.narayana.compensations.api.HandlerOrder;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the parallel execution of handlers. The participants are driven the way the coordinator does it: every
+ * participant completes, and then each one is closed or compensated in turn on the same thread.
+ */
+public class HandlerExecutorTestLocal {
+
+    private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void setUp() {
+
+        HandlerExecutor.setParallel(true);
+    }
+
+    @After
+    public void tearDown() {
+
+        HandlerExecutor.setParallel(Boolean.getBoolean(HandlerExecutor.PARALLEL_HANDLERS_PROPERTY));
+    }
+
+    @Test
+    public void testOrdering() throws Exception {
+
+        Object tx = new Object();
+        List<ParticipantImpl> participants = new ArrayList<>();
+
+        participants.add(participant(new SecondHandler("second"), null, tx));
+        participants.add(participant(new FirstHandler("first-1"), null, tx));
+        participants.add(participant(new FirstHandler("first-2"), null, tx));
+
+        closeAll(participants);
+
+        Assert.assertEquals(3, events.stream().filter(e -> e.startsWith("end ")).count());
+
+        // both handlers of the lower order finish before the handler of the higher order starts
+        int secondStart = events.indexOf("start second");
+        Assert.assertTrue(events.indexOf("end first-1") < secondStart);
+        Assert.assertTrue(events.indexOf("end first-2") < secondStart);
+    }
+
+    @Test
+    public void testConcurrency() throws Exception {
+
+        Object tx = new Object();
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        List<ParticipantImpl> participants = new ArrayList<>();
+
+        // neither handler can finish unless the other one runs at the same time
+        participants.add(participant(new BarrierHandler("a", barrier), null, tx));
+        participants.add(participant(new BarrierHandler("b", barrier), null, tx));
+
+        closeAll(participants);
+
+        Assert.assertTrue(events.contains("end a"));
+        Assert.assertTrue(events.contains("end b"));
+    }
+
+    @Test
+    public void testExceptionPropagation() throws Exception {
+
+        Object tx = new Object();
+        ParticipantImpl failing = participant(new FailingHandler(), null, tx);
+        ParticipantImpl other = participant(new FirstHandler("other"), null, tx);
+        ParticipantImpl later = participant(new SecondHandler("later"), null, tx);
+
+        failing.completed();
+        other.completed();
+        later.completed();
+
+        // the failure is reported to the participant whose handler failed, as in the sequential mode
+        try {
+            failing.close();
+            Assert.fail("the handler's exception should have been thrown");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("failed", e.getMessage());
+        }
+
+        // and it neither stops the handlers of the same order nor those of a higher order
+        other.close();
+        later.close();
+
+        Assert.assertTrue(events.contains("end other"));
+        Assert.assertTrue(events.contains("end later"));
+    }
+
+    @Test
+    public void testCompensationFailureIsolated() throws Exception {
+
+        Object tx = new Object();
+        ParticipantImpl failing = participant(null, new FailingCompensationHandler(), tx);
+        ParticipantImpl other = participant(null, new RecordingCompensationHandler("other"), tx);
+
+        failing.completed();
+        other.completed();
+
+        // compensate() swallows the handler's exception, as it does in the sequential mode
+        failing.compensate();
+        other.compensate();
+
+        Assert.assertTrue(events.contains("compensate other"));
+    }
+
+    @Test
+    public void testExitedAndLateParticipants() throws Exception {
+
+        Object tx = new Object();
+        ParticipantImpl exited = participant(new FirstHandler("exited"), null, tx);
+        ParticipantImpl first = participant(new FirstHandler("first"), null, tx);
+        ParticipantImpl late = participant(new FirstHandler("late"), null, tx);
+
+        exited.completed();
+        first.completed();
+        exited.exited();
+
+        first.close();
+
+        // the batch was submitted without the participant which exited
+        Assert.assertFalse(events.contains("start exited"));
+
+        // a participant which completes after the batch was submitted runs on the calling thread
+        late.completed();
+        late.close();
+
+        Assert.assertTrue(events.contains("end late"));
+        Assert.assertEquals(Thread.currentThread().getName(), threadOf("late"));
+        Assert.assertNotEquals(Thread.currentThread().getName(), threadOf("first"));
+
+        // the exited participant is cancelled, so its handler never runs
+        exited.cancel();
+
+        Assert.assertFalse(events.contains("start exited"));
+    }
+
+    @Test
+    public void testSequentialMode() throws Exception {
+
+        HandlerExecutor.setParallel(false);
+
+        Object tx = new Object();
+        List<ParticipantImpl> participants = new ArrayList<>();
+
+        participants.add(participant(new SecondHandler("second"), null, tx));
+        participants.add(participant(new FirstHandler("first"), null, tx));
+
+        closeAll(participants);
+
+        // the handlers run one at a time, in the order the participants are closed and on the calling thread
+        Assert.assertEquals(0, events.indexOf("start second"));
+        Assert.assertTrue(events.indexOf("end second") < events.indexOf("start first"));
+        Assert.assertEquals(Thread.currentThread().getName(), threadOf("first"));
+    }
+
+    private ParticipantImpl participant(ConfirmationHandler confirmationHandler,
+            CompensationHandler compensationHandler, Object tx) {
+
+        return new ParticipantImpl(compensationHandler, confirmationHandler, null, tx);
+    }
+
+    private void closeAll(List<ParticipantImpl> participants) throws Exception {
+
+        for (ParticipantImpl participant : participants) {
+            participant.completed();
+        }
+        for (ParticipantImpl participant : participants) {
+            participant.close();
+        }
+    }
+
+    private String threadOf(String name) {
+
+        synchronized (events) {
+            for (String event : events) {
+                if (event.startsWith("thread " + name + " ")) {
+                    return event.substring(("thread " + name + " ").length());
+                }
+            }
+        }
+        return null;
+    }
+
+    private class RecordingHandler implements ConfirmationHandler {
+
+        private final String name;
+
+        RecordingHandler(String name) {
+
+            this.name = name;
+        }
+
+        @Override
+        public void confirm() {
+
+            events.add("start " + name);
+            events.add("thread " + name + " " + Thread.currentThread().getName());
+            work();
+            events.add("end " + name);
+        }
+
+        void work() {
+
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @HandlerOrder(1)
+    private class FirstHandler extends RecordingHandler {
+
+        FirstHandler(String name) {
+
+            super(name);
+        }
+    }
+
+    @HandlerOrder(2)
+    private class SecondHandler extends RecordingHandler {
+
+        SecondHandler(String name) {
+
+            super(name);
+        }
+    }
+
+    private class BarrierHandler extends RecordingHandler {
+
+        private final CyclicBarrier barrier;
+
+        BarrierHandler(String name, CyclicBarrier barrier) {
+
+            super(name);
+            this.barrier = barrier;
+        }
+
+        @Override
+        void work() {
+
+            try {
+                barrier.await(10, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                throw new IllegalStateException("the handlers did not run concurrently", e);
+            }
+        }
+    }
+
+    @HandlerOrder(1)
+    private class FailingHandler implements ConfirmationHandler {
+
+        @Override
+        public void confirm() {
+
+            throw new IllegalStateException("failed");
+        }
+    }
+
+    private class RecordingCompensationHandler implements CompensationHandler {
+
+        private final String name;
+
+        RecordingCompensationHandler(String name) {
+
+            this.name = name;
+        }
+
+        @Override
+        public void compensate() {
+
+            events.add("compensate " + name);
+        }
+    }
+
+    private class FailingCompensationHandler implements CompensationHandler {
+
+        @Override
+        public void compensate() {
+
+            throw new IllegalStateException("failed");
+        }
+    }
+}
@@ -23,6 +23,8 @@ package org.jboss.jbossts.star.resource;
 import java.net.HttpURLConnection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import org.jboss.jbossts.star.provider.HttpResponseException;
 import org.jboss.jbossts.star.util.TxLinkNames;
@@ -64,6 +66,10 @@ public class RESTRecord extends AbstractRecord implements Comparable {
     private String recoveryURI;
     private long age = System.currentTimeMillis();
 
+    // outcomes collected by topLevelPrepareAsync and topLevelCommitAsync for the next prepare or commit
+    private volatile Integer prepareOutcome;
+    private volatile Integer commitOutcome;
+
     public RESTRecord() {
         status = TxStatus.TransactionStatusUnknown;
     }
@@ -200,6 +206,14 @@ public class RESTRecord extends AbstractRecord implements Comparable {
     }
 
     public int topLevelPrepare() {
+        Integer outcome = prepareOutcome;
+
+        if (outcome != null) {
+            prepareOutcome = null;
+
+            return outcome;
+        }
+
         if (log.isTraceEnabled())
             log.tracef("prepare %s", prepareURI);
 
@@ -214,32 +228,73 @@ public class RESTRecord extends AbstractRecord implements Comparable {
 
         try
         {
-            String body = new TxSupport().httpRequest(new int[] {HttpURLConnection.HTTP_OK}, this.prepareURI, "PUT",
-                    TxMediaType.TX_STATUS_MEDIA_TYPE, TxSupport.toStatusContent(TxStatus.TransactionPrepared.name()));
+            return prepared(new TxSupport().httpRequest(new int[] {HttpURLConnection.HTTP_OK}, this.prepareURI, "PUT",
+                    TxMediaType.TX_STATUS_MEDIA_TYPE, TxSupport.toStatusContent(TxStatus.TransactionPrepared.name())));
+        } catch (HttpResponseException e) {
+            return prepareFailed(e);
+        }
+    }
 
-            if (body.isEmpty()) {
-                status = TxStatus.TransactionPrepared;
-            } else {
-                status = TxStatus.fromStatus(TxSupport.getStatus(body));
-            }
+    /**
+     * Send prepare to the participant without waiting for its vote. The vote is returned by the next call
+     * to {@link #topLevelPrepare()}, so that a transaction can prepare all of its participants at once.
+     *
+     * @return a future which completes once the vote has been received, or straight away if the prepare
+     * has to be sent by {@link #topLevelPrepare()}
+     */
+    public CompletableFuture<Void> topLevelPrepareAsync() {
+        if (!fault.equals(Fault.none) || prepareURI == null || txId == null)
+            return CompletableFuture.completedFuture(null);
 
-            prepared = true;
-            int outcome = statusToOutcome();
+        if (log.isTraceEnabled())
+            log.tracef("prepare async %s", prepareURI);
 
-            if (outcome != TwoPhaseOutcome.FINISH_ERROR)
-                return outcome;
-        } catch (HttpResponseException e) {
-            if (checkFinishError(e.getActualResponse(), TxStatus.TransactionPrepared)) {
-                status = TxStatus.TransactionPrepared;
-                return TwoPhaseOutcome.PREPARE_OK;
-            } else {
-                status = TxStatus.TransactionRolledBack;
-            }
+        return new TxSupport().httpRequestAsync(new int[] {HttpURLConnection.HTTP_OK}, this.prepareURI, "PUT",
+                TxMediaType.TX_STATUS_MEDIA_TYPE, TxSupport.toStatusContent(TxStatus.TransactionPrepared.name()))
+                .handle((body, t) -> {
+                    HttpResponseException e = toResponseException(t);
+
+                    if (t == null)
+                        prepareOutcome = prepared(body);
+                    else if (e != null)
+                        prepareOutcome = prepareFailed(e);
+
+                    // otherwise leave the prepare to topLevelPrepare
+                    return null;
+                });
+    }
+
+    private int prepared(String body) {
+        if (body.isEmpty()) {
+            status = TxStatus.TransactionPrepared;
+        } else {
+            status = TxStatus.fromStatus(TxSupport.getStatus(body));
         }
 
+        prepared = true;
+        int outcome = statusToOutcome();
+
+        return (outcome != TwoPhaseOutcome.FINISH_ERROR ? outcome : TwoPhaseOutcome.PREPARE_NOTOK);
+    }
+
+    private int prepareFailed(HttpResponseException e) {
+        if (checkFinishError(e.getActualResponse(), TxStatus.TransactionPrepared)) {
+            status = TxStatus.TransactionPrepared;
+            return TwoPhaseOutcome.PREPARE_OK;
+        }
+
+        status = TxStatus.TransactionRolledBack;
+
         return TwoPhaseOutcome.PREPARE_NOTOK;
     }
 
+    private static HttpResponseException toResponseException(Throwable t) {
+        if (t instanceof CompletionException)
+            t = t.getCause();
+
+        return (t instanceof HttpResponseException ? (HttpResponseException) t : null);
+    }
+
     public int topLevelAbort() {
         if (log.isTraceEnabled())
             log.debugf("trace %s", rollbackURI);
@@ -269,6 +324,14 @@ public class RESTRecord extends AbstractRecord implements Comparable {
     }
 
     public int topLevelCommit() {
+        Integer outcome = commitOutcome;
+
+        if (outcome != null) {
+            commitOutcome = null;
+
+            return outcome;
+        }
+
         if (log.isTraceEnabled())
             log.tracef("commit %s", commitURI);
 
@@ -281,6 +344,36 @@ public class RESTRecord extends AbstractRecord implements Comparable {
         return doCommit(TxStatus.TransactionCommitted);
     }
 
+    /**
+     * Send commit to the participant without waiting for the response. The outcome is returned by the next
+     * call to {@link #topLevelCommit()}, so that a transaction can commit all of its participants at once.
+     *
+     * @return a future which completes once the response has been received, or straight away if the commit
+     * has to be sent by {@link #topLevelCommit()}
+     */
+    public CompletableFuture<Void> topLevelCommitAsync() {
+        if (!fault.equals(Fault.none) || commitURI == null || txId == null || !prepared
+                || TxStatus.TransactionReadOnly.equals(status))
+            return CompletableFuture.completedFuture(null);
+
+        if (log.isTraceEnabled())
+            log.tracef("commit async %s", commitURI);
+
+        return new TxSupport().httpRequestAsync(new int[] {HttpURLConnection.HTTP_OK}, commitURI, "PUT",
+                TxMediaType.TX_STATUS_MEDIA_TYPE, TxSupport.toStatusContent(TxStatus.TransactionCommitted.name()))
+                .handle((body, t) -> {
+                    HttpResponseException e = toResponseException(t);
+
+                    if (t == null)
+                        commitOutcome = committed(body, commitURI);
+                    else if (e != null)
+                        commitOutcome = commitFailed(e, TxStatus.TransactionCommitted);
+
+                    // otherwise leave the commit to topLevelCommit
+                    return null;
+                });
+    }
+
     public int nestedOnePhaseCommit() {
         return TwoPhaseOutcome.FINISH_ERROR;
     }
@@ -296,8 +389,6 @@ public class RESTRecord extends AbstractRecord implements Comparable {
     }
 
     private int doCommit(TxStatus nextState) {
-        TxSupport txs = new TxSupport();
-
         check_halt(Fault.commit_halt);
         check_suspend(Fault.commit_suspend);
 
@@ -308,44 +399,50 @@ public class RESTRecord extends AbstractRecord implements Comparable {
         String commitUri = (nextState == TxStatus.TransactionCommittedOnePhase && this.commitOnePhaseURI != null)
             ? this.commitOnePhaseURI : this.commitURI;
 
+        if (TxStatus.TransactionReadOnly.equals(status)) {
+            status = TxStatus.TransactionCommitted;
+
+            return statusToOutcome(status);
+        }
+
         try
         {
             if (log.isTraceEnabled())
                 log.tracef("committing %s", commitUri);
 
-            if (!TxStatus.TransactionReadOnly.equals(status)) {
-                txs = new TxSupport();
-                String body = txs.httpRequest(new int[] {HttpURLConnection.HTTP_OK}, commitUri, "PUT",
-                        TxMediaType.TX_STATUS_MEDIA_TYPE, TxSupport.toStatusContent(nextState.name()));
+            return committed(new TxSupport().httpRequest(new int[] {HttpURLConnection.HTTP_OK}, commitUri, "PUT",
+                    TxMediaType.TX_STATUS_MEDIA_TYPE, TxSupport.toStatusContent(nextState.name())), commitUri);
+        } catch (HttpResponseException e) {
+            return commitFailed(e, nextState);
+        }
+    }
+
+    private int committed(String body, String commitUri) {
+        if (body.isEmpty()) {
+            status = TxStatus.TransactionCommitted;
+        } else {
+            status = TxStatus.fromStatus(TxSupport.getStatus(body));
+        }
 
-                if (body.isEmpty()) {
-                    status = TxStatus.TransactionCommitted;
-                } else {
-                    status = TxStatus.fromStatus(TxSupport.getStatus(body));
-                }
+        if (log.isTraceEnabled())
+            log.tracef("COMMIT OK at commitURI: %s RTS status: %s", commitUri, status);
 
-                if (log.isTraceEnabled())
-                    log.tracef("commit http status: %s RTS status: %s", txs.getStatus(), status);
-            } else {
-                status = TxStatus.TransactionCommitted;
-            }
+        return statusToOutcome(status);
+    }
 
-            if (log.isTraceEnabled())
-                log.tracef("COMMIT OK at commitURI: %s", commitUri);
-        } catch (HttpResponseException e) {
-            if (log.isDebugEnabled())
-                log.debugf(e, "commit exception: HTTP code: %s body: %s", e.getActualResponse(), txs.getBody());
+    private int commitFailed(HttpResponseException e, TxStatus nextState) {
+        if (log.isDebugEnabled())
+            log.debugf(e, "commit exception: HTTP code: %s body: %s", e.getActualResponse(), e.getBody());
 
-            // should result in the recovery system taking over
-            if (e.getActualResponse() == HttpURLConnection.HTTP_UNAVAILABLE) {
-                log.trace("Finishing with TwoPhaseOutcome.FINISH_ERROR");
-                 return TwoPhaseOutcome.FINISH_ERROR;
-            } else {
-                checkFinishError(e.getActualResponse(), nextState);
-                status = TxStatus.fromStatus(txs.getBody());
-            }
+        // should result in the recovery system taking over
+        if (e.getActualResponse() == HttpURLConnection.HTTP_UNAVAILABLE) {
+            log.trace("Finishing with TwoPhaseOutcome.FINISH_ERROR");
+            return TwoPhaseOutcome.FINISH_ERROR;
         }
 
+        checkFinishError(e.getActualResponse(), nextState);
+        status = TxStatus.fromStatus(e.getBody());
+
         return statusToOutcome(status);
     }
 
@@ -24,6 +24,8 @@ import java.net.HttpURLConnection;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
@@ -37,7 +39,9 @@ import org.jboss.jbossts.star.util.TxStatus;
 
 import com.arjuna.ats.arjuna.AtomicAction;
 import com.arjuna.ats.arjuna.coordinator.AbstractRecord;
+import com.arjuna.ats.arjuna.coordinator.ActionStatus;
 import com.arjuna.ats.arjuna.coordinator.AddOutcome;
+import com.arjuna.ats.arjuna.coordinator.RecordList;
 import com.arjuna.ats.arjuna.coordinator.RecordListIterator;
 import org.jboss.jbossts.star.util.TxSupport;
 import org.jboss.jbossts.star.util.media.txstatusext.CoordinatorElement;
@@ -284,9 +288,53 @@ public class Transaction extends AtomicAction {
         enlistmentIds = new ArrayList<String>();
         getParticipants(enlistmentIds);
 
+        if (commit && parent() == null && status() == ActionStatus.RUNNING
+                && pendingList != null && pendingList.size() > 1) {
+            // send prepare to every participant before waiting for any of the votes
+            List<CompletableFuture<Void>> votes = new ArrayList<CompletableFuture<Void>>();
+            RecordListIterator i = new RecordListIterator(pendingList);
+            AbstractRecord r;
+
+            while ((r = i.iterate()) != null) {
+                if (r instanceof RESTRecord)
+                    votes.add(((RESTRecord) r).topLevelPrepareAsync());
+            }
+
+            CompletableFuture.allOf(votes.toArray(new CompletableFuture[votes.size()])).join();
+        }
+
         return commit;
     }
 
+    @Override
+    protected int doCommit(RecordList rl, boolean reportHeuristics) {
+        if (rl != preparedList || parent() != null || rl == null || rl.size() < 3)
+            return super.doCommit(rl, reportHeuristics);
+
+        /*
+         * Commit the first participant on its own so that a heuristic rollback from it still rolls back
+         * the rest, then send commit to the remaining participants before waiting for any of them.
+         */
+        RecordList first = new RecordList();
+
+        first.insert(rl.getFront());
+        super.doCommit(first, reportHeuristics);
+
+        List<CompletableFuture<Void>> outcomes = new ArrayList<CompletableFuture<Void>>();
+        RecordListIterator i = new RecordListIterator(rl);
+        AbstractRecord r;
+
+        while ((r = i.iterate()) != null) {
+            if (r instanceof RESTRecord)
+                outcomes.add(((RESTRecord) r).topLevelCommitAsync());
+        }
+
+        CompletableFuture.allOf(outcomes.toArray(new CompletableFuture[outcomes.size()])).join();
+
+        // collect the outcomes, dealing with any heuristics as usual
+        return super.doCommit(rl, reportHeuristics);
+    }
+
     @Override
     protected boolean afterCompletion(int arjunaStatus) {
         return afterCompletion(arjunaStatus, false);
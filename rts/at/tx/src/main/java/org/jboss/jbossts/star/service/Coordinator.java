@@ -26,6 +26,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -101,6 +102,9 @@ public class Coordinator {
     // commited and aborted makes a sum of how many transactions were committed/aborted till now
     private static final AtomicInteger committed = new AtomicInteger(0);
     private static final AtomicInteger aborted = new AtomicInteger(0);
+    // ids of the transactions counted as prepared, so that a transaction which ends without being
+    // terminated (it timed out for example) does not decrement the prepared count
+    private static final Set<String> preparing = ConcurrentHashMap.newKeySet();
 
     private static long age = System.currentTimeMillis();
 
@@ -109,19 +113,25 @@ public class Coordinator {
      * known to the coordinator (active and in recovery) separated by
      * the @see TxSupport.URI_SEPARATOR character
      * @param info http context of the request
+     * @param status if not empty only list transactions whose @see TxStatus has this name
+     * @param offset the number of matching transactions to skip
+     * @param limit the maximum number of transactions to list, a negative value means no limit
      * @return JSON representation of active transactions and HTTP status code
      */
     @GET
     @Path(TxSupport.TX_SEGMENT)
     @Produces(TxMediaType.TX_LIST_MEDIA_TYPE)
-    public Response getAllTransactions(@Context UriInfo info) {
+    public Response getAllTransactions(@Context UriInfo info,
+                                       @QueryParam("status") @DefaultValue("") String status,
+                                       @QueryParam("offset") @DefaultValue("0") int offset,
+                                       @QueryParam("limit") @DefaultValue("-1") int limit) {
         log.trace("coordinator: list: transaction-coordinator");
         StringBuilder txns = new StringBuilder();
         Iterator<String> i;
         String statisticsUri = TxSupport.extractUri(info, TxLinkNames.STATISTICS);
 
         updateTransactions();
-        i = transactions.keySet().iterator();
+        i = selectTransactions(status, offset, limit).iterator();
 
         while (i.hasNext()) {
             URI uri = TxSupport.getUri(info, info.getPathSegments().size(), i.next());
@@ -151,17 +161,23 @@ public class Coordinator {
      * been up and all transaction-coordinator URIs.
      *
      * @param info Request context
+     * @param status if not empty only list transactions whose @see TxStatus has this name
+     * @param offset the number of matching transactions to skip
+     * @param limit the maximum number of transactions to list, a negative value means no limit
      * @return TransactionManagerElement
      */
     @GET
     @Path(TxSupport.TX_SEGMENT)
     @Produces(TxMediaType.TX_STATUS_EXT_MEDIA_TYPE)
-    public TransactionManagerElement getTransactionManagerInfo(@Context UriInfo info) {
+    public TransactionManagerElement getTransactionManagerInfo(@Context UriInfo info,
+                                                               @QueryParam("status") @DefaultValue("") String status,
+                                                               @QueryParam("offset") @DefaultValue("0") int offset,
+                                                               @QueryParam("limit") @DefaultValue("-1") int limit) {
         TransactionManagerElement tm = new TransactionManagerElement();
 
         updateTransactions();
 
-        for (String s : transactions.keySet()) {
+        for (String s : selectTransactions(status, offset, limit)) {
             URI uri = TxSupport.getUri(info, info.getPathSegments().size(), s);
             tm.addCoordinator(uri.toASCIIString());
         }
@@ -184,11 +200,47 @@ public class Coordinator {
     @Path(TxSupport.TX_SEGMENT + TxLinkNames.STATISTICS)
     @Produces(TxMediaType.TX_STATUS_EXT_MEDIA_TYPE)
     public TransactionStatisticsElement getTransactionStatistics() {
-        // TODO: for prepared we could go through every transaction and get its status
+        // the counters are maintained as transactions change state so there is no need to visit each transaction
         return new TransactionStatisticsElement(
                 active.get(), prepared.get(), committed.get(), aborted.get());
     }
 
+    /**
+     * Select a page of the ids of the transactions known to the coordinator. The listing is weakly
+     * consistent: transactions that begin or end while paging may or may not be included.
+     *
+     * @param status if not empty only select transactions whose @see TxStatus has this name
+     * @param offset the number of matching transactions to skip
+     * @param limit the maximum number of ids to return, a negative value means no limit
+     * @return the selected transaction ids
+     */
+    private List<String> selectTransactions(String status, int offset, int limit) {
+        TxStatus txStatus = (status.length() == 0 ? null : TxStatus.fromStatus(status));
+        int size = transactions.size();
+        List<String> ids = new ArrayList<String>(limit < 0 ? size : Math.min(size, limit));
+        int skip = Math.max(offset, 0);
+
+        if (limit == 0)
+            return ids;
+
+        for (Map.Entry<String, Transaction> entry : transactions.entrySet()) {
+            // looking up the status is only needed when filtering
+            if (txStatus != null && entry.getValue().getTxStatus() != txStatus)
+                continue;
+
+            if (skip > 0) {
+                skip -= 1;
+            } else {
+                ids.add(entry.getKey());
+
+                if (ids.size() == limit)
+                    break;
+            }
+        }
+
+        return ids;
+    }
+
     /**
      * Obtain the transaction terminator and participant enlistment URIs for the
      * specified transaction id. These are returned in link headers in the same
@@ -450,11 +502,13 @@ public class Coordinator {
 
         switch (txStatus) {
             case TransactionCommitted:
-                prepared.incrementAndGet();
+                if (preparing.add(txId))
+                    prepared.incrementAndGet();
                 status = tx.getStatus(tx.commit(true));
                 break;
             case TransactionRolledBack:
-                prepared.incrementAndGet();
+                if (preparing.add(txId))
+                    prepared.incrementAndGet();
                 status = tx.getStatus(tx.abort());
                 break;
             case TransactionRollbackOnly:
@@ -485,7 +539,8 @@ public class Coordinator {
         String txId = tx.get_uid().fileStringForm();
         transactions.remove(txId);
 
-        prepared.decrementAndGet();
+        if (preparing.remove(txId))
+            prepared.decrementAndGet();
         active.decrementAndGet();
         if (status == ActionStatus.COMMITTED)
             committed.incrementAndGet();
@@ -755,6 +810,10 @@ public class Coordinator {
     }
 
     private void updateTransactions() {
+        // nothing to reconcile so avoid scanning the object store
+        if (recoveringTransactions.isEmpty())
+            return;
+
         Map<String, RecoveringTransaction> txns = new HashMap<String, RecoveringTransaction>(recoveringTransactions);
 
         // remove all those uids that are still recovering
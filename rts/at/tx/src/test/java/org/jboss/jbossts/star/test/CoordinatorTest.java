@@ -70,6 +70,41 @@ public class CoordinatorTest extends BaseTest {
 
     }
 
+    // list transactions a page at a time and by status
+    @Test
+    public void testListTransactionPages() throws IOException {
+        TxSupport[] txns = {new TxSupport(), new TxSupport(), new TxSupport()};
+        TxSupport txn = new TxSupport();
+        int txnCount = txn.txCount();
+        int rollbackOnlyCount = countTransactions(txn, "?status=TransactionRollbackOnly");
+
+        for (TxSupport t : txns)
+            t.startTx();
+
+        txns[0].markTxRollbackOnly();
+
+        Assert.assertEquals(2, countTransactions(txn, "?limit=2"));
+        Assert.assertEquals(1, countTransactions(txn, "?offset=" + (txnCount + 2)));
+        Assert.assertEquals(0, countTransactions(txn, "?offset=" + (txnCount + 3)));
+        Assert.assertEquals(0, countTransactions(txn, "?limit=0"));
+        Assert.assertEquals(rollbackOnlyCount + 1, countTransactions(txn, "?status=TransactionRollbackOnly"));
+        Assert.assertEquals(0, countTransactions(txn, "?status=NoSuchStatus"));
+
+        txns[0].rollbackTx();
+        txns[1].commitTx();
+        txns[2].commitTx();
+
+        Assert.assertEquals(rollbackOnlyCount, countTransactions(txn, "?status=TransactionRollbackOnly"));
+        Assert.assertEquals(txnCount, txn.txCount());
+    }
+
+    private int countTransactions(TxSupport txn, String query) {
+        String content = txn.httpRequest(new int[] {HttpURLConnection.HTTP_OK}, TXN_MGR_URL + query, "GET",
+                TxMediaType.TX_LIST_MEDIA_TYPE);
+
+        return content.length() == 0 ? 0 : content.split(TxSupport.URI_SEPARATOR).length;
+    }
+
     // 1PC commit abort
     @Test
     public void test1PCAbort() throws Exception {
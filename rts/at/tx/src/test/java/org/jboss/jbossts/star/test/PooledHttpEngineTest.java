@@ -0,0 +1,200 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2019, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.jboss.jbossts.star.test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.jboss.jbossts.star.util.HttpEngineResponse;
+import org.jboss.jbossts.star.util.PooledHttpEngine;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Drives the pooled HTTP engine against an embedded HTTP stub which records the client connections it sees
+ */
+public class PooledHttpEngineTest {
+    private static final int READ_TIMEOUT = 10000;
+    private static final int PARTICIPANTS = 3;
+
+    private HttpServer server;
+    private String url;
+    private PooledHttpEngine engine;
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private volatile CountDownLatch arrived = new CountDownLatch(0);
+
+    @Before
+    public void before() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/participant", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                clientPorts.add(exchange.getRemoteAddress().getPort());
+
+                InputStream is = exchange.getRequestBody();
+                while (is.read() != -1)
+                    ;
+
+                if (exchange.getRequestURI().getPath().endsWith("/drop")) {
+                    // close the connection without a response
+                    exchange.close();
+                    return;
+                }
+
+                // hold each response until the expected number of requests are in progress together
+                arrived.countDown();
+
+                try {
+                    arrived.await(READ_TIMEOUT, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                boolean fail = exchange.getRequestURI().getPath().endsWith("/fail");
+                byte[] body = (fail ? "failed" : "prepared").getBytes();
+
+                exchange.getResponseHeaders().add("Link", "<" + url + ">; rel=\"participant\"");
+                exchange.sendResponseHeaders(fail ? HttpURLConnection.HTTP_CONFLICT : HttpURLConnection.HTTP_OK,
+                        body.length);
+
+                OutputStream os = exchange.getResponseBody();
+                os.write(body);
+                os.close();
+            }
+        });
+        server.start();
+
+        url = "http://localhost:" + server.getAddress().getPort() + "/participant";
+        engine = new PooledHttpEngine(null, PARTICIPANTS);
+    }
+
+    @After
+    public void after() {
+        engine.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    public void testSend() throws IOException {
+        HttpEngineResponse response = engine.send(url, "PUT", null, "txstatus=TransactionPrepared", READ_TIMEOUT);
+
+        Assert.assertEquals(HttpURLConnection.HTTP_OK, response.getStatus());
+        Assert.assertEquals("prepared", response.getBody());
+        Assert.assertEquals("<" + url + ">; rel=\"participant\"", response.getHeader("link"));
+
+        response = engine.send(url + "/fail", "PUT", null, "txstatus=TransactionPrepared", READ_TIMEOUT);
+
+        // the status of an error response is returned rather than thrown
+        Assert.assertEquals(HttpURLConnection.HTTP_CONFLICT, response.getStatus());
+        Assert.assertEquals("", response.getBody());
+
+        // and its connection goes back to the pool
+        Assert.assertEquals(1, clientPorts.size());
+    }
+
+    @Test
+    public void testSendAsyncInParallel() throws Exception {
+        // no response is sent until all of the requests have arrived
+        arrived = new CountDownLatch(PARTICIPANTS);
+
+        List<CompletableFuture<HttpEngineResponse>> responses = new ArrayList<CompletableFuture<HttpEngineResponse>>();
+
+        for (int i = 0; i < PARTICIPANTS; i++)
+            responses.add(engine.sendAsync(url, "PUT", null, "txstatus=TransactionPrepared", READ_TIMEOUT));
+
+        for (CompletableFuture<HttpEngineResponse> response : responses)
+            Assert.assertEquals("prepared", response.get(READ_TIMEOUT, TimeUnit.MILLISECONDS).getBody());
+
+        Assert.assertEquals(0, arrived.getCount());
+        Assert.assertEquals(PARTICIPANTS, clientPorts.size());
+
+        // a second round reuses the pooled connections
+        arrived = new CountDownLatch(PARTICIPANTS);
+        responses.clear();
+
+        for (int i = 0; i < PARTICIPANTS; i++)
+            responses.add(engine.sendAsync(url, "PUT", null, "txstatus=TransactionCommitted", READ_TIMEOUT));
+
+        for (CompletableFuture<HttpEngineResponse> response : responses)
+            Assert.assertEquals(HttpURLConnection.HTTP_OK, response.get(READ_TIMEOUT, TimeUnit.MILLISECONDS).getStatus());
+
+        Assert.assertEquals(PARTICIPANTS, clientPorts.size());
+    }
+
+    @Test
+    public void testSendAsyncFailure() throws Exception {
+        try {
+            engine.sendAsync(url + "/drop", "PUT", null, null, READ_TIMEOUT).get(READ_TIMEOUT, TimeUnit.MILLISECONDS);
+            Assert.fail("expected the request to fail");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testShutdown() throws Exception {
+        // hold every request so that the extra one is still queued when the engine is shutdown
+        arrived = new CountDownLatch(PARTICIPANTS + 1);
+
+        List<CompletableFuture<HttpEngineResponse>> responses = new ArrayList<CompletableFuture<HttpEngineResponse>>();
+
+        for (int i = 0; i <= PARTICIPANTS; i++)
+            responses.add(engine.sendAsync(url, "PUT", null, null, READ_TIMEOUT));
+
+        while (engine.getActiveCount() != PARTICIPANTS)
+            Thread.sleep(10);
+
+        engine.shutdown();
+
+        try {
+            responses.get(PARTICIPANTS).get(READ_TIMEOUT, TimeUnit.MILLISECONDS);
+            Assert.fail("expected the queued request to fail");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IOException);
+        }
+
+        // release the requests in progress
+        while (arrived.getCount() != 0)
+            arrived.countDown();
+
+        try {
+            engine.sendAsync(url, "PUT", null, null, READ_TIMEOUT).get(READ_TIMEOUT, TimeUnit.MILLISECONDS);
+            Assert.fail("expected the engine to refuse new requests");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2019, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.jboss.jbossts.star.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.arjuna.ats.arjuna.coordinator.TwoPhaseOutcome;
+import org.jboss.jbossts.star.provider.HttpResponseException;
+import org.jboss.jbossts.star.resource.RESTRecord;
+import org.jboss.jbossts.star.util.TxSupport;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Drives TxSupport against an embedded HTTP stub which records the client connections it sees
+ */
+public class TxSupportHttpTest {
+    private HttpServer server;
+    private String url;
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+
+    @Before
+    public void before() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/participant", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                clientPorts.add(exchange.getRemoteAddress().getPort());
+
+                InputStream is = exchange.getRequestBody();
+                while (is.read() != -1)
+                    ;
+
+                boolean fail = exchange.getRequestURI().getPath().endsWith("/fail");
+                byte[] body = (fail ? "failed" : "prepared").getBytes();
+
+                exchange.sendResponseHeaders(fail ? HttpURLConnection.HTTP_CONFLICT : HttpURLConnection.HTTP_OK,
+                        body.length);
+
+                OutputStream os = exchange.getResponseBody();
+                os.write(body);
+                os.close();
+            }
+        });
+        server.createContext("/record", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                // reply with the status the coordinator asked for, as a participant which agrees would
+                ByteArrayOutputStream content = new ByteArrayOutputStream();
+                InputStream is = exchange.getRequestBody();
+                int b;
+
+                while ((b = is.read()) != -1)
+                    content.write(b);
+
+                byte[] body = content.toByteArray();
+                boolean fail = exchange.getRequestURI().getPath().endsWith("/fail");
+
+                exchange.sendResponseHeaders(fail ? HttpURLConnection.HTTP_CONFLICT : HttpURLConnection.HTTP_OK,
+                        body.length);
+
+                OutputStream os = exchange.getResponseBody();
+                os.write(body);
+                os.close();
+            }
+        });
+        server.start();
+
+        url = "http://localhost:" + server.getAddress().getPort() + "/participant";
+    }
+
+    @After
+    public void after() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testKeepAlive() {
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals("prepared", put(url));
+
+            // an unexpected status must leave the connection usable too
+            try {
+                put(url + "/fail");
+                Assert.fail("expected an HttpResponseException");
+            } catch (HttpResponseException e) {
+                Assert.assertEquals(HttpURLConnection.HTTP_CONFLICT, e.getActualResponse());
+            }
+        }
+
+        Assert.assertEquals(1, clientPorts.size());
+    }
+
+    @Test
+    public void testAsyncRequest() throws Exception {
+        TxSupport txSupport = new TxSupport();
+        CompletableFuture<String> body = txSupport.httpRequestAsync(new int[] {HttpURLConnection.HTTP_OK}, url, "PUT",
+                "text/plain", "txstatus=TransactionPrepared");
+
+        Assert.assertEquals("prepared", body.get(10, TimeUnit.SECONDS));
+        Assert.assertEquals(HttpURLConnection.HTTP_OK, txSupport.getStatus());
+
+        try {
+            new TxSupport().httpRequestAsync(new int[] {HttpURLConnection.HTTP_OK}, url + "/fail", "PUT",
+                    "text/plain", "txstatus=TransactionPrepared").get(10, TimeUnit.SECONDS);
+            Assert.fail("expected an HttpResponseException");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof HttpResponseException);
+            Assert.assertEquals(HttpURLConnection.HTTP_CONFLICT, ((HttpResponseException) e.getCause()).getActualResponse());
+        }
+    }
+
+    @Test
+    public void testRecordPrepareAndCommitAsync() throws Exception {
+        String record = "http://localhost:" + server.getAddress().getPort() + "/record";
+        RESTRecord rr = new RESTRecord("tx", record, record, record);
+
+        rr.topLevelPrepareAsync().get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(TwoPhaseOutcome.PREPARE_OK, rr.topLevelPrepare());
+
+        rr.topLevelCommitAsync().get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(TwoPhaseOutcome.FINISH_OK, rr.topLevelCommit());
+    }
+
+    @Test
+    public void testRecordPrepareAsyncFailure() throws Exception {
+        String record = "http://localhost:" + server.getAddress().getPort() + "/record/fail";
+        RESTRecord rr = new RESTRecord("tx", record, record, record);
+
+        rr.topLevelPrepareAsync().get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(TwoPhaseOutcome.PREPARE_NOTOK, rr.topLevelPrepare());
+
+        // the participant did not prepare so there is nothing to commit
+        Assert.assertTrue(rr.topLevelCommitAsync().isDone());
+    }
+
+    private String put(String target) {
+        return new TxSupport().httpRequest(new int[] {HttpURLConnection.HTTP_OK}, target, "PUT", "text/plain",
+                "txstatus=TransactionPrepared");
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2019, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.jboss.jbossts.star.util;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Transport used by {@link TxSupport} to send HTTP requests. An engine owns its connections, so it
+ * decides how they are pooled, and it can send requests without blocking the caller.
+ *
+ * @see TxSupport#setHttpEngine(HttpEngine)
+ */
+public interface HttpEngine {
+    /**
+     * Send a request and wait for the response.
+     *
+     * @param url the target of the request
+     * @param method the HTTP method
+     * @param headers the request headers, may be null
+     * @param content the request body, may be null
+     * @param readTimeout the read timeout in milliseconds
+     * @return the response, whatever its status code
+     * @throws IOException if the request could not be sent or the response could not be read
+     */
+    HttpEngineResponse send(String url, String method, Map<String, String> headers, String content, int readTimeout)
+            throws IOException;
+
+    /**
+     * Send a request without waiting for the response.
+     *
+     * @param url the target of the request
+     * @param method the HTTP method
+     * @param headers the request headers, may be null
+     * @param content the request body, may be null
+     * @param readTimeout the read timeout in milliseconds
+     * @return a future completing with the response, or exceptionally with the IOException that
+     * {@link #send(String, String, Map, String, int)} would have thrown
+     */
+    CompletableFuture<HttpEngineResponse> sendAsync(String url, String method, Map<String, String> headers,
+                                                    String content, int readTimeout);
+
+    /**
+     * Release the resources held by the engine. Requests which have not started are failed.
+     */
+    void shutdown();
+}
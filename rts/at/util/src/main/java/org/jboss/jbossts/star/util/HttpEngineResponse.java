@@ -0,0 +1,75 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2019, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.jboss.jbossts.star.util;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A response received by an {@link HttpEngine}. The body is only available for successful responses,
+ * as with {@link java.net.HttpURLConnection}.
+ */
+public class HttpEngineResponse {
+    private final int status;
+    private final String contentType;
+    private final String body;
+    private final Map<String, List<String>> headers;
+
+    public HttpEngineResponse(int status, String contentType, String body, Map<String, List<String>> headers) {
+        this.status = status;
+        this.contentType = contentType;
+        this.body = body;
+        this.headers = (headers == null ? Collections.<String, List<String>>emptyMap() : headers);
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    /**
+     * @param name the header name, matched ignoring case
+     * @return all values of the header, or null if it is not present
+     */
+    public List<String> getHeaders(String name) {
+        for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            if (name.equalsIgnoreCase(entry.getKey()))
+                return entry.getValue();
+        }
+
+        return null;
+    }
+
+    /**
+     * @param name the header name, matched ignoring case
+     * @return the last value of the header, or null if it is not present
+     */
+    public String getHeader(String name) {
+        List<String> values = getHeaders(name);
+
+        return (values == null || values.isEmpty() ? null : values.get(values.size() - 1));
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2019, Red Hat Middleware LLC, and individual contributors
+ * as indicated by the @author tags.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.jboss.jbossts.star.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.jbossts.star.logging.RESTATLogger;
+
+/**
+ * The default {@link HttpEngine}, which sends requests with {@link HttpURLConnection}.
+ *
+ * Connections are pooled by the JDK keep-alive cache. A connection only goes back to the cache once its
+ * response has been read to the end, so the engine always consumes the response, including the error stream
+ * of a non-2xx response such as a participant voting to roll back. The asynchronous requests are run by a
+ * bounded pool of daemon threads, sized by default to the number of connections the JDK keeps alive per
+ * destination (the http.maxConnections system property), so that a fan-out to the participants of one
+ * server reuses the same connections rather than opening one per request.
+ */
+public class PooledHttpEngine implements HttpEngine {
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = Integer.getInteger("http.maxConnections", 5);
+    private static final AtomicInteger ENGINES = new AtomicInteger();
+
+    private final HttpConnectionCreator creator;
+    private final ThreadPoolExecutor executor;
+
+    public PooledHttpEngine() {
+        this(null, DEFAULT_MAX_CONCURRENT_REQUESTS);
+    }
+
+    /**
+     * @param creator opens the connections, or null to open them with {@link URL#openConnection()}
+     * @param maxConcurrentRequests the number of asynchronous requests which may be in progress at once
+     */
+    public PooledHttpEngine(HttpConnectionCreator creator, int maxConcurrentRequests) {
+        if (maxConcurrentRequests <= 0)
+            throw new IllegalArgumentException("maxConcurrentRequests must be positive");
+
+        this.creator = creator;
+
+        final String prefix = "rts-http-engine-" + ENGINES.incrementAndGet() + "-";
+        final AtomicInteger threads = new AtomicInteger();
+
+        executor = new ThreadPoolExecutor(maxConcurrentRequests, maxConcurrentRequests, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, prefix + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public HttpEngineResponse send(String url, String method, Map<String, String> headers, String content,
+                                   int readTimeout) throws IOException {
+        HttpURLConnection connection = null;
+        boolean reusable = false;
+
+        try {
+            connection = open(new URL(url));
+            connection.setRequestMethod(method);
+            connection.setReadTimeout(readTimeout);
+
+            if (headers != null) {
+                for (Map.Entry<String, String> entry : headers.entrySet())
+                    connection.setRequestProperty(entry.getKey(), entry.getValue());
+            }
+
+            if (content != null) {
+                connection.setDoOutput(true);
+
+                OutputStream os = connection.getOutputStream();
+                try {
+                    os.write(content.getBytes());
+                    os.flush();
+                } finally {
+                    os.close();
+                }
+            }
+
+            int status = connection.getResponseCode();
+            String body;
+
+            try {
+                body = (status != -1 ? getContent(connection) : "");
+                // the response has been consumed so the connection goes back to the JDK keep-alive cache
+                reusable = true;
+            } catch (IOException e) {
+                RESTATLogger.atI18NLogger.info_txSupportHttpRequest(e.getMessage(), e);
+                body = "";
+
+                // error responses must be read too or the connection is lost
+                reusable = drain(connection.getErrorStream());
+            }
+
+            return new HttpEngineResponse(status, connection.getContentType(), body, connection.getHeaderFields());
+        } finally {
+            if (connection != null && !reusable)
+                connection.disconnect();
+        }
+    }
+
+    @Override
+    public CompletableFuture<HttpEngineResponse> sendAsync(String url, String method, Map<String, String> headers,
+                                                           String content, int readTimeout) {
+        Request request = new Request(url, method, headers, content, readTimeout);
+
+        try {
+            executor.execute(request);
+        } catch (RejectedExecutionException e) {
+            request.fail(e);
+        }
+
+        return request.future;
+    }
+
+    @Override
+    public void shutdown() {
+        // fail the requests which never started rather than leaving their callers waiting
+        for (Runnable pending : executor.shutdownNow())
+            ((Request) pending).fail(null);
+    }
+
+    /**
+     * @return the number of asynchronous requests in progress
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    private class Request implements Runnable {
+        private final CompletableFuture<HttpEngineResponse> future = new CompletableFuture<HttpEngineResponse>();
+        private final String url;
+        private final String method;
+        private final Map<String, String> headers;
+        private final String content;
+        private final int readTimeout;
+
+        Request(String url, String method, Map<String, String> headers, String content, int readTimeout) {
+            this.url = url;
+            this.method = method;
+            this.headers = headers;
+            this.content = content;
+            this.readTimeout = readTimeout;
+        }
+
+        @Override
+        public void run() {
+            try {
+                future.complete(send(url, method, headers, content, readTimeout));
+            } catch (IOException | RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }
+
+        void fail(Throwable cause) {
+            future.completeExceptionally(new IOException("HTTP engine has been shutdown: " + method + " " + url, cause));
+        }
+    }
+
+    private HttpURLConnection open(URL url) throws IOException {
+        return (creator == null ? (HttpURLConnection) url.openConnection() : creator.open(url));
+    }
+
+    private static String getContent(HttpURLConnection connection) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        char[] buffer = new char[1024];
+        BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
+
+        try {
+            int wasRead;
+
+            while ((wasRead = reader.read(buffer, 0, buffer.length)) > -1)
+                builder.append(buffer, 0, wasRead);
+        } finally {
+            reader.close();
+        }
+
+        return builder.toString();
+    }
+
+    private static boolean drain(InputStream is) {
+        if (is == null)
+            return false;
+
+        try {
+            byte[] buffer = new byte[1024];
+
+            while (is.read(buffer) != -1)
+                ;
+
+            return true;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            try {
+                is.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+}
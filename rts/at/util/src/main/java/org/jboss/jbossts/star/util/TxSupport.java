@@ -20,20 +20,18 @@
  */
 package org.jboss.jbossts.star.util;
 
-import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
 import java.io.StringReader;
 import java.net.HttpURLConnection;
 import java.net.URI;
-import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -98,12 +96,7 @@ public class TxSupport {
     private String contentType = null;
     private String txnMgr;
     private int readTimeout = DEFAULT_READ_TIMEOUT;
-    private static HttpConnectionCreator creator = new HttpConnectionCreator() {
-        @Override
-        public HttpURLConnection open(URL url) throws IOException {
-            return (HttpURLConnection) url.openConnection();
-        }
-    };
+    private static volatile HttpEngine engine = new PooledHttpEngine();
 
     public static void setTxnMgrUrl(String txnMgrUrl) {
         TXN_MGR_URL = txnMgrUrl;
@@ -125,8 +118,28 @@ public class TxSupport {
         this(TXN_MGR_URL, readTimeout);
     }
 
+    /**
+     * Open connections with the given creator. This replaces the current {@link HttpEngine} with a
+     * {@link PooledHttpEngine} which uses the creator.
+     */
     public static void setHttpConnectionCreator(HttpConnectionCreator creator) {
-        TxSupport.creator = creator;
+        setHttpEngine(new PooledHttpEngine(creator, PooledHttpEngine.DEFAULT_MAX_CONCURRENT_REQUESTS));
+    }
+
+    /**
+     * Send all HTTP requests with the given engine. The engine which it replaces is shutdown.
+     */
+    public static void setHttpEngine(HttpEngine engine) {
+        HttpEngine previous = TxSupport.engine;
+
+        TxSupport.engine = engine;
+
+        if (previous != null && previous != engine)
+            previous.shutdown();
+    }
+
+    public static HttpEngine getHttpEngine() {
+        return engine;
     }
 
     public static void addLinkHeader(Response.ResponseBuilder response, UriInfo info, String title, String name,
@@ -473,55 +486,89 @@ public class TxSupport {
     public String httpRequest(int[] expect, String url, String method, String mediaType, String content,
                               Map<String, String> linkHeaders, Map<String, String> reqHeaders)
             throws HttpResponseException {
-        HttpURLConnection connection = null;
+        HttpEngineResponse response;
 
         try {
-            connection = openConnection(null, url, method, mediaType, content, reqHeaders);
-            connection.setReadTimeout(readTimeout);
-            status = connection.getResponseCode();
-            contentType = connection.getContentType();
+            response = engine.send(url, method, requestHeaders(method, mediaType, reqHeaders), content, readTimeout);
+        } catch (IOException e) {
+            throw ioError(e, expect);
+        }
 
-            try {
-                body = (status != -1 ? getContent(connection) : "");
-            } catch (IOException e) {
-                RESTATLogger.atI18NLogger.info_txSupportHttpRequest(e.getMessage(), e);
-                body = "";
-            }
+        return handleResponse(response, expect, url, method, mediaType, content, linkHeaders);
+    }
 
-            if (linkHeaders != null) {
-                extractLinkHeaders(connection, linkHeaders);
-                addLocationHeader(connection, linkHeaders);
-            }
+    /**
+     * Send a request without waiting for the response. The status, content type and body of this object are
+     * updated when the response arrives so callers should only read them once the returned future has completed.
+     *
+     * @return a future completing with the response body, or exceptionally with an {@link HttpResponseException}
+     * if the response status was not one of those expected or the request could not be sent
+     */
+    public CompletableFuture<String> httpRequestAsync(int[] expect, String url, String method, String mediaType,
+                                                      String content) {
+        CompletableFuture<String> result = new CompletableFuture<String>();
+
+        engine.sendAsync(url, method, requestHeaders(method, mediaType, null), content, readTimeout).whenComplete(
+                (response, t) -> {
+                    try {
+                        if (t != null)
+                            throw ioError(t instanceof CompletionException ? t.getCause() : t, expect);
+
+                        result.complete(handleResponse(response, expect, url, method, mediaType, content, null));
+                    } catch (HttpResponseException | RuntimeException e) {
+                        result.completeExceptionally(e);
+                    }
+                });
 
-            if (log.isTraceEnabled())
-                log.trace("httpRequest:" +
-                        "\n\turl: " + url +
-                        "\n\tmethod: " + method +
-                        "\n\tmediaType: " + mediaType +
-                        "\n\tcontent: " + content +
-                        "\n\tresponse code: " + status +
-                        "\n\tresponse body: " + body
-                );
-
-            if (expect != null && expect.length != 0) {
-                for (int sc : expect)
-                    if (sc == status)
-                        return body;
-
-                throw new HttpResponseException(null, body, expect, status);
-            } else {
-                return body;
+        return result;
+    }
+
+    private String handleResponse(HttpEngineResponse response, int[] expect, String url, String method,
+                                  String mediaType, String content, Map<String, String> linkHeaders) {
+        status = response.getStatus();
+        contentType = response.getContentType();
+        body = response.getBody();
+
+        if (linkHeaders != null) {
+            List<String> headers = response.getHeaders("Link");
+
+            if (headers != null) {
+                for (String header : headers)
+                    extractLinkHeaders(header, linkHeaders);
             }
-        } catch (IOException e) {
-            if (log.isTraceEnabled())
-                log.tracef("httpRequest: io error: %s%n", e.getMessage());
-            throw new HttpResponseException(e, "", expect, HttpURLConnection.HTTP_UNAVAILABLE);
-        } finally {
-            if (connection != null)
-                connection.disconnect();
+
+            if (status == HttpURLConnection.HTTP_CREATED)
+                linkHeaders.put("location", response.getHeader("location"));
+        }
+
+        if (log.isTraceEnabled())
+            log.trace("httpRequest:" +
+                    "\n\turl: " + url +
+                    "\n\tmethod: " + method +
+                    "\n\tmediaType: " + mediaType +
+                    "\n\tcontent: " + content +
+                    "\n\tresponse code: " + status +
+                    "\n\tresponse body: " + body
+            );
+
+        if (expect != null && expect.length != 0) {
+            for (int sc : expect)
+                if (sc == status)
+                    return body;
+
+            throw new HttpResponseException(null, body, expect, status);
+        } else {
+            return body;
         }
     }
 
+    private static HttpResponseException ioError(Throwable e, int[] expect) {
+        if (log.isTraceEnabled())
+            log.tracef("httpRequest: io error: %s%n", e.getMessage());
+
+        return new HttpResponseException(e, "", expect, HttpURLConnection.HTTP_UNAVAILABLE);
+    }
+
     private static Map<String, String> extractLinkHeaders(String header, Map<String, String> links) {
         if (header != null) {
             for (String linkHeader : header.split(",")) {
@@ -534,42 +581,15 @@ public class TxSupport {
         return links;
     }
 
-    private void extractLinkHeaders(HttpURLConnection connection, Map<String, String> links) {
-        Collection<String> linkHeaders = connection.getHeaderFields().get("Link");
-
-        if (linkHeaders == null)
-            linkHeaders = connection.getHeaderFields().get("link");
-
-        if (linkHeaders != null) {
-            for (String header : linkHeaders)
-                extractLinkHeaders(header, links);
-        }
-    }
-
-    private void addLocationHeader(HttpURLConnection connection, Map<String, String> links) {
-        try {
-            if (connection.getResponseCode() == HttpURLConnection.HTTP_CREATED)
-                links.put("location", connection.getHeaderField("location"));
-        } catch (IOException e) {
-            RESTATLogger.atI18NLogger.warn_txSupportAddLocationHeader(e.getMessage(), e);
-        }
-    }
-
-    private HttpURLConnection openConnection(HttpURLConnection connection, String url, String method,
-                                             String contentType, String content, Map<String, String> reqHeaders)
-            throws IOException {
-        if (connection != null)
-            connection.disconnect();
-
-        connection = creator.open(new URL(url));
-
-        connection.setRequestMethod(method);
+    private static Map<String, String> requestHeaders(String method, String contentType,
+                                                      Map<String, String> reqHeaders) {
+        Map<String, String> headers = new HashMap<String, String>();
 
         if (contentType != null) {
             if ("GET".equals(method))
-                connection.setRequestProperty("Accept", contentType);
+                headers.put("Accept", contentType);
             else
-                connection.setRequestProperty("Content-Type", contentType);
+                headers.put("Content-Type", contentType);
         }
 
         if (reqHeaders != null) {
@@ -580,53 +600,12 @@ public class TxSupport {
              *
              * In particular this applies to the Link header defined in rfc5988 (web linking)
              */
-            for (Map.Entry<String, String> entry : reqHeaders.entrySet())
-                connection.setRequestProperty(entry.getKey(), entry.getValue());
+            headers.putAll(reqHeaders);
         }
 
-        if (content != null) {
-            connection.setDoOutput(true);
-
-            OutputStream os = null;
-            try {
-                os = connection.getOutputStream();
-                os.write(content.getBytes());
-                os.flush();
-            } finally {
-                if (os != null) {
-                    os.close();
-                }
-            }
-        }
-
-        return connection;
-    }
-
-    private String getContent(HttpURLConnection connection) throws IOException {
-        return getContent(connection, new StringBuilder()).toString();
+        return headers;
     }
 
-    private StringBuilder getContent(HttpURLConnection connection, StringBuilder builder) throws IOException {
-        char[] buffer = new char[1024];
-        BufferedReader reader = null;
-        try {
-            reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-            int wasRead;
-
-            do
-            {
-                wasRead = reader.read(buffer, 0, 1024);
-                if (wasRead > 0)
-                    builder.append(buffer, 0, wasRead);
-            }
-            while (wasRead > -1);
-        } finally {
-            if (reader != null) {
-                reader.close();
-            }
-        }
-        return builder;
-    }
     /**
      * Parse a string for name=value pairs
      * TODO java.util.Scanner might be more efficient